@@ -0,0 +1,78 @@
+package org.fogbowcloud.sebal;
+
+import java.io.IOException;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+
+/**
+ * Reads the bands of a product in strips of whole rows, instead of one
+ * sample per band and per pixel. Each band has its own float buffer that is
+ * reused for every strip, so reading a window allocates only
+ * numberOfBands * width * stripHeight floats.
+ */
+public class BandStripReader {
+
+	public static final int DEFAULT_STRIP_HEIGHT = 64;
+
+	private final Band[] bands;
+	private final float[][] buffers;
+	private final int xBegin;
+	private final int width;
+	private final int stripHeight;
+
+	public BandStripReader(Product product, int xBegin, int xEnd) {
+		this(product, xBegin, xEnd, DEFAULT_STRIP_HEIGHT);
+	}
+
+	public BandStripReader(Product product, int xBegin, int xEnd, int stripHeight) {
+		if (xEnd < xBegin || stripHeight <= 0) {
+			throw new IllegalArgumentException("Invalid strip (" + xBegin + ", " + xEnd + ", "
+					+ stripHeight + ").");
+		}
+		this.xBegin = xBegin;
+		this.width = xEnd - xBegin;
+		this.stripHeight = stripHeight;
+		this.bands = new Band[product.getNumBands()];
+		this.buffers = new float[bands.length][width * stripHeight];
+		for (int k = 0; k < bands.length; k++) {
+			bands[k] = product.getBandAt(k);
+		}
+	}
+
+	public int stripHeight() {
+		return stripHeight;
+	}
+
+	/**
+	 * Reads the rows [yBegin, yEnd) of every band and copies them to the
+	 * store. The store must have the same width of this reader and its
+	 * offset must be set to the window origin.
+	 */
+	public void read(ImagePixelStore store, int yBegin, int yEnd) throws IOException {
+		if (store.width() != width) {
+			throw new IllegalArgumentException("Store width (" + store.width()
+					+ ") differs from strip width (" + width + ").");
+		}
+		for (int y = yBegin; y < yEnd; y += stripHeight) {
+			int rows = Math.min(stripHeight, yEnd - y);
+			int index = store.index(0, y - store.yOffset());
+			for (int k = 0; k < bands.length; k++) {
+				readStrip(bands[k], buffers[k], y, rows);
+				store.L(index, k, buffers[k], 0, width * rows);
+			}
+		}
+	}
+
+	private void readStrip(Band band, float[] buffer, int y, int rows) throws IOException {
+		if (width == 0 || rows == 0) {
+			return;
+		}
+		if (band.hasRasterData()) {
+			band.getPixels(xBegin, y, width, rows, buffer);
+		} else {
+			band.readPixels(xBegin, y, width, rows, buffer);
+		}
+	}
+}
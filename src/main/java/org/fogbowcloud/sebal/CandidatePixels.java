@@ -0,0 +1,168 @@
+package org.fogbowcloud.sebal;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.fogbowcloud.sebal.model.image.DefaultImagePixel;
+import org.fogbowcloud.sebal.model.image.GeoLoc;
+import org.fogbowcloud.sebal.model.image.ImagePixel;
+import org.fogbowcloud.sebal.model.image.ImagePixelOutput;
+
+/**
+ * Pixel quente/frio candidates copied out of their image, keeping in
+ * primitive arrays only what the choice of the pixels needs, as
+ * {@link CandidateSummary} does. Candidates of a tile can then outlive the
+ * store of the tile. Each {@link #get(int)} builds a new
+ * {@link DefaultImagePixel} with the kept values.
+ */
+class CandidatePixels extends AbstractList<ImagePixel> implements RandomAccess {
+
+	private int size;
+	private int[] i = new int[16];
+	private int[] j = new int[16];
+	private double[] lat = new double[16];
+	private double[] lon = new double[16];
+	private double[] ndvi = new double[16];
+	private double[] ts = new double[16];
+	private double[] alpha = new double[16];
+	private double[] savi = new double[16];
+	private double[] rn = new double[16];
+	private double[] g = new double[16];
+
+	CandidatePixels() {
+	}
+
+	CandidatePixels(Collection<ImagePixel> pixels) {
+		addAll(pixels);
+	}
+
+	@Override
+	public ImagePixel get(int index) {
+		checkIndex(index, size);
+		return pixel(i[index], j[index], lat[index], lon[index], ndvi[index], ts[index],
+				alpha[index], savi[index], rn[index], g[index]);
+	}
+
+	static ImagePixel pixel(int i, int j, double lat, double lon, double ndvi, double ts,
+			double alpha, double savi, double rn, double g) {
+		DefaultImagePixel pixel = new DefaultImagePixel();
+		pixel.geoLoc(new GeoLoc(i, j, lat, lon));
+		ImagePixelOutput output = new ImagePixelOutput();
+		output.setNDVI(ndvi);
+		output.setTs(ts);
+		output.setAlpha(alpha);
+		output.setSAVI(savi);
+		output.setRn(rn);
+		output.setG(g);
+		pixel.setOutput(output);
+		return pixel;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void add(int index, ImagePixel pixel) {
+		checkIndex(index, size + 1);
+		ensureCapacity(size + 1);
+		if (index < size) {
+			shift(index);
+		}
+		copy(index, pixel);
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends ImagePixel> pixels) {
+		if (!(pixels instanceof CandidatePixels)) {
+			return super.addAll(pixels);
+		}
+		CandidatePixels candidates = (CandidatePixels) pixels;
+		ensureCapacity(size + candidates.size);
+		System.arraycopy(candidates.i, 0, i, size, candidates.size);
+		System.arraycopy(candidates.j, 0, j, size, candidates.size);
+		System.arraycopy(candidates.lat, 0, lat, size, candidates.size);
+		System.arraycopy(candidates.lon, 0, lon, size, candidates.size);
+		System.arraycopy(candidates.ndvi, 0, ndvi, size, candidates.size);
+		System.arraycopy(candidates.ts, 0, ts, size, candidates.size);
+		System.arraycopy(candidates.alpha, 0, alpha, size, candidates.size);
+		System.arraycopy(candidates.savi, 0, savi, size, candidates.size);
+		System.arraycopy(candidates.rn, 0, rn, size, candidates.size);
+		System.arraycopy(candidates.g, 0, g, size, candidates.size);
+		size += candidates.size;
+		modCount++;
+		return candidates.size > 0;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+
+	private void copy(int index, ImagePixel pixel) {
+		GeoLoc geoLoc = pixel.geoLoc();
+		i[index] = geoLoc == null ? -1 : geoLoc.getI();
+		j[index] = geoLoc == null ? -1 : geoLoc.getJ();
+		lat[index] = geoLoc == null ? Double.NaN : geoLoc.getLat();
+		lon[index] = geoLoc == null ? Double.NaN : geoLoc.getLon();
+		ImagePixelOutput output = pixel.output();
+		ndvi[index] = output.getNDVI();
+		ts[index] = output.getTs();
+		alpha[index] = output.getAlpha();
+		savi[index] = output.SAVI();
+		rn[index] = output.Rn();
+		g[index] = output.G();
+	}
+
+	private void shift(int index) {
+		int length = size - index;
+		System.arraycopy(i, index, i, index + 1, length);
+		System.arraycopy(j, index, j, index + 1, length);
+		System.arraycopy(lat, index, lat, index + 1, length);
+		System.arraycopy(lon, index, lon, index + 1, length);
+		System.arraycopy(ndvi, index, ndvi, index + 1, length);
+		System.arraycopy(ts, index, ts, index + 1, length);
+		System.arraycopy(alpha, index, alpha, index + 1, length);
+		System.arraycopy(savi, index, savi, index + 1, length);
+		System.arraycopy(rn, index, rn, index + 1, length);
+		System.arraycopy(g, index, g, index + 1, length);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= i.length) {
+			return;
+		}
+		capacity = Math.max(capacity, i.length * 2);
+		i = Arrays.copyOf(i, capacity);
+		j = Arrays.copyOf(j, capacity);
+		lat = Arrays.copyOf(lat, capacity);
+		lon = Arrays.copyOf(lon, capacity);
+		ndvi = Arrays.copyOf(ndvi, capacity);
+		ts = Arrays.copyOf(ts, capacity);
+		alpha = Arrays.copyOf(alpha, capacity);
+		savi = Arrays.copyOf(savi, capacity);
+		rn = Arrays.copyOf(rn, capacity);
+		g = Arrays.copyOf(g, capacity);
+	}
+
+	private static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * The pixels as candidates, or the list itself if it already holds them.
+	 */
+	static CandidatePixels of(List<ImagePixel> pixels) {
+		return pixels instanceof CandidatePixels ? (CandidatePixels) pixels
+				: new CandidatePixels(pixels);
+	}
+}
@@ -0,0 +1,399 @@
+package org.fogbowcloud.sebal;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.sebal.model.image.GeoLoc;
+import org.fogbowcloud.sebal.model.image.ImagePixel;
+import org.fogbowcloud.sebal.model.image.ImagePixelOutput;
+
+/**
+ * Mergeable summary of the pixel quente/frio candidates of a partition, so the
+ * pixels of a whole scene can be chosen from the summaries of its partitions
+ * without moving their pixels around. A summary keeps:
+ * <ul>
+ * <li>the size biggest NDVI pixel frio candidates and the size smallest
+ * positive NDVI pixel quente candidates, with the number of candidates they
+ * were taken from;</li>
+ * <li>the biggest water sample and its pixel frio in the water;</li>
+ * <li>the moments of TS and albedo of the pixel frio and quente candidates.</li>
+ * </ul>
+ * Candidates are ordered by partition and then by their order in the
+ * partition. The pixel frio in the water of a partition is kept only in its
+ * water sample, not among its pixel frio candidates, so the merged summary
+ * has the candidates of the clusters of the whole scene and the water sample
+ * a single chooser would find, as long as the biggest water body lies in one
+ * partition. Choosing from it with
+ * {@link ClusteredPixelQuenteFrioChooser#choosePixelsQuenteFrio(CandidateSummary)}
+ * then gives the pixels a single chooser would give for the whole scene, as
+ * long as size is at least the number of candidates the NDVI filters keep.
+ * When it is not, the choice is logged as approximate.
+ */
+public class CandidateSummary implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOGGER = Logger.getLogger(CandidateSummary.class);
+
+	private final int size;
+	private final TopCandidates frioCandidates;
+	private final TopCandidates quenteCandidates;
+	private final Moments frioTs = new Moments();
+	private final Moments frioAlbedo = new Moments();
+	private final Moments quenteTs = new Moments();
+	private final Moments quenteAlbedo = new Moments();
+	private WaterSample waterSample;
+
+	private CandidateSummary(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Size of a candidate summary must be positive, not "
+					+ size + ".");
+		}
+		this.size = size;
+		this.frioCandidates = new TopCandidates(size, true);
+		this.quenteCandidates = new TopCandidates(size, false);
+	}
+
+	/**
+	 * Summary of the candidates selected by the chooser for the partition with
+	 * the given index; partitions are merged in the order of their indexes.
+	 */
+	public static CandidateSummary summarize(PixelQuenteFrioChooser chooser, int partitionIndex,
+			int size) {
+		CandidateSummary summary = new CandidateSummary(size);
+		long firstOrder = (long) partitionIndex << 32;
+
+		// the pixel frio in the water is summarized by the water sample
+		int pixelFrioInTheWaterPosition = chooser instanceof ClusteredPixelQuenteFrioChooser
+				? ((ClusteredPixelQuenteFrioChooser) chooser).pixelFrioInTheWaterPosition() : -1;
+		List<ImagePixel> frioCandidates = chooser.getPixelFrioCandidates();
+		List<Candidate> candidates = new ArrayList<Candidate>(frioCandidates.size());
+		for (int index = 0; index < frioCandidates.size(); index++) {
+			if (index == pixelFrioInTheWaterPosition) {
+				continue;
+			}
+			Candidate candidate = new Candidate(frioCandidates.get(index), firstOrder + index);
+			summary.frioTs.add(candidate.ts);
+			summary.frioAlbedo.add(candidate.alpha);
+			candidates.add(candidate);
+		}
+		summary.frioCandidates.addAll(candidates, candidates.size());
+
+		List<ImagePixel> quenteCandidates = chooser.getPixelQuenteCandidates();
+		candidates = new ArrayList<Candidate>(quenteCandidates.size());
+		for (int index = 0; index < quenteCandidates.size(); index++) {
+			Candidate candidate = new Candidate(quenteCandidates.get(index), firstOrder + index);
+			summary.quenteTs.add(candidate.ts);
+			summary.quenteAlbedo.add(candidate.alpha);
+			// the pixel quente filter leaves non positive NDVI out
+			if (!(candidate.ndvi <= 0)) {
+				candidates.add(candidate);
+			}
+		}
+		summary.quenteCandidates.addAll(candidates, candidates.size());
+
+		if (chooser instanceof ClusteredPixelQuenteFrioChooser) {
+			WaterSample waterSample = ((ClusteredPixelQuenteFrioChooser) chooser).getWaterSample();
+			if (waterSample != null) {
+				summary.waterSample = new WaterSample(waterSample.size,
+						waterSample.numberOfLonPixels, waterSample.numberOfLatPixels,
+						waterSample.pixelFrio, firstOrder);
+			}
+		}
+		return summary;
+	}
+
+	/**
+	 * Merges the summaries in any order; the result keeps the biggest size.
+	 */
+	public static CandidateSummary merge(List<CandidateSummary> summaries) {
+		int size = 1;
+		for (CandidateSummary summary : summaries) {
+			size = Math.max(size, summary.size);
+		}
+		CandidateSummary merged = new CandidateSummary(size);
+		for (CandidateSummary summary : summaries) {
+			merged.frioCandidates.merge(summary.frioCandidates);
+			merged.quenteCandidates.merge(summary.quenteCandidates);
+			merged.frioTs.merge(summary.frioTs);
+			merged.frioAlbedo.merge(summary.frioAlbedo);
+			merged.quenteTs.merge(summary.quenteTs);
+			merged.quenteAlbedo.merge(summary.quenteAlbedo);
+			if (summary.waterSample != null
+					&& (merged.waterSample == null || summary.waterSample.isBetterThan(
+							merged.waterSample))) {
+				merged.waterSample = summary.waterSample;
+			}
+		}
+		return merged;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of pixel frio candidates summarized, without the pixels frio in
+	 * the water.
+	 */
+	public long numberOfFrioCandidates() {
+		return frioCandidates.total;
+	}
+
+	/**
+	 * Number of pixel quente candidates with positive NDVI summarized.
+	 */
+	public long numberOfQuenteCandidates() {
+		return quenteCandidates.total;
+	}
+
+	/**
+	 * The count pixel frio candidates of biggest NDVI, by descending NDVI.
+	 */
+	public List<ImagePixel> biggestNDVIFrioCandidates(int count) {
+		return frioCandidates.first(count, "pixel frio");
+	}
+
+	/**
+	 * The count pixel quente candidates of smallest positive NDVI, by
+	 * ascending NDVI.
+	 */
+	public List<ImagePixel> smallestNDVIQuenteCandidates(int count) {
+		return quenteCandidates.first(count, "pixel quente");
+	}
+
+	public WaterSample waterSample() {
+		return waterSample;
+	}
+
+	public Moments frioTs() {
+		return frioTs;
+	}
+
+	public Moments frioAlbedo() {
+		return frioAlbedo;
+	}
+
+	public Moments quenteTs() {
+		return quenteTs;
+	}
+
+	public Moments quenteAlbedo() {
+		return quenteAlbedo;
+	}
+
+	/**
+	 * What the choice of the pixels needs to know about a candidate.
+	 */
+	static class Candidate implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long order;
+		private final int i;
+		private final int j;
+		private final double lat;
+		private final double lon;
+		private final double ndvi;
+		private final double ts;
+		private final double alpha;
+		private final double savi;
+		private final double rn;
+		private final double g;
+
+		Candidate(ImagePixel pixel, long order) {
+			this.order = order;
+			GeoLoc geoLoc = pixel.geoLoc();
+			this.i = geoLoc == null ? -1 : geoLoc.getI();
+			this.j = geoLoc == null ? -1 : geoLoc.getJ();
+			this.lat = geoLoc == null ? Double.NaN : geoLoc.getLat();
+			this.lon = geoLoc == null ? Double.NaN : geoLoc.getLon();
+			ImagePixelOutput output = pixel.output();
+			this.ndvi = output.getNDVI();
+			this.ts = output.getTs();
+			this.alpha = output.getAlpha();
+			this.savi = output.SAVI();
+			this.rn = output.Rn();
+			this.g = output.G();
+		}
+
+		ImagePixel toPixel() {
+			return CandidatePixels.pixel(i, j, lat, lon, ndvi, ts, alpha, savi, rn, g);
+		}
+	}
+
+	/*
+	 * The size best candidates by NDVI, and the best NDVI left out of them.
+	 * Equal NDVI values are ordered as KeySelection orders them: by ascending
+	 * order for the smallest and by descending order for the biggest.
+	 */
+	private static class TopCandidates implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int size;
+		private final boolean biggest;
+		private List<Candidate> candidates = new ArrayList<Candidate>();
+		private long total;
+		private double bestLeftOut;
+
+		TopCandidates(int size, boolean biggest) {
+			this.size = size;
+			this.biggest = biggest;
+			this.bestLeftOut = biggest ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		}
+
+		void merge(TopCandidates other) {
+			addAll(other.candidates, other.total);
+			bestLeftOut = better(bestLeftOut, other.bestLeftOut) ? bestLeftOut : other.bestLeftOut;
+		}
+
+		void addAll(List<Candidate> newCandidates, long newTotal) {
+			List<Candidate> all = new ArrayList<Candidate>(candidates.size() + newCandidates.size());
+			all.addAll(candidates);
+			all.addAll(newCandidates);
+			Collections.sort(all, new Comparator<Candidate>() {
+				@Override
+				public int compare(Candidate candidate1, Candidate candidate2) {
+					int comparison = Double.compare(candidate1.ndvi, candidate2.ndvi);
+					if (comparison == 0) {
+						comparison = candidate1.order < candidate2.order ? -1
+								: (candidate1.order == candidate2.order ? 0 : 1);
+					}
+					return biggest ? -comparison : comparison;
+				}
+			});
+			if (all.size() > size) {
+				double leftOut = all.get(size).ndvi;
+				if (better(leftOut, bestLeftOut)) {
+					bestLeftOut = leftOut;
+				}
+				all = new ArrayList<Candidate>(all.subList(0, size));
+			}
+			candidates = all;
+			total += newTotal;
+		}
+
+		private boolean better(double ndvi1, double ndvi2) {
+			return biggest ? Double.compare(ndvi1, ndvi2) > 0 : Double.compare(ndvi1, ndvi2) < 0;
+		}
+
+		List<ImagePixel> first(int count, String description) {
+			if (count > candidates.size() || (count > 0
+					&& !better(candidates.get(count - 1).ndvi, bestLeftOut))) {
+				LOGGER.warn("The summary keeps " + candidates.size() + " of " + total + " "
+						+ description + " candidates, " + count + " are needed; the choice of the "
+						+ description + " is approximate.");
+			}
+			List<ImagePixel> pixels = new ArrayList<ImagePixel>();
+			for (int index = 0; index < Math.min(count, candidates.size()); index++) {
+				pixels.add(candidates.get(index).toPixel());
+			}
+			return pixels;
+		}
+	}
+
+	/**
+	 * Size and extent of a water sample, and its pixel frio in the water.
+	 */
+	public static class WaterSample implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int size;
+		private final int numberOfLonPixels;
+		private final int numberOfLatPixels;
+		private final Candidate pixelFrio;
+		private final long order;
+
+		WaterSample(int size, int numberOfLonPixels, int numberOfLatPixels,
+				ImagePixel pixelFrio) {
+			this(size, numberOfLonPixels, numberOfLatPixels, pixelFrio == null ? null
+					: new Candidate(pixelFrio, 0), 0);
+		}
+
+		private WaterSample(int size, int numberOfLonPixels, int numberOfLatPixels,
+				Candidate pixelFrio, long order) {
+			this.size = size;
+			this.numberOfLonPixels = numberOfLonPixels;
+			this.numberOfLatPixels = numberOfLatPixels;
+			this.pixelFrio = pixelFrio;
+			this.order = order;
+		}
+
+		// the biggest sample wins, the one of the first partition on a tie
+		boolean isBetterThan(WaterSample other) {
+			return size > other.size || (size == other.size && order < other.order);
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int getNumberOfLonPixels() {
+			return numberOfLonPixels;
+		}
+
+		public int getNumberOfLatPixels() {
+			return numberOfLatPixels;
+		}
+
+		/**
+		 * The pixel frio chosen in the water sample, or null if no pixel of the
+		 * sample was close enough to its mean TS.
+		 */
+		public ImagePixel pixelFrio() {
+			return pixelFrio == null ? null : pixelFrio.toPixel();
+		}
+	}
+
+	/**
+	 * Count, mean and variance of a value, merged with the pairwise update of
+	 * Chan et al.
+	 */
+	public static class Moments implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private long count;
+		private double mean;
+		private double m2;
+
+		void add(double value) {
+			count++;
+			double delta = value - mean;
+			mean += delta / count;
+			m2 += delta * (value - mean);
+		}
+
+		void merge(Moments other) {
+			if (other.count == 0) {
+				return;
+			}
+			long mergedCount = count + other.count;
+			double delta = other.mean - mean;
+			mean += delta * other.count / mergedCount;
+			m2 += other.m2 + delta * delta * ((double) count * other.count / mergedCount);
+			count = mergedCount;
+		}
+
+		public long count() {
+			return count;
+		}
+
+		public double mean() {
+			return count == 0 ? Double.NaN : mean;
+		}
+
+		/**
+		 * Bias-corrected variance.
+		 */
+		public double variance() {
+			return count < 2 ? (count == 1 ? 0 : Double.NaN) : m2 / (count - 1);
+		}
+	}
+}
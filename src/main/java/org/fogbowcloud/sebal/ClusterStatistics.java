@@ -0,0 +1,78 @@
+package org.fogbowcloud.sebal;
+
+/**
+ * Per cluster statistics of the clusters of an image that do not overlap:
+ * number of invalid NDVI values, CV of the valid ones and the image indexes
+ * (x + y * width) of the valid pixels. They do not depend on any threshold of
+ * {@link ClusteredPixelQuenteFrioChooser}, so choosers that only differ in
+ * thresholds can share them.
+ */
+public class ClusterStatistics {
+
+	private final int clusterWidth;
+	private final int clusterHeight;
+	private final int clusterColumns;
+	private final int clusterRows;
+	private final int[] invalidNDVIValues;
+	private final double[] CVForNDVI;
+	private final int[][] candidates;
+
+	public ClusterStatistics(int clusterWidth, int clusterHeight, int imageWidth,
+			int imageHeight) {
+		this.clusterWidth = clusterWidth;
+		this.clusterHeight = clusterHeight;
+		this.clusterColumns = (imageWidth + clusterWidth - 1) / clusterWidth;
+		this.clusterRows = (imageHeight + clusterHeight - 1) / clusterHeight;
+		int clusters = clusterColumns * clusterRows;
+		this.invalidNDVIValues = new int[clusters];
+		this.CVForNDVI = new double[clusters];
+		this.candidates = new int[clusters][];
+	}
+
+	void set(int column, int row, int invalidNDVIValues, double CVForNDVI, int[] candidates) {
+		int cluster = cluster(column, row);
+		this.invalidNDVIValues[cluster] = invalidNDVIValues;
+		this.CVForNDVI[cluster] = CVForNDVI;
+		this.candidates[cluster] = candidates;
+	}
+
+	// cluster column by cluster column, the order candidates are selected in
+	private int cluster(int column, int row) {
+		return row + column * clusterRows;
+	}
+
+	public int clusterWidth() {
+		return clusterWidth;
+	}
+
+	public int clusterHeight() {
+		return clusterHeight;
+	}
+
+	public int clusterColumns() {
+		return clusterColumns;
+	}
+
+	public int clusterRows() {
+		return clusterRows;
+	}
+
+	public int invalidNDVIValues(int column, int row) {
+		return invalidNDVIValues[cluster(column, row)];
+	}
+
+	/**
+	 * CV of all the valid NDVI values of the cluster.
+	 */
+	public double CVForNDVI(int column, int row) {
+		return CVForNDVI[cluster(column, row)];
+	}
+
+	/**
+	 * Image indexes of the pixels of the cluster that are not cloud and have
+	 * positive NDVI, in the order the chooser adds them.
+	 */
+	public int[] candidates(int column, int row) {
+		return candidates[cluster(column, row)];
+	}
+}
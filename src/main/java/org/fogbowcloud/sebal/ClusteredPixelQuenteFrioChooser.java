@@ -1,21 +1,25 @@
 package org.fogbowcloud.sebal;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.math3.stat.descriptive.moment.Variance;
 import org.apache.log4j.Logger;
 import org.fogbowcloud.sebal.model.image.Image;
 import org.fogbowcloud.sebal.model.image.ImagePixel;
 import org.fogbowcloud.sebal.model.image.ImagePixelOutput;
-import org.fogbowcloud.sebal.model.image.NDVIComparator;
-import org.fogbowcloud.sebal.model.image.TSComparator;
-import org.python.google.common.primitives.Doubles;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore.OutputField;
+import org.fogbowcloud.sebal.model.image.ImagePyramid;
+import org.fogbowcloud.sebal.model.image.ImageTile;
+import org.fogbowcloud.sebal.model.image.InvalidPixelBitmap;
+import org.fogbowcloud.sebal.model.image.SummedAreaTable;
+import org.fogbowcloud.sebal.model.image.TileVisitor;
 
 
 public class ClusteredPixelQuenteFrioChooser extends AbstractPixelQuenteFrioChooser {
@@ -29,6 +33,23 @@ public class ClusteredPixelQuenteFrioChooser extends AbstractPixelQuenteFrioChoo
 	private int minLonWater = 1;			// 1 is default value
 	private double maxDiffFromTSMean = 0.2;	// 0.2 is default value
 	private double maxDiffFromAlbedoMean = 0.02; // 0.02 is default value
+	private int clusterTileSize = 512;		// 512 is default value
+	private int clusterParallelism = Runtime.getRuntime().availableProcessors();
+	private int clusterStride = 0;			// 0 (clusters do not overlap) is default value
+	private int[] clusterPyramidLevels = new int[0];	// no pyramid is default value
+	private boolean clusterInvalidBitmap = false;	// false is default value
+
+	private String candidateSelection = EXACT_SELECTION;
+	private double sketchRankError = 0.005;	// 0.5% is default value
+	private CandidateSummary.WaterSample waterSample;
+	private int pixelFrioInTheWaterPosition = -1;
+
+	public static final String EXACT_SELECTION = "exact";
+	public static final String SKETCH_SELECTION = "sketch";
+
+	private static final int[] NO_CANDIDATES = new int[0];
+	private static final double PIXEL_FRIO_NDVI_PERCENT = 5;
+	private static final double PIXEL_QUENTE_NDVI_PERCENT = 10;
 	
 	private static final Logger LOGGER = Logger.getLogger(ClusteredPixelQuenteFrioChooser.class);
 	
@@ -80,33 +101,107 @@ public class ClusteredPixelQuenteFrioChooser extends AbstractPixelQuenteFrioChoo
 			maxDiffFromAlbedoMean  = Double.parseDouble(properties
 					.getProperty("cluster_max_difference_from_albedo_mean"));
 		}
+
+		if (properties.getProperty("cluster_tile_size") != null) {
+			clusterTileSize = Integer.parseInt(properties.getProperty("cluster_tile_size"));
+		}
+
+		if (properties.getProperty("candidate_selection") != null) {
+			candidateSelection = properties.getProperty("candidate_selection");
+			if (!EXACT_SELECTION.equals(candidateSelection)
+					&& !SKETCH_SELECTION.equals(candidateSelection)) {
+				throw new IllegalArgumentException("Invalid candidate_selection "
+						+ candidateSelection + ", expected " + EXACT_SELECTION + " or "
+						+ SKETCH_SELECTION + ".");
+			}
+		}
+
+		if (properties.getProperty("candidate_sketch_rank_error") != null) {
+			sketchRankError = Double.parseDouble(properties
+					.getProperty("candidate_sketch_rank_error"));
+		}
+
+		if (properties.getProperty("cluster_stride") != null) {
+			clusterStride = Integer.parseInt(properties.getProperty("cluster_stride"));
+		}
+
+		if (properties.getProperty("cluster_pyramid_levels") != null
+				&& !properties.getProperty("cluster_pyramid_levels").trim().isEmpty()) {
+			String[] levels = properties.getProperty("cluster_pyramid_levels").split(",");
+			clusterPyramidLevels = new int[levels.length];
+			for (int level = 0; level < levels.length; level++) {
+				clusterPyramidLevels[level] = Integer.parseInt(levels[level].trim());
+			}
+		}
+
+		if (properties.getProperty("cluster_invalid_bitmap") != null) {
+			clusterInvalidBitmap = Boolean.parseBoolean(properties
+					.getProperty("cluster_invalid_bitmap"));
+		}
+
+		if (properties.getProperty("cluster_parallelism") != null) {
+			clusterParallelism = Integer.parseInt(properties.getProperty("cluster_parallelism"));
+		}
 	}
 
+	/**
+	 * Selects the candidates in one visit of the tiles of the image: the
+	 * clusters of each tile are screened and its water pixels are kept, and
+	 * once every tile was visited the water pixels are labelled into water
+	 * bodies, so a lazily-read image is read only once, a tile at a time.
+	 */
 	@Override
 	public void selectPixelsQuenteFrioCandidates(Image image) {
 		LOGGER.debug("image is null? " + (image == null));
 		long now = System.currentTimeMillis();
-		ImagePixel pixelFrioInTheWater = findPixelFrioInTheWater(image);
-		if (pixelFrioInTheWater != null) {
-			LOGGER.debug("Pixel frio in the water is null.");
-			pixelFrioCandidates.add(pixelFrioInTheWater);
+		int firstFrioCandidate = pixelFrioCandidates.size();
+		
+		CandidateColumnsVisitor clusterTileVisitor;
+		// one pool for the rows of clusters of every tile
+		ForkJoinPool pool = clusterParallelism > 1 ? new ForkJoinPool(clusterParallelism) : null;
+		try {
+			if (isSlidingWindowClustering()) {
+				/*
+				 * The halo holds the clusters that start before the tile and
+				 * cover some of its pixels.
+				 */
+				clusterTileVisitor = new SlidingClusterTileVisitor(image);
+				image.forEachTile(clusterTileSize, clusterTileSize,
+						Math.max(clusterWidth, clusterHeight) - 1, clusterTileVisitor);
+			} else {
+				/*
+				 * Tiles are made of whole clusters, so a cluster never crosses a
+				 * tile boundary and no halo is needed.
+				 */
+				clusterTileVisitor = new ClusterTileVisitor(image, pool);
+				image.forEachTile(tileSize(clusterWidth), tileSize(clusterHeight), 0,
+						clusterTileVisitor);
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("Could not process the clusters of the image.", e);
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
 		}
+		clusterTileVisitor.flush();
 		
-		LOGGER.debug("PixelFrioInTheWater execution time=" + (System.currentTimeMillis() - now));
+		LOGGER.debug("Processing clusters execution time=" + (System.currentTimeMillis() - now));
 		now = System.currentTimeMillis();
-		
-		for (int x0 = 0; x0 < image.width(); x0 += clusterWidth) {
-			for (int y0 = 0; y0 < image.height(); y0 += clusterHeight) {
-				List<ImagePixel> cluster = createCluster(image.pixels(),
-						linear(x0, y0, image.width()), image.width(),
-						Math.min(clusterWidth, image.width() - x0),
-						Math.min(clusterHeight, image.height() - y0));
 
-				proccessClusterAndSelectCandidates(cluster);
+		// the pixel frio in the water comes before the candidates of the clusters
+		WaterPixels water = clusterTileVisitor.water;
+		WaterBodies waterBodies = water.builder.build();
+		int bestWaterBody = selectBestWaterBody(waterBodies);
+		List<ImagePixel> waterPixels = new ArrayList<ImagePixel>();
+		if (bestWaterBody != WaterBodies.NO_LABEL) {
+			for (int index : waterBodies.floodOrder(bestWaterBody)) {
+				waterPixels.add(water.pixels.get(waterBodies.position(index)));
 			}
 		}
-		
-		LOGGER.debug("Processing clusters execution time=" + (System.currentTimeMillis() - now));
+		addPixelFrioInTheWater(waterBodies, bestWaterBody, waterPixels, firstFrioCandidate);
+
+		LOGGER.debug("PixelFrioInTheWater execution time=" + (System.currentTimeMillis() - now));
 	}
 
 	@Override
@@ -114,92 +209,682 @@ public class ClusteredPixelQuenteFrioChooser extends AbstractPixelQuenteFrioChoo
 		LOGGER.debug("Chossing pixels hot and cold from candidates...");
 		long now = System.currentTimeMillis();
 		
-		selectPixelFrio();
-		selectPixelQuente();
+		LOGGER.debug("Number of pixel frio candidates=" + pixelFrioCandidates.size());
+		selectPixelFrio(SKETCH_SELECTION.equals(candidateSelection) ? sketchBiggestNDVI(
+				pixelFrioCandidates, PIXEL_FRIO_NDVI_PERCENT) : filterBiggestNDVI(
+				pixelFrioCandidates, PIXEL_FRIO_NDVI_PERCENT));
+		LOGGER.debug("Number of pixel quente candidates=" + pixelQuenteCandidates.size());
+		selectPixelQuente(SKETCH_SELECTION.equals(candidateSelection) ? sketchSmallestNDVI(
+				pixelQuenteCandidates, PIXEL_QUENTE_NDVI_PERCENT) : filterSmallestNDVI(
+				pixelQuenteCandidates, PIXEL_QUENTE_NDVI_PERCENT));
+
+		logPixelsQuenteFrio();
+		LOGGER.debug("Chossing pixels hot and cold from candidates execution time="
+				+ (System.currentTimeMillis() - now));
+	}
+
+	/**
+	 * Chooses the pixels quente and frio of a scene from the merged summaries
+	 * of the candidates of its partitions.
+	 */
+	public void choosePixelsQuenteFrio(CandidateSummary summary) {
+		LOGGER.debug("Chossing pixels hot and cold from a summary of candidates...");
+		long now = System.currentTimeMillis();
+
+		// the pixel frio in the water of the scene, which partitions leave out
+		ImagePixel pixelFrioInTheWater = summary.waterSample() == null ? null : summary
+				.waterSample().pixelFrio();
+		long numberOfFrioCandidates = summary.numberOfFrioCandidates()
+				+ (pixelFrioInTheWater == null ? 0 : 1);
+		LOGGER.debug("Number of pixel frio candidates=" + numberOfFrioCandidates
+				+ ", TS mean=" + summary.frioTs().mean() + ", albedo mean="
+				+ summary.frioAlbedo().mean());
+		int count = KeySelection.count((int) numberOfFrioCandidates, PIXEL_FRIO_NDVI_PERCENT);
+		selectPixelFrio(withPixelFrioInTheWater(summary.biggestNDVIFrioCandidates(count),
+				pixelFrioInTheWater, count));
+		LOGGER.debug("Number of pixel quente candidates with positive NDVI="
+				+ summary.numberOfQuenteCandidates() + ", TS mean=" + summary.quenteTs().mean()
+				+ ", albedo mean=" + summary.quenteAlbedo().mean());
+		selectPixelQuente(summary.smallestNDVIQuenteCandidates(KeySelection.count(
+				(int) summary.numberOfQuenteCandidates(), PIXEL_QUENTE_NDVI_PERCENT)));
 
+		logPixelsQuenteFrio();
+		LOGGER.debug("Chossing pixels hot and cold from a summary of candidates execution time="
+				+ (System.currentTimeMillis() - now));
+	}
+
+	/*
+	 * Adds the pixel frio in the water to the biggest NDVI candidates, by
+	 * descending NDVI, where the filter of a single chooser would put it: as
+	 * the first of its candidates, it comes before the others of the same
+	 * NDVI.
+	 */
+	private static List<ImagePixel> withPixelFrioInTheWater(List<ImagePixel> biggestNDVI,
+			ImagePixel pixelFrioInTheWater, int count) {
+		if (pixelFrioInTheWater == null) {
+			return biggestNDVI;
+		}
+		double ndvi = pixelFrioInTheWater.output().getNDVI();
+		int position = 0;
+		while (position < biggestNDVI.size()
+				&& Double.compare(biggestNDVI.get(position).output().getNDVI(), ndvi) > 0) {
+			position++;
+		}
+		List<ImagePixel> candidates = new ArrayList<ImagePixel>(biggestNDVI);
+		candidates.add(position, pixelFrioInTheWater);
+		return candidates.subList(0, Math.min(count, candidates.size()));
+	}
+
+	/**
+	 * The biggest water sample found by the last selection of candidates, or
+	 * null if there was none.
+	 */
+	public CandidateSummary.WaterSample getWaterSample() {
+		return waterSample;
+	}
+
+	/*
+	 * Position in the pixel frio candidates of the pixel frio in the water
+	 * added by the last selection, or -1 if it added none.
+	 */
+	int pixelFrioInTheWaterPosition() {
+		return pixelFrioInTheWaterPosition;
+	}
+
+	private void logPixelsQuenteFrio() {
 		if (pixelFrio != null) {
 			LOGGER.debug("TS of pixel frio: " + pixelFrio.output().getTs());
 		}
 		if (pixelQuente != null) {
 			LOGGER.debug("TS of pixel quente: " + pixelQuente.output().getTs());
 		}
-		
-		LOGGER.debug("Chossing pixels hot and cold from candidates execution time="
-				+ (System.currentTimeMillis() - now));
 	}
 
-	private int linear(int x, int y, int width) {
-		return x + y * width;
+	/**
+	 * Selects the candidates from water bodies and cluster statistics computed
+	 * once for the image, as {@link #selectPixelsQuenteFrioCandidates(Image)}
+	 * would from the image alone. The statistics must come from
+	 * {@link #clusterStatistics(Image)} of a chooser with the same cluster size.
+	 */
+	public void selectPixelsQuenteFrioCandidates(Image image, WaterBodies waterBodies,
+			ClusterStatistics statistics) {
+		if (statistics.clusterWidth() != clusterWidth
+				|| statistics.clusterHeight() != clusterHeight) {
+			throw new IllegalArgumentException("Statistics of " + statistics.clusterWidth() + "x"
+					+ statistics.clusterHeight() + " clusters can not be used for " + clusterWidth
+					+ "x" + clusterHeight + " clusters.");
+		}
+		selectPixelFrioInTheWater(image, waterBodies);
+
+		List<ImagePixel> pixels = image.pixels();
+		for (int column = 0; column < statistics.clusterColumns(); column++) {
+			for (int row = 0; row < statistics.clusterRows(); row++) {
+				double CVForNDVI = hasTooManyInvalidValues(statistics.invalidNDVIValues(column,
+						row)) ? 1 : statistics.CVForNDVI(column, row);
+				if (CVForNDVI < maxCVForNDVI) {
+					for (int index : statistics.candidates(column, row)) {
+						pixelFrioCandidates.add(pixels.get(index));
+						pixelQuenteCandidates.add(pixels.get(index));
+					}
+				}
+			}
+		}
 	}
 
-	private void proccessClusterAndSelectCandidates(List<ImagePixel> cluster) {
+	/**
+	 * Statistics of the clusters of the image that do not depend on the
+	 * thresholds of the chooser, only on its cluster size, so they can be
+	 * shared by choosers that differ in thresholds. Sliding-window clustering
+	 * is not supported.
+	 */
+	public ClusterStatistics clusterStatistics(Image image) {
+		if (isSlidingWindowClustering()) {
+			throw new IllegalStateException("Cluster statistics are not available with a "
+					+ "cluster_stride other than the cluster size.");
+		}
+		final int imageWidth = image.width();
+		final ClusterStatistics statistics = new ClusterStatistics(clusterWidth, clusterHeight,
+				image.width(), image.height());
+		try {
+			image.forEachTile(tileSize(clusterWidth), tileSize(clusterHeight), 0,
+					new TileVisitor() {
+						@Override
+						public void visit(ImageTile tile) {
+							int clusterColumns = (tile.width() + clusterWidth - 1) / clusterWidth;
+							int clusterRows = (tile.height() + clusterHeight - 1) / clusterHeight;
+							ClusterScreener screener = new ClusterScreener(tile, null);
+							for (int column = 0; column < clusterColumns; column++) {
+								for (int row = 0; row < clusterRows; row++) {
+									screener.measure(column, row, statistics, imageWidth);
+								}
+							}
+						}
+					});
+		} catch (Exception e) {
+			throw new IllegalStateException("Could not process the clusters of the image.", e);
+		}
+		return statistics;
+	}
 
-		double CVForNDVI = calcCVForNDVI(cluster);
+	/*
+	 * Blocks of clusters of the tile whose invalid pixels leave every cluster
+	 * in them with too many invalid values are skipped without reading the
+	 * clusters. Such clusters only fail when their CV of 1 does, so there is
+	 * no pyramid when the maximum CV is over 1.
+	 */
+	private ImagePyramid clusterPyramid(ImageTile tile) {
+		if (clusterPyramidLevels.length == 0 || maxInvalidNDVIValues <= 0
+				|| 1 < maxCVForNDVI) {
+			return null;
+		}
+		return new ImagePyramid(tile, clusterWidth, clusterHeight, clusterPyramidLevels);
+	}
 
-		if (CVForNDVI < maxCVForNDVI) {
-			List<ImagePixel> validPixels = removeCloud(cluster);
-			LOGGER.debug("Adding " + validPixels.size() + " valid pixels in quente/frio candidates.");
-			pixelFrioCandidates.addAll(validPixels);
-			pixelQuenteCandidates.addAll(validPixels);
+	/*
+	 * Clusters of the tile, column + row * clusterColumns, in blocks of the
+	 * pyramid with too few valid pixels for any of their clusters: a cluster
+	 * of r pixels in a block with v valid ones has at least r - v invalid
+	 * ones. Blocks of the coarsest level are checked first, and blocks whose
+	 * clusters are all rejected already are not checked again.
+	 */
+	private boolean[] rejectedClusters(ImageTile tile, ImagePyramid pyramid, int clusterColumns,
+			int clusterRows) {
+		boolean[] rejected = new boolean[clusterColumns * clusterRows];
+		for (int level = pyramid.levels() - 1; level >= 0; level--) {
+			int factorX = pyramid.blockWidth(level) / clusterWidth;
+			int factorY = pyramid.blockHeight(level) / clusterHeight;
+			for (int blockY = 0; blockY < pyramid.blockRows(level); blockY++) {
+				for (int blockX = 0; blockX < pyramid.blockColumns(level); blockX++) {
+					int columnBegin = blockX * factorX;
+					int columnEnd = Math.min(columnBegin + factorX, clusterColumns);
+					int rowBegin = blockY * factorY;
+					int rowEnd = Math.min(rowBegin + factorY, clusterRows);
+					if (allRejected(rejected, clusterColumns, columnBegin, columnEnd, rowBegin,
+							rowEnd)) {
+						continue;
+					}
+					// the last cluster of the block is its smallest one
+					int smallestCluster = Math.min(clusterWidth, tile.width() - (columnEnd - 1)
+							* clusterWidth) * Math.min(clusterHeight, tile.height()
+							- (rowEnd - 1) * clusterHeight);
+					int validPixels = pyramid.validPixels(level, blockX, blockY);
+					if (validPixels > 0 && !hasTooManyInvalidValues(smallestCluster
+							- validPixels)) {
+						continue;
+					}
+					for (int row = rowBegin; row < rowEnd; row++) {
+						Arrays.fill(rejected, columnBegin + row * clusterColumns, columnEnd + row
+								* clusterColumns, true);
+					}
+				}
+			}
 		}
+		return rejected;
 	}
-	
-	private List<ImagePixel> removeCloud(List<ImagePixel> cluster) {
-		List<ImagePixel> validPixels = new ArrayList<ImagePixel>();
 
-		for (int index = 0; index < cluster.size(); index++) {
-			ImagePixelOutput pixelOutput = cluster.get(index).output();
-			if (!pixelOutput.isCloud() && pixelOutput.getNDVI() > 0) {
-				validPixels.add(cluster.get(index));
+	private static boolean allRejected(boolean[] rejected, int clusterColumns, int columnBegin,
+			int columnEnd, int rowBegin, int rowEnd) {
+		for (int row = rowBegin; row < rowEnd; row++) {
+			for (int column = columnBegin; column < columnEnd; column++) {
+				if (!rejected[column + row * clusterColumns]) {
+					return false;
+				}
 			}
 		}
-		return validPixels;
+		return true;
+	}
+
+	private InvalidPixelBitmap invalidPixelBitmap(ImageTile tile) {
+		return clusterInvalidBitmap ? InvalidPixelBitmap.of(tile) : null;
+	}
+
+	boolean isSlidingWindowClustering() {
+		return clusterStride > 0 && (clusterStride != clusterWidth || clusterStride != clusterHeight);
+	}
+
+	int clusterWidth() {
+		return clusterWidth;
+	}
+
+	int clusterHeight() {
+		return clusterHeight;
 	}
 
-	private double calcCVForNDVI(List<ImagePixel> cluster) {
-		List<Double> validNDVIValues = new ArrayList<Double>();
-		int invalidNDVIValues = 0;
-		for (int index = 0; index < cluster.size(); index++) {
-			ImagePixelOutput pixelOutput = cluster.get(index).output();
-			if (pixelOutput.isCloud() || pixelOutput.getNDVI() <= 0) {
-				invalidNDVIValues++;
-				if (invalidNDVIValues == maxInvalidNDVIValues) {
-					return 1;
+	private int tileSize(int clusterSize) {
+		return Math.max(1, (clusterTileSize + clusterSize - 1) / clusterSize) * clusterSize;
+	}
+
+	/*
+	 * Candidates of a column of tiles are kept per column and only added when
+	 * the column of tiles is done, so they end up in the order of a walk over
+	 * the whole image, column by column. The water pixels of every tile are
+	 * kept too.
+	 */
+	private abstract class CandidateColumnsVisitor implements TileVisitor {
+
+		private final List<List<ImagePixel>> columns = new ArrayList<List<ImagePixel>>();
+		private final WaterPixels water;
+		private int tileX = -1;
+
+		CandidateColumnsVisitor(Image image) {
+			this.water = new WaterPixels(image.width(), image.height());
+		}
+
+		@Override
+		public void visit(ImageTile tile) throws Exception {
+			if (tile.x() != tileX) {
+				flush();
+				tileX = tile.x();
+			}
+			// the pixels of a transient tile are released, candidates are copied
+			if (tile.isTransient() && !(pixelQuenteCandidates instanceof CandidatePixels)) {
+				pixelFrioCandidates = CandidatePixels.of(pixelFrioCandidates);
+				pixelQuenteCandidates = CandidatePixels.of(pixelQuenteCandidates);
+			}
+			water.add(tile);
+			visitTile(tile);
+		}
+
+		abstract void visitTile(ImageTile tile) throws Exception;
+
+		List<ImagePixel> column(int column) {
+			while (columns.size() <= column) {
+				columns.add(pixelQuenteCandidates instanceof CandidatePixels ? new CandidatePixels()
+						: new ArrayList<ImagePixel>());
+			}
+			return columns.get(column);
+		}
+
+		void flush() {
+			for (List<ImagePixel> column : columns) {
+				pixelFrioCandidates.addAll(column);
+				pixelQuenteCandidates.addAll(column);
+				column.clear();
+			}
+		}
+	}
+
+	/*
+	 * Columns of clusters that do not overlap. The rows of clusters of a tile
+	 * are screened in parallel, each into its own slots, and merged cluster
+	 * column by cluster column.
+	 */
+	private class ClusterTileVisitor extends CandidateColumnsVisitor {
+
+		private final ForkJoinPool pool;
+
+		ClusterTileVisitor(Image image, ForkJoinPool pool) {
+			super(image);
+			this.pool = pool;
+		}
+
+		@Override
+		void visitTile(final ImageTile tile) throws Exception {
+			final InvalidPixelBitmap bitmap = invalidPixelBitmap(tile);
+			// clusters without any valid pixel have no candidates
+			if (bitmap != null && bitmap.count(InvalidPixelBitmap.Plane.INVALID, 0, 0,
+					tile.width(), tile.height()) == tile.width() * tile.height()) {
+				return;
+			}
+			final int clusterColumns = (tile.width() + clusterWidth - 1) / clusterWidth;
+			final int clusterRows = (tile.height() + clusterHeight - 1) / clusterHeight;
+			ImagePyramid pyramid = clusterPyramid(tile);
+			final boolean[] rejected = pyramid == null ? null : rejectedClusters(tile, pyramid,
+					clusterColumns, clusterRows);
+			final int[][][] candidates = new int[clusterColumns][clusterRows][];
+			RowStripeTask.run(pool, 0, clusterRows, new RowStripeTask.RowProcessor() {
+				@Override
+				public void process(int rowBegin, int rowEnd) {
+					ClusterScreener screener = new ClusterScreener(tile, bitmap);
+					for (int row = rowBegin; row < rowEnd; row++) {
+						for (int column = 0; column < clusterColumns; column++) {
+							candidates[column][row] = rejected != null
+									&& rejected[column + row * clusterColumns] ? NO_CANDIDATES
+									: screener.screen(column, row);
+						}
+					}
+				}
+			});
+
+			List<ImagePixel> pixels = tile.pixels();
+			for (int column = 0; column < clusterColumns; column++) {
+				List<ImagePixel> columnCandidates = column(column);
+				for (int row = 0; row < clusterRows; row++) {
+					for (int index : candidates[column][row]) {
+						columnCandidates.add(pixels.get(index));
+					}
 				}
-				continue;
 			}
-			validNDVIValues.add(cluster.get(index).output().getNDVI());
 		}
-		
-		double mean = calcMean(Doubles.toArray(validNDVIValues));
-		double variance = new Variance().evaluate(Doubles.toArray(validNDVIValues));
+	}
+
+	/*
+	 * Clusters starting every clusterStride pixels, which overlap when the
+	 * stride is smaller than the cluster. The count, mean and CV of the valid
+	 * NDVI values of each cluster come from summed-area tables of the tile and
+	 * its halo. A valid pixel is a candidate when any cluster that covers it
+	 * passes; candidates are added pixel column by pixel column.
+	 */
+	private class SlidingClusterTileVisitor extends CandidateColumnsVisitor {
+
+		SlidingClusterTileVisitor(Image image) {
+			super(image);
+		}
+
+		@Override
+		void visitTile(ImageTile tile) {
+			List<ImagePixel> pixels = tile.pixels();
+			int haloWidth = tile.haloWidth();
+			int haloHeight = tile.haloHeight();
+			boolean[] valid = new boolean[pixels.size()];
+			double[] validCount = new double[pixels.size()];
+			double[] ndvi = new double[pixels.size()];
+			double[] ndviSquare = new double[pixels.size()];
+			for (int index = 0; index < pixels.size(); index++) {
+				ImagePixelOutput pixelOutput = pixels.get(index).output();
+				if (!pixelOutput.isCloud() && pixelOutput.getNDVI() > 0) {
+					valid[index] = true;
+					validCount[index] = 1;
+					ndvi[index] = pixelOutput.getNDVI();
+					ndviSquare[index] = ndvi[index] * ndvi[index];
+				}
+			}
+			SummedAreaTable validCounts = new SummedAreaTable(validCount, haloWidth, haloHeight);
+			SummedAreaTable ndviSums = new SummedAreaTable(ndvi, haloWidth, haloHeight);
+			SummedAreaTable ndviSquareSums = new SummedAreaTable(ndviSquare, haloWidth,
+					haloHeight);
+
+			// passing clusters add 1 to the pixels they cover, as a 2D difference array
+			int coverageWidth = tile.width() + 1;
+			int[] coverage = new int[coverageWidth * (tile.height() + 1)];
+			int xEnd = tile.x() + tile.width();
+			int yEnd = tile.y() + tile.height();
+			for (int x0 = firstCluster(tile.x(), clusterWidth); x0 < xEnd; x0 += clusterStride) {
+				for (int y0 = firstCluster(tile.y(), clusterHeight); y0 < yEnd; y0 += clusterStride) {
+					int width = Math.min(clusterWidth, tile.haloX() + haloWidth - x0);
+					int height = Math.min(clusterHeight, tile.haloY() + haloHeight - y0);
+					int x = x0 - tile.haloX();
+					int y = y0 - tile.haloY();
+					double count = validCounts.sum(x, y, width, height);
+					double CVForNDVI = calcCV(count, width * height - (int) count,
+							ndviSums.sum(x, y, width, height),
+							ndviSquareSums.sum(x, y, width, height));
+					if (!(CVForNDVI < maxCVForNDVI)) {
+						continue;
+					}
+					int coverX0 = Math.max(x0, tile.x()) - tile.x();
+					int coverY0 = Math.max(y0, tile.y()) - tile.y();
+					int coverX1 = Math.min(x0 + width, xEnd) - tile.x();
+					int coverY1 = Math.min(y0 + height, yEnd) - tile.y();
+					coverage[coverX0 + coverY0 * coverageWidth]++;
+					coverage[coverX1 + coverY0 * coverageWidth]--;
+					coverage[coverX0 + coverY1 * coverageWidth]--;
+					coverage[coverX1 + coverY1 * coverageWidth]++;
+				}
+			}
+			for (int y = 0; y < tile.height(); y++) {
+				for (int x = 0; x < tile.width(); x++) {
+					int index = x + y * coverageWidth;
+					if (x > 0) {
+						coverage[index] += coverage[index - 1];
+					}
+					if (y > 0) {
+						coverage[index] += coverage[index - coverageWidth];
+					}
+					if (x > 0 && y > 0) {
+						coverage[index] -= coverage[index - 1 - coverageWidth];
+					}
+				}
+			}
+
+			for (int x = 0; x < tile.width(); x++) {
+				List<ImagePixel> columnCandidates = column(x);
+				for (int y = 0; y < tile.height(); y++) {
+					int index = tile.index(tile.x() + x, tile.y() + y);
+					if (coverage[x + y * coverageWidth] > 0 && valid[index]) {
+						columnCandidates.add(pixels.get(index));
+					}
+				}
+			}
+		}
+
+		/*
+		 * First cluster start, a multiple of the stride, of a cluster that
+		 * covers some pixel from position on.
+		 */
+		private int firstCluster(int position, int clusterSize) {
+			int first = Math.max(0, position - clusterSize + 1);
+			return (first + clusterStride - 1) / clusterStride * clusterStride;
+		}
+	}
+
+	/*
+	 * Screens the clusters of a tile, in the order createCluster lists their
+	 * pixels, with buffers reused from cluster to cluster. Not thread-safe;
+	 * each stripe uses its own.
+	 */
+	private class ClusterScreener {
+
+		private final ImageTile tile;
+		private final InvalidPixelBitmap bitmap;
+		private final List<ImagePixel> pixels;
+		private final double[] validNDVIValues = new double[clusterWidth * clusterHeight];
+		private final int[] validIndexes = new int[clusterWidth * clusterHeight];
+
+		ClusterScreener(ImageTile tile, InvalidPixelBitmap bitmap) {
+			this.tile = tile;
+			this.bitmap = bitmap;
+			this.pixels = tile.pixels();
+		}
+
+		private int valid;
+
+		/*
+		 * Indexes in the tile pixels of the candidates of the cluster.
+		 */
+		int[] screen(int column, int row) {
+			if (bitmap != null && isRejected(column, row)) {
+				return NO_CANDIDATES;
+			}
+			// a cluster with too many invalid values has CV 1
+			int invalidNDVIValues = scan(column, row, !(1 < maxCVForNDVI));
+			double CVForNDVI = hasTooManyInvalidValues(invalidNDVIValues) ? 1 : calcCV(
+					validNDVIValues, valid);
+			if (!(CVForNDVI < maxCVForNDVI)) {
+				return NO_CANDIDATES;
+			}
+			LOGGER.debug("Adding " + valid + " valid pixels in quente/frio candidates.");
+			return Arrays.copyOf(validIndexes, valid);
+		}
+
+		/*
+		 * Whether the cluster has no candidates from its invalid pixels alone:
+		 * none of them is valid, or too many are invalid when a CV of 1 fails.
+		 */
+		private boolean isRejected(int column, int row) {
+			int x0 = tile.x() + column * clusterWidth;
+			int y0 = tile.y() + row * clusterHeight;
+			int width = Math.min(clusterWidth, tile.x() + tile.width() - x0);
+			int height = Math.min(clusterHeight, tile.y() + tile.height() - y0);
+			// the bitmap is relative to the tile
+			int invalidNDVIValues = bitmap.count(InvalidPixelBitmap.Plane.INVALID, x0 - tile.x(),
+					y0 - tile.y(), width, height);
+			return invalidNDVIValues == width * height
+					|| (hasTooManyInvalidValues(invalidNDVIValues) && !(1 < maxCVForNDVI));
+		}
+
+		/*
+		 * Adds the statistics of the cluster to the statistics of the image,
+		 * with the CV of all its valid values.
+		 */
+		void measure(int column, int row, ClusterStatistics statistics, int imageWidth) {
+			int invalidNDVIValues = scan(column, row, false);
+			int[] candidates = new int[valid];
+			for (int k = 0; k < valid; k++) {
+				int x = tile.haloX() + validIndexes[k] % tile.haloWidth();
+				int y = tile.haloY() + validIndexes[k] / tile.haloWidth();
+				candidates[k] = x + y * imageWidth;
+			}
+			statistics.set(tile.x() / clusterWidth + column, tile.y() / clusterHeight + row,
+					invalidNDVIValues, calcCV(validNDVIValues, valid), candidates);
+		}
+
+		/*
+		 * Reads the valid NDVI values of the cluster and their indexes in the
+		 * tile pixels, stopping when the cluster has too many invalid values if
+		 * asked to, and returns the number of invalid values.
+		 */
+		private int scan(int column, int row, boolean stopAtMaxInvalid) {
+			int x0 = tile.x() + column * clusterWidth;
+			int y0 = tile.y() + row * clusterHeight;
+			int width = Math.min(clusterWidth, tile.x() + tile.width() - x0);
+			int height = Math.min(clusterHeight, tile.y() + tile.height() - y0);
+			int firstIndex = tile.index(x0, y0);
+
+			valid = 0;
+			int invalidNDVIValues = 0;
+			for (int i = 0; i < width; i++) {
+				for (int j = 0; j < height; j++) {
+					int index = firstIndex + i + j * tile.haloWidth();
+					ImagePixelOutput pixelOutput = pixels.get(index).output();
+					if (pixelOutput.isCloud() || pixelOutput.getNDVI() <= 0) {
+						invalidNDVIValues++;
+						if (stopAtMaxInvalid && invalidNDVIValues == maxInvalidNDVIValues) {
+							return invalidNDVIValues;
+						}
+						continue;
+					}
+					validNDVIValues[valid] = pixelOutput.getNDVI();
+					validIndexes[valid++] = index;
+				}
+			}
+			return invalidNDVIValues;
+		}
+	}
+
+	private boolean hasTooManyInvalidValues(int invalidNDVIValues) {
+		return maxInvalidNDVIValues > 0 && invalidNDVIValues >= maxInvalidNDVIValues;
+	}
+
+	/*
+	 * CV of count valid NDVI values from their sum and sum of squares; a
+	 * cluster with too many invalid values has CV 1, as in the screening of
+	 * clusters that do not overlap.
+	 */
+	private double calcCV(double count, int invalidNDVIValues, double sum, double squareSum) {
+		if (hasTooManyInvalidValues(invalidNDVIValues)) {
+			return 1;
+		}
+		double mean = sum / count;
+		double variance;
+		if (count > 1) {
+			variance = Math.max(0, (squareSum - sum * mean) / (count - 1));
+		} else {
+			variance = count == 1 ? 0 : Double.NaN;
+		}
+		return Math.sqrt(variance) / mean;
+	}
+
+	private double calcCV(double[] values, int length) {
+		double total = 0d;
+		for (int i = 0; i < length; i++) {
+			total += values[i];
+		}
+		double mean = total / length;
+		double variance = new Variance().evaluate(values, 0, length);
 		double standarDeviation = Math.sqrt(variance);
-		
+
 		return standarDeviation / mean;
 	}
 
-	private ImagePixel findPixelFrioInTheWater(Image image) {		
-		Map<String, PixelSample> waterSamples = findWater(image);
-		if (waterSamples.isEmpty()) {
-			return null;
-		}		
-		refineSamples(waterSamples);		
-		PixelSample bestSample = selectBestSample(waterSamples);
-		
-		if (bestSample == null) {
-			return null;
+	private void selectPixelFrioInTheWater(Image image, WaterBodies waterBodies) {
+		int bestWaterBody = selectBestWaterBody(waterBodies);
+		List<ImagePixel> waterPixels = new ArrayList<ImagePixel>();
+		if (bestWaterBody != WaterBodies.NO_LABEL) {
+			List<ImagePixel> pixels = image.pixels();
+			for (int index : waterBodies.floodOrder(bestWaterBody)) {
+				waterPixels.add(pixels.get(index));
+			}
+		}
+		addPixelFrioInTheWater(waterBodies, bestWaterBody, waterPixels,
+				pixelFrioCandidates.size());
+	}
+
+	/*
+	 * Chooses the pixel frio in the water from the pixels of the best water
+	 * body, in flood order, and adds it to the frio candidates at position.
+	 */
+	private void addPixelFrioInTheWater(WaterBodies waterBodies, int bestWaterBody,
+			List<ImagePixel> waterPixels, int position) {
+		pixelFrioInTheWaterPosition = -1;
+		if (bestWaterBody == WaterBodies.NO_LABEL) {
+			waterSample = null;
+			return;
+		}
+		ImagePixel pixelFrioInTheWater = selectPixelFrioInTheWater(waterPixels);
+		waterSample = new CandidateSummary.WaterSample(waterBodies.size(bestWaterBody),
+				waterBodies.numberOfLonPixels(bestWaterBody),
+				waterBodies.numberOfLatPixels(bestWaterBody), pixelFrioInTheWater);
+		if (pixelFrioInTheWater != null) {
+			LOGGER.debug("Pixel frio in the water is null.");
+			pixelFrioCandidates.add(position, pixelFrioInTheWater);
+			pixelFrioInTheWaterPosition = position;
+		}
+	}
+
+	/*
+	 * Water pixels of the core windows of the tiles, labelled into water bodies
+	 * once every tile was visited, and the pixels the pixel frio in the water
+	 * is chosen from, in the order they were added; copies of them when the
+	 * tiles are transient.
+	 */
+	private static class WaterPixels {
+
+		private final int imageWidth;
+		private final WaterBodies.Builder builder;
+		private List<ImagePixel> pixels = new ArrayList<ImagePixel>();
+
+		WaterPixels(int imageWidth, int imageHeight) {
+			this.imageWidth = imageWidth;
+			this.builder = new WaterBodies.Builder(imageWidth, imageHeight);
+		}
+
+		void add(ImageTile tile) {
+			if (tile.isTransient() && !(pixels instanceof CandidatePixels)) {
+				pixels = CandidatePixels.of(pixels);
+			}
+			ImagePixelStore store = tile.store();
+			for (int y = tile.y(); y < tile.y() + tile.height(); y++) {
+				for (int x = tile.x(); x < tile.x() + tile.width(); x++) {
+					boolean isSeed;
+					if (store != null) {
+						int index = tile.storeIndex(x, y);
+						if (!(store.output(index, OutputField.NDVI) < 0)) {
+							continue;
+						}
+						isSeed = !store.isCloud(index) && store.waterTest(index);
+					} else {
+						ImagePixelOutput output = tile.pixel(x, y).output();
+						if (!(output.getNDVI() < 0)) {
+							continue;
+						}
+						isSeed = !output.isCloud() && output.getWaterTest();
+					}
+					builder.add(x + y * imageWidth, isSeed);
+					pixels.add(tile.pixel(x, y));
+				}
+			}
 		}
-		return selectPixelFrioInTheWater(bestSample);
 	}
 
-	private ImagePixel selectPixelFrioInTheWater(PixelSample waterSample) {	
-		double[] tsValues = new double[waterSample.pixels().size()];
-		for (int index = 0; index < waterSample.pixels().size(); index++) {
-			tsValues[index] = waterSample.pixels().get(index).output().getTs();
+	private ImagePixel selectPixelFrioInTheWater(List<ImagePixel> waterPixels) {
+		double[] tsValues = new double[waterPixels.size()];
+		for (int index = 0; index < waterPixels.size(); index++) {
+			tsValues[index] = waterPixels.get(index).output().getTs();
 		}
 		double mean = calcMean(tsValues);
 	
-		for (ImagePixel pixel : waterSample.pixels()) {
+		for (ImagePixel pixel : waterPixels) {
 			if (pixel.output().getTs() >= (mean - maxDiffFromTSMean)
 					&& pixel.output().getTs() <= (mean + maxDiffFromTSMean)) {
 				return pixel;
@@ -208,16 +893,32 @@ public class ClusteredPixelQuenteFrioChooser extends AbstractPixelQuenteFrioChoo
 		return null;
 	}
 
-	private void refineSamples(Map<String, PixelSample> waterSamples) {
-		Collection<String> keys = new ArrayList<String>(waterSamples.keySet());
-		for (String key : keys) {
-			PixelSample pixelSample = waterSamples.get(key);
-			if (pixelSample.pixels().size() < minTotalWater
-					|| pixelSample.getNumberOfLonPixels() < minLonWater
-					|| pixelSample.getNumberOfLatPixels() < minLatWater) {
-				waterSamples.remove(key);
+	/*
+	 * The biggest water body with at least minTotalWater pixels, minLonWater
+	 * columns and minLatWater rows; on a tie, the one whose seed comes first
+	 * column by column.
+	 */
+	private int selectBestWaterBody(WaterBodies waterBodies) {
+		int bestWaterBody = WaterBodies.NO_LABEL;
+		for (int label = 0; label < waterBodies.count(); label++) {
+			if (!waterBodies.isWaterBody(label) || waterBodies.size(label) < minTotalWater
+					|| waterBodies.numberOfLonPixels(label) < minLonWater
+					|| waterBodies.numberOfLatPixels(label) < minLatWater) {
+				continue;
+			}
+			if (bestWaterBody == WaterBodies.NO_LABEL
+					|| waterBodies.size(label) > waterBodies.size(bestWaterBody)
+					|| (waterBodies.size(label) == waterBodies.size(bestWaterBody) && columnOrder(
+							waterBodies, label) < columnOrder(waterBodies, bestWaterBody))) {
+				bestWaterBody = label;
 			}
 		}
+		return bestWaterBody;
+	}
+
+	private static long columnOrder(WaterBodies waterBodies, int label) {
+		int seed = waterBodies.seed(label);
+		return (long) (seed % waterBodies.width()) * waterBodies.height() + seed / waterBodies.width();
 	}
 
 	protected PixelSample selectBestSample(Map<String, PixelSample> samples) {
@@ -230,63 +931,37 @@ public class ClusteredPixelQuenteFrioChooser extends AbstractPixelQuenteFrioChoo
 		return bestSample;
 	}
 
+	/**
+	 * Water bodies of the image by the key "i_j" of their seed, with their
+	 * pixels in flood fill order.
+	 */
 	protected Map<String, PixelSample> findWater(Image image) {
 		Map<String, PixelSample> samples = new HashMap<String, PixelSample>();
 		List<ImagePixel> pixels = image.pixels();
 		LOGGER.debug("pixels size=" + pixels.size());
-		boolean[] visited = new boolean[pixels.size()];
-		
-		for (int i = 0; i < image.width(); i++) {
-			for (int j = 0; j < image.height(); j++) {
-				if (visited[linear(i, j, image.width())] == true) {
-					continue;
-				}
-
-				ImagePixelOutput pixelOutput = pixels.get(linear(i, j, image.width())).output();
-				if (!pixelOutput.isCloud() && pixelOutput.getWaterTest()) {
-					findWater(pixels, visited, i, j, image.width(), image.height(), i + "_" + j,
-							samples);
-				}
+		WaterBodies waterBodies = WaterBodies.label(image);
+		int width = image.width();
+		for (int label = 0; label < waterBodies.count(); label++) {
+			if (!waterBodies.isWaterBody(label)) {
+				continue;
 			}
+			int seed = waterBodies.seed(label);
+			PixelSample sample = new PixelSample();
+			for (int index : waterBodies.floodOrder(label)) {
+				sample.addPixel(pixels.get(index), index % width, index / width);
+			}
+			samples.put((seed % width) + "_" + (seed / width), sample);
 		}
 		LOGGER.debug("number of water samples=" + samples.size());
 		return samples;
 	}
 
-	private void findWater(List<ImagePixel> pixels, boolean[] visited, int i, int j, int width,
-			int height, String sampleId, Map<String, PixelSample> samples) {
-		if (i < 0 || i > width -1 || j < 0 || j > height -1) {
-			return;
-		}
-		
-		if (visited[linear(i, j, width)] == true) {
-			return;
-		}
-		visited[linear(i, j, width)] = true;
-
-		if (pixels.get(linear(i, j, width)).output().getNDVI() < 0) {
-			if (!samples.containsKey(sampleId)) {				
-				samples.put(sampleId, new PixelSample());
-			}
-			samples.get(sampleId).addPixel(pixels.get(linear(i, j, width)), i, j);
-		} else {
-			return;
-		}
-		
-		findWater(pixels, visited, i + 1, j, width, height, sampleId, samples);
-		findWater(pixels, visited, i - 1, j, width, height, sampleId, samples);
-		findWater(pixels, visited, i, j + 1, width, height, sampleId, samples);
-		findWater(pixels, visited, i, j - 1, width, height, sampleId, samples);
-	}
-
-	private void selectPixelQuente() {
+	private void selectPixelQuente(List<ImagePixel> smallestNDVICandidates) {
 		/*
 		 * Choosing pixel quente 
 		 * Pixel Quente candidates: 10% smallest NDVI and 20% biggest TS
 		 */
-		LOGGER.debug("Number of pixel quente candidates=" + pixelQuenteCandidates.size());		
-		List<ImagePixel> bestCandidates = filterSmallestNDVI(pixelQuenteCandidates, 10);
-		bestCandidates = filterBiggestTS(bestCandidates, 20);
+		List<ImagePixel> bestCandidates = filterBiggestTS(smallestNDVICandidates, 20);
 		
 		//Logging best candidates
 		LOGGER.info(" ----------------------- BEST PIXEL FRIO CANDIDATES (Lat, Lon, TS, SAVI, Rn, G) ----------------------- ");
@@ -310,14 +985,12 @@ public class ClusteredPixelQuenteFrioChooser extends AbstractPixelQuenteFrioChoo
 		}
 	}
 
-	private void selectPixelFrio() {
-		LOGGER.debug("Number of pixel frio candidates=" + pixelFrioCandidates.size());
+	private void selectPixelFrio(List<ImagePixel> biggestNDVICandidates) {
 		/*
 		 * Choosing pixel frio out of the water 
 		 * Pixel Frio candidates: 5% biggest NDVI and 20% smallest TS
 		 */
-		List<ImagePixel> bestCandidates = filterBiggestNDVI(pixelFrioCandidates, 5);
-		bestCandidates = filterSmallestTS(bestCandidates, 20);
+		List<ImagePixel> bestCandidates = filterSmallestTS(biggestNDVICandidates, 20);
 		
 		//Logging best candidates
 		LOGGER.info(" ----------------------- BEST PIXEL FRIO CANDIDATES (Lat, Lon, TS) ----------------------- ");
@@ -345,50 +1018,141 @@ public class ClusteredPixelQuenteFrioChooser extends AbstractPixelQuenteFrioChoo
 		}		
 	}
 	
+	/*
+	 * The filters keep the order of a full sort of the pixels, but only
+	 * select and sort the pixels they keep; the given list is not changed.
+	 */
 	protected List<ImagePixel> filterBiggestTS(List<ImagePixel> pixels, double percent) {
-		Collections.sort(pixels, new TSComparator());
-		Collections.reverse(pixels);
-		List<ImagePixel> percentBiggestTS = new ArrayList<ImagePixel>();
-		for (int index = 0; index < Math.round(pixels.size() * (percent / 100) + 0.4); index++) {
-			percentBiggestTS.add(pixels.get(index));
-		}
-		return percentBiggestTS;
+		double[] tsValues = tsValues(pixels);
+		return selected(pixels, KeySelection.biggest(tsValues, KeySelection.count(
+				tsValues.length, percent)));
 	}
 
 	protected List<ImagePixel> filterSmallestNDVI(List<ImagePixel> pixels, double percent) {
-		Collections.sort(pixels, new NDVIComparator());
-		
+		List<ImagePixel> positiveNDVIPixels = positiveNDVIPixels(pixels);
+		return smallestNDVI(positiveNDVIPixels, KeySelection.count(positiveNDVIPixels.size(),
+				percent));
+	}
+
+	private List<ImagePixel> positiveNDVIPixels(List<ImagePixel> pixels) {
 		//excluding pixels where ndvi is 0
-		for (ImagePixel imagePixel : new ArrayList<ImagePixel>(pixels)) {
-			if (imagePixel.output().getNDVI() <= 0) {
-				pixels.remove(imagePixel);
+		List<ImagePixel> positiveNDVIPixels = new ArrayList<ImagePixel>(pixels.size());
+		for (ImagePixel imagePixel : pixels) {
+			if (!(imagePixel.output().getNDVI() <= 0)) {
+				positiveNDVIPixels.add(imagePixel);
 			}
 		}
-		
-		List<ImagePixel> percentSmallestNDVI = new ArrayList<ImagePixel>();
-		for (int index = 0; index < Math.round(pixels.size() * (percent / 100) + 0.4); index++) {
-			percentSmallestNDVI.add(pixels.get(index));
-		}
-		return percentSmallestNDVI;
+		return positiveNDVIPixels;
+	}
+
+	private List<ImagePixel> smallestNDVI(List<ImagePixel> pixels, int count) {
+		return selected(pixels, KeySelection.smallest(ndviValues(pixels), count));
 	}
 
 	protected List<ImagePixel> filterSmallestTS(List<ImagePixel> pixels, double percent) {
-		Collections.sort(pixels, new TSComparator());
-		List<ImagePixel> percentSmallestTS = new ArrayList<ImagePixel>();
-		for (int index = 0; index < Math.round(pixels.size() * (percent / 100) + 0.4); index++) {
-			percentSmallestTS.add(pixels.get(index));
-		}
-		return percentSmallestTS;
+		double[] tsValues = tsValues(pixels);
+		return selected(pixels, KeySelection.smallest(tsValues, KeySelection.count(
+				tsValues.length, percent)));
 	}
 
 	protected List<ImagePixel> filterBiggestNDVI(List<ImagePixel> pixels, double percent) {
-		Collections.sort(pixels, new NDVIComparator());
-		Collections.reverse(pixels);
-		List<ImagePixel> percentBiggestNDVI = new ArrayList<ImagePixel>();
-		for (int index = 0; index < Math.round(pixels.size() * (percent / 100) + 0.4); index++) {
-			percentBiggestNDVI.add(pixels.get(index));
+		return biggestNDVI(pixels, KeySelection.count(pixels.size(), percent));
+	}
+
+	private List<ImagePixel> biggestNDVI(List<ImagePixel> pixels, int count) {
+		return selected(pixels, KeySelection.biggest(ndviValues(pixels), count));
+	}
+
+	/*
+	 * Approximate versions of filterBiggestNDVI and filterSmallestNDVI: a pass
+	 * over the pixels fills a quantile sketch of their NDVI, whose threshold,
+	 * moved a rank error past the percentile, picks the band of pixels the
+	 * exact selection is made from. Unless the sketch is off by more than its
+	 * rank error, the band holds the pixels of the exact filter and the result
+	 * is the same. The rank error is typical, not guaranteed, so when the band
+	 * is too small the selection falls back to all the pixels rather than
+	 * return fewer than the exact filter.
+	 */
+	protected List<ImagePixel> sketchBiggestNDVI(List<ImagePixel> pixels, double percent) {
+		int count = KeySelection.count(pixels.size(), percent);
+		if (count == 0) {
+			return new ArrayList<ImagePixel>();
+		}
+		QuantileSketch sketch = sketchNDVI(pixels);
+		double threshold = sketch.quantile(1 - (double) count / pixels.size()
+				- sketch.rankError());
+		List<ImagePixel> band = new ArrayList<ImagePixel>();
+		for (ImagePixel pixel : pixels) {
+			if (pixel.output().getNDVI() >= threshold) {
+				band.add(pixel);
+			}
+		}
+		LOGGER.debug("NDVI threshold=" + threshold + ", " + band.size() + " of " + pixels.size()
+				+ " pixels in the band for " + count + " biggest NDVI");
+		if (band.size() < count) {
+			LOGGER.warn("NDVI sketch band has " + band.size() + " pixels for " + count
+					+ " biggest NDVI; selecting from all the pixels");
+			return biggestNDVI(pixels, count);
+		}
+		return biggestNDVI(band, count);
+	}
+
+	protected List<ImagePixel> sketchSmallestNDVI(List<ImagePixel> pixels, double percent) {
+		List<ImagePixel> positiveNDVIPixels = positiveNDVIPixels(pixels);
+		int count = KeySelection.count(positiveNDVIPixels.size(), percent);
+		if (count == 0) {
+			return new ArrayList<ImagePixel>();
+		}
+		QuantileSketch sketch = sketchNDVI(positiveNDVIPixels);
+		double threshold = sketch.quantile((double) count / positiveNDVIPixels.size()
+				+ sketch.rankError());
+		List<ImagePixel> band = new ArrayList<ImagePixel>();
+		for (ImagePixel pixel : positiveNDVIPixels) {
+			if (pixel.output().getNDVI() <= threshold) {
+				band.add(pixel);
+			}
+		}
+		LOGGER.debug("NDVI threshold=" + threshold + ", " + band.size() + " of "
+				+ positiveNDVIPixels.size() + " pixels in the band for " + count
+				+ " smallest NDVI");
+		if (band.size() < count) {
+			LOGGER.warn("NDVI sketch band has " + band.size() + " pixels for " + count
+					+ " smallest NDVI; selecting from all the pixels");
+			return smallestNDVI(positiveNDVIPixels, count);
+		}
+		return smallestNDVI(band, count);
+	}
+
+	private QuantileSketch sketchNDVI(List<ImagePixel> pixels) {
+		QuantileSketch sketch = QuantileSketch.withRankError(sketchRankError);
+		for (ImagePixel pixel : pixels) {
+			sketch.add(pixel.output().getNDVI());
+		}
+		return sketch;
+	}
+
+	private double[] tsValues(List<ImagePixel> pixels) {
+		double[] tsValues = new double[pixels.size()];
+		for (int index = 0; index < tsValues.length; index++) {
+			tsValues[index] = pixels.get(index).output().getTs();
+		}
+		return tsValues;
+	}
+
+	private double[] ndviValues(List<ImagePixel> pixels) {
+		double[] ndviValues = new double[pixels.size()];
+		for (int index = 0; index < ndviValues.length; index++) {
+			ndviValues[index] = pixels.get(index).output().getNDVI();
+		}
+		return ndviValues;
+	}
+
+	private List<ImagePixel> selected(List<ImagePixel> pixels, int[] positions) {
+		List<ImagePixel> selected = new ArrayList<ImagePixel>(positions.length);
+		for (int position : positions) {
+			selected.add(pixels.get(position));
 		}
-		return percentBiggestNDVI;
+		return selected;
 	}
 
 	private double calcMean(double[] values) {
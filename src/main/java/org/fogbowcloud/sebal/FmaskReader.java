@@ -0,0 +1,53 @@
+package org.fogbowcloud.sebal;
+
+import org.fogbowcloud.sebal.model.image.FmaskBitmap;
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconstConstants;
+
+/**
+ * Reads a window of an Fmask GeoTIFF into a {@link FmaskBitmap}. Rows are
+ * read as bytes, one GDAL block row at a time, so reading the mask needs a
+ * buffer of width * blockHeight bytes besides the bitmap itself.
+ */
+public class FmaskReader {
+
+	private FmaskReader() {
+	}
+
+	public static FmaskBitmap read(String fmaskFilePath, int xBegin, int xEnd, int yBegin,
+			int yEnd) {
+		gdal.AllRegister();
+
+		Dataset dataset = gdal.Open(fmaskFilePath, gdalconstConstants.GA_ReadOnly);
+		if (dataset == null) {
+			throw new IllegalArgumentException("Could not open Fmask file " + fmaskFilePath);
+		}
+		try {
+			return read(dataset.GetRasterBand(1), xBegin, xEnd, yBegin, yEnd);
+		} finally {
+			dataset.delete();
+		}
+	}
+
+	static FmaskBitmap read(Band band, int xBegin, int xEnd, int yBegin, int yEnd) {
+		int width = xEnd - xBegin;
+		FmaskBitmap bitmap = new FmaskBitmap(width, yEnd - yBegin);
+		int blockHeight = Math.max(1, band.GetBlockYSize());
+		byte[] rows = new byte[width * blockHeight];
+
+		int y = yBegin;
+		while (y < yEnd) {
+			// strips end at block boundaries, so no block is decoded twice
+			int stripHeight = Math.min(blockHeight - y % blockHeight, yEnd - y);
+			if (band.ReadRaster(xBegin, y, width, stripHeight, rows) != gdalconstConstants.CE_None) {
+				throw new IllegalStateException("Could not read Fmask rows " + y + " to "
+						+ (y + stripHeight) + ".");
+			}
+			bitmap.set((y - yBegin) * width, rows, 0, width * stripHeight);
+			y += stripHeight;
+		}
+		return bitmap;
+	}
+}
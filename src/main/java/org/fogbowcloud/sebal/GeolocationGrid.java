@@ -0,0 +1,234 @@
+package org.fogbowcloud.sebal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+
+/**
+ * Latitude and longitude of the pixels of a scene, interpolated from the
+ * geocoding evaluated on a sparse grid of control points.
+ *
+ * Control points are placed every step pixels in both directions (the last
+ * column and row of the raster are always control points) and the position
+ * of a pixel is the bilinear interpolation of the four control points around
+ * it. Landsat scenes are in UTM, so over a few hundred pixels the mapping to
+ * lat/lon is smooth enough for the interpolation error to stay below the
+ * float precision of {@link GeoPos}.
+ */
+public class GeolocationGrid {
+
+	private static final int FILE_VERSION = 1;
+
+	private final int width;
+	private final int height;
+	private final int step;
+	private final int columns;
+	private final int rows;
+	private final double[] lat;
+	private final double[] lon;
+
+	GeolocationGrid(int width, int height, int step, double[] lat, double[] lon) {
+		this.width = width;
+		this.height = height;
+		this.step = step;
+		this.columns = nodes(width, step);
+		this.rows = nodes(height, step);
+		if (lat.length != columns * rows || lon.length != columns * rows) {
+			throw new IllegalArgumentException("Expected " + columns * rows
+					+ " control points, got " + lat.length + ".");
+		}
+		this.lat = lat;
+		this.lon = lon;
+	}
+
+	/**
+	 * Evaluates the geocoding on the control points of a width x height
+	 * raster.
+	 */
+	public static GeolocationGrid create(GeoCoding geoCoding, int width, int height, int step) {
+		if (width <= 0 || height <= 0 || step <= 0) {
+			throw new IllegalArgumentException("Invalid grid dimensions (" + width + ", "
+					+ height + ", " + step + ").");
+		}
+		int columns = nodes(width, step);
+		int rows = nodes(height, step);
+		double[] lat = new double[columns * rows];
+		double[] lon = new double[columns * rows];
+
+		PixelPos pixelPos = new PixelPos();
+		GeoPos geoPos = new GeoPos();
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				pixelPos.x = node(column, step, width);
+				pixelPos.y = node(row, step, height);
+				geoPos = geoCoding.getGeoPos(pixelPos, geoPos);
+				lat[column + row * columns] = geoPos.getLat();
+				lon[column + row * columns] = geoPos.getLon();
+			}
+		}
+		return new GeolocationGrid(width, height, step, lat, lon);
+	}
+
+	private static int nodes(int size, int step) {
+		return (size - 1 + step - 1) / step + 1;
+	}
+
+	private static int node(int n, int step, int size) {
+		return Math.min(n * step, size - 1);
+	}
+
+	public int width() {
+		return width;
+	}
+
+	public int height() {
+		return height;
+	}
+
+	public int step() {
+		return step;
+	}
+
+	public double lat(int i, int j) {
+		return interpolate(lat, i, j);
+	}
+
+	public double lon(int i, int j) {
+		return interpolate(lon, i, j);
+	}
+
+	private double interpolate(double[] values, int i, int j) {
+		int column = Math.min(i / step, columns - 1);
+		int row = Math.min(j / step, rows - 1);
+		int nextColumn = Math.min(column + 1, columns - 1);
+		int nextRow = Math.min(row + 1, rows - 1);
+
+		double tx = fraction(i, column, nextColumn, width);
+		double ty = fraction(j, row, nextRow, height);
+
+		double top = values[column + row * columns] * (1 - tx)
+				+ values[nextColumn + row * columns] * tx;
+		double bottom = values[column + nextRow * columns] * (1 - tx)
+				+ values[nextColumn + nextRow * columns] * tx;
+		return top * (1 - ty) + bottom * ty;
+	}
+
+	private double fraction(int position, int n, int next, int size) {
+		if (n == next) {
+			return 0;
+		}
+		int begin = node(n, step, size);
+		return (double) (position - begin) / (node(next, step, size) - begin);
+	}
+
+	/**
+	 * Fills the latitude and longitude of every pixel of the store, whose
+	 * offset gives the position of its window in the raster.
+	 */
+	public void fill(ImagePixelStore store) {
+		for (int index = 0; index < store.size(); index++) {
+			int i = store.i(index);
+			int j = store.j(index);
+			store.geoLoc(index, lat(i, j), lon(i, j));
+		}
+	}
+
+	/**
+	 * Returns the biggest difference, in degrees, between the interpolated
+	 * and the exact position at the center of every grid cell, which is where
+	 * bilinear interpolation is worst.
+	 */
+	public double maxError(GeoCoding geoCoding) {
+		double maxError = 0;
+		for (int row = 0; row < rows - 1 || row == 0; row++) {
+			for (int column = 0; column < columns - 1 || column == 0; column++) {
+				int i = (node(column, step, width) + node(column + 1, step, width)) / 2;
+				int j = (node(row, step, height) + node(row + 1, step, height)) / 2;
+				maxError = Math.max(maxError, error(geoCoding, i, j));
+			}
+		}
+		return maxError;
+	}
+
+	/**
+	 * Checks a grid built for another scene against the geocoding of this
+	 * one, on the raster corners, on its center and on a few cell centers.
+	 */
+	public boolean matches(GeoCoding geoCoding, int width, int height, double maxError) {
+		if (width != this.width || height != this.height) {
+			return false;
+		}
+		int[][] checkPoints = new int[][] { { 0, 0 }, { width - 1, 0 }, { 0, height - 1 },
+				{ width - 1, height - 1 }, { width / 2, height / 2 },
+				{ width / 4 + step / 2, height / 4 + step / 2 },
+				{ 3 * width / 4 + step / 2, 3 * height / 4 + step / 2 } };
+		for (int[] checkPoint : checkPoints) {
+			int i = Math.min(checkPoint[0], width - 1);
+			int j = Math.min(checkPoint[1], height - 1);
+			if (error(geoCoding, i, j) > maxError) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private double error(GeoCoding geoCoding, int i, int j) {
+		GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(i, j), null);
+		return Math.max(Math.abs(geoPos.getLat() - lat(i, j)),
+				Math.abs(geoPos.getLon() - lon(i, j)));
+	}
+
+	public void write(File file) throws IOException {
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			output.writeInt(FILE_VERSION);
+			output.writeInt(width);
+			output.writeInt(height);
+			output.writeInt(step);
+			for (int n = 0; n < lat.length; n++) {
+				output.writeDouble(lat[n]);
+				output.writeDouble(lon[n]);
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	public static GeolocationGrid read(File file) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			int version = input.readInt();
+			if (version != FILE_VERSION) {
+				throw new IOException("Unsupported geolocation grid version " + version + ".");
+			}
+			int width = input.readInt();
+			int height = input.readInt();
+			int step = input.readInt();
+			if (width <= 0 || height <= 0 || step <= 0) {
+				throw new IOException("Invalid geolocation grid file " + file + ".");
+			}
+			int size = nodes(width, step) * nodes(height, step);
+			double[] lat = new double[size];
+			double[] lon = new double[size];
+			for (int n = 0; n < size; n++) {
+				lat[n] = input.readDouble();
+				lon[n] = input.readDouble();
+			}
+			return new GeolocationGrid(width, height, step, lat, lon);
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package org.fogbowcloud.sebal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.MetadataElement;
+import org.esa.beam.framework.datamodel.Product;
+
+/**
+ * Builds the {@link GeolocationGrid} of a product and keeps it, in memory and
+ * optionally on disk, per WRS-2 path/row and raster size. Scenes of the same
+ * footprint are not exactly aligned, so a cached grid is only reused after
+ * being checked against the geocoding of the new scene.
+ *
+ * Properties:
+ * geolocation_grid_step: initial distance in pixels between control points
+ * geolocation_grid_max_error: maximum interpolation error in degrees
+ * geolocation_grid_cache_dir: directory where grids are saved (optional)
+ */
+public class GeolocationGridCache {
+
+	public static final int DEFAULT_STEP = 64;
+	public static final double DEFAULT_MAX_ERROR = 1e-5;
+	private static final int MAX_GRIDS_IN_MEMORY = 16;
+
+	private static final Map<String, GeolocationGrid> GRIDS = new LinkedHashMap<String, GeolocationGrid>(
+			16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, GeolocationGrid> eldest) {
+			return size() > MAX_GRIDS_IN_MEMORY;
+		}
+	};
+
+	private static final Logger LOGGER = Logger.getLogger(GeolocationGridCache.class);
+
+	private int step = DEFAULT_STEP;
+	private double maxError = DEFAULT_MAX_ERROR;
+	private File cacheDir;
+
+	public GeolocationGridCache() {
+		this(new Properties());
+	}
+
+	public GeolocationGridCache(Properties properties) {
+		String stepStr = properties.getProperty("geolocation_grid_step");
+		if (stepStr != null && !stepStr.isEmpty()) {
+			this.step = Integer.parseInt(stepStr);
+		}
+		String maxErrorStr = properties.getProperty("geolocation_grid_max_error");
+		if (maxErrorStr != null && !maxErrorStr.isEmpty()) {
+			this.maxError = Double.parseDouble(maxErrorStr);
+		}
+		String cacheDirPath = properties.getProperty("geolocation_grid_cache_dir");
+		if (cacheDirPath != null && !cacheDirPath.isEmpty()) {
+			this.cacheDir = new File(cacheDirPath);
+		}
+		if (step <= 0 || maxError <= 0) {
+			throw new IllegalArgumentException(
+					"Properties geolocation_grid_step and geolocation_grid_max_error must be positive.");
+		}
+	}
+
+	public GeolocationGrid get(Product product) {
+		Band bandAt = product.getBandAt(0);
+		return get(bandAt.getGeoCoding(), bandAt.getRasterWidth(), bandAt.getRasterHeight(),
+				wrsPathRow(product));
+	}
+
+	/**
+	 * Returns the grid of a width x height raster. The wrsPathRow is the cache
+	 * key of the footprint, or null when the grid must not be cached.
+	 */
+	public GeolocationGrid get(GeoCoding geoCoding, int width, int height, String wrsPathRow) {
+		String key = wrsPathRow == null ? null : wrsPathRow + "_" + width + "x" + height;
+
+		GeolocationGrid grid = cached(key);
+		if (grid != null && grid.matches(geoCoding, width, height, maxError)) {
+			LOGGER.debug("Reusing geolocation grid of " + key);
+			return grid;
+		}
+
+		grid = build(geoCoding, width, height);
+		if (key != null) {
+			synchronized (GRIDS) {
+				GRIDS.put(key, grid);
+			}
+			save(key, grid);
+		}
+		return grid;
+	}
+
+	private GeolocationGrid build(GeoCoding geoCoding, int width, int height) {
+		int gridStep = step;
+		while (true) {
+			GeolocationGrid grid = GeolocationGrid.create(geoCoding, width, height, gridStep);
+			double error = grid.maxError(geoCoding);
+			LOGGER.debug("Geolocation grid step=" + gridStep + " max error=" + error);
+			if (error <= maxError || gridStep == 1) {
+				return grid;
+			}
+			gridStep = gridStep / 2;
+		}
+	}
+
+	private GeolocationGrid cached(String key) {
+		if (key == null) {
+			return null;
+		}
+		synchronized (GRIDS) {
+			if (GRIDS.containsKey(key)) {
+				return GRIDS.get(key);
+			}
+		}
+		if (cacheDir == null) {
+			return null;
+		}
+		File gridFile = new File(cacheDir, key + ".grid");
+		if (!gridFile.exists()) {
+			return null;
+		}
+		try {
+			return GeolocationGrid.read(gridFile);
+		} catch (IOException e) {
+			LOGGER.warn("Could not read geolocation grid file " + gridFile, e);
+			return null;
+		}
+	}
+
+	private void save(String key, GeolocationGrid grid) {
+		if (cacheDir == null) {
+			return;
+		}
+		if (!cacheDir.exists()) {
+			cacheDir.mkdirs();
+		}
+		File gridFile = new File(cacheDir, key + ".grid");
+		try {
+			// partitions of the scene in other processes may be saving the same grid
+			File tempFile = File.createTempFile(key, ".grid.tmp", cacheDir);
+			grid.write(tempFile);
+			if (!tempFile.renameTo(gridFile)) {
+				gridFile.delete();
+				if (!tempFile.renameTo(gridFile)) {
+					tempFile.delete();
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Could not write geolocation grid file " + gridFile, e);
+		}
+	}
+
+	protected static String wrsPathRow(Product product) {
+		MetadataElement metadataRoot = product.getMetadataRoot();
+		if (metadataRoot == null || metadataRoot.getElement("L1_METADATA_FILE") == null) {
+			return null;
+		}
+		MetadataElement productMetadata = metadataRoot.getElement("L1_METADATA_FILE")
+				.getElement("PRODUCT_METADATA");
+		if (productMetadata == null) {
+			return null;
+		}
+		int path = productMetadata.getAttributeInt("WRS_PATH", -1);
+		// MTL files of the old format name the row STARTING_ROW
+		int row = productMetadata.getAttributeInt("WRS_ROW",
+				productMetadata.getAttributeInt("STARTING_ROW", -1));
+		if (path < 0 || row < 0) {
+			return null;
+		}
+		return String.format("wrs_%03d_%03d", path, row);
+	}
+}
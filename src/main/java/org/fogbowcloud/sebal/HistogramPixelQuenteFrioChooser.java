@@ -0,0 +1,310 @@
+package org.fogbowcloud.sebal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.sebal.model.image.Image;
+import org.fogbowcloud.sebal.model.image.ImagePixel;
+import org.fogbowcloud.sebal.model.image.ImagePixelOutput;
+
+/**
+ * Chooses the pixels quente and frio from fixed-bin histograms instead of
+ * clusters and sorts. One pass over the image keeps the candidates (pixels
+ * that are not cloud and have positive NDVI and a TS) and counts them in a 2D
+ * histogram of (NDVI, TS) that also sums the TS and albedo of each cell.
+ *
+ * The tails are then read from the histogram, with the percents of
+ * {@link ClusteredPixelQuenteFrioChooser}: pixel frio from the 5% biggest NDVI
+ * and, of those, the 20% smallest TS; pixel quente from the 10% smallest NDVI
+ * and the 20% biggest TS. A tail is made of whole bins, so it may hold a few
+ * more pixels than the percent. The TS and albedo means of the tails come
+ * from the cell sums, and a second pass over the candidates takes the pixel
+ * of the tail with the smallest (frio) or biggest (quente) TS that is close
+ * enough to the means, as the clustered chooser does over its sorted tails.
+ *
+ * Clusters are not screened and water bodies are not looked for.
+ */
+public class HistogramPixelQuenteFrioChooser extends AbstractPixelQuenteFrioChooser {
+
+	private int ndviBins = 200;				// 200 is default value
+	private int tsBins = 1000;				// 1000 is default value
+	private double minTs = 200;				// 200 K is default value
+	private double maxTs = 400;				// 400 K is default value
+	private double maxDiffFromTSMean = 0.2;	// 0.2 is default value
+	private double maxDiffFromAlbedoMean = 0.02; // 0.02 is default value
+
+	private Histogram frioHistogram;
+	private Histogram quenteHistogram;
+
+	private static final double PIXEL_FRIO_NDVI_PERCENT = 5;
+	private static final double PIXEL_QUENTE_NDVI_PERCENT = 10;
+	private static final double TS_PERCENT = 20;
+
+	private static final Logger LOGGER = Logger.getLogger(HistogramPixelQuenteFrioChooser.class);
+
+	public HistogramPixelQuenteFrioChooser() {
+
+	}
+
+	public HistogramPixelQuenteFrioChooser(Properties properties) {
+		if (properties == null) {
+			LOGGER.debug("Properties were not set.");
+			return;
+		}
+		if (properties.getProperty("histogram_ndvi_bins") != null) {
+			ndviBins = Integer.parseInt(properties.getProperty("histogram_ndvi_bins"));
+		}
+
+		if (properties.getProperty("histogram_ts_bins") != null) {
+			tsBins = Integer.parseInt(properties.getProperty("histogram_ts_bins"));
+		}
+
+		if (properties.getProperty("histogram_min_ts") != null) {
+			minTs = Double.parseDouble(properties.getProperty("histogram_min_ts"));
+		}
+
+		if (properties.getProperty("histogram_max_ts") != null) {
+			maxTs = Double.parseDouble(properties.getProperty("histogram_max_ts"));
+		}
+
+		if (properties.getProperty("cluster_max_difference_from_ts_mean") != null) {
+			maxDiffFromTSMean = Double.parseDouble(properties
+					.getProperty("cluster_max_difference_from_ts_mean"));
+		}
+
+		if (properties.getProperty("cluster_max_difference_from_albedo_mean") != null) {
+			maxDiffFromAlbedoMean = Double.parseDouble(properties
+					.getProperty("cluster_max_difference_from_albedo_mean"));
+		}
+
+		if (ndviBins < 1 || tsBins < 1) {
+			throw new IllegalArgumentException("histogram_ndvi_bins and histogram_ts_bins must "
+					+ "be positive.");
+		}
+		if (!(minTs < maxTs)) {
+			throw new IllegalArgumentException("histogram_min_ts must be smaller than "
+					+ "histogram_max_ts.");
+		}
+	}
+
+	/**
+	 * Keeps the candidates of the image, the same list for pixel quente and
+	 * pixel frio, and counts them in the histogram.
+	 */
+	@Override
+	public void selectPixelsQuenteFrioCandidates(Image image) {
+		long now = System.currentTimeMillis();
+		List<ImagePixel> candidates = new ArrayList<ImagePixel>();
+		Histogram histogram = new Histogram(candidates);
+		for (ImagePixel pixel : image.pixels()) {
+			if (histogram.add(pixel.output())) {
+				candidates.add(pixel);
+			}
+		}
+		pixelFrioCandidates = candidates;
+		pixelQuenteCandidates = candidates;
+		frioHistogram = histogram;
+		quenteHistogram = histogram;
+		LOGGER.debug("Histogram of " + candidates.size() + " candidates execution time="
+				+ (System.currentTimeMillis() - now));
+	}
+
+	@Override
+	public void choosePixelsQuenteFrio() {
+		LOGGER.debug("Chossing pixels hot and cold from histograms...");
+		long now = System.currentTimeMillis();
+
+		// candidates set from outside the chooser have no histogram yet
+		if (frioHistogram == null || frioHistogram.candidates != pixelFrioCandidates) {
+			frioHistogram = histogram(pixelFrioCandidates);
+		}
+		if (quenteHistogram == null || quenteHistogram.candidates != pixelQuenteCandidates) {
+			quenteHistogram = pixelQuenteCandidates == pixelFrioCandidates ? frioHistogram
+					: histogram(pixelQuenteCandidates);
+		}
+
+		LOGGER.debug("Number of pixel frio candidates=" + frioHistogram.total);
+		Tail frioTail = frioHistogram.tail(true, PIXEL_FRIO_NDVI_PERCENT, false, TS_PERCENT);
+		pixelFrio = frioTail == null ? null : select(pixelFrioCandidates, frioTail, false, true);
+
+		LOGGER.debug("Number of pixel quente candidates=" + quenteHistogram.total);
+		Tail quenteTail = quenteHistogram.tail(false, PIXEL_QUENTE_NDVI_PERCENT, true,
+				TS_PERCENT);
+		pixelQuente = quenteTail == null ? null : select(pixelQuenteCandidates, quenteTail, true,
+				false);
+
+		if (pixelFrio != null) {
+			LOGGER.debug("TS of pixel frio: " + pixelFrio.output().getTs());
+		}
+		if (pixelQuente != null) {
+			LOGGER.debug("TS of pixel quente: " + pixelQuente.output().getTs());
+		}
+		LOGGER.debug("Chossing pixels hot and cold from histograms execution time="
+				+ (System.currentTimeMillis() - now));
+	}
+
+	private Histogram histogram(List<ImagePixel> candidates) {
+		Histogram histogram = new Histogram(candidates);
+		for (ImagePixel pixel : candidates) {
+			histogram.add(pixel.output());
+		}
+		return histogram;
+	}
+
+	/*
+	 * The pixel of the tail with the smallest or biggest TS whose TS (and
+	 * albedo, if asked to) is close to the mean of the tail; the first one of
+	 * the candidates on ties.
+	 */
+	private ImagePixel select(List<ImagePixel> candidates, Tail tail, boolean biggestTs,
+			boolean checkAlbedo) {
+		ImagePixel selected = null;
+		double selectedTs = Double.NaN;
+		for (ImagePixel pixel : candidates) {
+			ImagePixelOutput output = pixel.output();
+			if (!isCandidate(output) || !tail.contains(ndviBin(output.getNDVI()),
+					tsBin(output.getTs()))) {
+				continue;
+			}
+			double ts = output.getTs();
+			if (ts < tail.tsMean - maxDiffFromTSMean || ts > tail.tsMean + maxDiffFromTSMean) {
+				continue;
+			}
+			if (checkAlbedo && !(output.getAlpha() >= tail.albedoMean - maxDiffFromAlbedoMean
+					&& output.getAlpha() <= tail.albedoMean + maxDiffFromAlbedoMean)) {
+				continue;
+			}
+			if (selected == null || (biggestTs ? ts > selectedTs : ts < selectedTs)) {
+				selected = pixel;
+				selectedTs = ts;
+			}
+		}
+		return selected;
+	}
+
+	private static boolean isCandidate(ImagePixelOutput output) {
+		return !output.isCloud() && output.getNDVI() > 0 && !Double.isNaN(output.getTs());
+	}
+
+	private int ndviBin(double ndvi) {
+		return Math.min(ndviBins - 1, (int) (ndvi * ndviBins));
+	}
+
+	private int tsBin(double ts) {
+		int bin = (int) Math.floor((ts - minTs) / (maxTs - minTs) * tsBins);
+		return Math.max(0, Math.min(tsBins - 1, bin));
+	}
+
+	/*
+	 * Counts of the candidates per (NDVI, TS) cell, with the sums of their TS
+	 * and albedo. A cell is tsBin + ndviBin * tsBins.
+	 */
+	private class Histogram {
+
+		private final List<ImagePixel> candidates;
+		private final int[] counts = new int[ndviBins * tsBins];
+		private final double[] tsSums = new double[ndviBins * tsBins];
+		private final double[] albedoSums = new double[ndviBins * tsBins];
+		private int total;
+
+		private Histogram(List<ImagePixel> candidates) {
+			this.candidates = candidates;
+		}
+
+		private boolean add(ImagePixelOutput output) {
+			if (!isCandidate(output)) {
+				return false;
+			}
+			int cell = tsBin(output.getTs()) + ndviBin(output.getNDVI()) * tsBins;
+			counts[cell]++;
+			tsSums[cell] += output.getTs();
+			albedoSums[cell] += output.getAlpha();
+			total++;
+			return true;
+		}
+
+		/*
+		 * The bins of the biggest or smallest NDVI holding ndviPercent of the
+		 * candidates and, in them, the bins of the biggest or smallest TS
+		 * holding tsPercent of those. Null if a tail would be empty.
+		 */
+		private Tail tail(boolean biggestNDVI, double ndviPercent, boolean biggestTs,
+				double tsPercent) {
+			int wanted = KeySelection.count(total, ndviPercent);
+			if (wanted == 0) {
+				return null;
+			}
+			int[] ndviCounts = new int[ndviBins];
+			for (int cell = 0; cell < counts.length; cell++) {
+				ndviCounts[cell / tsBins] += counts[cell];
+			}
+			int ndviBin = biggestNDVI ? ndviBins - 1 : 0;
+			int taken = ndviCounts[ndviBin];
+			while (taken < wanted) {
+				ndviBin += biggestNDVI ? -1 : 1;
+				taken += ndviCounts[ndviBin];
+			}
+			int minNDVIBin = biggestNDVI ? ndviBin : 0;
+			int maxNDVIBin = biggestNDVI ? ndviBins - 1 : ndviBin;
+
+			wanted = KeySelection.count(taken, tsPercent);
+			if (wanted == 0) {
+				return null;
+			}
+			int[] tsCounts = new int[tsBins];
+			for (int bin = minNDVIBin; bin <= maxNDVIBin; bin++) {
+				for (int tsBin = 0; tsBin < tsBins; tsBin++) {
+					tsCounts[tsBin] += counts[tsBin + bin * tsBins];
+				}
+			}
+			int tsBin = biggestTs ? tsBins - 1 : 0;
+			taken = tsCounts[tsBin];
+			while (taken < wanted) {
+				tsBin += biggestTs ? -1 : 1;
+				taken += tsCounts[tsBin];
+			}
+			Tail tail = new Tail(minNDVIBin, maxNDVIBin, biggestTs ? tsBin : 0,
+					biggestTs ? tsBins - 1 : tsBin);
+
+			double tsSum = 0;
+			double albedoSum = 0;
+			for (int bin = minNDVIBin; bin <= maxNDVIBin; bin++) {
+				for (int cell = bin * tsBins + tail.minTsBin; cell <= bin * tsBins
+						+ tail.maxTsBin; cell++) {
+					tsSum += tsSums[cell];
+					albedoSum += albedoSums[cell];
+				}
+			}
+			tail.tsMean = tsSum / taken;
+			tail.albedoMean = albedoSum / taken;
+			LOGGER.debug("Tail of " + taken + " candidates, NDVI bins [" + minNDVIBin + ", "
+					+ maxNDVIBin + "], TS bins [" + tail.minTsBin + ", " + tail.maxTsBin
+					+ "], TS mean=" + tail.tsMean + ", albedo mean=" + tail.albedoMean);
+			return tail;
+		}
+	}
+
+	private static class Tail {
+
+		private final int minNDVIBin;
+		private final int maxNDVIBin;
+		private final int minTsBin;
+		private final int maxTsBin;
+		private double tsMean;
+		private double albedoMean;
+
+		private Tail(int minNDVIBin, int maxNDVIBin, int minTsBin, int maxTsBin) {
+			this.minNDVIBin = minNDVIBin;
+			this.maxNDVIBin = maxNDVIBin;
+			this.minTsBin = minTsBin;
+			this.maxTsBin = maxTsBin;
+		}
+
+		private boolean contains(int ndviBin, int tsBin) {
+			return ndviBin >= minNDVIBin && ndviBin <= maxNDVIBin && tsBin >= minTsBin
+					&& tsBin <= maxTsBin;
+		}
+	}
+}
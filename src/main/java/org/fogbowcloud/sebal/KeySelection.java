@@ -0,0 +1,150 @@
+package org.fogbowcloud.sebal;
+
+/**
+ * Selects the positions of the smallest or biggest keys of a primitive array
+ * without sorting it: a quickselect over a permutation of the positions puts
+ * the k selected positions first in O(n), and only those k are then sorted.
+ *
+ * Keys are compared with {@link Double#compare(double, double)} and equal
+ * keys by their position, so the selection is the first k positions of a
+ * stable sort by key (smallest) or of its reverse (biggest).
+ */
+public class KeySelection {
+
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private final double[] keys;
+	private final boolean descending;
+
+	private KeySelection(double[] keys, boolean descending) {
+		this.keys = keys;
+		this.descending = descending;
+	}
+
+	/**
+	 * Positions of the k smallest keys, by ascending key.
+	 */
+	public static int[] smallest(double[] keys, int k) {
+		return new KeySelection(keys, false).select(k);
+	}
+
+	/**
+	 * Positions of the k biggest keys, by descending key.
+	 */
+	public static int[] biggest(double[] keys, int k) {
+		return new KeySelection(keys, true).select(k);
+	}
+
+	/**
+	 * Number of elements kept by a filter of percent of n elements, as the
+	 * hot and cold pixel filters have always rounded it.
+	 */
+	public static int count(int n, double percent) {
+		return (int) Math.min(n, Math.max(0, Math.round(n * (percent / 100) + 0.4)));
+	}
+
+	private int[] select(int k) {
+		k = Math.max(0, Math.min(k, keys.length));
+		int[] positions = new int[keys.length];
+		for (int position = 0; position < positions.length; position++) {
+			positions[position] = position;
+		}
+		if (k < positions.length) {
+			select(positions, k);
+		}
+		sort(positions, 0, k);
+		int[] selected = new int[k];
+		System.arraycopy(positions, 0, selected, 0, k);
+		return selected;
+	}
+
+	/*
+	 * Partitions positions so that the k first are the selected ones, in any
+	 * order.
+	 */
+	private void select(int[] positions, int k) {
+		int from = 0;
+		int to = positions.length;
+		while (to - from > INSERTION_SORT_THRESHOLD) {
+			int pivot = partition(positions, from, to);
+			if (pivot == k) {
+				return;
+			} else if (pivot < k) {
+				from = pivot + 1;
+			} else {
+				to = pivot;
+			}
+		}
+		insertionSort(positions, from, to);
+	}
+
+	private void sort(int[] positions, int from, int to) {
+		while (to - from > INSERTION_SORT_THRESHOLD) {
+			int pivot = partition(positions, from, to);
+			// recursing on the smaller side keeps the stack depth logarithmic
+			if (pivot - from < to - pivot) {
+				sort(positions, from, pivot);
+				from = pivot + 1;
+			} else {
+				sort(positions, pivot + 1, to);
+				to = pivot;
+			}
+		}
+		insertionSort(positions, from, to);
+	}
+
+	/*
+	 * Partitions [from, to) around the median of its first, middle and last
+	 * positions and returns where the pivot ends up.
+	 */
+	private int partition(int[] positions, int from, int to) {
+		int last = to - 1;
+		int middle = (from + last) >>> 1;
+		if (compare(positions[middle], positions[from]) < 0) {
+			swap(positions, middle, from);
+		}
+		if (compare(positions[last], positions[from]) < 0) {
+			swap(positions, last, from);
+		}
+		if (compare(positions[last], positions[middle]) < 0) {
+			swap(positions, last, middle);
+		}
+		swap(positions, middle, last);
+		int pivot = positions[last];
+
+		int store = from;
+		for (int i = from; i < last; i++) {
+			if (compare(positions[i], pivot) < 0) {
+				swap(positions, i, store++);
+			}
+		}
+		swap(positions, store, last);
+		return store;
+	}
+
+	private void insertionSort(int[] positions, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			int position = positions[i];
+			int j = i - 1;
+			while (j >= from && compare(positions[j], position) > 0) {
+				positions[j + 1] = positions[j];
+				j--;
+			}
+			positions[j + 1] = position;
+		}
+	}
+
+	private int compare(int position1, int position2) {
+		int comparison = Double.compare(keys[position1], keys[position2]);
+		if (comparison == 0) {
+			comparison = position1 < position2 ? -1 : (position1 == position2 ? 0 : 1);
+		}
+		return descending ? -comparison : comparison;
+	}
+
+	private static void swap(int[] positions, int i, int j) {
+		int position = positions[i];
+		positions[i] = positions[j];
+		positions[j] = position;
+	}
+}
@@ -0,0 +1,196 @@
+package org.fogbowcloud.sebal;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.sebal.model.image.GeoLoc;
+import org.fogbowcloud.sebal.model.image.Image;
+import org.fogbowcloud.sebal.model.image.ImagePixel;
+
+/**
+ * Chooses the pixels quente and frio of one image for every configuration of
+ * a grid of {@link ClusteredPixelQuenteFrioChooser} properties. Each property
+ * sweep_&lt;name&gt; holds comma separated values for the property &lt;name&gt;,
+ * and the grid is every combination of them, on top of the other properties.
+ * For instance sweep_cluster_width=5,7 and sweep_cluster_max_cv_for_ndvi=0.1,0.2
+ * give four configurations.
+ *
+ * The water bodies of the image are labelled once, and the cluster
+ * statistics once per cluster size, so a configuration costs little more
+ * than its choice of pixels.
+ */
+public class PixelQuenteFrioSweep {
+
+	public static final String SWEEP_PREFIX = "sweep_";
+
+	private static final Logger LOGGER = Logger.getLogger(PixelQuenteFrioSweep.class);
+
+	private final Properties properties;
+	private final List<String> sweptProperties = new ArrayList<String>();
+	private final List<String[]> sweptValues = new ArrayList<String[]>();
+
+	public PixelQuenteFrioSweep(Properties properties) {
+		this.properties = properties;
+		for (String name : properties.stringPropertyNames()) {
+			if (!name.startsWith(SWEEP_PREFIX)) {
+				continue;
+			}
+			String[] values = properties.getProperty(name).split(",");
+			for (int index = 0; index < values.length; index++) {
+				values[index] = values[index].trim();
+			}
+			sweptProperties.add(name.substring(SWEEP_PREFIX.length()));
+			sweptValues.add(values);
+		}
+	}
+
+	public List<String> sweptProperties() {
+		return sweptProperties;
+	}
+
+	/**
+	 * Properties of every configuration of the grid, the last swept property
+	 * changing fastest.
+	 */
+	public List<Properties> configurations() {
+		List<Properties> configurations = new ArrayList<Properties>();
+		int[] positions = new int[sweptProperties.size()];
+		while (true) {
+			Properties configuration = new Properties();
+			configuration.putAll(properties);
+			for (int property = 0; property < positions.length; property++) {
+				configuration.setProperty(sweptProperties.get(property),
+						sweptValues.get(property)[positions[property]]);
+			}
+			configurations.add(configuration);
+
+			int property = positions.length - 1;
+			while (property >= 0 && ++positions[property] == sweptValues.get(property).length) {
+				positions[property--] = 0;
+			}
+			if (property < 0) {
+				return configurations;
+			}
+		}
+	}
+
+	public List<Result> run(Image image) {
+		long now = System.currentTimeMillis();
+		WaterBodies waterBodies = WaterBodies.label(image);
+		Map<String, ClusterStatistics> clusterStatistics = new HashMap<String, ClusterStatistics>();
+
+		List<Result> results = new ArrayList<Result>();
+		for (Properties configuration : configurations()) {
+			ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser(
+					configuration);
+			if (chooser.isSlidingWindowClustering()) {
+				chooser.selectPixelsQuenteFrioCandidates(image);
+			} else {
+				String clusterSize = chooser.clusterWidth() + "x" + chooser.clusterHeight();
+				ClusterStatistics statistics = clusterStatistics.get(clusterSize);
+				if (statistics == null) {
+					statistics = chooser.clusterStatistics(image);
+					clusterStatistics.put(clusterSize, statistics);
+				}
+				chooser.selectPixelsQuenteFrioCandidates(image, waterBodies, statistics);
+			}
+			chooser.choosePixelsQuenteFrio();
+			results.add(new Result(configuration, chooser));
+		}
+		LOGGER.debug("Sweep of " + results.size() + " configurations execution time="
+				+ (System.currentTimeMillis() - now));
+		return results;
+	}
+
+	/**
+	 * Writes the results as CSV, one line per configuration with the values
+	 * of the swept properties, the number of candidates and the pixels chosen.
+	 */
+	public void write(List<Result> results, Writer writer) throws IOException {
+		StringBuilder header = new StringBuilder();
+		for (String property : sweptProperties) {
+			header.append(property).append(',');
+		}
+		header.append("pixel_frio_candidates,pixel_quente_candidates,");
+		header.append("pixel_frio_i,pixel_frio_j,pixel_frio_lat,pixel_frio_lon,pixel_frio_ts,"
+				+ "pixel_frio_ndvi,pixel_frio_alpha,");
+		header.append("pixel_quente_i,pixel_quente_j,pixel_quente_lat,pixel_quente_lon,"
+				+ "pixel_quente_ts,pixel_quente_ndvi,pixel_quente_alpha\n");
+		writer.write(header.toString());
+
+		for (Result result : results) {
+			StringBuilder line = new StringBuilder();
+			for (String property : sweptProperties) {
+				line.append(result.configuration().getProperty(property)).append(',');
+			}
+			line.append(result.numberOfPixelFrioCandidates()).append(',');
+			line.append(result.numberOfPixelQuenteCandidates()).append(',');
+			appendPixel(line, result.pixelFrio());
+			line.append(',');
+			appendPixel(line, result.pixelQuente());
+			line.append('\n');
+			writer.write(line.toString());
+		}
+		writer.flush();
+	}
+
+	private static void appendPixel(StringBuilder line, ImagePixel pixel) {
+		if (pixel == null) {
+			line.append(",,,,,,");
+			return;
+		}
+		GeoLoc geoLoc = pixel.geoLoc();
+		if (geoLoc == null) {
+			line.append(",,,,");
+		} else {
+			line.append(geoLoc.getI()).append(',').append(geoLoc.getJ()).append(',');
+			line.append(geoLoc.getLat()).append(',').append(geoLoc.getLon()).append(',');
+		}
+		line.append(pixel.output().getTs()).append(',');
+		line.append(pixel.output().getNDVI()).append(',');
+		line.append(pixel.output().getAlpha());
+	}
+
+	public static class Result {
+
+		private final Properties configuration;
+		private final ImagePixel pixelQuente;
+		private final ImagePixel pixelFrio;
+		private final int numberOfPixelQuenteCandidates;
+		private final int numberOfPixelFrioCandidates;
+
+		Result(Properties configuration, PixelQuenteFrioChooser chooser) {
+			this.configuration = configuration;
+			this.pixelQuente = chooser.getPixelQuente();
+			this.pixelFrio = chooser.getPixelFrio();
+			this.numberOfPixelQuenteCandidates = chooser.getPixelQuenteCandidates().size();
+			this.numberOfPixelFrioCandidates = chooser.getPixelFrioCandidates().size();
+		}
+
+		public Properties configuration() {
+			return configuration;
+		}
+
+		public ImagePixel pixelQuente() {
+			return pixelQuente;
+		}
+
+		public ImagePixel pixelFrio() {
+			return pixelFrio;
+		}
+
+		public int numberOfPixelQuenteCandidates() {
+			return numberOfPixelQuenteCandidates;
+		}
+
+		public int numberOfPixelFrioCandidates() {
+			return numberOfPixelFrioCandidates;
+		}
+	}
+}
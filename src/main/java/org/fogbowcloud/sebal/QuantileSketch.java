@@ -0,0 +1,169 @@
+package org.fogbowcloud.sebal;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * KLL quantile sketch (Karnin, Lang and Liberty, 2016) of a stream of
+ * doubles. Values are kept in levels of compactors, a value of level h
+ * standing for 2^h values of the stream; when the sketch is full, the lowest
+ * full level is sorted and every other value of it is promoted to the next
+ * level. Memory is O(k) and the rank error of a quantile is about
+ * {@link #rankError()}, independently of the number of values. NaN values are
+ * not added.
+ *
+ * Compactions pick odd or even values with a random generator seeded from k,
+ * so the same stream always gives the same sketch.
+ */
+public class QuantileSketch {
+
+	private static final double CAPACITY_DECAY = 2d / 3;
+	private static final int MIN_CAPACITY = 2;
+
+	private final int k;
+	private final Random random;
+	private double[][] levels = new double[1][];
+	private int[] sizes = new int[1];
+	private long count;
+	private int size;
+	private int maxSize;
+
+	public QuantileSketch(int k) {
+		if (k < MIN_CAPACITY) {
+			throw new IllegalArgumentException("k of a quantile sketch must be at least "
+					+ MIN_CAPACITY + ", not " + k + ".");
+		}
+		this.k = k;
+		this.random = new Random(k);
+		this.levels[0] = new double[k];
+		this.maxSize = k;
+	}
+
+	/**
+	 * A sketch whose rank error is about the given fraction of the number of
+	 * values, 0.01 for 1%.
+	 */
+	public static QuantileSketch withRankError(double rankError) {
+		if (!(rankError > 0 && rankError < 1)) {
+			throw new IllegalArgumentException("Rank error must be in (0, 1), not " + rankError
+					+ ".");
+		}
+		return new QuantileSketch((int) Math.ceil(2 / rankError));
+	}
+
+	public void add(double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		if (sizes[0] == levels[0].length) {
+			levels[0] = Arrays.copyOf(levels[0], levels[0].length * 2);
+		}
+		levels[0][sizes[0]++] = value;
+		size++;
+		count++;
+		if (size >= maxSize) {
+			compress();
+		}
+	}
+
+	/**
+	 * Number of values added.
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Approximate fraction of the values that are off in the rank of a
+	 * quantile.
+	 */
+	public double rankError() {
+		return 2d / k;
+	}
+
+	/**
+	 * The smallest value whose rank is at least fraction * count, so about a
+	 * fraction of the values are smaller than it. NaN if no value was added.
+	 */
+	public double quantile(double fraction) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		double rank = Math.max(0, Math.min(1, fraction)) * count;
+		// merges the sorted levels, lowest value first
+		double[][] sortedLevels = new double[levels.length][];
+		for (int level = 0; level < levels.length; level++) {
+			sortedLevels[level] = Arrays.copyOf(levels[level], sizes[level]);
+			Arrays.sort(sortedLevels[level]);
+		}
+		int[] positions = new int[levels.length];
+		long cumulativeWeight = 0;
+		double value = Double.NaN;
+		for (int taken = 0; taken < size; taken++) {
+			int lowest = -1;
+			for (int level = 0; level < sortedLevels.length; level++) {
+				if (positions[level] == sortedLevels[level].length) {
+					continue;
+				}
+				double head = sortedLevels[level][positions[level]];
+				if (lowest < 0 || head < sortedLevels[lowest][positions[lowest]]) {
+					lowest = level;
+				}
+			}
+			value = sortedLevels[lowest][positions[lowest]++];
+			cumulativeWeight += 1L << lowest;
+			if (cumulativeWeight >= rank) {
+				return value;
+			}
+		}
+		return value;
+	}
+
+	private int capacity(int level) {
+		int depth = levels.length - level - 1;
+		return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+	}
+
+	private void compress() {
+		for (int level = 0; level < levels.length; level++) {
+			if (sizes[level] < capacity(level)) {
+				continue;
+			}
+			if (level + 1 == levels.length) {
+				addLevel();
+			}
+			double[] values = levels[level];
+			int length = sizes[level];
+			Arrays.sort(values, 0, length);
+			// an odd value out stays in the level
+			int compacted = length - (length % 2);
+			int offset = random.nextBoolean() ? 1 : 0;
+			for (int index = offset; index < compacted; index += 2) {
+				append(level + 1, values[index]);
+			}
+			if (compacted < length) {
+				values[0] = values[length - 1];
+			}
+			sizes[level] = length - compacted;
+			size -= compacted / 2;
+			break;
+		}
+		maxSize = 0;
+		for (int level = 0; level < levels.length; level++) {
+			maxSize += capacity(level);
+		}
+	}
+
+	private void addLevel() {
+		levels = Arrays.copyOf(levels, levels.length + 1);
+		sizes = Arrays.copyOf(sizes, sizes.length + 1);
+		levels[levels.length - 1] = new double[MIN_CAPACITY];
+	}
+
+	private void append(int level, double value) {
+		if (sizes[level] == levels[level].length) {
+			levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+		}
+		levels[level][sizes[level]++] = value;
+	}
+}
@@ -0,0 +1,95 @@
+package org.fogbowcloud.sebal;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits the rows [rowBegin, rowEnd) of a window in stripes and processes
+ * them on a {@link ForkJoinPool}. Each stripe must write only the pixels of
+ * its own rows, so the result does not depend on the order the stripes run.
+ */
+public class RowStripeTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	public interface RowProcessor {
+		void process(int rowBegin, int rowEnd) throws Exception;
+	}
+
+	private final RowProcessor processor;
+	private final int rowBegin;
+	private final int rowEnd;
+	private final int stripeHeight;
+
+	RowStripeTask(RowProcessor processor, int rowBegin, int rowEnd, int stripeHeight) {
+		this.processor = processor;
+		this.rowBegin = rowBegin;
+		this.rowEnd = rowEnd;
+		this.stripeHeight = stripeHeight;
+	}
+
+	@Override
+	protected void compute() {
+		if (rowEnd - rowBegin <= stripeHeight) {
+			try {
+				processor.process(rowBegin, rowEnd);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new StripeException(e);
+			}
+			return;
+		}
+		int middle = (rowBegin + rowEnd) >>> 1;
+		invokeAll(new RowStripeTask(processor, rowBegin, middle, stripeHeight),
+				new RowStripeTask(processor, middle, rowEnd, stripeHeight));
+	}
+
+	/**
+	 * Processes the rows with the given number of threads. With parallelism 1
+	 * the rows are processed by the calling thread. An exception thrown by a
+	 * stripe is rethrown by this method.
+	 */
+	public static void run(int rowBegin, int rowEnd, int parallelism, RowProcessor processor)
+			throws Exception {
+		if (parallelism <= 1 || rowEnd - rowBegin <= 1) {
+			processor.process(rowBegin, rowEnd);
+			return;
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			run(pool, rowBegin, rowEnd, processor);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Processes the rows on a pool the caller owns, so many small windows can
+	 * share one pool. With a null pool the rows are processed by the calling
+	 * thread. An exception thrown by a stripe is rethrown by this method.
+	 */
+	public static void run(ForkJoinPool pool, int rowBegin, int rowEnd, RowProcessor processor)
+			throws Exception {
+		if (pool == null || pool.getParallelism() <= 1 || rowEnd - rowBegin <= 1) {
+			processor.process(rowBegin, rowEnd);
+			return;
+		}
+		// a few stripes per thread, so a slow stripe does not hold the others
+		int stripeHeight = Math.max(1, (rowEnd - rowBegin) / (pool.getParallelism() * 4));
+		try {
+			pool.invoke(new RowStripeTask(processor, rowBegin, rowEnd, stripeHeight));
+		} catch (StripeException e) {
+			throw (Exception) e.getCause();
+		}
+	}
+
+	private static class StripeException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		StripeException(Exception cause) {
+			super(cause);
+		}
+	}
+}
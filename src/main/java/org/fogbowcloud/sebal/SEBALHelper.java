@@ -31,22 +31,25 @@ import org.apache.log4j.Logger;
 import org.esa.beam.dataio.landsat.geotiff.LandsatGeotiffReader;
 import org.esa.beam.dataio.landsat.geotiff.LandsatGeotiffReaderPlugin;
 import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.GeoCoding;
 import org.esa.beam.framework.datamodel.GeoPos;
 import org.esa.beam.framework.datamodel.MetadataElement;
 import org.esa.beam.framework.datamodel.PixelPos;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData.UTC;
 import org.fogbowcloud.sebal.model.image.BoundingBox;
+import org.fogbowcloud.sebal.model.image.ColumnAllocator;
+import org.fogbowcloud.sebal.model.image.ColumnarImage;
 import org.fogbowcloud.sebal.model.image.DefaultImage;
 import org.fogbowcloud.sebal.model.image.DefaultImagePixel;
+import org.fogbowcloud.sebal.model.image.FmaskBitmap;
 import org.fogbowcloud.sebal.model.image.GeoLoc;
 import org.fogbowcloud.sebal.model.image.Image;
 import org.fogbowcloud.sebal.model.image.ImagePixel;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+import org.fogbowcloud.sebal.model.image.PolygonMask;
 import org.fogbowcloud.sebal.parsers.Elevation;
 import org.fogbowcloud.sebal.parsers.WeatherStation;
-import org.gdal.gdal.Dataset;
-import org.gdal.gdal.gdal;
-import org.gdal.gdalconst.gdalconstConstants;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.ReferencingFactoryFinder;
 import org.geotools.referencing.factory.ReferencingFactoryContainer;
@@ -64,6 +67,9 @@ public class SEBALHelper {
 	private static Map<Integer, Integer> zoneToCentralMeridian = new HashMap<Integer, Integer>();
 	
 	private static final Logger LOGGER = Logger.getLogger(SEBALHelper.class);
+
+	public static final String CLUSTERED_CHOOSER = "clustered";
+	public static final String HISTOGRAM_CHOOSER = "histogram";
 	
     public static Product readProduct(String mtlFileName,
             List<BoundingBoxVertice> boundingBoxVertices) throws Exception {
@@ -263,6 +269,23 @@ public class SEBALHelper {
 		return new LatLonCoordinate(latitude, longitude);
     }
 
+	/**
+	 * The chooser of pixels quente and frio named by the
+	 * pixel_quente_frio_chooser property, clustered by default.
+	 */
+	public static PixelQuenteFrioChooser createPixelQuenteFrioChooser(Properties properties) {
+		String chooser = properties == null ? null : properties
+				.getProperty("pixel_quente_frio_chooser");
+		if (chooser == null || chooser.equals(CLUSTERED_CHOOSER)) {
+			return new ClusteredPixelQuenteFrioChooser(properties);
+		}
+		if (chooser.equals(HISTOGRAM_CHOOSER)) {
+			return new HistogramPixelQuenteFrioChooser(properties);
+		}
+		throw new IllegalArgumentException("Invalid pixel_quente_frio_chooser " + chooser
+				+ ", expected " + CLUSTERED_CHOOSER + " or " + HISTOGRAM_CHOOSER + ".");
+	}
+
     public static Image readPixels(List<ImagePixel> pixels,
             ImagePixel pixelQuente, ImagePixel pixelFrio,
             PixelQuenteFrioChooser pixelQuenteFrioChooser) {
@@ -289,179 +312,220 @@ public class SEBALHelper {
 	public static Image readPixels(Product product, int iBegin, int iFinal, int jBegin, int jFinal,
 			PixelQuenteFrioChooser pixelQuenteFrioChooser, BoundingBox boundingBox,
 			String fmaskFilePath) throws Exception {
+		return readPixels(product, iBegin, iFinal, jBegin, jFinal, pixelQuenteFrioChooser,
+				boundingBox, fmaskFilePath, new GeolocationGridCache());
+	}
 
-        Locale.setDefault(Locale.ROOT);
-        DefaultImage image = new DefaultImage(pixelQuenteFrioChooser);             
-        
-        Elevation elevation = new Elevation();
-        WeatherStation station = new WeatherStation();
+	public static Image readPixels(Product product, int iBegin, int iFinal, int jBegin, int jFinal,
+			PixelQuenteFrioChooser pixelQuenteFrioChooser, BoundingBox boundingBox,
+			String fmaskFilePath, GeolocationGridCache geolocationGridCache) throws Exception {
+		return readPixels(product, iBegin, iFinal, jBegin, jFinal, pixelQuenteFrioChooser,
+				boundingBox, fmaskFilePath, geolocationGridCache, 1);
+	}
 
-        UTC startTime = product.getStartTime();
-        int day = startTime.getAsCalendar().get(Calendar.DAY_OF_YEAR);
-        image.setDay(day);
+	public static Image readPixels(Product product, int iBegin, int iFinal, int jBegin, int jFinal,
+			PixelQuenteFrioChooser pixelQuenteFrioChooser, BoundingBox boundingBox,
+			String fmaskFilePath, Properties properties) throws Exception {
+		return readPixels(product, iBegin, iFinal, jBegin, jFinal, pixelQuenteFrioChooser,
+				boundingBox, fmaskFilePath, new GeolocationGridCache(properties),
+				getPreprocessParallelism(properties), ColumnAllocator.fromProperties(properties));
+	}
 
-        Band bandAt = product.getBandAt(0);
-        bandAt.ensureRasterData();
+	public static Image readPixels(Product product, int iBegin, int iFinal, int jBegin, int jFinal,
+			PixelQuenteFrioChooser pixelQuenteFrioChooser, BoundingBox boundingBox,
+			String fmaskFilePath, GeolocationGridCache geolocationGridCache, int parallelism)
+			throws Exception {
+		return readPixels(product, iBegin, iFinal, jBegin, jFinal, pixelQuenteFrioChooser,
+				boundingBox, fmaskFilePath, geolocationGridCache, parallelism,
+				ColumnAllocator.heap());
+	}
+
+	/**
+	 * Reads the pixels of the window. The pixels are split in row stripes
+	 * processed by parallelism threads; every pixel is written to its own
+	 * position of the store, so the resulting image does not depend on the
+	 * number of threads. The columns of the store are allocated by
+	 * columnAllocator; see {@link ImagePixelStore#release()} for off-heap
+	 * columns.
+	 */
+	public static Image readPixels(Product product, int iBegin, int iFinal, int jBegin, int jFinal,
+			PixelQuenteFrioChooser pixelQuenteFrioChooser, BoundingBox boundingBox,
+			String fmaskFilePath, GeolocationGridCache geolocationGridCache, int parallelism,
+			ColumnAllocator columnAllocator) throws Exception {
+
+        Locale.setDefault(Locale.ROOT);
+        
+        final Elevation elevation = new Elevation();
+        final WeatherStation station = new WeatherStation();
 
         MetadataElement metadataRoot = product.getMetadataRoot();
         Double sunElevation = metadataRoot.getElement("L1_METADATA_FILE")
                 .getElement("IMAGE_ATTRIBUTES").getAttribute("SUN_ELEVATION")
                 .getData().getElemDouble();
 
-        if (boundingBox == null) {
-			boundingBox = new BoundingBox(0, 0, bandAt.getRasterWidth(), bandAt.getRasterHeight());
-        }
+		BoundingBox window = window(product, iBegin, iFinal, jBegin, jFinal, boundingBox);
+		int widthMin = window.getX();
+		int widthMax = window.getX() + window.getW();
+		int heightMin = window.getY();
+		int heightMax = window.getY() + window.getH();
+		
+		final ImagePixelStore store = new ImagePixelStore(window.getW(), window.getH(),
+				product.getNumBands(), columnAllocator);
+		// a failed read releases the columns, off-heap ones are not left to the collector
+		try {
+			store.offset(widthMin, heightMin);
+			store.cosTheta(Math.sin(Math.toRadians(sunElevation)));
+		
+	        ColumnarImage image = new ColumnarImage(pixelQuenteFrioChooser, store);
         
-        int offSetX = boundingBox.getX();
-        int offSetY = boundingBox.getY();
-//        image.width(Math.min(iFinal, boundingBox.getW()) - iBegin);
-//        image.height(Math.min(jFinal, boundingBox.getH()) - jBegin);
+	        UTC startTime = product.getStartTime();
+	        int day = startTime.getAsCalendar().get(Calendar.DAY_OF_YEAR);
+	        image.setDay(day);
+        
+	        LOGGER.debug("Image width is " + image.width());
+	        LOGGER.debug("Image height is " + image.height());
         
+	        FmaskBitmap fmask = null;
+			if (fmaskFilePath != null && !fmaskFilePath.isEmpty()
+					&& new File(fmaskFilePath).exists() && image.width() > 0
+					&& image.height() > 0) {
+				LOGGER.debug("Fmask file is " + fmaskFilePath);
+
+				fmask = FmaskReader.read(fmaskFilePath, widthMin, widthMax, heightMin, heightMax);
+				LOGGER.debug("Fmask valid pixels=" + fmask.count(FmaskBitmap.Plane.VALID));
+			}
+			final FmaskBitmap fmaskData = fmask;
+
+			new BandStripReader(product, widthMin, widthMax).read(store, heightMin, heightMax);
+			geolocationGridCache.get(product).fill(store);
+
+			LOGGER.debug("Processing pixels with parallelism " + parallelism);
+			RowStripeTask.run(0, store.height(), parallelism, new RowStripeTask.RowProcessor() {
+				@Override
+				public void process(int rowBegin, int rowEnd) throws Exception {
+					int fromIndex = store.index(0, rowBegin);
+					float[] elevations = elevations(elevation, store, rowBegin, rowEnd);
+					for (int index = fromIndex; index < store.index(0, rowEnd); index++) {
+						double latitude = store.lat(index);
+						double longitude = store.lon(index);
+
+						float z = elevations[index - fromIndex];
+						store.z(index, Float.isNaN(z) ? 400 : z);
+
+						store.zx(index, station.zx(latitude, longitude));
+						store.d(index, station.d(latitude, longitude));
+						store.hc(index, station.hc(latitude, longitude));
+
+						// fmask is read row by row, the same layout of the store
+						if (fmaskData != null && !fmaskData.isValid(index)) {
+							store.isValid(index, false);
+						}
+					}
+					LOGGER.debug("Rows " + (store.yOffset() + rowBegin) + " to "
+							+ (store.yOffset() + rowEnd) + " processed.");
+				}
+			});
+        
+	        if (fmask != null) {
+	        	LOGGER.debug("FMask size=" + fmask.size());
+	        }
+	        LOGGER.debug("Pixels size=" + store.size());             
+        
+	        return image;
+		} catch (Exception e) {
+			store.release();
+			throw e;
+		}
+    }
+
+	/**
+	 * Same window as {@link #readPixels(Product, int, int, int, int,
+	 * PixelQuenteFrioChooser, BoundingBox, String, Properties)}, but nothing
+	 * is read until the image is visited with
+	 * {@link Image#forEachTile(int, int, int, org.fogbowcloud.sebal.model.image.TileVisitor)};
+	 * each tile, with its halo, is then read on its own.
+	 */
+	public static Image readPixelTiles(Product product, int iBegin, int iFinal, int jBegin,
+			int jFinal, PixelQuenteFrioChooser pixelQuenteFrioChooser, BoundingBox boundingBox,
+			String fmaskFilePath, Properties properties) throws Exception {
+		return new TiledProductImage(product,
+				window(product, iBegin, iFinal, jBegin, jFinal, boundingBox),
+				pixelQuenteFrioChooser, fmaskFilePath, new GeolocationGridCache(properties),
+				getPreprocessParallelism(properties), ColumnAllocator.fromProperties(properties));
+	}
+
+	/*
+	 * Part of the raster inside both the [iBegin, iFinal) x [jBegin, jFinal)
+	 * interval and the bounding box.
+	 */
+	private static BoundingBox window(Product product, int iBegin, int iFinal, int jBegin,
+			int jFinal, BoundingBox boundingBox) {
+		Band bandAt = product.getBandAt(0);
+		if (boundingBox == null) {
+			boundingBox = new BoundingBox(0, 0, bandAt.getRasterWidth(), bandAt.getRasterHeight());
+		}
+
+		int offSetX = boundingBox.getX();
+		int offSetY = boundingBox.getY();
+
 		int widthMax = Math.min(bandAt.getRasterWidth(),
 				Math.min(iFinal, offSetX + boundingBox.getW()));
 		int widthMin = Math.max(iBegin, offSetX);
-		
-		image.width(Math.max(widthMax - widthMin, 0));
-		
+
 		int heightMax = Math.min(bandAt.getRasterHeight(),
 				Math.min(jFinal, offSetY + boundingBox.getH()));
 		int heightMin = Math.max(jBegin, offSetY);
-		
-		image.height(Math.max(heightMax - heightMin, 0));
-        
-        LOGGER.debug("Image width is " + image.width());
-        LOGGER.debug("Image height is " + image.height());
-        
-        double ULx = metadataRoot.getElement("L1_METADATA_FILE")
-        		.getElement("PRODUCT_METADATA")
-        		.getAttribute("CORNER_UL_PROJECTION_X_PRODUCT").getData()
-        		.getElemDouble();
-        double ULy = metadataRoot.getElement("L1_METADATA_FILE")
-        		.getElement("PRODUCT_METADATA")
-        		.getAttribute("CORNER_UL_PROJECTION_Y_PRODUCT").getData()
-        		.getElemDouble();
 
-        int zoneNumber = metadataRoot.getElement("L1_METADATA_FILE")
-        		.getElement("PROJECTION_PARAMETERS").getAttribute("UTM_ZONE").getData()
-        		.getElemInt();
-		
-        int centralMeridian = findCentralMeridian(zoneNumber);
-        
-        double[] fmask = null;
-		if (fmaskFilePath != null && !fmaskFilePath.isEmpty()
-				&& new File(fmaskFilePath).exists() && image.width() > 0
-				&& image.height() > 0) {
-			LOGGER.debug("Fmask file is " + fmaskFilePath);
-			// fmask = readFmask(fmaskFilePath, Math.max(iBegin, offSetX),
-			// Math.min(iFinal, offSetX + boundingBox.getW()), Math.max(jBegin,
-			// offSetY),
-			// Math.min(jFinal, offSetY + boundingBox.getH()));
-
-			fmask = readFmask(fmaskFilePath, widthMin, widthMax, heightMin,
-					heightMax);
-			LOGGER.debug("fmask size=" + fmask.length);
-		}
-		
-		int maskWidth = Math.min(iFinal, offSetX + boundingBox.getW()) - Math.max(iBegin, offSetX);
+		return new BoundingBox(widthMin, heightMin, Math.max(widthMax - widthMin, 0),
+				Math.max(heightMax - heightMin, 0));
+	}
 
-		long processedPixels = 0;
-		long count = 0;
-		
-		int fmaskI = 0;
-//        for (int i = Math.max(iBegin, offSetX); i < Math.min(iFinal, offSetX + boundingBox.getW()); i++) {
-//        	int fmaskJ = 0;
-//            for (int j = Math.max(jBegin, offSetY); j < Math.min(jFinal, offSetY + boundingBox.getH()); j++) {
-		for (int i = widthMin; i < widthMax; i++) {
-        	int fmaskJ = 0;
-            for (int j = heightMin; j < heightMax; j++) {
-//            	LOGGER.debug(i + " " + j);
-            	
-            	DefaultImagePixel imagePixel = new DefaultImagePixel();
-
-                double[] LArray = new double[product.getNumBands()];
-                for (int k = 0; k < product.getNumBands(); k++) {
-                    double L = product.getBandAt(k).getSampleFloat(i, j);
-                    LArray[k] = L;
-                }
-                imagePixel.L(LArray);
-                  
-                imagePixel.cosTheta(Math.sin(Math.toRadians(sunElevation)));
-                
-//                double easting = i * 30 + ULx;
-//                double northing = (-1 * j * 30 + ULy);
-//
-//				LatLonCoordinate latLonCoordinate = convertUtmToLatLon(easting, northing,
-//						zoneNumber, centralMeridian);
-//                double latitude = Double.valueOf(String.format("%.10g%n",
-//                      latLonCoordinate.getLat()));
-//                double longitude = Double.valueOf(String.format("%.10g%n",
-//                      latLonCoordinate.getLon()));
-//                
-                PixelPos pixelPos = new PixelPos(i, j);
-
-                imagePixel.cosTheta(Math.sin(Math.toRadians(sunElevation)));
-                GeoPos geoPos = bandAt.getGeoCoding().getGeoPos(pixelPos, null);
-                double latitude = Double.valueOf(String.format("%.10g%n",
-                        geoPos.getLat()));
-                double longitude = Double.valueOf(String.format("%.10g%n",
-                        geoPos.getLon()));
-//                LOGGER.debug("lat diff=" + Math.abs(latitude - latitudeConv));
-//                LOGGER.debug("lon diff=" + Math.abs(longitude - longitudeConv));
-
-                Double z = elevation.z(latitude, longitude);                              
-                imagePixel.z(z == null ? 400 : z);                                                    
-                
-                GeoLoc geoLoc = new GeoLoc();
-                geoLoc.setI(i);
-                geoLoc.setJ(j);
-                geoLoc.setLat(latitude);
-                geoLoc.setLon(longitude);
-                imagePixel.geoLoc(geoLoc);               
-
-				double zx = station.zx(latitude, longitude);
-				imagePixel.zx(zx);
-
-				double d = station.d(latitude, longitude);
-				imagePixel.d(d);
-
-				double hc = station.hc(latitude, longitude);
-				imagePixel.hc(hc);
-                
-				if (fmask != null && fmask[fmaskJ * maskWidth + fmaskI] > 1) {
-					imagePixel.isValid(false);
-				}
-				
-                imagePixel.image(image);
-                image.addPixel(imagePixel);
-                
-                processedPixels++;
-                if (processedPixels == 10000) {
-                	count++;
-					LOGGER.debug("10000 more pixel processed. count=" + count);
-                	processedPixels = 0;
-                }
-                
-                fmaskJ++;
-            }
-            fmaskI++;
-        }
-        
-        if (fmask != null) {
-        	LOGGER.debug("FMask size=" + fmask.length);
-        }
-        LOGGER.debug("Pixels size=" + image.pixels().size());             
-        
-        return image;
-    }
+	/*
+	 * Elevation of the pixels in the rows [rowBegin, rowEnd) of the store,
+	 * NaN where there is no elevation data.
+	 */
+	private static float[] elevations(Elevation elevation, ImagePixelStore store, int rowBegin,
+			int rowEnd) throws Exception {
+		int fromIndex = store.index(0, rowBegin);
+		int length = store.index(0, rowEnd) - fromIndex;
+		double[] latitudes = new double[length];
+		double[] longitudes = new double[length];
+		store.lat(fromIndex, latitudes, 0, length);
+		store.lon(fromIndex, longitudes, 0, length);
+
+		float[] elevations = new float[length];
+		elevation.zGrid(latitudes, longitudes, 0, length, elevations);
+		return elevations;
+	}
+
+	private static int getPreprocessParallelism(Properties properties) {
+		String parallelism = properties.getProperty("preprocess_parallelism");
+		if (parallelism == null || parallelism.isEmpty()) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return Integer.parseInt(parallelism);
+	}
 	
 	public static Image invalidatePixelsOutsideBoundingBox(Image image,
 			List<BoundingBoxVertice> boundingBoxVertices) throws Exception {
+		Path2D boundingPolygon = boundingPolygon(boundingBoxVertices);
+
+		if (image instanceof ColumnarImage) {
+			ImagePixelStore store = ((ColumnarImage) image).store();
+			for (int index = 0; index < store.size(); index++) {
+				if (!pixelIsInsideBoundingBox(store.lat(index), store.lon(index),
+						boundingPolygon) || !store.isValid(index)) {
+					store.z(index, Double.NaN);
+				}
+			}
+			LOGGER.debug("Pixels size=" + store.size());
+			return image;
+		}
 
 		for (DefaultImagePixel imagePixel : (List<DefaultImagePixel>) (List<?>) image
 				.pixels()) {
-			if (!pixelIsInsideBoundingBox(imagePixel, boundingBoxVertices)
-					|| !imagePixel.isValid()) {
-				System.out.println("Entrou");
+			if (!pixelIsInsideBoundingBox(imagePixel.geoLoc().getLat(), imagePixel.geoLoc()
+					.getLon(), boundingPolygon) || !imagePixel.isValid()) {
 				imagePixel.z(Double.NaN);
 			}
 		}
@@ -469,46 +533,83 @@ public class SEBALHelper {
 		LOGGER.debug("Pixels size=" + image.pixels().size());
 		return image;
 	}
-	
-	private static boolean pixelIsInsideBoundingBox(ImagePixel imagePixel,
-			List<BoundingBoxVertice> boundingBoxVertices) {
-    	if (boundingBoxVertices.size() < 3) {
-    		return true;
-    	}
-    	
-    	double[] xpoints = new double[boundingBoxVertices.size()];
-    	double[] ypoints = new double[boundingBoxVertices.size()];
 
-    	for (int i = 0; i < boundingBoxVertices.size(); i++) {
-			xpoints[i] = boundingBoxVertices.get(i).getLon();
-			ypoints[i]= boundingBoxVertices.get(i).getLat();	
+	/**
+	 * Same as {@link #invalidatePixelsOutsideBoundingBox(Image, List)}, but
+	 * the vertices are taken to raster coordinates of the product once and
+	 * the polygon is rasterized over the window of the image, so testing a
+	 * pixel costs a bit lookup and rows outside the polygon are skipped.
+	 */
+	public static Image invalidatePixelsOutsideBoundingBox(Image image,
+			List<BoundingBoxVertice> boundingBoxVertices, Product product) throws Exception {
+		if (!(image instanceof ColumnarImage)) {
+			return invalidatePixelsOutsideBoundingBox(image, boundingBoxVertices);
 		}
-    	
-    	Path2D path = new Path2D.Double();
-    	path.moveTo(xpoints[0], ypoints[0]);
-    	for(int i = 1; i < xpoints.length; ++i) {
-    	   path.lineTo(xpoints[i], ypoints[i]);
-    	}
-    	path.closePath();
-   	
-    	return path.contains(imagePixel.geoLoc().getLon(), imagePixel.geoLoc().getLat());
-	}
 
-	private static double[] readFmask(String fmaskFilePath, int iInitial, int iFinal, int jInitial,
-			int jFinal) {
-
-		int maskWidth = iFinal - iInitial;
-		int maskHeight = jFinal - jInitial;
+		ImagePixelStore store = ((ColumnarImage) image).store();
+		PolygonMask mask = rasterizeBoundingPolygon(boundingBoxVertices, product,
+				store.xOffset(), store.yOffset(), store.width(), store.height());
+		for (int y = 0; y < store.height(); y++) {
+			int index = store.index(0, y);
+			if (mask.isRowEmpty(y)) {
+				for (int x = 0; x < store.width(); x++, index++) {
+					store.z(index, Double.NaN);
+				}
+				continue;
+			}
+			for (int x = 0; x < store.width(); x++, index++) {
+				if (!mask.contains(index) || !store.isValid(index)) {
+					store.z(index, Double.NaN);
+				}
+			}
+		}
+		LOGGER.debug("Pixels inside the bounding polygon in rows " + mask.rowBegin() + " to "
+				+ mask.rowEnd() + " of " + store.height());
+		return image;
+	}
 
-		gdal.AllRegister();
+	/**
+	 * Rasterizes the bounding polygon over the window of the given size whose
+	 * first pixel is (xBegin, yBegin), taking the vertices to raster
+	 * coordinates with the geocoding of the product.
+	 */
+	public static PolygonMask rasterizeBoundingPolygon(List<BoundingBoxVertice> boundingBoxVertices,
+			Product product, int xBegin, int yBegin, int width, int height) {
+		GeoCoding geoCoding = product.getBandAt(0).getGeoCoding();
+		double[] xs = new double[boundingBoxVertices.size()];
+		double[] ys = new double[boundingBoxVertices.size()];
+		PixelPos pixelPos = new PixelPos();
+		for (int k = 0; k < boundingBoxVertices.size(); k++) {
+			BoundingBoxVertice vertice = boundingBoxVertices.get(k);
+			pixelPos = geoCoding.getPixelPos(new GeoPos((float) vertice.getLat(),
+					(float) vertice.getLon()), pixelPos);
+			xs[k] = pixelPos.x;
+			ys[k] = pixelPos.y;
+		}
+		return PolygonMask.rasterize(xs, ys, xBegin, yBegin, width, height);
+	}
 
-		Dataset dst = gdal.Open(fmaskFilePath, gdalconstConstants.GA_ReadOnly);
-		org.gdal.gdal.Band band = dst.GetRasterBand(1);
+	/*
+	 * Polygon of the vertices in (longitude, latitude), or null if there are
+	 * less than three vertices, in which case every pixel is inside.
+	 */
+	private static Path2D boundingPolygon(List<BoundingBoxVertice> boundingBoxVertices) {
+		if (boundingBoxVertices.size() < 3) {
+			return null;
+		}
 
-		double[] fmask = new double[maskWidth * maskHeight];
-		band.ReadRaster(iInitial, jInitial, maskWidth, maskHeight, fmask);
+		Path2D path = new Path2D.Double();
+		path.moveTo(boundingBoxVertices.get(0).getLon(), boundingBoxVertices.get(0).getLat());
+		for (int i = 1; i < boundingBoxVertices.size(); ++i) {
+			path.lineTo(boundingBoxVertices.get(i).getLon(), boundingBoxVertices.get(i).getLat());
+		}
+		path.closePath();
+		return path;
+	}
 
-		return fmask;
+	private static boolean pixelIsInsideBoundingBox(double latitude, double longitude,
+			Path2D boundingPolygon) {
+		return boundingPolygon == null || boundingPolygon.contains(longitude, latitude);
 	}
 	
 	public static DefaultImagePixel readElevation(ImagePixel imagePixel) {
@@ -630,12 +731,11 @@ public class SEBALHelper {
 		int i = (widthMax - widthMin) / 2 + widthMin;
 		int j = (heightMax - heightMin) / 2 + heightMin;
 		
+		// a single pixel, evaluating the geocoding is cheaper than building a grid
 		PixelPos pixelPos = new PixelPos(i, j);
 		GeoPos geoPos = bandAt.getGeoCoding().getGeoPos(pixelPos, null);
-		double latitude = Double.valueOf(String.format("%.10g%n",
-				geoPos.getLat()));
-		double longitude = Double.valueOf(String.format("%.10g%n",
-				geoPos.getLon()));
+		double latitude = geoPos.getLat();
+		double longitude = geoPos.getLon();
 
 		WeatherStation station = new WeatherStation(properties);
 		UTC startTime = product.getStartTime();
@@ -647,11 +747,49 @@ public class SEBALHelper {
 			int iFinal, int jBegin, int jFinal,
 			PixelQuenteFrioChooser pixelQuenteFrioChooser,
 			BoundingBox boundingBox, String fmaskFilePath) throws Exception {
+		return getElevationData(product, iBegin, iFinal, jBegin, jFinal, pixelQuenteFrioChooser,
+				boundingBox, fmaskFilePath, new GeolocationGridCache());
+	}
+
+	public static Image getElevationData(Product product, int iBegin,
+			int iFinal, int jBegin, int jFinal,
+			PixelQuenteFrioChooser pixelQuenteFrioChooser,
+			BoundingBox boundingBox, String fmaskFilePath,
+			GeolocationGridCache geolocationGridCache) throws Exception {
+		return getElevationData(product, iBegin, iFinal, jBegin, jFinal, pixelQuenteFrioChooser,
+				boundingBox, fmaskFilePath, geolocationGridCache, 1);
+	}
+
+	public static Image getElevationData(Product product, int iBegin,
+			int iFinal, int jBegin, int jFinal,
+			PixelQuenteFrioChooser pixelQuenteFrioChooser,
+			BoundingBox boundingBox, String fmaskFilePath, Properties properties)
+			throws Exception {
+		return getElevationData(product, iBegin, iFinal, jBegin, jFinal, pixelQuenteFrioChooser,
+				boundingBox, fmaskFilePath, new GeolocationGridCache(properties),
+				getPreprocessParallelism(properties), ColumnAllocator.fromProperties(properties));
+	}
+
+	public static Image getElevationData(Product product, int iBegin,
+			int iFinal, int jBegin, int jFinal,
+			PixelQuenteFrioChooser pixelQuenteFrioChooser,
+			BoundingBox boundingBox, String fmaskFilePath,
+			GeolocationGridCache geolocationGridCache, int parallelism) throws Exception {
+		return getElevationData(product, iBegin, iFinal, jBegin, jFinal, pixelQuenteFrioChooser,
+				boundingBox, fmaskFilePath, geolocationGridCache, parallelism,
+				ColumnAllocator.heap());
+	}
+
+	public static Image getElevationData(Product product, int iBegin,
+			int iFinal, int jBegin, int jFinal,
+			PixelQuenteFrioChooser pixelQuenteFrioChooser,
+			BoundingBox boundingBox, String fmaskFilePath,
+			GeolocationGridCache geolocationGridCache, int parallelism,
+			ColumnAllocator columnAllocator) throws Exception {
 
         Locale.setDefault(Locale.ROOT);
-        DefaultImage image = new DefaultImage(pixelQuenteFrioChooser);             
         
-        Elevation elevation = new Elevation();
+        final Elevation elevation = new Elevation();
 
         Band bandAt = product.getBandAt(0);
         bandAt.ensureRasterData();
@@ -667,81 +805,55 @@ public class SEBALHelper {
 				Math.min(iFinal, offSetX + boundingBox.getW()));
 		int widthMin = Math.max(iBegin, offSetX);
 		
-		image.width(Math.max(widthMax - widthMin, 0));
-		
 		int heightMax = Math.min(bandAt.getRasterHeight(),
 				Math.min(jFinal, offSetY + boundingBox.getH()));
 		int heightMin = Math.max(jBegin, offSetY);
 		
-		image.height(Math.max(heightMax - heightMin, 0));
+		final ImagePixelStore store = new ImagePixelStore(Math.max(widthMax - widthMin, 0),
+				Math.max(heightMax - heightMin, 0), 0, columnAllocator);
+		store.offset(widthMin, heightMin);
+		
+        ColumnarImage image = new ColumnarImage(pixelQuenteFrioChooser, store);
         
         LOGGER.debug("Image width is " + image.width());
         LOGGER.debug("Image height is " + image.height());
         
-        double[] fmask = null;
+        FmaskBitmap fmask = null;
 		if (fmaskFilePath != null && !fmaskFilePath.isEmpty()
 				&& new File(fmaskFilePath).exists() && image.width() > 0
 				&& image.height() > 0) {
 			LOGGER.debug("Fmask file is " + fmaskFilePath);
 
-			fmask = readFmask(fmaskFilePath, widthMin, widthMax, heightMin,
-					heightMax);
-			LOGGER.debug("fmask size=" + fmask.length);
+			fmask = FmaskReader.read(fmaskFilePath, widthMin, widthMax, heightMin, heightMax);
+			LOGGER.debug("Fmask valid pixels=" + fmask.count(FmaskBitmap.Plane.VALID));
 		}
-		
-		int maskWidth = Math.min(iFinal, offSetX + boundingBox.getW()) - Math.max(iBegin, offSetX);
-
-		long processedPixels = 0;
-		long count = 0;
-		
-		int fmaskI = 0;
-		for (int i = widthMin; i < widthMax; i++) {
-        	int fmaskJ = 0;
-            for (int j = heightMin; j < heightMax; j++) {
-//            	LOGGER.debug(i + " " + j);
-            	
-            	DefaultImagePixel imagePixel = new DefaultImagePixel();
-                
-                PixelPos pixelPos = new PixelPos(i, j);
-                GeoPos geoPos = bandAt.getGeoCoding().getGeoPos(pixelPos, null);
-                double latitude = Double.valueOf(String.format("%.10g%n",
-                        geoPos.getLat()));
-                double longitude = Double.valueOf(String.format("%.10g%n",
-                        geoPos.getLon()));
-
-                Double z = elevation.z(latitude, longitude);                              
-                imagePixel.z(z == null ? 400 : z);                                                    
-                
-                GeoLoc geoLoc = new GeoLoc();
-                geoLoc.setI(i);
-                geoLoc.setJ(j);
-                geoLoc.setLat(latitude);
-                geoLoc.setLon(longitude);
-                imagePixel.geoLoc(geoLoc);
-                
-				if (fmask != null && fmask[fmaskJ * maskWidth + fmaskI] > 1) {
-					imagePixel.isValid(false);
+		final FmaskBitmap fmaskData = fmask;
+
+		geolocationGridCache.get(product).fill(store);
+
+		LOGGER.debug("Processing pixels with parallelism " + parallelism);
+		RowStripeTask.run(0, store.height(), parallelism, new RowStripeTask.RowProcessor() {
+			@Override
+			public void process(int rowBegin, int rowEnd) throws Exception {
+				int fromIndex = store.index(0, rowBegin);
+				float[] elevations = elevations(elevation, store, rowBegin, rowEnd);
+				for (int index = fromIndex; index < store.index(0, rowEnd); index++) {
+					float z = elevations[index - fromIndex];
+					store.z(index, Float.isNaN(z) ? 400 : z);
+
+					if (fmaskData != null && !fmaskData.isValid(index)) {
+						store.isValid(index, false);
+					}
 				}
-				
-                imagePixel.image(image);
-                image.addPixel(imagePixel);
-                
-                processedPixels++;
-                if (processedPixels == 10000) {
-                	count++;
-					LOGGER.debug("10000 more pixel processed. count=" + count);
-                	processedPixels = 0;
-                }
-                
-                fmaskJ++;
-            }
-            fmaskI++;
-        }
+				LOGGER.debug("Rows " + (store.yOffset() + rowBegin) + " to "
+						+ (store.yOffset() + rowEnd) + " processed.");
+			}
+		});
         
         if (fmask != null) {
-        	LOGGER.debug("FMask size=" + fmask.length);
+        	LOGGER.debug("FMask size=" + fmask.size());
         }
-        LOGGER.debug("Pixels size=" + image.pixels().size());             
+        LOGGER.debug("Pixels size=" + store.size());             
         
         return image;
 	}
@@ -0,0 +1,193 @@
+package org.fogbowcloud.sebal;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.esa.beam.framework.datamodel.Product;
+import org.fogbowcloud.sebal.model.image.BoundingBox;
+import org.fogbowcloud.sebal.model.image.ColumnAllocator;
+import org.fogbowcloud.sebal.model.image.ColumnarImage;
+import org.fogbowcloud.sebal.model.image.Image;
+import org.fogbowcloud.sebal.model.image.ImagePixel;
+import org.fogbowcloud.sebal.model.image.ImageTile;
+import org.fogbowcloud.sebal.model.image.ImageTiles;
+import org.fogbowcloud.sebal.model.image.TileVisitor;
+
+/**
+ * {@link Image} over a window of a product that reads its pixels only when
+ * they are visited. Each tile of {@link #forEachTile(int, int, int, TileVisitor)}
+ * is read with its halo through
+ * {@link SEBALHelper#readPixels(Product, int, int, int, int, PixelQuenteFrioChooser, BoundingBox, String, GeolocationGridCache, int, ColumnAllocator)},
+ * and its store is released once the tile is visited, so memory is bounded by
+ * the tile size and not by the window size.
+ * {@link #pixels()} reads the whole window at every call and does not keep
+ * it. Pixels given to {@link #pixels(List)} replace the product: they are
+ * kept in memory and tiles are views of them.
+ */
+public class TiledProductImage implements Image {
+
+	private final Product product;
+	private final BoundingBox window;
+	private final String fmaskFilePath;
+	private final GeolocationGridCache geolocationGridCache;
+	private final int parallelism;
+	private final ColumnAllocator columnAllocator;
+	private final int day;
+	private List<ImagePixel> pixelQuenteCandidates = new ArrayList<ImagePixel>();
+	private List<ImagePixel> pixelFrioCandidates = new ArrayList<ImagePixel>();
+	private ImagePixel pixelQuente;
+	private ImagePixel pixelFrio;
+	private PixelQuenteFrioChooser pixelQuenteFrioChooser;
+	private List<ImagePixel> pixels;
+
+	public TiledProductImage(Product product, BoundingBox window,
+			PixelQuenteFrioChooser pixelQuenteFrioChooser, String fmaskFilePath,
+			GeolocationGridCache geolocationGridCache, int parallelism,
+			ColumnAllocator columnAllocator) {
+		this.product = product;
+		this.window = window;
+		this.pixelQuenteFrioChooser = pixelQuenteFrioChooser;
+		this.fmaskFilePath = fmaskFilePath;
+		this.geolocationGridCache = geolocationGridCache;
+		this.parallelism = parallelism;
+		this.columnAllocator = columnAllocator;
+		this.day = product.getStartTime().getAsCalendar().get(Calendar.DAY_OF_YEAR);
+	}
+
+	@Override
+	public int getDay() {
+		return day;
+	}
+
+	@Override
+	public List<ImagePixel> pixels() {
+		if (pixels != null) {
+			return pixels;
+		}
+		try {
+			return read(0, 0, width(), height()).pixels();
+		} catch (Exception e) {
+			throw new IllegalStateException("Could not read the pixels of the image.", e);
+		}
+	}
+
+	@Override
+	public void pixels(List<ImagePixel> pixels) {
+		if (pixels.size() != width() * height()) {
+			throw new IllegalArgumentException("Expected " + width() * height()
+					+ " pixels but got " + pixels.size() + ".");
+		}
+		this.pixels = pixels;
+	}
+
+	@Override
+	public void forEachTile(int tileWidth, int tileHeight, int halo, final TileVisitor visitor)
+			throws Exception {
+		if (pixels != null) {
+			ImageTiles.forEachTile(this, tileWidth, tileHeight, halo, visitor);
+			return;
+		}
+		ImageTiles.forEachTile(width(), height(), tileWidth, tileHeight, halo,
+				new ImageTiles.TileReader() {
+					@Override
+					public ImageTile read(int x, int y, int width, int height, int haloX,
+							int haloY, int haloWidth, int haloHeight) throws Exception {
+						ColumnarImage haloImage = TiledProductImage.this.read(haloX, haloY,
+								haloWidth, haloHeight);
+						return new ImageTile(x, y, width, height, haloX, haloY, haloWidth,
+								haloHeight, haloImage.pixels(), haloImage.store(), 0, 0, true);
+					}
+				}, new TileVisitor() {
+					@Override
+					public void visit(ImageTile tile) throws Exception {
+						try {
+							visitor.visit(tile);
+						} finally {
+							tile.store().release();
+						}
+					}
+				});
+	}
+
+	/*
+	 * Reads the given part of the window; x and y are relative to the window.
+	 */
+	private ColumnarImage read(int x, int y, int width, int height) throws Exception {
+		int iBegin = window.getX() + x;
+		int jBegin = window.getY() + y;
+		return (ColumnarImage) SEBALHelper.readPixels(product, iBegin, iBegin + width, jBegin, jBegin + height,
+				pixelQuenteFrioChooser, null, fmaskFilePath, geolocationGridCache, parallelism,
+				columnAllocator);
+	}
+
+	@Override
+	public ImagePixel pixelFrio() {
+		return pixelFrio;
+	}
+
+	@Override
+	public void pixelFrio(ImagePixel pixelFrio) {
+		this.pixelFrio = pixelFrio;
+	}
+
+	@Override
+	public ImagePixel pixelQuente() {
+		return pixelQuente;
+	}
+
+	@Override
+	public void pixelQuente(ImagePixel pixelQuente) {
+		this.pixelQuente = pixelQuente;
+	}
+
+	@Override
+	public void selectPixelsQuenteFrioCandidates() {
+		pixelQuenteFrioChooser.selectPixelsQuenteFrioCandidates(this);
+		this.pixelFrioCandidates = pixelQuenteFrioChooser.getPixelFrioCandidates();
+		this.pixelQuenteCandidates = pixelQuenteFrioChooser.getPixelQuenteCandidates();
+	}
+
+	@Override
+	public void choosePixelsQuenteFrio() {
+		pixelQuenteFrioChooser.choosePixelsQuenteFrio();
+		this.pixelFrio = pixelQuenteFrioChooser.getPixelFrio();
+		this.pixelQuente = pixelQuenteFrioChooser.getPixelQuente();
+	}
+
+	@Override
+	public int width() {
+		return window.getW();
+	}
+
+	@Override
+	public void width(int width) {
+		if (width != window.getW()) {
+			throw new IllegalArgumentException("Width of a tiled image is fixed by its window ("
+					+ window.getW() + ").");
+		}
+	}
+
+	@Override
+	public int height() {
+		return window.getH();
+	}
+
+	@Override
+	public void height(int height) {
+		if (height != window.getH()) {
+			throw new IllegalArgumentException("Height of a tiled image is fixed by its window ("
+					+ window.getH() + ").");
+		}
+	}
+
+	@Override
+	public List<ImagePixel> pixelQuenteCandidates() {
+		return pixelQuenteCandidates;
+	}
+
+	@Override
+	public List<ImagePixel> pixelFrioCandidates() {
+		return pixelFrioCandidates;
+	}
+}
@@ -0,0 +1,329 @@
+package org.fogbowcloud.sebal;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.fogbowcloud.sebal.model.image.ColumnarImage;
+import org.fogbowcloud.sebal.model.image.Image;
+import org.fogbowcloud.sebal.model.image.ImagePixel;
+import org.fogbowcloud.sebal.model.image.ImagePixelOutput;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore.OutputField;
+
+/**
+ * Water bodies of an image: 4-connected groups of pixels with negative NDVI
+ * that contain at least one seed, a pixel that passed the water test and is
+ * not cloud. Only the water pixels are kept, sorted by their index
+ * (x + y * width), so they can be added in any order, for instance tile by
+ * tile, and groups that cross tiles are still joined. Groups are labelled with
+ * a two-pass union-find over the water pixels in row order, so labelling
+ * takes linear time after the sort and constant stack depth.
+ *
+ * Every water pixel gets a label; labels of groups without a seed are not
+ * water bodies ({@link #seed(int)} is -1). Size and bounding box of each label
+ * are kept in primitive arrays.
+ */
+public class WaterBodies {
+
+	public static final int NO_LABEL = -1;
+
+	private final int width;
+	private final int height;
+	private final int[] pixels;
+	private final int[] positions;
+	private final int[] labels;
+	private int count;
+	private int[] size = new int[16];
+	private int[] minX = new int[16];
+	private int[] maxX = new int[16];
+	private int[] minY = new int[16];
+	private int[] maxY = new int[16];
+	private int[] seed = new int[16];
+
+	private WaterBodies(int width, int height, int waterPixels) {
+		this.width = width;
+		this.height = height;
+		this.pixels = new int[waterPixels];
+		this.positions = new int[waterPixels];
+		this.labels = new int[waterPixels];
+	}
+
+	/**
+	 * Collects the water pixels of an image in any order and labels them once
+	 * all of them were added.
+	 */
+	public static class Builder {
+
+		private final int width;
+		private final int height;
+		// index << 32 | position, so sorting them sorts by index
+		private long[] pixels = new long[16];
+		private final BitSet seeds = new BitSet();
+		private int size;
+
+		public Builder(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * Adds the water pixel at index (x + y * width); its position is the
+		 * number of pixels added before it.
+		 */
+		public void add(int index, boolean isSeed) {
+			if (index < 0 || index >= width * height) {
+				throw new IndexOutOfBoundsException("Pixel " + index + " is outside the "
+						+ width + "x" + height + " image.");
+			}
+			if (size == pixels.length) {
+				pixels = Arrays.copyOf(pixels, size * 2);
+			}
+			if (isSeed) {
+				seeds.set(size);
+			}
+			pixels[size] = (long) index << 32 | size;
+			size++;
+		}
+
+		public WaterBodies build() {
+			Arrays.sort(pixels, 0, size);
+			WaterBodies waterBodies = new WaterBodies(width, height, size);
+			for (int k = 0; k < size; k++) {
+				waterBodies.pixels[k] = (int) (pixels[k] >>> 32);
+				waterBodies.positions[k] = (int) pixels[k];
+				if (k > 0 && waterBodies.pixels[k] == waterBodies.pixels[k - 1]) {
+					throw new IllegalArgumentException("Pixel " + waterBodies.pixels[k]
+							+ " was added more than once.");
+				}
+			}
+			waterBodies.label();
+			waterBodies.findSeeds(seeds);
+			return waterBodies;
+		}
+	}
+
+	public static WaterBodies label(Image image) {
+		Builder builder = new Builder(image.width(), image.height());
+		if (image instanceof ColumnarImage) {
+			ImagePixelStore store = ((ColumnarImage) image).store();
+			for (int index = 0; index < store.size(); index++) {
+				if (store.output(index, OutputField.NDVI) < 0) {
+					builder.add(index, !store.isCloud(index) && store.waterTest(index));
+				}
+			}
+			return builder.build();
+		}
+		List<ImagePixel> pixels = image.pixels();
+		for (int index = 0; index < pixels.size(); index++) {
+			ImagePixelOutput output = pixels.get(index).output();
+			if (output.getNDVI() < 0) {
+				builder.add(index, !output.isCloud() && output.getWaterTest());
+			}
+		}
+		return builder.build();
+	}
+
+	/*
+	 * First pass links each water pixel to its left and upper neighbours,
+	 * always pointing the bigger root to the smaller one, so the parent of a
+	 * pixel comes before it. The second pass, in the same order, can then
+	 * replace each parent by the label already given to it. The upper
+	 * neighbour of the k-th pixel is found with a pointer that only moves
+	 * forward, as the pixels are sorted.
+	 */
+	private void label() {
+		int[] parent = labels;
+		int up = 0;
+		for (int k = 0; k < pixels.length; k++) {
+			int index = pixels[k];
+			parent[k] = k;
+			if (index % width > 0 && k > 0 && pixels[k - 1] == index - 1) {
+				union(parent, k, k - 1);
+			}
+			if (index >= width) {
+				while (pixels[up] < index - width) {
+					up++;
+				}
+				if (pixels[up] == index - width) {
+					union(parent, k, up);
+				}
+			}
+		}
+
+		for (int k = 0; k < parent.length; k++) {
+			int label = parent[k] == k ? newLabel() : labels[parent[k]];
+			labels[k] = label;
+			add(label, pixels[k] % width, pixels[k] / width);
+		}
+	}
+
+	private static int find(int[] parent, int index) {
+		while (parent[index] != index) {
+			parent[index] = parent[parent[index]];
+			index = parent[index];
+		}
+		return index;
+	}
+
+	private static void union(int[] parent, int a, int b) {
+		int rootA = find(parent, a);
+		int rootB = find(parent, b);
+		if (rootA < rootB) {
+			parent[rootB] = rootA;
+		} else if (rootB < rootA) {
+			parent[rootA] = rootB;
+		}
+	}
+
+	private int newLabel() {
+		if (count == size.length) {
+			int capacity = count * 2;
+			size = Arrays.copyOf(size, capacity);
+			minX = Arrays.copyOf(minX, capacity);
+			maxX = Arrays.copyOf(maxX, capacity);
+			minY = Arrays.copyOf(minY, capacity);
+			maxY = Arrays.copyOf(maxY, capacity);
+			seed = Arrays.copyOf(seed, capacity);
+		}
+		minX[count] = Integer.MAX_VALUE;
+		maxX[count] = Integer.MIN_VALUE;
+		minY[count] = Integer.MAX_VALUE;
+		maxY[count] = Integer.MIN_VALUE;
+		seed[count] = NO_LABEL;
+		return count++;
+	}
+
+	private void add(int label, int x, int y) {
+		size[label]++;
+		minX[label] = Math.min(minX[label], x);
+		maxX[label] = Math.max(maxX[label], x);
+		minY[label] = Math.min(minY[label], y);
+		maxY[label] = Math.max(maxY[label], y);
+	}
+
+	// the seed of a body is its first seed column by column, as findWater did
+	private void findSeeds(BitSet seeds) {
+		for (int k = 0; k < pixels.length; k++) {
+			if (!seeds.get(positions[k])) {
+				continue;
+			}
+			int label = labels[k];
+			if (seed[label] == NO_LABEL || columnOrder(pixels[k]) < columnOrder(seed[label])) {
+				seed[label] = pixels[k];
+			}
+		}
+	}
+
+	private long columnOrder(int index) {
+		return (long) (index % width) * height + index / width;
+	}
+
+	/*
+	 * Position of the pixel in the sorted water pixels, negative if it is not
+	 * water.
+	 */
+	private int find(int index) {
+		return Arrays.binarySearch(pixels, index);
+	}
+
+	public int width() {
+		return width;
+	}
+
+	public int height() {
+		return height;
+	}
+
+	/**
+	 * Number of labels, including groups of water pixels without a seed.
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Label of the pixel at index, or {@link #NO_LABEL} if it is not water.
+	 */
+	public int label(int index) {
+		int k = find(index);
+		return k < 0 ? NO_LABEL : labels[k];
+	}
+
+	/**
+	 * Number of pixels added before the water pixel at index, or -1 if it is
+	 * not water. Pixels labelled from an image are added in row order.
+	 */
+	public int position(int index) {
+		int k = find(index);
+		return k < 0 ? -1 : positions[k];
+	}
+
+	public int size(int label) {
+		return size[label];
+	}
+
+	public int numberOfLonPixels(int label) {
+		return maxX[label] - minX[label] + 1;
+	}
+
+	public int numberOfLatPixels(int label) {
+		return maxY[label] - minY[label] + 1;
+	}
+
+	/**
+	 * Index of the seed of the label, or -1 if the label is not a water body.
+	 */
+	public int seed(int label) {
+		return seed[label];
+	}
+
+	public boolean isWaterBody(int label) {
+		return seed[label] != NO_LABEL;
+	}
+
+	/**
+	 * Pixels of the label in the order a flood fill from its seed visits
+	 * them, trying right, left, down and up neighbours in this order. The
+	 * fill uses an explicit stack.
+	 */
+	public int[] floodOrder(int label) {
+		int[] order = new int[size[label]];
+		int visitedCount = 0;
+		BitSet visited = new BitSet(pixels.length);
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = find(seed[label]);
+		while (top > 0) {
+			int k = stack[--top];
+			if (visited.get(k)) {
+				continue;
+			}
+			visited.set(k);
+			int index = pixels[k];
+			order[visitedCount++] = index;
+
+			if (stack.length < top + 4) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			// pushed in reverse, so the right neighbour is visited first
+			int x = index % width;
+			int neighbour = index >= width ? find(index - width) : -1;
+			if (neighbour >= 0 && labels[neighbour] == label) {
+				stack[top++] = neighbour;
+			}
+			neighbour = index + width < width * height ? find(index + width) : -1;
+			if (neighbour >= 0 && labels[neighbour] == label) {
+				stack[top++] = neighbour;
+			}
+			if (x > 0 && k > 0 && pixels[k - 1] == index - 1 && labels[k - 1] == label) {
+				stack[top++] = k - 1;
+			}
+			if (x < width - 1 && k + 1 < pixels.length && pixels[k + 1] == index + 1
+					&& labels[k + 1] == label) {
+				stack[top++] = k + 1;
+			}
+		}
+		return order;
+	}
+}
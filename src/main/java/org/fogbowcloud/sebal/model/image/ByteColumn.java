@@ -0,0 +1,67 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.nio.ByteBuffer;
+
+public abstract class ByteColumn extends Column {
+
+	ByteColumn(int size) {
+		super(size);
+	}
+
+	public abstract byte get(int index);
+
+	public abstract void set(int index, byte value);
+
+	static class Heap extends ByteColumn {
+
+		private byte[] values;
+
+		Heap(int size) {
+			super(size);
+			this.values = new byte[size];
+		}
+
+		@Override
+		public byte get(int index) {
+			return values[index];
+		}
+
+		@Override
+		public void set(int index, byte value) {
+			values[index] = value;
+		}
+
+		@Override
+		public void release() {
+			values = null;
+		}
+	}
+
+	static class Buffered extends ByteColumn {
+
+		private final ColumnAllocator.OffHeapBuffer buffer;
+		private ByteBuffer values;
+
+		Buffered(int size, ColumnAllocator.OffHeapBuffer buffer) {
+			super(size);
+			this.buffer = buffer;
+			this.values = buffer.buffer();
+		}
+
+		@Override
+		public byte get(int index) {
+			return values.get(index);
+		}
+
+		@Override
+		public void set(int index, byte value) {
+			values.put(index, value);
+		}
+
+		@Override
+		public void release() {
+			values = null;
+			buffer.release();
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package org.fogbowcloud.sebal.model.image;
+
+/**
+ * Values of one attribute for all the pixels of an {@link ImagePixelStore},
+ * kept in a primitive array on the heap or in a buffer outside of it, see
+ * {@link ColumnAllocator}.
+ */
+public abstract class Column {
+
+	private final int size;
+
+	Column(int size) {
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Frees the memory of the column without waiting for the garbage
+	 * collector. The column must not be used afterwards: reading a released
+	 * off-heap column would read memory that is no longer mapped.
+	 */
+	public abstract void release();
+}
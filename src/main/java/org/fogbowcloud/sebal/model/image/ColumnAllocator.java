@@ -0,0 +1,265 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Allocates the columns of an {@link ImagePixelStore}.
+ * <ul>
+ * <li>heap: primitive arrays, the default.</li>
+ * <li>direct: direct byte buffers, outside the heap but limited by
+ * -XX:MaxDirectMemorySize, which defaults to the maximum heap size.</li>
+ * <li>mapped: one scratch file per column, mapped in memory, so the
+ * operating system pages the columns in and out as needed.</li>
+ * </ul>
+ * Off-heap columns are freed when their store is released, or by the garbage
+ * collector once the store is no longer reachable.
+ */
+public abstract class ColumnAllocator {
+
+	public static final String HEAP = "heap";
+	public static final String DIRECT = "direct";
+	public static final String MAPPED = "mapped";
+
+	private static final Logger LOGGER = Logger.getLogger(ColumnAllocator.class);
+
+	private static final ColumnAllocator HEAP_ALLOCATOR = new HeapAllocator();
+	private static final ColumnAllocator DIRECT_ALLOCATOR = new DirectAllocator();
+
+	public static ColumnAllocator heap() {
+		return HEAP_ALLOCATOR;
+	}
+
+	public static ColumnAllocator direct() {
+		return DIRECT_ALLOCATOR;
+	}
+
+	public static ColumnAllocator mapped(File scratchDirectory) {
+		return new MappedAllocator(scratchDirectory);
+	}
+
+	/**
+	 * Reads the pixel_store_backing property (heap, direct or mapped) and, for
+	 * mapped columns, the pixel_store_scratch_dir property, which defaults to
+	 * the temporary directory.
+	 */
+	public static ColumnAllocator fromProperties(Properties properties) {
+		String backing = properties == null ? null : properties.getProperty("pixel_store_backing");
+		if (backing == null || backing.isEmpty() || HEAP.equals(backing)) {
+			return heap();
+		}
+		if (DIRECT.equals(backing)) {
+			return direct();
+		}
+		if (MAPPED.equals(backing)) {
+			String scratchDir = properties.getProperty("pixel_store_scratch_dir");
+			if (scratchDir == null || scratchDir.isEmpty()) {
+				scratchDir = System.getProperty("java.io.tmpdir");
+			}
+			return mapped(new File(scratchDir));
+		}
+		throw new IllegalArgumentException("Invalid pixel_store_backing " + backing
+				+ ", expected " + HEAP + ", " + DIRECT + " or " + MAPPED + ".");
+	}
+
+	public abstract DoubleColumn doubles(int size);
+
+	public abstract FloatColumn floats(int size);
+
+	public abstract IntColumn ints(int size);
+
+	public abstract ByteColumn bytes(int size);
+
+	private static class HeapAllocator extends ColumnAllocator {
+
+		@Override
+		public DoubleColumn doubles(int size) {
+			return new DoubleColumn.Heap(size);
+		}
+
+		@Override
+		public FloatColumn floats(int size) {
+			return new FloatColumn.Heap(size);
+		}
+
+		@Override
+		public IntColumn ints(int size) {
+			return new IntColumn.Heap(size);
+		}
+
+		@Override
+		public ByteColumn bytes(int size) {
+			return new ByteColumn.Heap(size);
+		}
+	}
+
+	private abstract static class BufferAllocator extends ColumnAllocator {
+
+		abstract OffHeapBuffer allocate(int bytes) throws IOException;
+
+		private OffHeapBuffer allocate(int size, int bytesPerValue) {
+			long bytes = (long) size * bytesPerValue;
+			if (bytes > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("A column of " + size
+						+ " pixels does not fit in one buffer.");
+			}
+			try {
+				// zero sized buffers are valid, but a file can not be mapped with size 0
+				return allocate((int) Math.max(bytes, 1));
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not allocate a column of " + size
+						+ " pixels.", e);
+			}
+		}
+
+		@Override
+		public DoubleColumn doubles(int size) {
+			return new DoubleColumn.Buffered(size, allocate(size, 8));
+		}
+
+		@Override
+		public FloatColumn floats(int size) {
+			return new FloatColumn.Buffered(size, allocate(size, 4));
+		}
+
+		@Override
+		public IntColumn ints(int size) {
+			return new IntColumn.Buffered(size, allocate(size, 4));
+		}
+
+		@Override
+		public ByteColumn bytes(int size) {
+			return new ByteColumn.Buffered(size, allocate(size, 1));
+		}
+	}
+
+	private static class DirectAllocator extends BufferAllocator {
+
+		@Override
+		OffHeapBuffer allocate(int bytes) {
+			return new OffHeapBuffer(ByteBuffer.allocateDirect(bytes), null);
+		}
+	}
+
+	private static class MappedAllocator extends BufferAllocator {
+
+		/*
+		 * Scratch files not released yet, deleted at exit. Unlike
+		 * File.deleteOnExit, which keeps every path until exit, released files
+		 * leave the set.
+		 */
+		private static final Set<File> SCRATCH_FILES = Collections
+				.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+		static {
+			Runtime.getRuntime().addShutdownHook(new Thread("pixel-column-cleanup") {
+				@Override
+				public void run() {
+					for (File file : SCRATCH_FILES) {
+						file.delete();
+					}
+				}
+			});
+		}
+
+		private final File scratchDirectory;
+
+		MappedAllocator(File scratchDirectory) {
+			this.scratchDirectory = scratchDirectory;
+		}
+
+		@Override
+		OffHeapBuffer allocate(int bytes) throws IOException {
+			scratchDirectory.mkdirs();
+			File file = File.createTempFile("pixel-column-", ".bin", scratchDirectory);
+			SCRATCH_FILES.add(file);
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				randomAccessFile.setLength(bytes);
+				return new OffHeapBuffer(randomAccessFile.getChannel().map(
+						FileChannel.MapMode.READ_WRITE, 0, bytes), file);
+			} catch (IOException e) {
+				SCRATCH_FILES.remove(file);
+				file.delete();
+				throw e;
+			} finally {
+				// the mapping stays valid after the file is closed
+				randomAccessFile.close();
+			}
+		}
+	}
+
+	/**
+	 * A direct or mapped buffer in native byte order, and its scratch file
+	 * when it is mapped.
+	 */
+	static class OffHeapBuffer {
+
+		private final ByteBuffer buffer;
+		private final File file;
+		private boolean released;
+
+		OffHeapBuffer(ByteBuffer buffer, File file) {
+			this.buffer = buffer.order(ByteOrder.nativeOrder());
+			this.file = file;
+		}
+
+		ByteBuffer buffer() {
+			return buffer;
+		}
+
+		synchronized void release() {
+			if (released) {
+				return;
+			}
+			released = true;
+			free(buffer);
+			if (file == null) {
+				return;
+			}
+			MappedAllocator.SCRATCH_FILES.remove(file);
+			if (!file.delete()) {
+				LOGGER.warn("Could not delete scratch file " + file);
+			}
+		}
+	}
+
+	/*
+	 * Runs the cleaner of a direct or mapped buffer. Buffers are freed by the
+	 * garbage collector if the cleaner can not be reached.
+	 */
+	private static void free(ByteBuffer buffer) {
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+			return;
+		} catch (Exception e) {
+			// not a Java 7 or 8 runtime, try Unsafe.invokeCleaner
+		}
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(
+					theUnsafe.get(null), buffer);
+		} catch (Exception e) {
+			LOGGER.debug("Could not free buffer, leaving it to the garbage collector.", e);
+		}
+	}
+}
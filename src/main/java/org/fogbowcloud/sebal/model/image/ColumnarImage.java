@@ -0,0 +1,173 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.fogbowcloud.sebal.PixelQuenteFrioChooser;
+
+/**
+ * {@link Image} backed by an {@link ImagePixelStore}. The pixels are exposed
+ * as {@link ImagePixelView}s created on demand, in the store order
+ * (x + y * width).
+ */
+public class ColumnarImage implements Image {
+
+	private ImagePixelStore store;
+	private int day;
+	private List<ImagePixel> pixelQuenteCandidates = new ArrayList<ImagePixel>();
+	private List<ImagePixel> pixelFrioCandidates = new ArrayList<ImagePixel>();
+	private ImagePixel pixelQuente;
+	private ImagePixel pixelFrio;
+	private PixelQuenteFrioChooser pixelQuenteFrioChooser;
+
+	public ColumnarImage(PixelQuenteFrioChooser pixelQuenteFrioChooser, ImagePixelStore store) {
+		this.pixelQuenteFrioChooser = pixelQuenteFrioChooser;
+		this.store = store;
+	}
+
+	public ImagePixelStore store() {
+		return store;
+	}
+
+	public ImagePixel pixel(int index) {
+		return new ImagePixelView(this, store, index);
+	}
+
+	public ImagePixel pixel(int x, int y) {
+		return pixel(store.index(x, y));
+	}
+
+	@Override
+	public int getDay() {
+		return day;
+	}
+
+	public void setDay(int day) {
+		this.day = day;
+	}
+
+	@Override
+	public List<ImagePixel> pixels() {
+		return new PixelViewList();
+	}
+
+	@Override
+	public void forEachTile(int tileWidth, int tileHeight, int halo, TileVisitor visitor)
+			throws Exception {
+		ImageTiles.forEachTile(this, tileWidth, tileHeight, halo, visitor);
+	}
+
+	/**
+	 * Copies the given pixels into a new store. The current width is kept when
+	 * the number of pixels allows it, otherwise the pixels are stored as a
+	 * single row.
+	 */
+	@Override
+	public void pixels(List<ImagePixel> pixels) {
+		int width = store.width() > 0 && pixels.size() % store.width() == 0 ? store.width()
+				: pixels.size();
+		int height = width == 0 ? 0 : pixels.size() / width;
+		ImagePixelStore newStore = new ImagePixelStore(width, height, numberOfBands(pixels),
+				store.allocator());
+		newStore.offset(store.xOffset(), store.yOffset());
+		for (int index = 0; index < pixels.size(); index++) {
+			newStore.setPixel(index, pixels.get(index));
+		}
+		this.store = newStore;
+	}
+
+	private int numberOfBands(List<ImagePixel> pixels) {
+		if (pixels.isEmpty() || pixels.get(0).L() == null) {
+			return store.numberOfBands();
+		}
+		return pixels.get(0).L().length;
+	}
+
+	@Override
+	public void choosePixelsQuenteFrio() {
+		pixelQuenteFrioChooser.choosePixelsQuenteFrio();
+		this.pixelFrio = pixelQuenteFrioChooser.getPixelFrio();
+		this.pixelQuente = pixelQuenteFrioChooser.getPixelQuente();
+	}
+
+	@Override
+	public ImagePixel pixelFrio() {
+		return pixelFrio;
+	}
+
+	@Override
+	public ImagePixel pixelQuente() {
+		return pixelQuente;
+	}
+
+	@Override
+	public void pixelFrio(ImagePixel pixelFrio) {
+		this.pixelFrio = pixelFrio;
+	}
+
+	@Override
+	public void pixelQuente(ImagePixel pixelQuente) {
+		this.pixelQuente = pixelQuente;
+	}
+
+	@Override
+	public int width() {
+		return store.width();
+	}
+
+	@Override
+	public void width(int width) {
+		if (width != store.width()) {
+			throw new IllegalArgumentException("Width of a columnar image is fixed by its store ("
+					+ store.width() + ").");
+		}
+	}
+
+	@Override
+	public int height() {
+		return store.height();
+	}
+
+	@Override
+	public void height(int height) {
+		if (height != store.height()) {
+			throw new IllegalArgumentException(
+					"Height of a columnar image is fixed by its store (" + store.height() + ").");
+		}
+	}
+
+	@Override
+	public void selectPixelsQuenteFrioCandidates() {
+		pixelQuenteFrioChooser.selectPixelsQuenteFrioCandidates(this);
+		this.pixelFrioCandidates = pixelQuenteFrioChooser.getPixelFrioCandidates();
+		this.pixelQuenteCandidates = pixelQuenteFrioChooser.getPixelQuenteCandidates();
+	}
+
+	@Override
+	public List<ImagePixel> pixelQuenteCandidates() {
+		return pixelQuenteCandidates;
+	}
+
+	@Override
+	public List<ImagePixel> pixelFrioCandidates() {
+		return pixelFrioCandidates;
+	}
+
+	private class PixelViewList extends AbstractList<ImagePixel> implements RandomAccess {
+
+		@Override
+		public ImagePixel get(int index) {
+			if (index < 0 || index >= store.size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + store.size());
+			}
+			return pixel(index);
+		}
+
+		@Override
+		public int size() {
+			return store.size();
+		}
+	}
+}
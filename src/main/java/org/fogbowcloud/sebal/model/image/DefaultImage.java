@@ -35,6 +35,12 @@ public class DefaultImage implements Image {
 		pixels.add(pixel);
 	}
 
+	@Override
+	public void forEachTile(int tileWidth, int tileHeight, int halo, TileVisitor visitor)
+			throws Exception {
+		ImageTiles.forEachTile(this, tileWidth, tileHeight, halo, visitor);
+	}
+
 	@Override
 	public void choosePixelsQuenteFrio() {		
 //	   pixelQuenteFrioChooser.selectPixelsQuenteFrioCandidates(this);
@@ -0,0 +1,84 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.nio.DoubleBuffer;
+
+public abstract class DoubleColumn extends Column {
+
+	DoubleColumn(int size) {
+		super(size);
+	}
+
+	public abstract double get(int index);
+
+	public abstract void set(int index, double value);
+
+	/**
+	 * Copies length values, starting at index, to values[dstPos].
+	 */
+	public abstract void get(int index, double[] values, int dstPos, int length);
+
+	static class Heap extends DoubleColumn {
+
+		private double[] values;
+
+		Heap(int size) {
+			super(size);
+			this.values = new double[size];
+		}
+
+		@Override
+		public double get(int index) {
+			return values[index];
+		}
+
+		@Override
+		public void set(int index, double value) {
+			values[index] = value;
+		}
+
+		@Override
+		public void get(int index, double[] values, int dstPos, int length) {
+			System.arraycopy(this.values, index, values, dstPos, length);
+		}
+
+		@Override
+		public void release() {
+			values = null;
+		}
+	}
+
+	static class Buffered extends DoubleColumn {
+
+		private final ColumnAllocator.OffHeapBuffer buffer;
+		private DoubleBuffer values;
+
+		Buffered(int size, ColumnAllocator.OffHeapBuffer buffer) {
+			super(size);
+			this.buffer = buffer;
+			this.values = buffer.buffer().asDoubleBuffer();
+		}
+
+		@Override
+		public double get(int index) {
+			return values.get(index);
+		}
+
+		@Override
+		public void set(int index, double value) {
+			values.put(index, value);
+		}
+
+		@Override
+		public void get(int index, double[] values, int dstPos, int length) {
+			DoubleBuffer source = this.values.duplicate();
+			source.position(index);
+			source.get(values, dstPos, length);
+		}
+
+		@Override
+		public void release() {
+			values = null;
+			buffer.release();
+		}
+	}
+}
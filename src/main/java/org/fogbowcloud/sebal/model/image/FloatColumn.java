@@ -0,0 +1,85 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.nio.FloatBuffer;
+
+public abstract class FloatColumn extends Column {
+
+	FloatColumn(int size) {
+		super(size);
+	}
+
+	public abstract float get(int index);
+
+	public abstract void set(int index, float value);
+
+	/**
+	 * Copies length values, starting at values[srcPos], to the column
+	 * starting at index.
+	 */
+	public abstract void set(int index, float[] values, int srcPos, int length);
+
+	static class Heap extends FloatColumn {
+
+		private float[] values;
+
+		Heap(int size) {
+			super(size);
+			this.values = new float[size];
+		}
+
+		@Override
+		public float get(int index) {
+			return values[index];
+		}
+
+		@Override
+		public void set(int index, float value) {
+			values[index] = value;
+		}
+
+		@Override
+		public void set(int index, float[] values, int srcPos, int length) {
+			System.arraycopy(values, srcPos, this.values, index, length);
+		}
+
+		@Override
+		public void release() {
+			values = null;
+		}
+	}
+
+	static class Buffered extends FloatColumn {
+
+		private final ColumnAllocator.OffHeapBuffer buffer;
+		private FloatBuffer values;
+
+		Buffered(int size, ColumnAllocator.OffHeapBuffer buffer) {
+			super(size);
+			this.buffer = buffer;
+			this.values = buffer.buffer().asFloatBuffer();
+		}
+
+		@Override
+		public float get(int index) {
+			return values.get(index);
+		}
+
+		@Override
+		public void set(int index, float value) {
+			values.put(index, value);
+		}
+
+		@Override
+		public void set(int index, float[] values, int srcPos, int length) {
+			FloatBuffer destination = this.values.duplicate();
+			destination.position(index);
+			destination.put(values, srcPos, length);
+		}
+
+		@Override
+		public void release() {
+			values = null;
+			buffer.release();
+		}
+	}
+}
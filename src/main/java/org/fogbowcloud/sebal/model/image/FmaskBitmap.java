@@ -0,0 +1,130 @@
+package org.fogbowcloud.sebal.model.image;
+
+/**
+ * Fmask classes of a window, one bit per pixel and class, in the order of
+ * {@link ImagePixelStore} (x + y * width). The bit of a pixel is bit
+ * index % 64 of word index / 64 of its plane, so planes can be combined a
+ * word at a time and counted with {@link Long#bitCount(long)}.
+ *
+ * Fmask values are 0 (clear land), 1 (water), 2 (cloud shadow), 3 (snow),
+ * 4 (cloud) and 255 (no data); a pixel is valid when it is clear land or
+ * water.
+ */
+public class FmaskBitmap {
+
+	public enum Plane {
+		VALID, CLOUD, WATER, SNOW
+	}
+
+	public static final int CLEAR_LAND = 0;
+	public static final int WATER = 1;
+	public static final int CLOUD_SHADOW = 2;
+	public static final int SNOW = 3;
+	public static final int CLOUD = 4;
+
+	private final int width;
+	private final int height;
+	private final long[][] planes;
+
+	public FmaskBitmap(int width, int height) {
+		this.width = width;
+		this.height = height;
+		int words = (width * height + 63) >>> 6;
+		this.planes = new long[Plane.values().length][words];
+	}
+
+	public int width() {
+		return width;
+	}
+
+	public int height() {
+		return height;
+	}
+
+	public int size() {
+		return width * height;
+	}
+
+	/**
+	 * Sets the classes of the pixel from its Fmask value.
+	 */
+	public void set(int index, int fmaskValue) {
+		int word = index >>> 6;
+		long bit = 1L << index;
+		if (fmaskValue == CLEAR_LAND || fmaskValue == WATER) {
+			planes[Plane.VALID.ordinal()][word] |= bit;
+		}
+		if (fmaskValue == CLOUD || fmaskValue == CLOUD_SHADOW) {
+			planes[Plane.CLOUD.ordinal()][word] |= bit;
+		}
+		if (fmaskValue == WATER) {
+			planes[Plane.WATER.ordinal()][word] |= bit;
+		}
+		if (fmaskValue == SNOW) {
+			planes[Plane.SNOW.ordinal()][word] |= bit;
+		}
+	}
+
+	/**
+	 * Sets the classes of length pixels, starting at index, from unsigned
+	 * Fmask values starting at values[srcPos].
+	 */
+	public void set(int index, byte[] values, int srcPos, int length) {
+		for (int k = 0; k < length; k++) {
+			set(index + k, values[srcPos + k] & 0xFF);
+		}
+	}
+
+	public boolean get(Plane plane, int index) {
+		return (planes[plane.ordinal()][index >>> 6] & (1L << index)) != 0;
+	}
+
+	public boolean isValid(int index) {
+		return get(Plane.VALID, index);
+	}
+
+	public boolean isCloud(int index) {
+		return get(Plane.CLOUD, index);
+	}
+
+	public boolean isWater(int index) {
+		return get(Plane.WATER, index);
+	}
+
+	public boolean isSnow(int index) {
+		return get(Plane.SNOW, index);
+	}
+
+	/**
+	 * The words of a plane; bits past {@link #size()} are always 0.
+	 */
+	public long[] words(Plane plane) {
+		return planes[plane.ordinal()];
+	}
+
+	/**
+	 * Number of pixels of the plane in [fromIndex, toIndex).
+	 */
+	public int count(Plane plane, int fromIndex, int toIndex) {
+		if (fromIndex >= toIndex) {
+			return 0;
+		}
+		long[] words = planes[plane.ordinal()];
+		int firstWord = fromIndex >>> 6;
+		int lastWord = (toIndex - 1) >>> 6;
+		long firstMask = -1L << fromIndex;
+		long lastMask = -1L >>> -toIndex;
+		if (firstWord == lastWord) {
+			return Long.bitCount(words[firstWord] & firstMask & lastMask);
+		}
+		int count = Long.bitCount(words[firstWord] & firstMask);
+		for (int word = firstWord + 1; word < lastWord; word++) {
+			count += Long.bitCount(words[word]);
+		}
+		return count + Long.bitCount(words[lastWord] & lastMask);
+	}
+
+	public int count(Plane plane) {
+		return count(plane, 0, size());
+	}
+}
@@ -7,7 +7,17 @@ public interface Image {
 	int getDay();
 	
 	List<ImagePixel> pixels();
-	
+
+	/**
+	 * Hands the image to the visitor tile by tile, in the order described in
+	 * {@link ImageTiles}. Each tile carries a halo of up to halo pixels around
+	 * its core window. Images that read their pixels lazily only hold the tile
+	 * being visited in memory; a pixel kept after its tile was visited keeps
+	 * that tile reachable.
+	 */
+	void forEachTile(int tileWidth, int tileHeight, int halo, TileVisitor visitor)
+			throws Exception;
+
 	void pixels(List<ImagePixel> pixels);
 	
 	ImagePixel pixelFrio();
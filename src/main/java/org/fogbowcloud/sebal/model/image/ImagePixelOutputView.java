@@ -0,0 +1,355 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.util.List;
+
+import org.fogbowcloud.sebal.model.image.ImagePixelStore.OutputField;
+
+/**
+ * {@link ImagePixelOutput} that reads and writes the output of one pixel of an
+ * {@link ImagePixelStore}. It has no state besides the store and the pixel
+ * index, so it is cheap to create one whenever an output is requested.
+ */
+public class ImagePixelOutputView extends ImagePixelOutput {
+
+	private final ImagePixelStore store;
+	private final int index;
+
+	public ImagePixelOutputView(ImagePixelStore store, int index) {
+		this.store = store;
+		this.index = index;
+	}
+
+	boolean isViewOf(ImagePixelStore store, int index) {
+		return this.store == store && this.index == index;
+	}
+
+	@Override
+	public boolean isCloud() {
+		return store.isCloud(index);
+	}
+
+	@Override
+	public void setIsCloud(boolean isCloud) {
+		store.isCloud(index, isCloud);
+	}
+
+	@Override
+	public double getNDVI() {
+		return store.output(index, OutputField.NDVI);
+	}
+
+	@Override
+	public void setNDVI(double nDVI) {
+		store.output(index, OutputField.NDVI, nDVI);
+	}
+
+	@Override
+	public void setTs(double ts) {
+		store.output(index, OutputField.TS, ts);
+	}
+
+	@Override
+	public double getTs() {
+		return store.output(index, OutputField.TS);
+	}
+
+	@Override
+	public double SAVI() {
+		return store.output(index, OutputField.SAVI);
+	}
+
+	@Override
+	public void setSAVI(double SAVI) {
+		store.output(index, OutputField.SAVI, SAVI);
+	}
+
+	@Override
+	public void setRn(double rn) {
+		store.output(index, OutputField.RN, rn);
+	}
+
+	@Override
+	public void setG(double g) {
+		store.output(index, OutputField.G, g);
+	}
+
+	@Override
+	public double Rn() {
+		return store.output(index, OutputField.RN);
+	}
+
+	@Override
+	public double G() {
+		return store.output(index, OutputField.G);
+	}
+
+	@Override
+	public double getLambdaE() {
+		return store.output(index, OutputField.LAMBDA_E);
+	}
+
+	@Override
+	public void setLambdaE(double lambdaE) {
+		store.output(index, OutputField.LAMBDA_E, lambdaE);
+	}
+
+	@Override
+	public double getH() {
+		return store.output(index, OutputField.H);
+	}
+
+	@Override
+	public void setH(double h) {
+		store.output(index, OutputField.H, h);
+	}
+
+	@Override
+	public double getAlpha() {
+		return store.output(index, OutputField.ALPHA);
+	}
+
+	@Override
+	public void setAlpha(double alpha) {
+		store.output(index, OutputField.ALPHA, alpha);
+	}
+
+	@Override
+	public double getEpsilonNB() {
+		return store.output(index, OutputField.EPSILON_NB);
+	}
+
+	@Override
+	public void setEpsilonNB(double epsilonNB) {
+		store.output(index, OutputField.EPSILON_NB, epsilonNB);
+	}
+
+	@Override
+	public double getEpsilonZero() {
+		return store.output(index, OutputField.EPSILON_ZERO);
+	}
+
+	@Override
+	public void setEpsilonZero(double epsilonZero) {
+		store.output(index, OutputField.EPSILON_ZERO, epsilonZero);
+	}
+
+	@Override
+	public double getZ0mxy() {
+		return store.output(index, OutputField.Z0MXY);
+	}
+
+	@Override
+	public void setZ0mxy(double z0mxy) {
+		store.output(index, OutputField.Z0MXY, z0mxy);
+	}
+
+	@Override
+	public double[] getRho() {
+		return store.rho(index);
+	}
+
+	@Override
+	public void setRho(double[] rho) {
+		store.rho(index, rho);
+	}
+
+	@Override
+	public double getRLDown() {
+		return store.output(index, OutputField.RL_DOWN);
+	}
+
+	@Override
+	public void setRLDown(double rLDown) {
+		store.output(index, OutputField.RL_DOWN, rLDown);
+	}
+
+	@Override
+	public double getEpsilonA() {
+		return store.output(index, OutputField.EPSILON_A);
+	}
+
+	@Override
+	public void setEpsilonA(double epsilonA) {
+		store.output(index, OutputField.EPSILON_A, epsilonA);
+	}
+
+	@Override
+	public double getRLUp() {
+		return store.output(index, OutputField.RL_UP);
+	}
+
+	@Override
+	public void setRLUp(double rLUp) {
+		store.output(index, OutputField.RL_UP, rLUp);
+	}
+
+	@Override
+	public double getIAF() {
+		return store.output(index, OutputField.IAF);
+	}
+
+	@Override
+	public void setIAF(double iAF) {
+		store.output(index, OutputField.IAF, iAF);
+	}
+
+	@Override
+	public double getEVI() {
+		return store.output(index, OutputField.EVI);
+	}
+
+	@Override
+	public void setEVI(double eVI) {
+		store.output(index, OutputField.EVI, eVI);
+	}
+
+	@Override
+	public double getRSDown() {
+		return store.output(index, OutputField.RS_DOWN);
+	}
+
+	@Override
+	public void setRSDown(double rSDown) {
+		store.output(index, OutputField.RS_DOWN, rSDown);
+	}
+
+	@Override
+	public double getTauSW() {
+		return store.output(index, OutputField.TAU_SW);
+	}
+
+	@Override
+	public void setTauSW(double tauSW) {
+		store.output(index, OutputField.TAU_SW, tauSW);
+	}
+
+	@Override
+	public double getAlphaToa() {
+		return store.output(index, OutputField.ALPHA_TOA);
+	}
+
+	@Override
+	public void setAlphaToa(double alphaToa) {
+		store.output(index, OutputField.ALPHA_TOA, alphaToa);
+	}
+
+	@Override
+	public double getEvapo24h() {
+		return store.output(index, OutputField.EVAPO_24H);
+	}
+
+	@Override
+	public void setEvapo24h(double evapo24h) {
+		store.output(index, OutputField.EVAPO_24H, evapo24h);
+	}
+
+	@Override
+	public double getFrEvapo() {
+		return store.output(index, OutputField.FR_EVAPO);
+	}
+
+	@Override
+	public void setFrEvapo(double frEvapo) {
+		store.output(index, OutputField.FR_EVAPO, frEvapo);
+	}
+
+	@Override
+	public double getLambda24h() {
+		return store.output(index, OutputField.LAMBDA_24H);
+	}
+
+	@Override
+	public void setLambda24h(double lambda24h) {
+		store.output(index, OutputField.LAMBDA_24H, lambda24h);
+	}
+
+	@Override
+	public List<HOutput> gethOuts() {
+		return store.hOuts(index);
+	}
+
+	@Override
+	public void sethOuts(List<HOutput> hOuts) {
+		store.hOuts(index, hOuts);
+	}
+
+	@Override
+	public double getRn24h() {
+		return store.output(index, OutputField.RN_24H);
+	}
+
+	@Override
+	public void setRn24h(double rn24h) {
+		store.output(index, OutputField.RN_24H, rn24h);
+	}
+
+	@Override
+	public double getTau24h() {
+		return store.output(index, OutputField.TAU_24H);
+	}
+
+	@Override
+	public void setTau24h(double tau24h) {
+		store.output(index, OutputField.TAU_24H, tau24h);
+	}
+
+	@Override
+	public boolean getWaterTest() {
+		return store.waterTest(index);
+	}
+
+	@Override
+	public void setWaterTest(boolean waterTest) {
+		store.waterTest(index, waterTest);
+	}
+
+	@Override
+	public void setNDSI(double NDSI) {
+		store.output(index, OutputField.NDSI, NDSI);
+	}
+
+	@Override
+	public double getNDSI() {
+		return store.output(index, OutputField.NDSI);
+	}
+
+	@Override
+	public boolean getClearSkyWater() {
+		return getWaterTest() && getRho()[6] < 0.03;
+	}
+
+	@Override
+	public boolean getClearSkyLand() {
+		return !getPCP() && !getWaterTest();
+	}
+
+	@Override
+	public void setPCP(boolean PCP) {
+		store.PCP(index, PCP);
+	}
+
+	@Override
+	public boolean getPCP() {
+		return store.PCP(index);
+	}
+
+	@Override
+	public void setWCloudProb(double wCloudProb) {
+		store.output(index, OutputField.W_CLOUD_PROB, wCloudProb);
+	}
+
+	@Override
+	public double getWCloudProb() {
+		return store.output(index, OutputField.W_CLOUD_PROB);
+	}
+
+	@Override
+	public void setLCloudProb(double lCloudProb) {
+		store.output(index, OutputField.L_CLOUD_PROB, lCloudProb);
+	}
+
+	@Override
+	public double getLCloudProb() {
+		return store.output(index, OutputField.L_CLOUD_PROB);
+	}
+}
@@ -0,0 +1,581 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar (struct-of-arrays) storage for the pixels of an image window. Each
+ * pixel attribute is kept in its own primitive array indexed by
+ * {@link #index(int, int)} (row-major, x + y * width), so a scene does not
+ * need one {@link DefaultImagePixel}, {@link GeoLoc} and
+ * {@link ImagePixelOutput} object per pixel.
+ *
+ * Attributes that are not filled while reading the image (Ta, ux, DN and all
+ * the output fields) are allocated on first write. Reading an attribute that
+ * was never written returns its default value.
+ *
+ * Columns are allocated by a {@link ColumnAllocator}, on the heap by default.
+ * A store with off-heap columns should be released with {@link #release()}
+ * once it is no longer needed, so its memory does not wait for a garbage
+ * collection; neither the store nor its pixel views can be used afterwards.
+ */
+public class ImagePixelStore {
+
+	public enum OutputField {
+		NDVI, TS, SAVI, RN, G, H, LAMBDA_E, ALPHA, EPSILON_NB, EPSILON_ZERO, Z0MXY, RL_DOWN,
+		EPSILON_A, RL_UP, IAF, EVI, RS_DOWN, TAU_SW, ALPHA_TOA, EVAPO_24H, FR_EVAPO,
+		LAMBDA_24H, TAU_24H, RN_24H, NDSI, W_CLOUD_PROB, L_CLOUD_PROB
+	}
+
+	private static final byte INVALID = 1;
+	private static final byte CLOUD = 1 << 1;
+	private static final byte WATER_TEST = 1 << 2;
+	private static final byte PCP = 1 << 3;
+	private static final byte HAS_OUTPUT = 1 << 4;
+	private static final byte HAS_RHO = 1 << 5;
+
+	private final int width;
+	private final int height;
+	private final int size;
+	private final int numberOfBands;
+	private int xOffset;
+	private int yOffset;
+
+	private final ColumnAllocator allocator;
+
+	// per pixel attributes
+	private final FloatColumn[] L;
+	private final DoubleColumn lat;
+	private final DoubleColumn lon;
+	private final DoubleColumn z;
+	private final DoubleColumn zx;
+	private final DoubleColumn d;
+	private final DoubleColumn hc;
+	private final ByteColumn flags;
+	private DoubleColumn Ta;
+	private DoubleColumn ux;
+	private IntColumn[] DN;
+
+	// per pixel outputs
+	private final DoubleColumn[] outputs = new DoubleColumn[OutputField.values().length];
+	private DoubleColumn[] rho = new DoubleColumn[0];
+	private Map<Integer, List<HOutput>> hOuts = new HashMap<Integer, List<HOutput>>();
+
+	// attributes shared by all pixels of the scene
+	private double cosTheta;
+	private double sinTheta;
+	private double sinThetaSunEle;
+	private double[] Al;
+	private double[] Ml;
+	private double[] Ap;
+	private double[] Mp;
+
+	public ImagePixelStore(int width, int height, int numberOfBands) {
+		this(width, height, numberOfBands, ColumnAllocator.heap());
+	}
+
+	public ImagePixelStore(int width, int height, int numberOfBands, ColumnAllocator allocator) {
+		if (width < 0 || height < 0 || numberOfBands < 0) {
+			throw new IllegalArgumentException("Invalid store dimensions (" + width + ", "
+					+ height + ", " + numberOfBands + ").");
+		}
+		this.width = width;
+		this.height = height;
+		this.size = width * height;
+		this.numberOfBands = numberOfBands;
+		this.allocator = allocator;
+
+		this.L = new FloatColumn[numberOfBands];
+		for (int band = 0; band < numberOfBands; band++) {
+			L[band] = allocator.floats(size);
+		}
+		this.lat = allocator.doubles(size);
+		this.lon = allocator.doubles(size);
+		this.z = allocator.doubles(size);
+		this.zx = allocator.doubles(size);
+		this.d = allocator.doubles(size);
+		this.hc = allocator.doubles(size);
+		this.flags = allocator.bytes(size);
+	}
+
+	public ColumnAllocator allocator() {
+		return allocator;
+	}
+
+	/**
+	 * Releases all the columns of the store.
+	 */
+	public synchronized void release() {
+		for (FloatColumn column : L) {
+			column.release();
+		}
+		release(lat, lon, z, zx, d, hc, flags, Ta, ux);
+		if (DN != null) {
+			release(DN);
+		}
+		release(outputs);
+		release(rho);
+		hOuts.clear();
+	}
+
+	private void release(Column... columns) {
+		for (Column column : columns) {
+			if (column != null) {
+				column.release();
+			}
+		}
+	}
+
+	public int width() {
+		return width;
+	}
+
+	public int height() {
+		return height;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int numberOfBands() {
+		return numberOfBands;
+	}
+
+	public int index(int x, int y) {
+		return x + y * width;
+	}
+
+	public int x(int index) {
+		return index % width;
+	}
+
+	public int y(int index) {
+		return index / width;
+	}
+
+	/**
+	 * Sets the raster position (i, j) of the first pixel of the store, so
+	 * {@link #i(int)} and {@link #j(int)} return raster coordinates.
+	 */
+	public void offset(int xOffset, int yOffset) {
+		this.xOffset = xOffset;
+		this.yOffset = yOffset;
+	}
+
+	public int xOffset() {
+		return xOffset;
+	}
+
+	public int yOffset() {
+		return yOffset;
+	}
+
+	public int i(int index) {
+		return xOffset + x(index);
+	}
+
+	public int j(int index) {
+		return yOffset + y(index);
+	}
+
+	public float L(int index, int band) {
+		return L[band].get(index);
+	}
+
+	public void L(int index, int band, float value) {
+		L[band].set(index, value);
+	}
+
+	/**
+	 * Copies length samples of a band, starting at srcPos of values, to the
+	 * pixels starting at index.
+	 */
+	public void L(int index, int band, float[] values, int srcPos, int length) {
+		L[band].set(index, values, srcPos, length);
+	}
+
+	public double lat(int index) {
+		return lat.get(index);
+	}
+
+	public double lon(int index) {
+		return lon.get(index);
+	}
+
+	public void geoLoc(int index, double latitude, double longitude) {
+		lat.set(index, latitude);
+		lon.set(index, longitude);
+	}
+
+	/**
+	 * Copies the latitudes of length pixels, starting at index, to
+	 * latitudes[dstPos].
+	 */
+	public void lat(int index, double[] latitudes, int dstPos, int length) {
+		lat.get(index, latitudes, dstPos, length);
+	}
+
+	/**
+	 * Copies the longitudes of length pixels, starting at index, to
+	 * longitudes[dstPos].
+	 */
+	public void lon(int index, double[] longitudes, int dstPos, int length) {
+		lon.get(index, longitudes, dstPos, length);
+	}
+
+	public double z(int index) {
+		return z.get(index);
+	}
+
+	public void z(int index, double value) {
+		z.set(index, value);
+	}
+
+	public double zx(int index) {
+		return zx.get(index);
+	}
+
+	public void zx(int index, double value) {
+		zx.set(index, value);
+	}
+
+	public double d(int index) {
+		return d.get(index);
+	}
+
+	public void d(int index, double value) {
+		d.set(index, value);
+	}
+
+	public double hc(int index) {
+		return hc.get(index);
+	}
+
+	public void hc(int index, double value) {
+		hc.set(index, value);
+	}
+
+	public double Ta(int index) {
+		DoubleColumn column = Ta;
+		return column == null ? 0 : column.get(index);
+	}
+
+	public void Ta(int index, double value) {
+		if (Ta == null) {
+			allocateTa();
+		}
+		Ta.set(index, value);
+	}
+
+	public double ux(int index) {
+		DoubleColumn column = ux;
+		return column == null ? 0 : column.get(index);
+	}
+
+	public void ux(int index, double value) {
+		if (ux == null) {
+			allocateUx();
+		}
+		ux.set(index, value);
+	}
+
+	public int[] DN(int index) {
+		IntColumn[] columns = DN;
+		if (columns == null) {
+			return null;
+		}
+		int[] DNArray = new int[columns.length];
+		for (int band = 0; band < columns.length; band++) {
+			DNArray[band] = columns[band].get(index);
+		}
+		return DNArray;
+	}
+
+	public void DN(int index, int[] DNArray) {
+		if (DNArray == null) {
+			return;
+		}
+		if (DN == null) {
+			allocateDN(DNArray.length);
+		}
+		for (int band = 0; band < DNArray.length && band < DN.length; band++) {
+			DN[band].set(index, DNArray[band]);
+		}
+	}
+
+	public boolean isValid(int index) {
+		return (flags.get(index) & INVALID) == 0;
+	}
+
+	public void isValid(int index, boolean isValid) {
+		flag(index, INVALID, !isValid);
+	}
+
+	public boolean isCloud(int index) {
+		return (flags.get(index) & CLOUD) != 0;
+	}
+
+	public void isCloud(int index, boolean isCloud) {
+		flag(index, CLOUD, isCloud);
+	}
+
+	public boolean waterTest(int index) {
+		return (flags.get(index) & WATER_TEST) != 0;
+	}
+
+	public void waterTest(int index, boolean waterTest) {
+		flag(index, WATER_TEST, waterTest);
+	}
+
+	public boolean PCP(int index) {
+		return (flags.get(index) & PCP) != 0;
+	}
+
+	public void PCP(int index, boolean isPCP) {
+		flag(index, PCP, isPCP);
+	}
+
+	/**
+	 * A pixel has an output once {@link #setOutput(int, ImagePixelOutput)} was
+	 * called for it, the same way {@link DefaultImagePixel#output()} is null
+	 * until an output is set.
+	 */
+	public boolean hasOutput(int index) {
+		return (flags.get(index) & HAS_OUTPUT) != 0;
+	}
+
+	public void hasOutput(int index, boolean hasOutput) {
+		flag(index, HAS_OUTPUT, hasOutput);
+	}
+
+	private void flag(int index, byte mask, boolean set) {
+		byte value = flags.get(index);
+		flags.set(index, (byte) (set ? value | mask : value & ~mask));
+	}
+
+	public double output(int index, OutputField field) {
+		DoubleColumn column = outputs[field.ordinal()];
+		return column == null ? 0 : column.get(index);
+	}
+
+	public void output(int index, OutputField field, double value) {
+		DoubleColumn column = outputs[field.ordinal()];
+		if (column == null) {
+			column = allocateOutput(field);
+		}
+		column.set(index, value);
+	}
+
+	public double[] rho(int index) {
+		if ((flags.get(index) & HAS_RHO) == 0) {
+			return null;
+		}
+		DoubleColumn[] columns = rho;
+		double[] rhoArray = new double[columns.length];
+		for (int band = 0; band < columns.length; band++) {
+			rhoArray[band] = columns[band].get(index);
+		}
+		return rhoArray;
+	}
+
+	public void rho(int index, double[] rhoArray) {
+		if (rhoArray == null) {
+			flag(index, HAS_RHO, false);
+			return;
+		}
+		if (rho.length < rhoArray.length) {
+			allocateRho(rhoArray.length);
+		}
+		for (int band = 0; band < rho.length; band++) {
+			rho[band].set(index, band < rhoArray.length ? rhoArray[band] : 0);
+		}
+		flag(index, HAS_RHO, true);
+	}
+
+	public synchronized List<HOutput> hOuts(int index) {
+		return hOuts.get(index);
+	}
+
+	public synchronized void hOuts(int index, List<HOutput> hOutsList) {
+		if (hOutsList == null) {
+			hOuts.remove(index);
+		} else {
+			hOuts.put(index, hOutsList);
+		}
+	}
+
+	private synchronized void allocateTa() {
+		if (Ta == null) {
+			Ta = allocator.doubles(size);
+		}
+	}
+
+	private synchronized void allocateUx() {
+		if (ux == null) {
+			ux = allocator.doubles(size);
+		}
+	}
+
+	private synchronized void allocateDN(int bands) {
+		if (DN == null) {
+			IntColumn[] columns = new IntColumn[bands];
+			for (int band = 0; band < bands; band++) {
+				columns[band] = allocator.ints(size);
+			}
+			DN = columns;
+		}
+	}
+
+	private synchronized DoubleColumn allocateOutput(OutputField field) {
+		if (outputs[field.ordinal()] == null) {
+			outputs[field.ordinal()] = allocator.doubles(size);
+		}
+		return outputs[field.ordinal()];
+	}
+
+	private synchronized void allocateRho(int bands) {
+		if (rho.length >= bands) {
+			return;
+		}
+		DoubleColumn[] newRho = new DoubleColumn[bands];
+		for (int band = 0; band < bands; band++) {
+			newRho[band] = band < rho.length ? rho[band] : allocator.doubles(size);
+		}
+		rho = newRho;
+	}
+
+	/**
+	 * Copies all the values of the given output to the pixel at index. A null
+	 * output removes the output of the pixel.
+	 */
+	public void setOutput(int index, ImagePixelOutput output) {
+		if (output == null) {
+			hasOutput(index, false);
+			return;
+		}
+		if (output instanceof ImagePixelOutputView
+				&& ((ImagePixelOutputView) output).isViewOf(this, index)) {
+			hasOutput(index, true);
+			return;
+		}
+		output(index, OutputField.NDVI, output.getNDVI());
+		output(index, OutputField.TS, output.getTs());
+		output(index, OutputField.SAVI, output.SAVI());
+		output(index, OutputField.RN, output.Rn());
+		output(index, OutputField.G, output.G());
+		output(index, OutputField.H, output.getH());
+		output(index, OutputField.LAMBDA_E, output.getLambdaE());
+		output(index, OutputField.ALPHA, output.getAlpha());
+		output(index, OutputField.EPSILON_NB, output.getEpsilonNB());
+		output(index, OutputField.EPSILON_ZERO, output.getEpsilonZero());
+		output(index, OutputField.Z0MXY, output.getZ0mxy());
+		output(index, OutputField.RL_DOWN, output.getRLDown());
+		output(index, OutputField.EPSILON_A, output.getEpsilonA());
+		output(index, OutputField.RL_UP, output.getRLUp());
+		output(index, OutputField.IAF, output.getIAF());
+		output(index, OutputField.EVI, output.getEVI());
+		output(index, OutputField.RS_DOWN, output.getRSDown());
+		output(index, OutputField.TAU_SW, output.getTauSW());
+		output(index, OutputField.ALPHA_TOA, output.getAlphaToa());
+		output(index, OutputField.EVAPO_24H, output.getEvapo24h());
+		output(index, OutputField.FR_EVAPO, output.getFrEvapo());
+		output(index, OutputField.LAMBDA_24H, output.getLambda24h());
+		output(index, OutputField.TAU_24H, output.getTau24h());
+		output(index, OutputField.RN_24H, output.getRn24h());
+		output(index, OutputField.NDSI, output.getNDSI());
+		output(index, OutputField.W_CLOUD_PROB, output.getWCloudProb());
+		output(index, OutputField.L_CLOUD_PROB, output.getLCloudProb());
+		rho(index, output.getRho());
+		hOuts(index, output.gethOuts());
+		waterTest(index, output.getWaterTest());
+		PCP(index, output.getPCP());
+		isCloud(index, output.isCloud());
+		hasOutput(index, true);
+	}
+
+	/**
+	 * Copies all the per pixel values of the given pixel to the pixel at index.
+	 */
+	public void setPixel(int index, ImagePixel pixel) {
+		double[] LArray = pixel.L();
+		if (LArray != null) {
+			for (int band = 0; band < numberOfBands && band < LArray.length; band++) {
+				L[band].set(index, (float) LArray[band]);
+			}
+		}
+		if (pixel.geoLoc() != null) {
+			geoLoc(index, pixel.geoLoc().getLat(), pixel.geoLoc().getLon());
+		}
+		z(index, pixel.z());
+		zx(index, pixel.zx());
+		d(index, pixel.d());
+		hc(index, pixel.hc());
+		if (pixel.Ta() != 0 || Ta != null) {
+			Ta(index, pixel.Ta());
+		}
+		if (pixel.ux() != 0 || ux != null) {
+			ux(index, pixel.ux());
+		}
+		DN(index, pixel.DN());
+		isValid(index, pixel.isValid());
+		setOutput(index, pixel.output());
+	}
+
+	public double cosTheta() {
+		return cosTheta;
+	}
+
+	public void cosTheta(double cosTheta) {
+		this.cosTheta = cosTheta;
+	}
+
+	public double sinTheta() {
+		return sinTheta;
+	}
+
+	public void sinTheta(double sinTheta) {
+		this.sinTheta = sinTheta;
+	}
+
+	public double sinThetaSunEle() {
+		return sinThetaSunEle;
+	}
+
+	public void sinThetaEle(double sinThetaSunEle) {
+		this.sinThetaSunEle = sinThetaSunEle;
+	}
+
+	public double[] Al() {
+		return Al;
+	}
+
+	public void Al(double[] Al) {
+		this.Al = Al;
+	}
+
+	public double[] Ml() {
+		return Ml;
+	}
+
+	public void Ml(double[] Ml) {
+		this.Ml = Ml;
+	}
+
+	public double[] Ap() {
+		return Ap;
+	}
+
+	public void Ap(double[] Ap) {
+		this.Ap = Ap;
+	}
+
+	public double[] Mp() {
+		return Mp;
+	}
+
+	public void Mp(double[] Mp) {
+		this.Mp = Mp;
+	}
+}
@@ -0,0 +1,177 @@
+package org.fogbowcloud.sebal.model.image;
+
+/**
+ * Flyweight {@link ImagePixel} over one pixel of an {@link ImagePixelStore}.
+ * Views are created on demand by {@link ColumnarImage#pixels()} and hold no
+ * pixel data themselves, so two views of the same pixel are equal.
+ */
+public class ImagePixelView implements ImagePixel {
+
+	private final Image image;
+	private final ImagePixelStore store;
+	private final int index;
+
+	public ImagePixelView(Image image, ImagePixelStore store, int index) {
+		this.image = image;
+		this.store = store;
+		this.index = index;
+	}
+
+	public int index() {
+		return index;
+	}
+
+	@Override
+	public Image image() {
+		return image;
+	}
+
+	@Override
+	public ImagePixelOutput output() {
+		if (!store.hasOutput(index)) {
+			return null;
+		}
+		return new ImagePixelOutputView(store, index);
+	}
+
+	@Override
+	public void setOutput(ImagePixelOutput output) {
+		store.setOutput(index, output);
+	}
+
+	@Override
+	public GeoLoc geoLoc() {
+		return new GeoLoc(store.i(index), store.j(index), store.lat(index), store.lon(index));
+	}
+
+	@Override
+	public int[] DN() {
+		return store.DN(index);
+	}
+
+	public void DN(int[] DN) {
+		store.DN(index, DN);
+	}
+
+	@Override
+	public double[] L() {
+		double[] LArray = new double[store.numberOfBands()];
+		for (int band = 0; band < LArray.length; band++) {
+			LArray[band] = store.L(index, band);
+		}
+		return LArray;
+	}
+
+	public void L(double[] L) {
+		for (int band = 0; band < store.numberOfBands() && band < L.length; band++) {
+			store.L(index, band, (float) L[band]);
+		}
+	}
+
+	@Override
+	public double[] Al() {
+		return store.Al();
+	}
+
+	@Override
+	public double[] Ml() {
+		return store.Ml();
+	}
+
+	@Override
+	public double[] Ap() {
+		return store.Ap();
+	}
+
+	@Override
+	public double[] Mp() {
+		return store.Mp();
+	}
+
+	@Override
+	public double cosTheta() {
+		return store.cosTheta();
+	}
+
+	@Override
+	public double sinThetaSunEle() {
+		return store.sinThetaSunEle();
+	}
+
+	@Override
+	public double z() {
+		return store.z(index);
+	}
+
+	public void z(double z) {
+		store.z(index, z);
+	}
+
+	@Override
+	public double Ta() {
+		return store.Ta(index);
+	}
+
+	public void Ta(double Ta) {
+		store.Ta(index, Ta);
+	}
+
+	@Override
+	public double ux() {
+		return store.ux(index);
+	}
+
+	public void ux(double ux) {
+		store.ux(index, ux);
+	}
+
+	@Override
+	public double zx() {
+		return store.zx(index);
+	}
+
+	public void zx(double zx) {
+		store.zx(index, zx);
+	}
+
+	@Override
+	public double d() {
+		return store.d(index);
+	}
+
+	public void d(double d) {
+		store.d(index, d);
+	}
+
+	@Override
+	public double hc() {
+		return store.hc(index);
+	}
+
+	public void hc(double hc) {
+		store.hc(index, hc);
+	}
+
+	@Override
+	public boolean isValid() {
+		return store.isValid(index);
+	}
+
+	public void isValid(boolean isValid) {
+		store.isValid(index, isValid);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof ImagePixelView) {
+			ImagePixelView other = (ImagePixelView) o;
+			return store == other.store && index == other.index;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(store) * 31 + index;
+	}
+}
@@ -0,0 +1,133 @@
+package org.fogbowcloud.sebal.model.image;
+
+import org.fogbowcloud.sebal.model.image.ImagePixelStore.OutputField;
+
+/**
+ * Coarse views of the core window of a tile: at each level the window is
+ * split in blocks of
+ * blockWidth * factor x blockHeight * factor pixels, and
+ * each block keeps the number of cloud pixels and the number of invalid
+ * pixels (cloud or NDVI not positive). All the levels are built in one pass over the window,
+ * reading the store of the tile directly when it has one. Coordinates are
+ * relative to the window, (0, 0) being its first pixel, and blocks are in the
+ * order of {@link ImagePixelStore} (x + y * blockColumns).
+ */
+public class ImagePyramid {
+
+	private final int windowWidth;
+	private final int windowHeight;
+	private final Level[] levels;
+
+	public ImagePyramid(ImageTile tile, int blockWidth, int blockHeight, int... factors) {
+		if (blockWidth < 1 || blockHeight < 1) {
+			throw new IllegalArgumentException("Blocks of " + blockWidth + "x" + blockHeight
+					+ " pixels are not valid.");
+		}
+		this.windowWidth = tile.width();
+		this.windowHeight = tile.height();
+		this.levels = new Level[factors.length];
+		for (int level = 0; level < factors.length; level++) {
+			if (factors[level] < 1) {
+				throw new IllegalArgumentException("Factor of a level must be positive, not "
+						+ factors[level] + ".");
+			}
+			levels[level] = new Level(blockWidth * factors[level], blockHeight * factors[level]);
+		}
+
+		ImagePixelStore store = tile.store();
+		for (int y = 0; y < windowHeight; y++) {
+			for (int x = 0; x < windowWidth; x++) {
+				if (store != null) {
+					int index = tile.storeIndex(tile.x() + x, tile.y() + y);
+					add(x, y, store.isCloud(index), store.output(index, OutputField.NDVI));
+				} else {
+					ImagePixelOutput output = tile.pixel(tile.x() + x, tile.y() + y).output();
+					add(x, y, output.isCloud(), output.getNDVI());
+				}
+			}
+		}
+	}
+
+	private void add(int x, int y, boolean isCloud, double ndvi) {
+		// the same validity as the screening of clusters
+		boolean invalid = isCloud || ndvi <= 0;
+		for (Level level : levels) {
+			int block = x / level.blockWidth + (y / level.blockHeight) * level.blockColumns;
+			if (isCloud) {
+				level.cloudPixels[block]++;
+			}
+			if (invalid) {
+				level.invalidPixels[block]++;
+			}
+		}
+	}
+
+	public int levels() {
+		return levels.length;
+	}
+
+	public int blockWidth(int level) {
+		return levels[level].blockWidth;
+	}
+
+	public int blockHeight(int level) {
+		return levels[level].blockHeight;
+	}
+
+	public int blockColumns(int level) {
+		return levels[level].blockColumns;
+	}
+
+	public int blockRows(int level) {
+		return levels[level].blockRows;
+	}
+
+	/**
+	 * Number of pixels of the block, smaller than a full block at the right
+	 * and bottom borders of the window.
+	 */
+	public int pixels(int level, int blockX, int blockY) {
+		Level blocks = levels[level];
+		int x = blockX * blocks.blockWidth;
+		int y = blockY * blocks.blockHeight;
+		return Math.min(blocks.blockWidth, windowWidth - x)
+				* Math.min(blocks.blockHeight, windowHeight - y);
+	}
+
+	public double cloudFraction(int level, int blockX, int blockY) {
+		return (double) levels[level].cloudPixels[levels[level].block(blockX, blockY)]
+				/ pixels(level, blockX, blockY);
+	}
+
+	public int invalidPixels(int level, int blockX, int blockY) {
+		return levels[level].invalidPixels[levels[level].block(blockX, blockY)];
+	}
+
+	public int validPixels(int level, int blockX, int blockY) {
+		return pixels(level, blockX, blockY) - invalidPixels(level, blockX, blockY);
+	}
+
+	private class Level {
+
+		private final int blockWidth;
+		private final int blockHeight;
+		private final int blockColumns;
+		private final int blockRows;
+		private final int[] cloudPixels;
+		private final int[] invalidPixels;
+
+		private Level(int blockWidth, int blockHeight) {
+			this.blockWidth = blockWidth;
+			this.blockHeight = blockHeight;
+			this.blockColumns = (windowWidth + blockWidth - 1) / blockWidth;
+			this.blockRows = (windowHeight + blockHeight - 1) / blockHeight;
+			int blocks = blockColumns * blockRows;
+			this.cloudPixels = new int[blocks];
+			this.invalidPixels = new int[blocks];
+		}
+
+		private int block(int blockX, int blockY) {
+			return blockX + blockY * blockColumns;
+		}
+	}
+}
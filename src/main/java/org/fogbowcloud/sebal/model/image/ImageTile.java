@@ -0,0 +1,152 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.util.List;
+
+/**
+ * A rectangular window of an {@link Image}. The core window is the part of
+ * the image the tile is responsible for; the halo window is the core window
+ * grown by the requested halo on every side and clipped to the image, so
+ * neighbourhood logic can look across the tile boundary. Coordinates are
+ * image coordinates and {@link #pixels()} holds the pixels of the halo window
+ * in row order (x + y * haloWidth). When the pixels are views of an
+ * {@link ImagePixelStore}, {@link #store()} gives the store so sweeps over the
+ * tile can read it directly. The pixels of a transient tile are released once
+ * the tile is visited, so visitors must copy what they keep from it.
+ */
+public class ImageTile {
+
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+	private final int haloX;
+	private final int haloY;
+	private final int haloWidth;
+	private final int haloHeight;
+	private final List<ImagePixel> pixels;
+	private final ImagePixelStore store;
+	private final int storeX;
+	private final int storeY;
+	private final boolean isTransient;
+
+	public ImageTile(int x, int y, int width, int height, int haloX, int haloY, int haloWidth,
+			int haloHeight, List<ImagePixel> pixels) {
+		this(x, y, width, height, haloX, haloY, haloWidth, haloHeight, pixels, null, 0, 0, false);
+	}
+
+	/**
+	 * A tile whose pixels are views of the store, the first pixel of the halo
+	 * window being the pixel (storeX, storeY) of the store.
+	 */
+	public ImageTile(int x, int y, int width, int height, int haloX, int haloY, int haloWidth,
+			int haloHeight, List<ImagePixel> pixels, ImagePixelStore store, int storeX,
+			int storeY, boolean isTransient) {
+		if (haloX > x || haloY > y || haloX + haloWidth < x + width
+				|| haloY + haloHeight < y + height) {
+			throw new IllegalArgumentException("Halo window must contain the core window.");
+		}
+		if (pixels.size() != haloWidth * haloHeight) {
+			throw new IllegalArgumentException("Expected " + haloWidth * haloHeight
+					+ " pixels but got " + pixels.size() + ".");
+		}
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.haloX = haloX;
+		this.haloY = haloY;
+		this.haloWidth = haloWidth;
+		this.haloHeight = haloHeight;
+		this.pixels = pixels;
+		this.store = store;
+		this.storeX = storeX;
+		this.storeY = storeY;
+		this.isTransient = isTransient;
+	}
+
+	public int x() {
+		return x;
+	}
+
+	public int y() {
+		return y;
+	}
+
+	public int width() {
+		return width;
+	}
+
+	public int height() {
+		return height;
+	}
+
+	public int haloX() {
+		return haloX;
+	}
+
+	public int haloY() {
+		return haloY;
+	}
+
+	public int haloWidth() {
+		return haloWidth;
+	}
+
+	public int haloHeight() {
+		return haloHeight;
+	}
+
+	public List<ImagePixel> pixels() {
+		return pixels;
+	}
+
+	/**
+	 * Position in {@link #pixels()} of the pixel at the image coordinates
+	 * (x, y), which must be inside the halo window.
+	 */
+	public int index(int x, int y) {
+		if (!isInside(x, y)) {
+			throw new IndexOutOfBoundsException("Pixel (" + x + ", " + y
+					+ ") is outside the halo window of the tile.");
+		}
+		return (x - haloX) + (y - haloY) * haloWidth;
+	}
+
+	/**
+	 * Store the pixels of the tile are views of, or null if they are not.
+	 */
+	public ImagePixelStore store() {
+		return store;
+	}
+
+	/**
+	 * Whether the pixels of the tile are released after its visit.
+	 */
+	public boolean isTransient() {
+		return isTransient;
+	}
+
+	/**
+	 * Index in {@link #store()} of the pixel at the image coordinates (x, y),
+	 * which must be inside the halo window.
+	 */
+	public int storeIndex(int x, int y) {
+		if (!isInside(x, y)) {
+			throw new IndexOutOfBoundsException("Pixel (" + x + ", " + y
+					+ ") is outside the halo window of the tile.");
+		}
+		return store.index(storeX + x - haloX, storeY + y - haloY);
+	}
+
+	public ImagePixel pixel(int x, int y) {
+		return pixels.get(index(x, y));
+	}
+
+	public boolean isInside(int x, int y) {
+		return x >= haloX && x < haloX + haloWidth && y >= haloY && y < haloY + haloHeight;
+	}
+
+	public boolean isCore(int x, int y) {
+		return x >= this.x && x < this.x + width && y >= this.y && y < this.y + height;
+	}
+}
@@ -0,0 +1,106 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Splits an image in tiles. Tiles are visited column by column: every tile
+ * whose core starts at x = 0, from top to bottom, then the ones starting at
+ * x = tileWidth, and so on. Tiles in the last column and row are smaller when
+ * the image size is not a multiple of the tile size.
+ */
+public class ImageTiles {
+
+	/**
+	 * Reads the tile whose core window is (x, y, width, height) with the
+	 * pixels of its halo window (haloX, haloY, haloWidth, haloHeight).
+	 */
+	public interface TileReader {
+
+		ImageTile read(int x, int y, int width, int height, int haloX, int haloY,
+				int haloWidth, int haloHeight) throws Exception;
+
+	}
+
+	private ImageTiles() {
+	}
+
+	public static void forEachTile(int imageWidth, int imageHeight, int tileWidth,
+			int tileHeight, int halo, TileReader reader, TileVisitor visitor) throws Exception {
+		if (tileWidth <= 0 || tileHeight <= 0) {
+			throw new IllegalArgumentException("Tile size must be positive.");
+		}
+		if (halo < 0) {
+			throw new IllegalArgumentException("Halo must not be negative.");
+		}
+		for (int x = 0; x < imageWidth; x += tileWidth) {
+			for (int y = 0; y < imageHeight; y += tileHeight) {
+				int width = Math.min(tileWidth, imageWidth - x);
+				int height = Math.min(tileHeight, imageHeight - y);
+
+				int haloX = Math.max(0, x - halo);
+				int haloY = Math.max(0, y - halo);
+				int haloWidth = Math.min(imageWidth, x + width + halo) - haloX;
+				int haloHeight = Math.min(imageHeight, y + height + halo) - haloY;
+
+				visitor.visit(reader.read(x, y, width, height, haloX, haloY, haloWidth,
+						haloHeight));
+			}
+		}
+	}
+
+	/**
+	 * Tiles of an image whose pixels are already in memory. The tiles are
+	 * views over {@link Image#pixels()}, nothing is copied. Tiles of a
+	 * {@link ColumnarImage} also give its store.
+	 */
+	public static void forEachTile(Image image, int tileWidth, int tileHeight, int halo,
+			TileVisitor visitor) throws Exception {
+		final List<ImagePixel> pixels = image.pixels();
+		final int imageWidth = image.width();
+		final ImagePixelStore store = image instanceof ColumnarImage ? ((ColumnarImage) image)
+				.store() : null;
+		forEachTile(imageWidth, image.height(), tileWidth, tileHeight, halo, new TileReader() {
+			@Override
+			public ImageTile read(int x, int y, int width, int height, int haloX, int haloY,
+					int haloWidth, int haloHeight) {
+				return new ImageTile(x, y, width, height, haloX, haloY, haloWidth, haloHeight,
+						new WindowList(pixels, imageWidth, haloX, haloY, haloWidth, haloHeight),
+						store, haloX, haloY, false);
+			}
+		}, visitor);
+	}
+
+	private static class WindowList extends AbstractList<ImagePixel> implements RandomAccess {
+
+		private final List<ImagePixel> pixels;
+		private final int imageWidth;
+		private final int x;
+		private final int y;
+		private final int width;
+		private final int height;
+
+		WindowList(List<ImagePixel> pixels, int imageWidth, int x, int y, int width, int height) {
+			this.pixels = pixels;
+			this.imageWidth = imageWidth;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public ImagePixel get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+			return pixels.get((x + index % width) + (y + index / width) * imageWidth);
+		}
+
+		@Override
+		public int size() {
+			return width * height;
+		}
+	}
+}
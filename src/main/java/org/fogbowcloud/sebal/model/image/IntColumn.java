@@ -0,0 +1,67 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.nio.IntBuffer;
+
+public abstract class IntColumn extends Column {
+
+	IntColumn(int size) {
+		super(size);
+	}
+
+	public abstract int get(int index);
+
+	public abstract void set(int index, int value);
+
+	static class Heap extends IntColumn {
+
+		private int[] values;
+
+		Heap(int size) {
+			super(size);
+			this.values = new int[size];
+		}
+
+		@Override
+		public int get(int index) {
+			return values[index];
+		}
+
+		@Override
+		public void set(int index, int value) {
+			values[index] = value;
+		}
+
+		@Override
+		public void release() {
+			values = null;
+		}
+	}
+
+	static class Buffered extends IntColumn {
+
+		private final ColumnAllocator.OffHeapBuffer buffer;
+		private IntBuffer values;
+
+		Buffered(int size, ColumnAllocator.OffHeapBuffer buffer) {
+			super(size);
+			this.buffer = buffer;
+			this.values = buffer.buffer().asIntBuffer();
+		}
+
+		@Override
+		public int get(int index) {
+			return values.get(index);
+		}
+
+		@Override
+		public void set(int index, int value) {
+			values.put(index, value);
+		}
+
+		@Override
+		public void release() {
+			values = null;
+			buffer.release();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package org.fogbowcloud.sebal.model.image;
+
+import org.fogbowcloud.sebal.model.image.ImagePixelStore.OutputField;
+
+/**
+ * Cloud and invalid (cloud or NDVI not positive) pixels of a window, one bit
+ * per pixel and plane. Unlike {@link FmaskBitmap}, every row starts at a new
+ * word: the bit of (x, y) is bit x % 64 of word y * wordsPerRow + x / 64, so
+ * the pixels of a rectangle are counted with a few {@link Long#bitCount(long)}
+ * per row.
+ */
+public class InvalidPixelBitmap {
+
+	public enum Plane {
+		CLOUD, INVALID
+	}
+
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+	private final long[][] planes;
+
+	public InvalidPixelBitmap(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 63) >>> 6;
+		this.planes = new long[Plane.values().length][wordsPerRow * height];
+	}
+
+	/**
+	 * The bitmap of the core window of the tile, in one pass that reads the
+	 * store of the tile directly when it has one. (0, 0) is the first pixel of
+	 * the core window.
+	 */
+	public static InvalidPixelBitmap of(ImageTile tile) {
+		InvalidPixelBitmap bitmap = new InvalidPixelBitmap(tile.width(), tile.height());
+		ImagePixelStore store = tile.store();
+		for (int y = 0; y < tile.height(); y++) {
+			for (int x = 0; x < tile.width(); x++) {
+				if (store != null) {
+					int index = tile.storeIndex(tile.x() + x, tile.y() + y);
+					bitmap.set(x + y * tile.width(), store.isCloud(index),
+							store.output(index, OutputField.NDVI));
+				} else {
+					ImagePixelOutput output = tile.pixel(tile.x() + x, tile.y() + y).output();
+					bitmap.set(x + y * tile.width(), output.isCloud(), output.getNDVI());
+				}
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Sets the planes of the pixel at index (x + y * width); the pixel is
+	 * invalid as in the screening of clusters.
+	 */
+	public void set(int index, boolean isCloud, double ndvi) {
+		int x = index % width;
+		int word = (index / width) * wordsPerRow + (x >>> 6);
+		long bit = 1L << x;
+		if (isCloud) {
+			planes[Plane.CLOUD.ordinal()][word] |= bit;
+		}
+		if (isCloud || ndvi <= 0) {
+			planes[Plane.INVALID.ordinal()][word] |= bit;
+		}
+	}
+
+	public int width() {
+		return width;
+	}
+
+	public int height() {
+		return height;
+	}
+
+	public boolean get(Plane plane, int x, int y) {
+		return (planes[plane.ordinal()][y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Number of pixels of the plane in the rectangle of the given size whose
+	 * first pixel is (x, y).
+	 */
+	public int count(Plane plane, int x, int y, int width, int height) {
+		if (width <= 0 || height <= 0) {
+			return 0;
+		}
+		long[] words = planes[plane.ordinal()];
+		int firstWord = x >>> 6;
+		int lastWord = (x + width - 1) >>> 6;
+		long firstMask = -1L << x;
+		long lastMask = -1L >>> -(x + width);
+		int count = 0;
+		for (int row = y; row < y + height; row++) {
+			int rowWord = row * wordsPerRow;
+			if (firstWord == lastWord) {
+				count += Long.bitCount(words[rowWord + firstWord] & firstMask & lastMask);
+				continue;
+			}
+			count += Long.bitCount(words[rowWord + firstWord] & firstMask);
+			for (int word = firstWord + 1; word < lastWord; word++) {
+				count += Long.bitCount(words[rowWord + word]);
+			}
+			count += Long.bitCount(words[rowWord + lastWord] & lastMask);
+		}
+		return count;
+	}
+
+	/**
+	 * The words of a plane, wordsPerRow words per row; bits past the width of
+	 * a row are always 0.
+	 */
+	public long[] words(Plane plane) {
+		return planes[plane.ordinal()];
+	}
+
+	public int wordsPerRow() {
+		return wordsPerRow;
+	}
+}
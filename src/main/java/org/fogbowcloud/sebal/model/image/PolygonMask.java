@@ -0,0 +1,183 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.util.Arrays;
+
+/**
+ * A polygon rasterized over a window, as spans of pixels inside the polygon
+ * per row and as a bitmask in the order of {@link ImagePixelStore}
+ * (x + y * width). The polygon is given in raster coordinates, and the pixel
+ * (i, j) is inside when the point (i, j) is inside the polygon by the non-zero
+ * winding rule, the rule of {@link java.awt.geom.Path2D.Double}.
+ */
+public class PolygonMask {
+
+	private static final int[] NO_SPANS = new int[0];
+
+	private final int width;
+	private final int height;
+	private final int[][] spans;
+	private final long[] bits;
+	private int rowBegin;
+	private int rowEnd;
+
+	private PolygonMask(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.spans = new int[height][];
+		this.bits = new long[(width * height + 63) >>> 6];
+	}
+
+	/**
+	 * Rasterizes the polygon with vertices (xs[k], ys[k]) over the window of
+	 * the given size whose first pixel is the raster position (xBegin,
+	 * yBegin). A polygon with less than three vertices covers the whole
+	 * window.
+	 */
+	public static PolygonMask rasterize(double[] xs, double[] ys, int xBegin, int yBegin,
+			int width, int height) {
+		if (xs.length != ys.length) {
+			throw new IllegalArgumentException("Polygon has " + xs.length + " x and " + ys.length
+					+ " y coordinates.");
+		}
+		PolygonMask mask = new PolygonMask(width, height);
+		mask.rowBegin = height;
+		mask.rowEnd = 0;
+
+		double[] crossings = new double[xs.length];
+		int[] directions = new int[xs.length];
+		for (int y = 0; y < height; y++) {
+			int[] rowSpans;
+			if (xs.length < 3) {
+				rowSpans = width == 0 ? NO_SPANS : new int[] { 0, width };
+			} else {
+				rowSpans = rowSpans(xs, ys, xBegin, yBegin + y, width, crossings, directions);
+			}
+			mask.spans[y] = rowSpans;
+			for (int span = 0; span < rowSpans.length; span += 2) {
+				mask.set(y * width + rowSpans[span], y * width + rowSpans[span + 1]);
+			}
+			if (rowSpans.length > 0) {
+				mask.rowBegin = Math.min(mask.rowBegin, y);
+				mask.rowEnd = y + 1;
+			}
+		}
+		if (mask.rowBegin > mask.rowEnd) {
+			mask.rowBegin = mask.rowEnd;
+		}
+		return mask;
+	}
+
+	/*
+	 * Spans of the row, in window columns, where the winding number of the
+	 * polygon is not zero.
+	 */
+	private static int[] rowSpans(double[] xs, double[] ys, int xBegin, int j, int width,
+			double[] crossings, int[] directions) {
+		int count = 0;
+		for (int k = 0; k < xs.length; k++) {
+			int next = (k + 1) % xs.length;
+			double y0 = ys[k];
+			double y1 = ys[next];
+			// half-open on y, so a vertex on the row is counted once
+			if ((y0 <= j && j < y1) || (y1 <= j && j < y0)) {
+				crossings[count] = xs[k] + (j - y0) * (xs[next] - xs[k]) / (y1 - y0);
+				directions[count] = y1 > y0 ? 1 : -1;
+				count++;
+			}
+		}
+		sort(crossings, directions, count);
+
+		int[] rowSpans = new int[count];
+		int length = 0;
+		int winding = 0;
+		for (int c = 0; c < count; c++) {
+			int previous = winding;
+			winding += directions[c];
+			if (previous == 0 && winding != 0) {
+				// first column i with i >= crossing
+				rowSpans[length++] = clamp((int) Math.ceil(crossings[c]) - xBegin, width);
+			} else if (previous != 0 && winding == 0) {
+				int end = clamp((int) Math.ceil(crossings[c]) - xBegin, width);
+				if (end > rowSpans[length - 1]) {
+					rowSpans[length++] = end;
+				} else {
+					length--;
+				}
+			}
+		}
+		return length == 0 ? NO_SPANS : Arrays.copyOf(rowSpans, length);
+	}
+
+	private static int clamp(int x, int width) {
+		return Math.max(0, Math.min(width, x));
+	}
+
+	// insertion sort, polygons have a handful of vertices
+	private static void sort(double[] crossings, int[] directions, int count) {
+		for (int c = 1; c < count; c++) {
+			double crossing = crossings[c];
+			int direction = directions[c];
+			int d = c - 1;
+			while (d >= 0 && crossings[d] > crossing) {
+				crossings[d + 1] = crossings[d];
+				directions[d + 1] = directions[d];
+				d--;
+			}
+			crossings[d + 1] = crossing;
+			directions[d + 1] = direction;
+		}
+	}
+
+	private void set(int fromIndex, int toIndex) {
+		for (int index = fromIndex; index < toIndex; index++) {
+			bits[index >>> 6] |= 1L << index;
+		}
+	}
+
+	public int width() {
+		return width;
+	}
+
+	public int height() {
+		return height;
+	}
+
+	public boolean contains(int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	public boolean contains(int x, int y) {
+		return contains(x + y * width);
+	}
+
+	/**
+	 * Pairs of window columns [begin, end) inside the polygon in the row,
+	 * from left to right.
+	 */
+	public int[] spans(int y) {
+		return spans[y];
+	}
+
+	public boolean isRowEmpty(int y) {
+		return spans[y].length == 0;
+	}
+
+	/**
+	 * First row with a pixel inside the polygon; rows before it can be
+	 * skipped.
+	 */
+	public int rowBegin() {
+		return rowBegin;
+	}
+
+	/**
+	 * Row after the last row with a pixel inside the polygon.
+	 */
+	public int rowEnd() {
+		return rowEnd;
+	}
+
+	public long[] words() {
+		return bits;
+	}
+}
@@ -0,0 +1,52 @@
+package org.fogbowcloud.sebal.model.image;
+
+/**
+ * Summed-area table of a grid of values given in the order of
+ * {@link ImagePixelStore} (x + y * width). The sum of the values of any
+ * rectangle of the grid takes four lookups.
+ */
+public class SummedAreaTable {
+
+	private final int width;
+	private final int height;
+	// sums[x + y * (width + 1)] is the sum of the values in [0, x) x [0, y)
+	private final double[] sums;
+
+	public SummedAreaTable(double[] values, int width, int height) {
+		if (values.length < width * height) {
+			throw new IllegalArgumentException("A grid of " + width + "x" + height + " needs "
+					+ width * height + " values, not " + values.length + ".");
+		}
+		this.width = width;
+		this.height = height;
+		this.sums = new double[(width + 1) * (height + 1)];
+		int stride = width + 1;
+		for (int y = 0; y < height; y++) {
+			double rowSum = 0;
+			for (int x = 0; x < width; x++) {
+				rowSum += values[x + y * width];
+				sums[(x + 1) + (y + 1) * stride] = sums[(x + 1) + y * stride] + rowSum;
+			}
+		}
+	}
+
+	public int width() {
+		return width;
+	}
+
+	public int height() {
+		return height;
+	}
+
+	/**
+	 * Sum of the values of the rectangle of the given size whose first value
+	 * is (x, y).
+	 */
+	public double sum(int x, int y, int width, int height) {
+		int stride = this.width + 1;
+		int x1 = x + width;
+		int y1 = y + height;
+		return sums[x1 + y1 * stride] - sums[x + y1 * stride] - sums[x1 + y * stride]
+				+ sums[x + y * stride];
+	}
+}
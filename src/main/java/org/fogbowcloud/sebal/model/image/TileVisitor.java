@@ -0,0 +1,11 @@
+package org.fogbowcloud.sebal.model.image;
+
+/**
+ * Receives the tiles of an image, see
+ * {@link Image#forEachTile(int, int, int, TileVisitor)}.
+ */
+public interface TileVisitor {
+
+	void visit(ImageTile tile) throws Exception;
+
+}
@@ -2,14 +2,15 @@ package org.fogbowcloud.sebal.parsers;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.lingala.zip4j.core.ZipFile;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
+import org.fogbowcloud.sebal.parsers.SRTMTileCache.SRTMTile;
 
 public class Elevation {
 
@@ -17,6 +18,26 @@ public class Elevation {
 
 	private static final Logger LOGGER = Logger.getLogger(Elevation.class);
 
+	// one lock per tile, so threads of the same process do not download it twice
+	private static final ConcurrentMap<String, Object> TILE_LOCKS = new ConcurrentHashMap<String, Object>();
+
+	private static final SRTMTileCache DEFAULT_TILE_CACHE = new SRTMTileCache();
+
+	private final SRTMTileCache tileCache;
+	private volatile LastTile lastTile;
+
+	public Elevation() {
+		this(DEFAULT_TILE_CACHE);
+	}
+
+	public Elevation(SRTMTileCache tileCache) {
+		this.tileCache = tileCache;
+	}
+
+	public SRTMTileCache tileCache() {
+		return tileCache;
+	}
+
     /*
      * South America
      * http://dds.cr.usgs.gov/srtm/version2_1/SRTM3/South_America/
@@ -32,10 +53,10 @@ public class Elevation {
      */
 
     /** 1200 Intervals means 1201 positions per line and column */
-    private static final int SRTM3_INTERVALS = 1200;
-    private static final int SRTM3_FILE_SIZE = (SRTM3_INTERVALS + 1)
+    static final int SRTM3_INTERVALS = 1200;
+    static final int SRTM3_FILE_SIZE = (SRTM3_INTERVALS + 1)
             * (SRTM3_INTERVALS + 1) * 2;
-    private static final int SRTM1_INTERVALS = 3600;
+    static final int SRTM1_INTERVALS = 3600;
     public static final int SRTM1_FILE_SIZE = (SRTM1_INTERVALS + 1)
             * (SRTM1_INTERVALS + 1) * 2;
     private static final int INVALID_VALUE_LIMIT = -15000; // Won't interpolate
@@ -44,18 +65,6 @@ public class Elevation {
                                                            // Meters, guess is:
                                                            // -0x8000
 
-    private int getIntervalCount(RandomAccessFile file) throws IOException {
-        long fileLength = file.length();
-        if (fileLength == SRTM3_FILE_SIZE) {
-            return SRTM3_INTERVALS;
-        }
-        if (fileLength == SRTM1_FILE_SIZE) {
-            return SRTM1_INTERVALS;
-        }
-        throw new IOException("Elevation tile " + file + " has invalid size "
-                + fileLength);
-    }
-
     /**
      * Calculate the elevation for the destination position according the
      * theorem on intersecting lines ("Strahlensatz").
@@ -81,56 +90,10 @@ public class Elevation {
 
         int lat = latitude < 0 ? roundLat + 1 : roundLat;
 		int lon = longitude < 0 ? roundLon + 1 : roundLon;
-		String hgtFilePrefix = String.format("%s%02d%s%03d", latChar, lat, lonChar, lon);
 
-        String hgtFile = hgtFilePrefix + ".hgt";
-        String hgtZipFile = hgtFile + ".zip";
+		SRTMTile tile = tile(latChar, lat, lonChar, lon);
 
-        String location = getLocation(latChar, lat, lonChar, lon); 
-//        System.out.println("FileName: " + hgtFile);
-//        System.out.println("Location: " + location);
-        
-        if (!new File(hgtZipFile).exists()) {
-        	LOGGER.debug("File + " + hgtFile + " for location " + location + " doesn't exist and will be downloaded.");
-            int waitTime = 1000;
-            for (int i = 0; i < HGT_RETRY_COUNT; i++) {
-                try {
-                    String zipURL = "http://dds.cr.usgs.gov/srtm/version2_1/SRTM3/" + location + "/"
-                            + hgtFile + ".zip";
-                    IOUtils.copy(new URL(zipURL).openStream(),
-                            new FileOutputStream(hgtZipFile));
-                    ZipFile zipFile = new ZipFile(hgtZipFile);
-                    zipFile.extractAll(".");
-                    break;
-                } catch (Throwable t) {
-					LOGGER.error(
-							"There was an error while downloading ou unzip elevation file and will wait "
-									+ waitTime + " miliseconds.", t);
-                    try {
-                        Thread.sleep(waitTime);
-                    } catch (InterruptedException e) {
-                        // Do nothing
-                    }
-                    waitTime += 1000;
-                }
-            }
-        }
-        
-		// For more than one process in the same machine trying to use the same
-		// file
-        while (true) {
-            File hgt = new File(hgtFile);
-            if (hgt.exists()) {
-                if (hgt.length() == 2884802) {
-                    break;
-                }
-            }
-            Thread.sleep(1000);
-        }
-
-        RandomAccessFile file = new RandomAccessFile(hgtFile, "r");
-
-        if (file == null || longitude == null || latitude == null) {
+        if (longitude == null || latitude == null) {
             return null;
         }
 
@@ -154,7 +117,7 @@ public class Elevation {
                                               // (needed for later calculation)
         }
 
-        int intervalCount = getIntervalCount(file);
+        int intervalCount = tile.intervalCount();
         int longitudeIntervalIndex = (int) ((longitude - (double) longitudeAsInt) * intervalCount);
         int latitudeIntervalIndex = (int) ((latitude - (double) latitudeAsInt) * intervalCount);
 
@@ -182,33 +145,25 @@ public class Elevation {
         pos = (((intervalCount - latitudeIntervalIndex) - 1) * (intervalCount + 1))
                 + longitudeIntervalIndex; // The index for the left top
                                           // elevation
-        file.seek(pos * 2); // We have 16-bit values for elevation, so multiply
-                            // by 2
-        dLeftTop = file.readShort(); // Now read the left top elevation from hgt
+        dLeftTop = tile.sample(pos); // Now read the left top elevation from hgt
                                      // file
 
         pos = ((intervalCount - latitudeIntervalIndex) * (intervalCount + 1))
                 + longitudeIntervalIndex; // The index for the left bottom
                                           // elevation
-        file.seek(pos * 2); // We have 16-bit values for elevation, so multiply
-                            // by 2
-        dLeftBottom = file.readShort(); // Now read the left bottom elevation
+        dLeftBottom = tile.sample(pos); // Now read the left bottom elevation
                                         // from hgt file
 
         pos = (((intervalCount - latitudeIntervalIndex) - 1) * (intervalCount + 1))
                 + longitudeIntervalIndex + 1; // The index for the right top
                                               // elevation
-        file.seek(pos * 2); // We have 16-bit values for elevation, so multiply
-                            // by 2
-        dRightTop = file.readShort(); // Now read the right top elevation from
+        dRightTop = tile.sample(pos); // Now read the right top elevation from
                                       // hgt file
 
         pos = ((intervalCount - latitudeIntervalIndex) * (intervalCount + 1))
                 + longitudeIntervalIndex + 1; // The index for the right bottom
                                               // elevation
-        file.seek(pos * 2); // We have 16-bit values for elevation, so multiply
-                            // by 2
-        dRightBottom = file.readShort(); // Now read the right bottom top
+        dRightBottom = tile.sample(pos); // Now read the right bottom top
                                          // elevation from hgt file
 
         // if one of the read elevation values is not valid, we cannot
@@ -217,7 +172,6 @@ public class Elevation {
                 || (dLeftBottom < INVALID_VALUE_LIMIT)
                 || (dRightTop < INVALID_VALUE_LIMIT)
                 || (dRightBottom < INVALID_VALUE_LIMIT)) {
-            file.close();
             return null;
         }
 
@@ -245,10 +199,175 @@ public class Elevation {
                 - calculateElevation(dLonHeightLeft - dLonHeightRight,
                         1.0 / (double) intervalCount, dDeltaLon);
         // round the interpolated elevation
-        file.close();
         return dElevation + 0.5;
     }
 
+    /**
+     * Fills elevations[offset, offset + length) with the elevation of the
+     * points (latitudes[k], longitudes[k]) in the same range, or NaN where
+     * {@link #z(Double, Double)} would return null. Points are expected in
+     * raster order: consecutive points in the same tile do not look it up
+     * again, and consecutive points in the same SRTM cell reuse its corner
+     * samples.
+     */
+    public void zGrid(double[] latitudes, double[] longitudes, int offset, int length,
+            float[] elevations) throws Exception {
+        SRTMTile tile = null;
+        int tileLat = Integer.MIN_VALUE;
+        int tileLon = Integer.MIN_VALUE;
+        int cellLat = -1;
+        int cellLon = -1;
+        double dLeftTop = 0;
+        double dLeftBottom = 0;
+        double dRightTop = 0;
+        double dRightBottom = 0;
+
+        for (int k = offset; k < offset + length; k++) {
+            double latitude = latitudes[k];
+            double longitude = longitudes[k];
+
+            // signed tile corner, the same rounding of z()
+            int latitudeAsInt = (int) latitude;
+            int longitudeAsInt = (int) longitude;
+            if (longitude < 0) {
+                longitudeAsInt = (longitudeAsInt - 1) * -1;
+                longitude = ((double) longitudeAsInt + longitude) + (double) longitudeAsInt;
+            }
+            if (latitude < 0) {
+                latitudeAsInt = (latitudeAsInt - 1) * -1;
+                latitude = ((double) latitudeAsInt + latitude) + (double) latitudeAsInt;
+            }
+            int signedLat = latitudes[k] < 0 ? -latitudeAsInt : latitudeAsInt;
+            int signedLon = longitudes[k] < 0 ? -longitudeAsInt : longitudeAsInt;
+
+            if (tile == null || signedLat != tileLat || signedLon != tileLon) {
+                tile = tile(latitudes[k] >= 0 ? "N" : "S", latitudeAsInt,
+                        longitudes[k] >= 0 ? "E" : "W", longitudeAsInt);
+                tileLat = signedLat;
+                tileLon = signedLon;
+                cellLat = -1;
+                cellLon = -1;
+            }
+
+            int intervalCount = tile.intervalCount();
+            int longitudeIntervalIndex = Math.min(
+                    (int) ((longitude - (double) longitudeAsInt) * intervalCount),
+                    intervalCount - 1);
+            int latitudeIntervalIndex = Math.min(
+                    (int) ((latitude - (double) latitudeAsInt) * intervalCount),
+                    intervalCount - 1);
+
+            if (latitudeIntervalIndex != cellLat || longitudeIntervalIndex != cellLon) {
+                int topPos = (((intervalCount - latitudeIntervalIndex) - 1) * (intervalCount + 1))
+                        + longitudeIntervalIndex;
+                int bottomPos = ((intervalCount - latitudeIntervalIndex) * (intervalCount + 1))
+                        + longitudeIntervalIndex;
+                dLeftTop = tile.sample(topPos);
+                dLeftBottom = tile.sample(bottomPos);
+                dRightTop = tile.sample(topPos + 1);
+                dRightBottom = tile.sample(bottomPos + 1);
+                cellLat = latitudeIntervalIndex;
+                cellLon = longitudeIntervalIndex;
+            }
+
+            if ((dLeftTop < INVALID_VALUE_LIMIT) || (dLeftBottom < INVALID_VALUE_LIMIT)
+                    || (dRightTop < INVALID_VALUE_LIMIT) || (dRightBottom < INVALID_VALUE_LIMIT)) {
+                elevations[k] = Float.NaN;
+                continue;
+            }
+
+            double dOffLon = longitude - (double) longitudeAsInt;
+            double dOffLat = latitude - (double) latitudeAsInt;
+            double dDeltaLon = dOffLon - (double) longitudeIntervalIndex
+                    * (1.0 / (double) intervalCount);
+            double dDeltaLat = dOffLat - (double) latitudeIntervalIndex
+                    * (1.0 / (double) intervalCount);
+
+            double dLonHeightLeft = dLeftBottom
+                    - calculateElevation(dLeftBottom - dLeftTop,
+                            1.0 / (double) intervalCount, dDeltaLat);
+            double dLonHeightRight = dRightBottom
+                    - calculateElevation(dRightBottom - dRightTop,
+                            1.0 / (double) intervalCount, dDeltaLat);
+            double dElevation = dLonHeightLeft
+                    - calculateElevation(dLonHeightLeft - dLonHeightRight,
+                            1.0 / (double) intervalCount, dDeltaLon);
+            elevations[k] = (float) (dElevation + 0.5);
+        }
+    }
+
+    private SRTMTile tile(String latChar, int lat, String lonChar, int lon) throws Exception {
+		// neighbour pixels are almost always in the same tile as the last one
+		LastTile last = lastTile;
+		if (last != null && last.matches(latChar, lat, lonChar, lon)) {
+			tileCache.hit();
+			return last.tile;
+		}
+		String hgtFilePrefix = String.format("%s%02d%s%03d", latChar, lat, lonChar, lon);
+		String hgtFile = hgtFilePrefix + ".hgt";
+
+		SRTMTile tile = tileCache.cached(hgtFile);
+		if (tile == null) {
+			tile = loadTile(hgtFile, getLocation(latChar, lat, lonChar, lon));
+		}
+		lastTile = new LastTile(latChar, lat, lonChar, lon, tile);
+		return tile;
+    }
+
+    /*
+     * Downloads the tile if needed and maps it. Only called on a cache miss,
+     * so the file checks below are done once per tile and not per pixel.
+     */
+    private SRTMTile loadTile(String hgtFile, String location) throws Exception {
+        String hgtZipFile = hgtFile + ".zip";
+
+        Object tileLock = TILE_LOCKS.putIfAbsent(hgtFile, new Object());
+        if (tileLock == null) {
+        	tileLock = TILE_LOCKS.get(hgtFile);
+        }
+        synchronized (tileLock) {
+            if (!new File(tileCache.directory(), hgtZipFile).exists()) {
+            	LOGGER.debug("File + " + hgtFile + " for location " + location + " doesn't exist and will be downloaded.");
+                int waitTime = 1000;
+                for (int i = 0; i < HGT_RETRY_COUNT; i++) {
+                    try {
+                        String zipURL = "http://dds.cr.usgs.gov/srtm/version2_1/SRTM3/" + location + "/"
+                                + hgtFile + ".zip";
+                        IOUtils.copy(new URL(zipURL).openStream(),
+                                new FileOutputStream(new File(tileCache.directory(), hgtZipFile)));
+                        ZipFile zipFile = new ZipFile(new File(tileCache.directory(), hgtZipFile));
+                        zipFile.extractAll(tileCache.directory().getPath());
+                        break;
+                    } catch (Throwable t) {
+						LOGGER.error(
+								"There was an error while downloading ou unzip elevation file and will wait "
+										+ waitTime + " miliseconds.", t);
+                        try {
+                            Thread.sleep(waitTime);
+                        } catch (InterruptedException e) {
+                            // Do nothing
+                        }
+                        waitTime += 1000;
+                    }
+                }
+            }
+        }
+        
+		// For more than one process in the same machine trying to use the same
+		// file
+        while (true) {
+            File hgt = new File(tileCache.directory(), hgtFile);
+            if (hgt.exists()) {
+                if (hgt.length() == 2884802) {
+                    break;
+                }
+            }
+            Thread.sleep(1000);
+        }
+
+        return tileCache.load(hgtFile);
+    }
+
     /*
      * TODO Implement for other locations
      * South America
@@ -269,4 +388,26 @@ public class Elevation {
 		} 		
 		return "South_America";
 	}
+
+	private static class LastTile {
+
+		private final String latChar;
+		private final int lat;
+		private final String lonChar;
+		private final int lon;
+		private final SRTMTile tile;
+
+		LastTile(String latChar, int lat, String lonChar, int lon, SRTMTile tile) {
+			this.latChar = latChar;
+			this.lat = lat;
+			this.lonChar = lonChar;
+			this.lon = lon;
+			this.tile = tile;
+		}
+
+		boolean matches(String latChar, int lat, String lonChar, int lon) {
+			return this.lat == lat && this.lon == lon && this.latChar.equals(latChar)
+					&& this.lonChar.equals(lonChar);
+		}
+	}
 }
@@ -0,0 +1,154 @@
+package org.fogbowcloud.sebal.parsers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps the .hgt tiles used by {@link Elevation} memory-mapped, so reading an
+ * elevation sample does not need a file open, seek and read. The mappings are
+ * kept in a LRU bounded by maxTiles; an evicted mapping is released by the
+ * garbage collector.
+ */
+public class SRTMTileCache {
+
+	public static final int DEFAULT_MAX_TILES = 16;
+
+	private static final Logger LOGGER = Logger.getLogger(SRTMTileCache.class);
+
+	private final File directory;
+	private final Map<String, SRTMTile> tiles;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public SRTMTileCache() {
+		this(new File("."), DEFAULT_MAX_TILES);
+	}
+
+	public SRTMTileCache(File directory, final int maxTiles) {
+		if (maxTiles <= 0) {
+			throw new IllegalArgumentException("maxTiles must be positive.");
+		}
+		this.directory = directory;
+		this.tiles = new LinkedHashMap<String, SRTMTile>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SRTMTile> eldest) {
+				if (size() > maxTiles) {
+					LOGGER.debug("Evicting elevation tile " + eldest.getKey());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public File directory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the mapped tile, or null if it is not in the cache yet.
+	 */
+	public SRTMTile cached(String hgtFileName) {
+		SRTMTile tile;
+		synchronized (tiles) {
+			tile = tiles.get(hgtFileName);
+		}
+		if (tile != null) {
+			hits.incrementAndGet();
+		}
+		return tile;
+	}
+
+	/**
+	 * Maps the tile file and adds it to the cache. The file must be complete.
+	 */
+	public SRTMTile load(String hgtFileName) throws IOException {
+		synchronized (tiles) {
+			SRTMTile tile = tiles.get(hgtFileName);
+			if (tile != null) {
+				hits.incrementAndGet();
+				return tile;
+			}
+			misses.incrementAndGet();
+			tile = SRTMTile.map(new File(directory, hgtFileName));
+			tiles.put(hgtFileName, tile);
+			return tile;
+		}
+	}
+
+	/**
+	 * Counts a hit of a tile the caller kept from a previous lookup.
+	 */
+	void hit() {
+		hits.incrementAndGet();
+	}
+
+	public long hits() {
+		return hits.get();
+	}
+
+	public long misses() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (tiles) {
+			return tiles.size();
+		}
+	}
+
+	/**
+	 * A read-only mapping of one .hgt file: (intervals + 1)^2 big-endian 16
+	 * bit samples, from north to south and west to east.
+	 */
+	public static class SRTMTile {
+
+		private final MappedByteBuffer samples;
+		private final int intervalCount;
+
+		SRTMTile(MappedByteBuffer samples, int intervalCount) {
+			this.samples = samples;
+			this.intervalCount = intervalCount;
+		}
+
+		static SRTMTile map(File hgtFile) throws IOException {
+			RandomAccessFile file = new RandomAccessFile(hgtFile, "r");
+			try {
+				long fileLength = file.length();
+				int intervalCount;
+				if (fileLength == Elevation.SRTM3_FILE_SIZE) {
+					intervalCount = Elevation.SRTM3_INTERVALS;
+				} else if (fileLength == Elevation.SRTM1_FILE_SIZE) {
+					intervalCount = Elevation.SRTM1_INTERVALS;
+				} else {
+					throw new IOException("Elevation tile " + hgtFile + " has invalid size "
+							+ fileLength);
+				}
+				MappedByteBuffer samples = file.getChannel().map(FileChannel.MapMode.READ_ONLY,
+						0, fileLength);
+				return new SRTMTile(samples, intervalCount);
+			} finally {
+				// the mapping stays valid after the file is closed
+				file.close();
+			}
+		}
+
+		public int intervalCount() {
+			return intervalCount;
+		}
+
+		public short sample(int pos) {
+			return samples.getShort(pos * 2);
+		}
+	}
+}
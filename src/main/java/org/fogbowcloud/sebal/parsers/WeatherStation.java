@@ -3,25 +3,59 @@ package org.fogbowcloud.sebal.parsers;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpException;
 import org.apache.log4j.Logger;
 import org.fogbowcloud.sebal.parsers.plugins.StationOperator;
 import org.fogbowcloud.sebal.parsers.plugins.StationOperatorConstants;
+import org.fogbowcloud.sebal.parsers.plugins.StationYearRecords;
+import org.fogbowcloud.sebal.parsers.plugins.WeatherStore;
 import org.fogbowcloud.sebal.parsers.plugins.ftp.FTPStationOperator;
-import org.fogbowcloud.sebal.util.SEBALAppConstants;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 public class WeatherStation {
 
+	private static final int DEFAULT_STATION_FETCH_PARALLELISM = 4;
+
+	/*
+	 * Fetches still running when the nearest station is found are cancelled,
+	 * but may take a while to stop; daemon threads do not keep the JVM alive
+	 * meanwhile.
+	 */
+	private static final ThreadFactory STATION_FETCH_THREADS = new ThreadFactory() {
+
+		private final AtomicInteger threads = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "station-fetch-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
 	private Properties properties;
 	private StationOperator stationOperator;
+	private WeatherStore weatherStore;
+	private int stationFetchParallelism;
 
 	private static final Logger LOGGER = Logger.getLogger(WeatherStation.class);
 
@@ -32,8 +66,27 @@ public class WeatherStation {
 
 	public WeatherStation(Properties properties) throws URISyntaxException,
 			HttpException, IOException {
+		this(properties, new FTPStationOperator(properties));
+	}
+
+	WeatherStation(Properties properties, StationOperator stationOperator) {
 		this.properties = properties;
-		this.stationOperator = new FTPStationOperator(properties);
+		this.stationOperator = stationOperator;
+		this.weatherStore = new WeatherStore(properties);
+		this.stationFetchParallelism = getStationFetchParallelism(properties);
+	}
+
+	private static int getStationFetchParallelism(Properties properties) {
+		String parallelism = properties
+				.getProperty(StationOperatorConstants.STATION_FETCH_PARALLELISM);
+		if (parallelism == null || parallelism.isEmpty()) {
+			return DEFAULT_STATION_FETCH_PARALLELISM;
+		}
+		int stationFetchParallelism = Integer.parseInt(parallelism);
+		if (stationFetchParallelism <= 0) {
+			throw new IllegalArgumentException("Station fetch parallelism must be positive.");
+		}
+		return stationFetchParallelism;
 	}
 
 	public void persistStations() throws IOException {
@@ -78,168 +131,146 @@ public class WeatherStation {
 
 		if (!stations.isEmpty()) {
 			LOGGER.debug("beginDate: " + begindate + " endDate: " + endDate);
+			int beginDay = day(begindate);
+			int endDay = day(endDate);
+			if (stationFetchParallelism > 1 && stations.size() > 1) {
+				return readNearestStationData(date, stations, beginDay, endDay);
+			}
 			for (JSONObject station : stations) {
-				try {
-					JSONArray stationData = stationOperator.readStation(station.optString("id"),
-							StationOperatorConstants.DATE_FORMAT.format(begindate),
-							StationOperatorConstants.DATE_FORMAT.format(endDate));
-
-					if (stationData != null) {
-						JSONObject closestRecord = null;
-						Long smallestDiff = Long.MAX_VALUE;
-
-						for (int i = 0; i < stationData.length(); i++) {
-							JSONObject stationDataRecord = stationData.optJSONObject(i);
-							String dateValue = stationDataRecord
-									.optString(SEBALAppConstants.JSON_STATION_DATE);
-							String timeValue = stationDataRecord
-									.optString(SEBALAppConstants.JSON_STATION_TIME);
-
-							Date recordDate = StationOperatorConstants.DATE_TIME_FORMAT
-									.parse(dateValue + ";" + timeValue);
-							long diff = Math.abs(recordDate.getTime() - date.getTime());
-							if (diff < smallestDiff) {
-								smallestDiff = diff;
-								closestRecord = stationDataRecord;
-							}
-
-							if (!closestRecord.optString(SEBALAppConstants.JSON_STATION_DATE)
-									.isEmpty()
-									&& !closestRecord.optString(SEBALAppConstants.JSON_STATION_TIME)
-											.isEmpty()
-									&& !closestRecord
-											.optString(SEBALAppConstants.JSON_STATION_LATITUDE)
-											.isEmpty()
-									&& !closestRecord
-											.optString(SEBALAppConstants.JSON_STATION_LONGITUDE)
-											.isEmpty()
-									&& !closestRecord
-											.optString(SEBALAppConstants.JSON_AIR_TEMPERATURE)
-											.isEmpty()
-									&& !closestRecord
-											.optString(SEBALAppConstants.JSON_DEWPOINT_TEMPERATURE)
-											.isEmpty()
-									&& !closestRecord
-											.optString(SEBALAppConstants.JSON_STATION_WIND_SPEED)
-											.isEmpty()
-									&& Double.parseDouble(closestRecord.optString(
-											SEBALAppConstants.JSON_STATION_WIND_SPEED)) >= 0.3) {
-								return generateStationData(stationData, closestRecord);
-							} else if (Double.parseDouble(closestRecord
-									.optString(SEBALAppConstants.JSON_STATION_WIND_SPEED)) < 0.3) {
-								closestRecord.remove(SEBALAppConstants.JSON_STATION_WIND_SPEED);
-								closestRecord.put(SEBALAppConstants.JSON_STATION_WIND_SPEED, "0.3");
-							}
-						}
-					}
-				} catch (Exception e) {
-					LOGGER.error("Error while reading full record", e);
+				String stationData = readStationData(date, station, beginDay, endDay);
+				if (stationData != null) {
+					return stationData;
 				}
 			}
 		} else {
 			LOGGER.info("Stations list is empty");
 		}
 
-
 		return null;
 	}
 
-	private String generateStationData(JSONArray stationData,
-			JSONObject closestRecord) {
-		StringBuilder toReturn = new StringBuilder();
-		for (int i = 0; i < stationData.length(); i++) {
-			checkVariablesAndBuildString(stationData, closestRecord, toReturn,
-					i);
+	/*
+	 * Fetches up to stationFetchParallelism stations at a time, nearest first,
+	 * and returns the data of the nearest station that has a complete record
+	 * as soon as every station nearer than it has none; the fetches still
+	 * running are then cancelled. A cancelled fetch stops, closing its
+	 * download, at the next record it reads.
+	 */
+	private String readNearestStationData(final Date date, final List<JSONObject> stations,
+			final int beginDay, final int endDay) {
+		final String[] stationData = new String[stations.size()];
+		boolean[] read = new boolean[stations.size()];
+		List<Future<Integer>> fetches = new ArrayList<Future<Integer>>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+				stationFetchParallelism, stations.size()), STATION_FETCH_THREADS);
+		CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(
+				executor);
+		try {
+			for (int i = 0; i < stations.size(); i++) {
+				final int station = i;
+				fetches.add(completionService.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						stationData[station] = readStationData(date, stations.get(station),
+								beginDay, endDay);
+						return station;
+					}
+				}));
+			}
+
+			int nearest = 0;
+			for (int fetched = 0; fetched < stations.size(); fetched++) {
+				read[completionService.take().get()] = true;
+				while (nearest < stations.size() && read[nearest]) {
+					if (stationData[nearest] != null) {
+						return stationData[nearest];
+					}
+					nearest++;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.error("Interrupted while reading full record", e);
+		} catch (ExecutionException e) {
+			LOGGER.error("Error while reading full record", e.getCause());
+		} finally {
+			for (Future<Integer> fetch : fetches) {
+				fetch.cancel(true);
+			}
+			executor.shutdownNow();
 		}
-		
-		return toReturn.toString().trim();
+		return null;
 	}
 
-	private void checkVariablesAndBuildString(JSONArray stationData,
-			JSONObject closestRecord, StringBuilder toReturn, int i) {
-		JSONObject stationDataRecord = stationData.optJSONObject(i);
-
-		String stationId = stationDataRecord
-				.optString(SEBALAppConstants.JSON_STATION_ID);
-		String dateValue = stationDataRecord
-				.optString(SEBALAppConstants.JSON_STATION_DATE);
-		String timeValue = stationDataRecord
-				.optString(SEBALAppConstants.JSON_STATION_TIME);
-		String latitude = stationDataRecord
-				.optString(SEBALAppConstants.JSON_STATION_LATITUDE);
-		String longitude = stationDataRecord
-				.optString(SEBALAppConstants.JSON_STATION_LONGITUDE);
-		String windSpeed = stationDataRecord
-				.optString(SEBALAppConstants.JSON_STATION_WIND_SPEED);
-		String airTemp = stationDataRecord
-				.optString(SEBALAppConstants.JSON_AIR_TEMPERATURE);
-		String dewTemp = stationDataRecord
-				.optString(SEBALAppConstants.JSON_DEWPOINT_TEMPERATURE);
-		String avgAirTemp = stationDataRecord
-				.optString(SEBALAppConstants.JSON_AVG_AIR_TEMPERATURE);
-		String relativeHumidity = stationDataRecord
-				.optString(SEBALAppConstants.JSON_RELATIVE_HUMIDITY);
-		String minTemp = stationDataRecord
-				.optString(SEBALAppConstants.JSON_MIN_TEMPERATURE);
-		String maxTemp = stationDataRecord
-				.optString(SEBALAppConstants.JSON_MAX_TEMPERATURE);
-		String solarRad = stationDataRecord
-				.optString(SEBALAppConstants.JSON_SOLAR_RADIATION);
-
-		if (closestRecord.optString(SEBALAppConstants.JSON_STATION_WIND_SPEED)
-				.isEmpty()
-				|| closestRecord
-						.optString(SEBALAppConstants.JSON_STATION_WIND_SPEED) == null) {
-			windSpeed = "NA";
-		}
-		if (closestRecord.optString(SEBALAppConstants.JSON_AIR_TEMPERATURE)
-				.isEmpty()
-				|| closestRecord
-						.optString(SEBALAppConstants.JSON_AIR_TEMPERATURE) == null) {
-			airTemp = "NA";
-		}
-		if (closestRecord
-				.optString(SEBALAppConstants.JSON_DEWPOINT_TEMPERATURE)
-				.isEmpty()
-				|| closestRecord
-						.optString(SEBALAppConstants.JSON_DEWPOINT_TEMPERATURE) == null) {
-			dewTemp = "NA";
-		}
-		if (closestRecord.optString(SEBALAppConstants.JSON_AVG_AIR_TEMPERATURE)
-				.isEmpty()
-				|| closestRecord
-						.optString(SEBALAppConstants.JSON_AVG_AIR_TEMPERATURE) == null) {
-			avgAirTemp = "NA";
-		}
-		if (closestRecord.optString(SEBALAppConstants.JSON_RELATIVE_HUMIDITY)
-				.isEmpty()
-				|| closestRecord
-						.optString(SEBALAppConstants.JSON_RELATIVE_HUMIDITY) == null) {
-			relativeHumidity = "NA";
-		}
-		if (closestRecord.optString(SEBALAppConstants.JSON_MIN_TEMPERATURE)
-				.isEmpty()
-				|| closestRecord
-						.optString(SEBALAppConstants.JSON_MIN_TEMPERATURE) == null) {
-			minTemp = "NA";
-		}
-		if (closestRecord.optString(SEBALAppConstants.JSON_MAX_TEMPERATURE)
-				.isEmpty()
-				|| closestRecord
-						.optString(SEBALAppConstants.JSON_MAX_TEMPERATURE) == null) {
-			maxTemp = "NA";
+	/*
+	 * The data of the station from beginDay to endDay, or null if its record
+	 * closest to the date is not complete or it could not be read.
+	 */
+	private String readStationData(Date date, JSONObject station, int beginDay, int endDay) {
+		try {
+			StationYearRecords records = weatherStore.records(station.optString("id"),
+					beginDay / 10000, endDay, stationOperator);
+			if (records == null) {
+				return null;
+			}
+
+			int from = records.firstRecord(beginDay);
+			int to = records.firstRecord(endDay + 1);
+			int closestRecord = records.closestRecord(date.getTime(), from, to);
+			if (closestRecord >= 0 && isComplete(records, closestRecord)) {
+				return generateStationData(records, from, to, closestRecord);
+			}
+		} catch (InterruptedIOException e) {
+			LOGGER.debug("Fetch of station " + station.optString("id") + " was cancelled");
+		} catch (Exception e) {
+			LOGGER.error("Error while reading full record", e);
 		}
-		if (closestRecord.optString(SEBALAppConstants.JSON_SOLAR_RADIATION)
-				.isEmpty()
-				|| closestRecord
-						.optString(SEBALAppConstants.JSON_SOLAR_RADIATION) == null) {
-			solarRad = "NA";
+		return null;
+	}
+
+	/*
+	 * The date as yyyyMMdd, in the default time zone.
+	 */
+	private static int day(Date date) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100
+				+ calendar.get(Calendar.DAY_OF_MONTH);
+	}
+
+	private boolean isComplete(StationYearRecords records, int record) {
+		return !Double.isNaN(records.latitude(record)) && !Double.isNaN(records.longitude(record))
+				&& !Double.isNaN(records.windSpeed(record))
+				&& !Double.isNaN(records.airTemperature(record))
+				&& !Double.isNaN(records.dewPointTemperature(record));
+	}
+
+	/*
+	 * The records of [from, to), one per line; the wind speed of the closest
+	 * record is at least 0.3 m/s. The average air temperature, relative
+	 * humidity, minimum and maximum temperatures and solar radiation are not
+	 * in ISD records, so they are NA.
+	 */
+	private String generateStationData(StationYearRecords records, int from, int to,
+			int closestRecord) {
+		StringBuilder toReturn = new StringBuilder();
+		for (int record = from; record < to; record++) {
+			double windSpeed = records.windSpeed(record);
+			if (record == closestRecord) {
+				windSpeed = Math.max(windSpeed, 0.3);
+			}
+			toReturn.append(records.stationId() + ";" + records.date(record) + ";"
+					+ String.format("%04d", records.time(record)) + ";"
+					+ format(records.latitude(record)) + ";" + format(records.longitude(record))
+					+ ";" + format(windSpeed) + ";" + format(records.airTemperature(record))
+					+ ";" + format(records.dewPointTemperature(record)) + ";NA;NA;NA;NA;NA;\n");
 		}
 
-		toReturn.append(stationId + ";" + dateValue + ";" + timeValue + ";"
-				+ latitude + ";" + longitude + ";" + windSpeed + ";" + airTemp
-				+ ";" + dewTemp + ";" + avgAirTemp + ";" + relativeHumidity
-				+ ";" + minTemp + ";" + maxTemp + ";" + solarRad + ";\n");
+		return toReturn.toString().trim();
+	}
+
+	private static String format(double value) {
+		return Double.isNaN(value) ? "NA" : String.valueOf(value);
 	}
 
 	public double zx(double lat, double lon) {
@@ -0,0 +1,208 @@
+package org.fogbowcloud.sebal.parsers.plugins;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the records of an ISD (NOAA Integrated Surface Data) station file
+ * from a stream, one at a time: {@link #next()} moves to the next record
+ * between beginDate and endDate (yyyyMMdd, both included) and the fields of
+ * the record are read from the bytes of its line, with no intermediate
+ * strings. The records of a file are ordered by date, so reading stops at the
+ * first record after endDate without reading the rest of the stream.
+ *
+ * Missing values (9999) are NaN.
+ */
+public class ISDRecordReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	// fixed width fields, as [begin, end) offsets of the line
+	private static final int STATION_ID_BEGIN = 4;
+	private static final int STATION_ID_END = 10;
+	private static final int DATE_BEGIN = 15;
+	private static final int TIME_BEGIN = 23;
+	private static final int LATITUDE_BEGIN = 28;
+	private static final int LONGITUDE_BEGIN = 34;
+	private static final int WIND_SPEED_BEGIN = 65;
+	private static final int AIR_TEMPERATURE_BEGIN = 87;
+	private static final int DEW_POINT_TEMPERATURE_BEGIN = 93;
+	private static final int MANDATORY_LENGTH = 98;
+
+	private static final int MISSING = 9999;
+
+	private final InputStream input;
+	private final int beginDate;
+	private final int endDate;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private boolean finished;
+
+	// the line of the current record
+	private int lineBegin;
+
+	public ISDRecordReader(InputStream input, int beginDate, int endDate) {
+		this.input = input;
+		this.beginDate = beginDate;
+		this.endDate = endDate;
+	}
+
+	/**
+	 * Moves to the next record of the date window, false if there is none.
+	 */
+	public boolean next() throws IOException {
+		while (!finished) {
+			int lineEnd = nextLine();
+			if (lineEnd < 0) {
+				finished = true;
+				return false;
+			}
+			if (lineEnd - lineBegin < MANDATORY_LENGTH) {
+				continue;
+			}
+			int date = digits(DATE_BEGIN, 8);
+			if (date > endDate) {
+				finished = true;
+				return false;
+			}
+			if (date >= beginDate) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Finds the next line in the buffer, reading more of the stream if it is
+	 * not whole, and returns its end (without the line break), or -1 at the
+	 * end of the stream.
+	 */
+	private int nextLine() throws IOException {
+		int scanned = 0;
+		while (true) {
+			for (int i = position + scanned; i < limit; i++) {
+				if (buffer[i] == '\n') {
+					lineBegin = position;
+					position = i + 1;
+					return i > lineBegin && buffer[i - 1] == '\r' ? i - 1 : i;
+				}
+			}
+			scanned = limit - position;
+			if (!fill()) {
+				if (position == limit) {
+					return -1;
+				}
+				// last line without a line break
+				lineBegin = position;
+				position = limit;
+				return limit;
+			}
+		}
+	}
+
+	/*
+	 * Moves the unread bytes to the beginning of the buffer, growing it if
+	 * they fill it, and reads more of the stream after them.
+	 */
+	private boolean fill() throws IOException {
+		int unread = limit - position;
+		if (unread == buffer.length) {
+			byte[] grown = new byte[buffer.length * 2];
+			System.arraycopy(buffer, position, grown, 0, unread);
+			buffer = grown;
+		} else if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, unread);
+		}
+		position = 0;
+		limit = unread;
+		int read = input.read(buffer, limit, buffer.length - limit);
+		while (read == 0) {
+			read = input.read(buffer, limit, buffer.length - limit);
+		}
+		if (read < 0) {
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+
+	private int digits(int offset, int length) {
+		int value = 0;
+		for (int i = lineBegin + offset; i < lineBegin + offset + length; i++) {
+			int digit = buffer[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private int signedDigits(int offset, int length) {
+		int value = digits(offset + 1, length - 1);
+		return buffer[lineBegin + offset] == '-' ? -value : value;
+	}
+
+	public String stationId() {
+		return new String(buffer, lineBegin + STATION_ID_BEGIN, STATION_ID_END - STATION_ID_BEGIN);
+	}
+
+	/**
+	 * Date of the record as yyyyMMdd.
+	 */
+	public int date() {
+		return digits(DATE_BEGIN, 8);
+	}
+
+	/**
+	 * Time of the record as HHmm.
+	 */
+	public int time() {
+		return digits(TIME_BEGIN, 4);
+	}
+
+	public double latitude() {
+		return signedDigits(LATITUDE_BEGIN, 6) / 1000.0;
+	}
+
+	public double longitude() {
+		return signedDigits(LONGITUDE_BEGIN, 7) / 1000.0;
+	}
+
+	/**
+	 * Wind speed in m/s.
+	 */
+	public double windSpeed() {
+		int windSpeed = digits(WIND_SPEED_BEGIN, 4);
+		return windSpeed == MISSING || windSpeed < 0 ? Double.NaN : windSpeed / 10.0;
+	}
+
+	/**
+	 * Air temperature in degrees Celsius.
+	 */
+	public double airTemperature() {
+		return temperature(AIR_TEMPERATURE_BEGIN);
+	}
+
+	/**
+	 * Dew point temperature in degrees Celsius.
+	 */
+	public double dewPointTemperature() {
+		return temperature(DEW_POINT_TEMPERATURE_BEGIN);
+	}
+
+	private double temperature(int offset) {
+		int magnitude = digits(offset + 1, 4);
+		if (magnitude == MISSING || magnitude < 0) {
+			return Double.NaN;
+		}
+		return signedDigits(offset, 5) / 10.0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+}
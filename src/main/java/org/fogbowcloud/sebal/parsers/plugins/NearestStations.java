@@ -0,0 +1,29 @@
+package org.fogbowcloud.sebal.parsers.plugins;
+
+/**
+ * Result of {@link StationList#kNearest(double, double, int, double)}: the
+ * positions of the stations in the list and their distances in km, nearest
+ * first.
+ */
+public class NearestStations {
+
+	private final int[] stations;
+	private final double[] distances;
+
+	NearestStations(int[] stations, double[] distances) {
+		this.stations = stations;
+		this.distances = distances;
+	}
+
+	public int size() {
+		return stations.length;
+	}
+
+	public int station(int k) {
+		return stations[k];
+	}
+
+	public double distance(int k) {
+		return distances[k];
+	}
+}
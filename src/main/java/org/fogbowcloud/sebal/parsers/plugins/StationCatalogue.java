@@ -0,0 +1,155 @@
+package org.fogbowcloud.sebal.parsers.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Keeps the {@link StationList} of each year, in memory and optionally on
+ * disk, so the stations CSV file of a year is downloaded and parsed once
+ * instead of on every nearest station query.
+ *
+ * Properties:
+ * station_catalogue_dir_path: directory where station lists are saved (optional)
+ * nearest_stations: number of nearest stations of a query
+ * nearest_stations_max_distance: maximum distance in km of the nearest stations (optional)
+ */
+public class StationCatalogue {
+
+	public static final int DEFAULT_NEAREST_STATIONS = 10;
+
+	private static final Logger LOGGER = Logger.getLogger(StationCatalogue.class);
+
+	private final Map<String, StationList> stationLists = new HashMap<String, StationList>();
+	private File catalogueDir;
+	private int nearestStations = DEFAULT_NEAREST_STATIONS;
+	private double maxDistance = Double.MAX_VALUE;
+
+	public StationCatalogue(Properties properties) {
+		String nearestStationsStr = properties
+				.getProperty(StationOperatorConstants.NEAREST_STATIONS);
+		if (nearestStationsStr != null && !nearestStationsStr.isEmpty()) {
+			this.nearestStations = Integer.parseInt(nearestStationsStr);
+		}
+		String maxDistanceStr = properties
+				.getProperty(StationOperatorConstants.NEAREST_STATIONS_MAX_DISTANCE);
+		if (maxDistanceStr != null && !maxDistanceStr.isEmpty()) {
+			this.maxDistance = Double.parseDouble(maxDistanceStr);
+		}
+		if (nearestStations <= 0 || !(maxDistance > 0)) {
+			throw new IllegalArgumentException("Properties "
+					+ StationOperatorConstants.NEAREST_STATIONS + " and "
+					+ StationOperatorConstants.NEAREST_STATIONS_MAX_DISTANCE
+					+ " must be positive.");
+		}
+		String catalogueDirPath = properties
+				.getProperty(StationOperatorConstants.STATION_CATALOGUE_DIR_PATH);
+		if (catalogueDirPath != null && !catalogueDirPath.isEmpty()) {
+			this.catalogueDir = new File(catalogueDirPath);
+		}
+	}
+
+	/**
+	 * The stations of the year: from memory, from the catalogue directory or,
+	 * the first time, from {@link StationOperator#getStations(String)} of the
+	 * operator. Null if the operator could not get them.
+	 */
+	public StationList stations(String year, StationOperator operator) {
+		synchronized (stationLists) {
+			StationList stationList = stationLists.get(year);
+			if (stationList != null) {
+				return stationList;
+			}
+			stationList = read(year);
+			if (stationList == null) {
+				JSONArray stations = operator.getStations(year);
+				if (stations == null) {
+					return null;
+				}
+				stationList = StationList.of(year, stations);
+				save(stationList);
+			}
+			stationLists.put(year, stationList);
+			return stationList;
+		}
+	}
+
+	/**
+	 * The nearest stations of the year to (lat, lon), nearest first, as copies
+	 * of the JSON objects of {@link StationList#station(int)} with their
+	 * distance in km as "d", so queries do not share them. Empty if the
+	 * stations of the year could not be got.
+	 */
+	public List<JSONObject> nearestStations(String year, StationOperator operator, double lat,
+			double lon) {
+		List<JSONObject> orderedStations = new ArrayList<JSONObject>();
+		StationList stations = stations(year, operator);
+		if (stations == null) {
+			LOGGER.error("Could not get the stations of " + year);
+			return orderedStations;
+		}
+		NearestStations nearest = stations.kNearest(lat, lon, nearestStations, maxDistance);
+		for (int k = 0; k < nearest.size(); k++) {
+			JSONObject listStation = stations.station(nearest.station(k));
+			JSONObject station = new JSONObject(listStation, JSONObject.getNames(listStation));
+			station.put("d", nearest.distance(k));
+			orderedStations.add(station);
+		}
+		return orderedStations;
+	}
+
+	private StationList read(String year) {
+		if (catalogueDir == null) {
+			return null;
+		}
+		File stationsFile = new File(catalogueDir, year + "-stations.bin");
+		if (!stationsFile.exists()) {
+			return null;
+		}
+		try {
+			StationList stationList = StationList.read(stationsFile);
+			if (!year.equals(stationList.year())) {
+				LOGGER.warn("Station list file " + stationsFile + " is of year "
+						+ stationList.year());
+				return null;
+			}
+			return stationList;
+		} catch (IOException e) {
+			LOGGER.warn("Could not read station list file " + stationsFile, e);
+			return null;
+		}
+	}
+
+	private void save(StationList stationList) {
+		// an empty list may come from a failed download
+		if (catalogueDir == null || stationList.size() == 0) {
+			return;
+		}
+		if (!catalogueDir.exists()) {
+			catalogueDir.mkdirs();
+		}
+		File stationsFile = new File(catalogueDir, stationList.year() + "-stations.bin");
+		try {
+			// other processes may be saving the same station list
+			File tempFile = File.createTempFile(stationList.year() + "-stations", ".bin.tmp",
+					catalogueDir);
+			stationList.write(tempFile);
+			if (!tempFile.renameTo(stationsFile)) {
+				stationsFile.delete();
+				if (!tempFile.renameTo(stationsFile)) {
+					tempFile.delete();
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Could not write station list file " + stationsFile, e);
+		}
+	}
+}
@@ -0,0 +1,471 @@
+package org.fogbowcloud.sebal.parsers.plugins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Stations of a year, in the order of the stations CSV file, with their
+ * coordinates in primitive arrays and a KD-tree over the points of the
+ * stations on the unit sphere. The distance between two of these points (the
+ * chord) grows with the great circle distance, so the k nearest stations are
+ * the k nearest points, found without computing the distance to most
+ * stations.
+ *
+ * The tree is implicit: the node of a range of the tree order is its middle
+ * position, which keeps the dimension the range is split on; positions before
+ * it are not above it in that dimension, and positions after it not below.
+ * Stations without valid coordinates are not in the tree.
+ */
+public class StationList {
+
+	private static final int FILE_VERSION = 2;
+
+	private final String year;
+	private final String[] ids;
+	private final double[] lats;
+	private final double[] lons;
+	// stations in tree order, and the split dimension of each node
+	private final int[] tree;
+	private final byte[] splits;
+	// points of the stations on the unit sphere
+	private final double[][] points;
+	// the stations as JSON, created on demand
+	private final JSONObject[] stations;
+
+	StationList(String year, String[] ids, double[] lats, double[] lons, int[] tree,
+			byte[] splits) {
+		if (lats.length != ids.length || lons.length != ids.length
+				|| splits.length != tree.length || tree.length > ids.length) {
+			throw new IllegalArgumentException("Station arrays of different lengths.");
+		}
+		this.year = year;
+		this.ids = ids;
+		this.lats = lats;
+		this.lons = lons;
+		this.tree = tree;
+		this.splits = splits;
+		this.points = new double[3][ids.length];
+		for (int station = 0; station < ids.length; station++) {
+			double[] point = point(lats[station], lons[station]);
+			for (int dimension = 0; dimension < 3; dimension++) {
+				points[dimension][station] = point[dimension];
+			}
+		}
+		this.stations = new JSONObject[ids.length];
+	}
+
+	/**
+	 * The stations of a JSON array of stations with id, lat and lon, keeping
+	 * the JSON objects.
+	 */
+	public static StationList of(String year, JSONArray stations) {
+		int size = stations.length();
+		String[] ids = new String[size];
+		double[] lats = new double[size];
+		double[] lons = new double[size];
+		int treeSize = 0;
+		for (int i = 0; i < size; i++) {
+			JSONObject station = stations.optJSONObject(i);
+			ids[i] = station.optString("id");
+			lats[i] = station.optDouble("lat");
+			lons[i] = station.optDouble("lon");
+			if (isValid(lats[i], lons[i])) {
+				treeSize++;
+			}
+		}
+		int[] tree = new int[treeSize];
+		int node = 0;
+		for (int i = 0; i < size; i++) {
+			if (isValid(lats[i], lons[i])) {
+				tree[node++] = i;
+			}
+		}
+
+		StationList stationList = new StationList(year, ids, lats, lons, tree,
+				new byte[treeSize]);
+		stationList.build(0, treeSize);
+		for (int i = 0; i < size; i++) {
+			stationList.stations[i] = stations.optJSONObject(i);
+		}
+		return stationList;
+	}
+
+	private static boolean isValid(double lat, double lon) {
+		return !Double.isNaN(lat) && !Double.isNaN(lon) && !Double.isInfinite(lat)
+				&& !Double.isInfinite(lon);
+	}
+
+	private void build(int from, int to) {
+		while (to - from > 1) {
+			// split on the dimension of largest spread
+			int split = 0;
+			double largestSpread = -1;
+			for (int dimension = 0; dimension < 3; dimension++) {
+				double min = Double.MAX_VALUE;
+				double max = -Double.MAX_VALUE;
+				for (int node = from; node < to; node++) {
+					min = Math.min(min, points[dimension][tree[node]]);
+					max = Math.max(max, points[dimension][tree[node]]);
+				}
+				if (max - min > largestSpread) {
+					largestSpread = max - min;
+					split = dimension;
+				}
+			}
+			int middle = (from + to) >>> 1;
+			select(points[split], from, to - 1, middle);
+			splits[middle] = (byte) split;
+			build(from, middle);
+			from = middle + 1;
+		}
+	}
+
+	/*
+	 * Moves the station of rank k of tree[left..right] by the values to
+	 * position k, with values not above it before it and not below after it.
+	 */
+	private void select(double[] values, int left, int right, int k) {
+		while (right > left) {
+			double pivot = values[tree[(left + right) >>> 1]];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (values[tree[i]] < pivot) {
+					i++;
+				}
+				while (values[tree[j]] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int station = tree[i];
+					tree[i++] = tree[j];
+					tree[j--] = station;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private static double[] point(double lat, double lon) {
+		double latRadians = Math.toRadians(lat);
+		double lonRadians = Math.toRadians(lon);
+		return new double[] { Math.cos(latRadians) * Math.cos(lonRadians),
+				Math.cos(latRadians) * Math.sin(lonRadians), Math.sin(latRadians) };
+	}
+
+	public String year() {
+		return year;
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	public String id(int station) {
+		return ids[station];
+	}
+
+	public double lat(int station) {
+		return lats[station];
+	}
+
+	public double lon(int station) {
+		return lons[station];
+	}
+
+	/**
+	 * The station as JSON with id, lat and lon; the same object on every call.
+	 */
+	public synchronized JSONObject station(int station) {
+		if (stations[station] == null) {
+			JSONObject json = new JSONObject();
+			json.put("id", ids[station]);
+			json.put("lat", lats[station]);
+			json.put("lon", lons[station]);
+			stations[station] = json;
+		}
+		return stations[station];
+	}
+
+	/**
+	 * The k stations nearest to (lat, lon) that are at most maxDistance km
+	 * away, nearest first; stations at the same distance in the order of the
+	 * list.
+	 */
+	public NearestStations kNearest(double lat, double lon, int k, double maxDistance) {
+		return new Search(k, maxDistance).nearest(lat, lon);
+	}
+
+	/**
+	 * The k nearest stations of each (lats[i], lons[i]), as
+	 * {@link #kNearest(double, double, int, double)}.
+	 */
+	public NearestStations[] kNearest(double[] lats, double[] lons, int k, double maxDistance) {
+		if (lats.length != lons.length) {
+			throw new IllegalArgumentException("Latitudes and longitudes of different lengths.");
+		}
+		Search search = new Search(k, maxDistance);
+		NearestStations[] nearestStations = new NearestStations[lats.length];
+		for (int i = 0; i < lats.length; i++) {
+			nearestStations[i] = search.nearest(lats[i], lons[i]);
+		}
+		return nearestStations;
+	}
+
+	/**
+	 * Haversine distance in km.
+	 */
+	public static double distance(double lat1, double lon1, double lat2, double lon2) {
+		double dLat = Math.toRadians(lat2 - lat1);
+		double dLon = Math.toRadians(lon2 - lon1);
+		lat1 = Math.toRadians(lat1);
+		lat2 = Math.toRadians(lat2);
+		double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.sin(dLon / 2)
+				* Math.sin(dLon / 2) * Math.cos(lat1) * Math.cos(lat2);
+		double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+		return StationOperatorConstants.R * c;
+	}
+
+	/*
+	 * A k nearest search, whose buffers are reused by the queries of a batch.
+	 * The candidates are a max-heap on the squared chord, so the farthest one
+	 * is replaced first. Stations are ordered by chord and kept by distance.
+	 */
+	private class Search {
+
+		private final int k;
+		private final double maxDistance;
+		private final double maxSquaredChord;
+		private final int[] heapStations;
+		private final double[] heapSquaredChords;
+		private int heapSize;
+		private double x;
+		private double y;
+		private double z;
+
+		private Search(int k, double maxDistance) {
+			if (k < 0 || !(maxDistance >= 0)) {
+				throw new IllegalArgumentException("Cannot search the " + k
+						+ " nearest stations at most " + maxDistance + " km away.");
+			}
+			this.k = Math.min(k, tree.length);
+			this.maxDistance = maxDistance;
+			double angle = maxDistance / StationOperatorConstants.R;
+			double maxChord = angle >= Math.PI ? 2 : 2 * Math.sin(angle / 2);
+			// with a margin for the rounding of the points
+			this.maxSquaredChord = maxChord * maxChord * (1 + 1e-9) + 1e-15;
+			this.heapStations = new int[this.k];
+			this.heapSquaredChords = new double[this.k];
+		}
+
+		private NearestStations nearest(double lat, double lon) {
+			double[] point = point(lat, lon);
+			x = point[0];
+			y = point[1];
+			z = point[2];
+			heapSize = 0;
+			if (k > 0 && isValid(lat, lon)) {
+				search(0, tree.length);
+			}
+
+			// the farthest comes out of the heap first
+			int[] nearestStations = new int[heapSize];
+			double[] distances = new double[heapSize];
+			for (int position = heapSize - 1; position >= 0; position--) {
+				int station = heapStations[0];
+				nearestStations[position] = station;
+				distances[position] = distance(lat, lon, lats[station], lons[station]);
+				pop();
+			}
+			int size = 0;
+			for (int position = 0; position < nearestStations.length; position++) {
+				if (distances[position] <= maxDistance) {
+					nearestStations[size] = nearestStations[position];
+					distances[size++] = distances[position];
+				}
+			}
+			if (size < nearestStations.length) {
+				int[] inRangeStations = new int[size];
+				double[] inRangeDistances = new double[size];
+				System.arraycopy(nearestStations, 0, inRangeStations, 0, size);
+				System.arraycopy(distances, 0, inRangeDistances, 0, size);
+				return new NearestStations(inRangeStations, inRangeDistances);
+			}
+			return new NearestStations(nearestStations, distances);
+		}
+
+		private void search(int from, int to) {
+			while (to > from) {
+				int middle = (from + to) >>> 1;
+				int station = tree[middle];
+				double dx = x - points[0][station];
+				double dy = y - points[1][station];
+				double dz = z - points[2][station];
+				offer(station, dx * dx + dy * dy + dz * dz);
+
+				int split = splits[middle];
+				double difference = (split == 0 ? x : split == 1 ? y : z) - points[split][station];
+				if (difference <= 0) {
+					search(from, middle);
+				} else {
+					search(middle + 1, to);
+				}
+				// the other side is at least the difference away
+				if (difference * difference > bound()) {
+					return;
+				}
+				if (difference <= 0) {
+					from = middle + 1;
+				} else {
+					to = middle;
+				}
+			}
+		}
+
+		private double bound() {
+			return heapSize < k ? maxSquaredChord : Math.min(maxSquaredChord,
+					heapSquaredChords[0]);
+		}
+
+		private void offer(int station, double squaredChord) {
+			if (squaredChord > maxSquaredChord) {
+				return;
+			}
+			if (heapSize < k) {
+				heapStations[heapSize] = station;
+				heapSquaredChords[heapSize] = squaredChord;
+				siftUp(heapSize++);
+			} else if (isFarther(heapStations[0], heapSquaredChords[0], station, squaredChord)) {
+				heapStations[0] = station;
+				heapSquaredChords[0] = squaredChord;
+				siftDown(0);
+			}
+		}
+
+		private void pop() {
+			heapSize--;
+			heapStations[0] = heapStations[heapSize];
+			heapSquaredChords[0] = heapSquaredChords[heapSize];
+			siftDown(0);
+		}
+
+		private void siftUp(int position) {
+			while (position > 0) {
+				int parent = (position - 1) / 2;
+				if (!isFarther(heapStations[position], heapSquaredChords[position],
+						heapStations[parent], heapSquaredChords[parent])) {
+					return;
+				}
+				swap(position, parent);
+				position = parent;
+			}
+		}
+
+		private void siftDown(int position) {
+			while (true) {
+				int farthest = position;
+				for (int child = 2 * position + 1; child <= 2 * position + 2
+						&& child < heapSize; child++) {
+					if (isFarther(heapStations[child], heapSquaredChords[child],
+							heapStations[farthest], heapSquaredChords[farthest])) {
+						farthest = child;
+					}
+				}
+				if (farthest == position) {
+					return;
+				}
+				swap(position, farthest);
+				position = farthest;
+			}
+		}
+
+		private boolean isFarther(int station, double squaredChord, int otherStation,
+				double otherSquaredChord) {
+			return squaredChord > otherSquaredChord
+					|| (squaredChord == otherSquaredChord && station > otherStation);
+		}
+
+		private void swap(int position, int otherPosition) {
+			int station = heapStations[position];
+			heapStations[position] = heapStations[otherPosition];
+			heapStations[otherPosition] = station;
+			double squaredChord = heapSquaredChords[position];
+			heapSquaredChords[position] = heapSquaredChords[otherPosition];
+			heapSquaredChords[otherPosition] = squaredChord;
+		}
+	}
+
+	public void write(File file) throws IOException {
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			output.writeInt(FILE_VERSION);
+			output.writeUTF(year);
+			output.writeInt(ids.length);
+			output.writeInt(tree.length);
+			for (int station = 0; station < ids.length; station++) {
+				output.writeUTF(ids[station]);
+				output.writeDouble(lats[station]);
+				output.writeDouble(lons[station]);
+			}
+			for (int node = 0; node < tree.length; node++) {
+				output.writeInt(tree[node]);
+				output.writeByte(splits[node]);
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	public static StationList read(File file) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			int version = input.readInt();
+			if (version != FILE_VERSION) {
+				throw new IOException("Unsupported station list version " + version + ".");
+			}
+			String year = input.readUTF();
+			int size = input.readInt();
+			int treeSize = input.readInt();
+			if (size < 0 || treeSize < 0 || treeSize > size) {
+				throw new IOException("Invalid station list file " + file + ".");
+			}
+			String[] ids = new String[size];
+			double[] lats = new double[size];
+			double[] lons = new double[size];
+			for (int station = 0; station < size; station++) {
+				ids[station] = input.readUTF();
+				lats[station] = input.readDouble();
+				lons[station] = input.readDouble();
+			}
+			int[] tree = new int[treeSize];
+			byte[] splits = new byte[treeSize];
+			for (int node = 0; node < treeSize; node++) {
+				tree[node] = input.readInt();
+				splits[node] = input.readByte();
+				if (tree[node] < 0 || tree[node] >= size || splits[node] < 0 || splits[node] > 2) {
+					throw new IOException("Invalid station list file " + file + ".");
+				}
+			}
+			return new StationList(year, ids, lats, lons, tree, splits);
+		} finally {
+			input.close();
+		}
+	}
+}
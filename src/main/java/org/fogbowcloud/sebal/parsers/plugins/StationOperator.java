@@ -15,4 +15,6 @@ public interface StationOperator {
 	public List<JSONObject> findNearestStation(Date date, double lat, double lon, int numberOfDays);
 
 	public JSONArray readStation(String stationId, String beginDate, String endDate) throws Exception;
+
+	public StationYearRecords readStationRecords(String stationId, int year) throws Exception;
 }
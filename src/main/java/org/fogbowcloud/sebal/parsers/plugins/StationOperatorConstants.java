@@ -21,6 +21,8 @@ public class StationOperatorConstants {
 	// File constants
 	public static final String UNFORMATTED_LOCAL_STATION_FILE_PATH = "unformatted_local_station_file_path";
 	public static final String STATIONS_CSV_FROM_YEAR_FILE_PATH = "stations_csv_from_year_dir_path";
+	public static final String STATION_CATALOGUE_DIR_PATH = "station_catalogue_dir_path";
+	public static final String WEATHER_STORE_DIR_PATH = "weather_store_dir_path";
 	
 	// Properties constants
 	public static final String SWIFT_CLIENT_PATH = "swift_client_path";
@@ -28,5 +30,8 @@ public class StationOperatorConstants {
 	public static final String SWIFT_CONTAINER_PREFIX = "swift_container_prefix";
 	public static final String SWIFT_META_AUTH_KEY = "swift_meta_auth_key";
 	public static final String SWIFT_STORAGE_URL = "swift_storage_url";
+	public static final String NEAREST_STATIONS = "nearest_stations";
+	public static final String NEAREST_STATIONS_MAX_DISTANCE = "nearest_stations_max_distance";
+	public static final String STATION_FETCH_PARALLELISM = "station_fetch_parallelism";
 
 }
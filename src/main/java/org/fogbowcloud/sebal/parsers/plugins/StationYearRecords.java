@@ -0,0 +1,312 @@
+package org.fogbowcloud.sebal.parsers.plugins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The ISD records of a station in a year, one primitive array per field,
+ * sorted by date and time. The dates and times are the index of the records:
+ * the records of a date window and the record closest to an instant are
+ * found by binary search. Missing values are NaN.
+ */
+public class StationYearRecords {
+
+	private static final int FILE_VERSION = 1;
+	// records are sorted by keys with their position in the low 20 bits
+	private static final int MAX_RECORDS = 1 << 20;
+
+	private final String stationId;
+	private final int year;
+	private final int[] dates;
+	private final int[] times;
+	private final double[] latitudes;
+	private final double[] longitudes;
+	private final double[] windSpeeds;
+	private final double[] airTemperatures;
+	private final double[] dewPointTemperatures;
+	// the date and time of each record as an instant of the default time zone
+	private final long[] instants;
+
+	StationYearRecords(String stationId, int year, int[] dates, int[] times,
+			double[] latitudes, double[] longitudes, double[] windSpeeds,
+			double[] airTemperatures, double[] dewPointTemperatures) {
+		int size = dates.length;
+		if (times.length != size || latitudes.length != size || longitudes.length != size
+				|| windSpeeds.length != size || airTemperatures.length != size
+				|| dewPointTemperatures.length != size) {
+			throw new IllegalArgumentException("Record arrays of different lengths.");
+		}
+		this.stationId = stationId;
+		this.year = year;
+		this.dates = dates;
+		this.times = times;
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.windSpeeds = windSpeeds;
+		this.airTemperatures = airTemperatures;
+		this.dewPointTemperatures = dewPointTemperatures;
+		this.instants = new long[size];
+		Calendar calendar = Calendar.getInstance();
+		for (int record = 0; record < size; record++) {
+			calendar.clear();
+			calendar.set(dates[record] / 10000, dates[record] / 100 % 100 - 1,
+					dates[record] % 100, times[record] / 100, times[record] % 100);
+			instants[record] = calendar.getTimeInMillis();
+			if (record > 0 && (dates[record] < dates[record - 1]
+					|| (dates[record] == dates[record - 1] && times[record] < times[record - 1]))) {
+				throw new IllegalArgumentException("Records of station " + stationId
+						+ " are not sorted.");
+			}
+		}
+	}
+
+	/**
+	 * The records of the year of a compressed ISD station file.
+	 */
+	public static StationYearRecords of(String stationId, int year, InputStream compressedInput)
+			throws IOException {
+		ISDRecordReader reader;
+		try {
+			reader = new ISDRecordReader(new GZIPInputStream(compressedInput), year * 10000 + 101,
+					year * 10000 + 1231);
+		} catch (IOException e) {
+			compressedInput.close();
+			throw e;
+		}
+		try {
+			return of(stationId, year, reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * The records of the reader, sorted by date and time if they are not.
+	 * Reading stops with an {@link InterruptedIOException} when the thread is
+	 * interrupted, as a cancelled fetch is, since blocking reads of a download
+	 * do not stop on their own.
+	 */
+	public static StationYearRecords of(String stationId, int year, ISDRecordReader reader)
+			throws IOException {
+		int size = 0;
+		int[] dates = new int[1024];
+		int[] times = new int[1024];
+		double[][] values = new double[5][1024];
+		while (reader.next()) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException("Reading the records of station " + stationId
+						+ " in " + year + " was interrupted.");
+			}
+			if (size == MAX_RECORDS) {
+				throw new IOException("Station " + stationId + " has more than " + MAX_RECORDS
+						+ " records in " + year + ".");
+			}
+			if (size == dates.length) {
+				dates = Arrays.copyOf(dates, size * 2);
+				times = Arrays.copyOf(times, size * 2);
+				for (int field = 0; field < values.length; field++) {
+					values[field] = Arrays.copyOf(values[field], size * 2);
+				}
+			}
+			dates[size] = reader.date();
+			times[size] = reader.time();
+			values[0][size] = reader.latitude();
+			values[1][size] = reader.longitude();
+			values[2][size] = reader.windSpeed();
+			values[3][size] = reader.airTemperature();
+			values[4][size] = reader.dewPointTemperature();
+			size++;
+		}
+
+		// by date and time, and by position among equal ones
+		long[] keys = new long[size];
+		for (int record = 0; record < size; record++) {
+			keys[record] = ((dates[record] * 10000L + times[record]) << 20) | record;
+		}
+		Arrays.sort(keys);
+		int[] sortedDates = new int[size];
+		int[] sortedTimes = new int[size];
+		double[][] sortedValues = new double[values.length][size];
+		for (int position = 0; position < size; position++) {
+			int record = (int) (keys[position] & (MAX_RECORDS - 1));
+			sortedDates[position] = dates[record];
+			sortedTimes[position] = times[record];
+			for (int field = 0; field < values.length; field++) {
+				sortedValues[field][position] = values[field][record];
+			}
+		}
+		return new StationYearRecords(stationId, year, sortedDates, sortedTimes,
+				sortedValues[0], sortedValues[1], sortedValues[2], sortedValues[3],
+				sortedValues[4]);
+	}
+
+	public String stationId() {
+		return stationId;
+	}
+
+	public int year() {
+		return year;
+	}
+
+	public int size() {
+		return dates.length;
+	}
+
+	/**
+	 * Date of the record as yyyyMMdd.
+	 */
+	public int date(int record) {
+		return dates[record];
+	}
+
+	/**
+	 * Time of the record as HHmm.
+	 */
+	public int time(int record) {
+		return times[record];
+	}
+
+	public double latitude(int record) {
+		return latitudes[record];
+	}
+
+	public double longitude(int record) {
+		return longitudes[record];
+	}
+
+	public double windSpeed(int record) {
+		return windSpeeds[record];
+	}
+
+	public double airTemperature(int record) {
+		return airTemperatures[record];
+	}
+
+	public double dewPointTemperature(int record) {
+		return dewPointTemperatures[record];
+	}
+
+	/**
+	 * The first record of the date (yyyyMMdd) or after it.
+	 */
+	public int firstRecord(int date) {
+		int low = 0;
+		int high = dates.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (dates[middle] < date) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * The record of [from, to) closest to the instant (in milliseconds), the
+	 * earlier one of two at the same distance; -1 if the range is empty.
+	 */
+	public int closestRecord(long instant, int from, int to) {
+		if (from >= to) {
+			return -1;
+		}
+		int low = from;
+		int high = to;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (instants[middle] < instant) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		if (low == from) {
+			return from;
+		}
+		// the first of the records at the instant before it
+		int before = low - 1;
+		while (before > from && instants[before - 1] == instants[before]) {
+			before--;
+		}
+		if (low == to) {
+			return before;
+		}
+		return instant - instants[before] <= instants[low] - instant ? before : low;
+	}
+
+	public void write(File file) throws IOException {
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			output.writeInt(FILE_VERSION);
+			output.writeUTF(stationId);
+			output.writeInt(year);
+			output.writeInt(dates.length);
+			for (int date : dates) {
+				output.writeInt(date);
+			}
+			for (int time : times) {
+				output.writeShort(time);
+			}
+			for (double[] column : new double[][] { latitudes, longitudes, windSpeeds,
+					airTemperatures, dewPointTemperatures }) {
+				for (double value : column) {
+					output.writeDouble(value);
+				}
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	public static StationYearRecords read(File file) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			int version = input.readInt();
+			if (version != FILE_VERSION) {
+				throw new IOException("Unsupported station records version " + version + ".");
+			}
+			String stationId = input.readUTF();
+			int year = input.readInt();
+			int size = input.readInt();
+			if (size < 0) {
+				throw new IOException("Invalid station records file " + file + ".");
+			}
+			int[] dates = new int[size];
+			for (int record = 0; record < size; record++) {
+				dates[record] = input.readInt();
+			}
+			int[] times = new int[size];
+			for (int record = 0; record < size; record++) {
+				times[record] = input.readShort();
+			}
+			double[][] columns = new double[5][size];
+			for (double[] column : columns) {
+				for (int record = 0; record < size; record++) {
+					column[record] = input.readDouble();
+				}
+			}
+			try {
+				return new StationYearRecords(stationId, year, dates, times, columns[0],
+						columns[1], columns[2], columns[3], columns[4]);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid station records file " + file + ".", e);
+			}
+		} finally {
+			input.close();
+		}
+	}
+}
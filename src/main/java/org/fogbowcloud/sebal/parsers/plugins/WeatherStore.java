@@ -0,0 +1,140 @@
+package org.fogbowcloud.sebal.parsers.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps the {@link StationYearRecords} of the station-years already fetched,
+ * in memory and optionally on disk, so the ISD file of a station-year is
+ * downloaded and parsed once for all the scenes, and all the processes, that
+ * use it. A year is complete once it is over and its late records had time
+ * to arrive; the records of a year that is not are kept in memory only, and
+ * fetched again when a query ends after their last record.
+ *
+ * Properties:
+ * weather_store_dir_path: directory where station-year records are saved (optional)
+ */
+public class WeatherStore {
+
+	private static final int MAX_STATION_YEARS_IN_MEMORY = 64;
+	// days after the end of a year its ISD files may still get records
+	private static final int LATE_RECORD_DAYS = 30;
+
+	private static final Logger LOGGER = Logger.getLogger(WeatherStore.class);
+
+	private final Map<String, StationYearRecords> stationYears = new LinkedHashMap<String, StationYearRecords>(
+			16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, StationYearRecords> eldest) {
+			return size() > MAX_STATION_YEARS_IN_MEMORY;
+		}
+	};
+	private File storeDir;
+
+	public WeatherStore(Properties properties) {
+		String storeDirPath = properties
+				.getProperty(StationOperatorConstants.WEATHER_STORE_DIR_PATH);
+		if (storeDirPath != null && !storeDirPath.isEmpty()) {
+			this.storeDir = new File(storeDirPath);
+		}
+	}
+
+	/**
+	 * The records of the station in the year: from memory, from the store
+	 * directory or, the first time, from
+	 * {@link StationOperator#readStationRecords(String, int)} of the operator.
+	 * The records of a year that is not complete are fetched again when
+	 * endDay (yyyyMMdd) is after their last record. Null if the operator has
+	 * no records of the station in the year.
+	 */
+	public StationYearRecords records(String stationId, int year, int endDay,
+			StationOperator operator) throws Exception {
+		String key = stationId + "-" + year;
+		boolean isComplete = year <= lastCompleteYear();
+		synchronized (stationYears) {
+			StationYearRecords records = stationYears.get(key);
+			// the query may end in the next year
+			if (records != null && (isComplete
+					|| lastDay(records) >= Math.min(endDay, year * 10000 + 1231))) {
+				return records;
+			}
+		}
+
+		// read and fetched without holding the lock, so stations are fetched in parallel
+		StationYearRecords records = isComplete ? read(key) : null;
+		if (records == null) {
+			records = operator.readStationRecords(stationId, year);
+			if (records == null) {
+				return null;
+			}
+			if (isComplete) {
+				save(key, records);
+			} else {
+				LOGGER.debug("Records of " + key + " until " + lastDay(records)
+						+ " are not saved, the year is not complete");
+			}
+		}
+		synchronized (stationYears) {
+			stationYears.put(key, records);
+		}
+		return records;
+	}
+
+	/*
+	 * The last year whose records are not expected to change.
+	 */
+	int lastCompleteYear() {
+		Calendar calendar = Calendar.getInstance();
+		calendar.add(Calendar.DAY_OF_YEAR, -LATE_RECORD_DAYS);
+		return calendar.get(Calendar.YEAR) - 1;
+	}
+
+	private static int lastDay(StationYearRecords records) {
+		return records.size() == 0 ? 0 : records.date(records.size() - 1);
+	}
+
+	private StationYearRecords read(String key) {
+		if (storeDir == null) {
+			return null;
+		}
+		File recordsFile = new File(storeDir, key + ".records");
+		if (!recordsFile.exists()) {
+			return null;
+		}
+		try {
+			return StationYearRecords.read(recordsFile);
+		} catch (IOException e) {
+			LOGGER.warn("Could not read station records file " + recordsFile, e);
+			return null;
+		}
+	}
+
+	private void save(String key, StationYearRecords records) {
+		if (storeDir == null) {
+			return;
+		}
+		if (!storeDir.exists()) {
+			storeDir.mkdirs();
+		}
+		File recordsFile = new File(storeDir, key + ".records");
+		try {
+			// other processes may be saving the same records
+			File tempFile = File.createTempFile(key, ".records.tmp", storeDir);
+			records.write(tempFile);
+			if (!tempFile.renameTo(recordsFile)) {
+				recordsFile.delete();
+				if (!tempFile.renameTo(recordsFile)) {
+					tempFile.delete();
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Could not write station records file " + recordsFile, e);
+		}
+	}
+}
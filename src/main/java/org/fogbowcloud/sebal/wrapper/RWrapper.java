@@ -10,7 +10,6 @@ import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.esa.beam.framework.datamodel.Product;
 import org.fogbowcloud.sebal.BoundingBoxVertice;
-import org.fogbowcloud.sebal.ClusteredPixelQuenteFrioChooser;
 import org.fogbowcloud.sebal.PixelQuenteFrioChooser;
 import org.fogbowcloud.sebal.SEBALHelper;
 import org.fogbowcloud.sebal.model.image.BoundingBox;
@@ -60,7 +59,7 @@ public class RWrapper {
 
 		boundingBoxVertices = SEBALHelper.getVerticesFromFile(properties.getProperty("bounding_box_file_path"));
 
-		this.pixelQuenteFrioChooser = new ClusteredPixelQuenteFrioChooser(properties);
+		this.pixelQuenteFrioChooser = SEBALHelper.createPixelQuenteFrioChooser(properties);
 
 		File mtlFile = new File(mtlFilePath);
 		String imageName = mtlFile.getParentFile().getName();
@@ -96,7 +95,7 @@ public class RWrapper {
 			this.outputDir = outputDir + imageName;
 		}
 		
-		this.pixelQuenteFrioChooser = new ClusteredPixelQuenteFrioChooser(properties);
+		this.pixelQuenteFrioChooser = SEBALHelper.createPixelQuenteFrioChooser(properties);
 		boundingBoxVertices = SEBALHelper.getVerticesFromFile(boundingBoxFileName);
 	}
 	
@@ -0,0 +1,94 @@
+package org.fogbowcloud.sebal;
+
+import java.util.Locale;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+
+/**
+ * Compares the per pixel band reading (getSampleFloat for every band and
+ * every pixel) with {@link BandStripReader}. Run it with the MTL files of the
+ * L5 and L7 test scenes, for instance:
+ *
+ * java org.fogbowcloud.sebal.BandReadingBenchmark LT5..._MTL.txt LE7..._MTL.txt
+ *
+ * The window read has window_size x window_size pixels (system property,
+ * default 2000) taken from the center of the scene.
+ */
+public class BandReadingBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.err.println("Usage: BandReadingBenchmark <mtl_file_path>...");
+			System.exit(1);
+		}
+		int windowSize = Integer.parseInt(System.getProperty("window_size", "2000"));
+
+		for (String mtlFilePath : args) {
+			Product product = SEBALHelper.readProduct(mtlFilePath, null);
+			Band bandAt = product.getBandAt(0);
+			bandAt.ensureRasterData();
+
+			int width = Math.min(windowSize, bandAt.getRasterWidth());
+			int height = Math.min(windowSize, bandAt.getRasterHeight());
+			int xBegin = (bandAt.getRasterWidth() - width) / 2;
+			int yBegin = (bandAt.getRasterHeight() - height) / 2;
+
+			System.out.println(mtlFilePath + " (" + product.getNumBands() + " bands, " + width
+					+ "x" + height + " window)");
+
+			// warm up both paths before measuring
+			perPixel(product, xBegin, yBegin, width, height);
+			strips(product, xBegin, yBegin, width, height);
+
+			long perPixelTime = 0;
+			long stripTime = 0;
+			for (int round = 0; round < ROUNDS; round++) {
+				perPixelTime += perPixel(product, xBegin, yBegin, width, height);
+				stripTime += strips(product, xBegin, yBegin, width, height);
+			}
+
+			double pixels = (double) width * height * ROUNDS;
+			System.out.println(String.format(Locale.ROOT, "  per pixel: %.0f pixels/s",
+					pixels / (perPixelTime / 1e9)));
+			System.out.println(String.format(Locale.ROOT, "  strips:    %.0f pixels/s",
+					pixels / (stripTime / 1e9)));
+			product.dispose();
+		}
+	}
+
+	private static long perPixel(Product product, int xBegin, int yBegin, int width, int height) {
+		long start = System.nanoTime();
+		double checksum = 0;
+		for (int i = xBegin; i < xBegin + width; i++) {
+			for (int j = yBegin; j < yBegin + height; j++) {
+				double[] LArray = new double[product.getNumBands()];
+				for (int k = 0; k < product.getNumBands(); k++) {
+					LArray[k] = product.getBandAt(k).getSampleFloat(i, j);
+				}
+				checksum += LArray[0];
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println("  per pixel checksum=" + checksum);
+		return elapsed;
+	}
+
+	private static long strips(Product product, int xBegin, int yBegin, int width, int height)
+			throws Exception {
+		long start = System.nanoTime();
+		ImagePixelStore store = new ImagePixelStore(width, height, product.getNumBands());
+		store.offset(xBegin, yBegin);
+		new BandStripReader(product, xBegin, xBegin + width).read(store, yBegin, yBegin + height);
+		double checksum = 0;
+		for (int index = 0; index < store.size(); index++) {
+			checksum += store.L(index, 0);
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println("  strips checksum=" + checksum);
+		return elapsed;
+	}
+}
@@ -0,0 +1,81 @@
+package org.fogbowcloud.sebal;
+
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.fogbowcloud.sebal.model.image.Image;
+import org.fogbowcloud.sebal.model.image.ImagePixel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time of the clustered and of the histogram choosers of pixels quente and
+ * frio to select the candidates of a scene and choose the pixels. The scenes
+ * are synthetic, as in {@link TestHistogramPixelQuenteFrioChooser}, which
+ * checks that both choosers agree, since TS and albedo are not computed from
+ * the test scenes in this tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PixelQuenteFrioChooserBenchmark {
+
+	@Param({ "500", "1000" })
+	public int side;
+
+	private Image image;
+	private PixelQuenteFrioChooser clusteredChooser;
+	private PixelQuenteFrioChooser histogramChooser;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		image = TestHistogramPixelQuenteFrioChooser.createScene(side, side, new Random(side));
+		Properties properties = new Properties();
+		properties.setProperty("pixel_quente_frio_chooser", SEBALHelper.CLUSTERED_CHOOSER);
+		clusteredChooser = SEBALHelper.createPixelQuenteFrioChooser(properties);
+		properties.setProperty("pixel_quente_frio_chooser", SEBALHelper.HISTOGRAM_CHOOSER);
+		histogramChooser = SEBALHelper.createPixelQuenteFrioChooser(properties);
+	}
+
+	@Benchmark
+	public ImagePixel clustered() {
+		return choose(clusteredChooser);
+	}
+
+	@Benchmark
+	public ImagePixel histogram() {
+		return choose(histogramChooser);
+	}
+
+	private ImagePixel choose(PixelQuenteFrioChooser chooser) {
+		chooser.setPixelFrioCandidates(new ArrayList<ImagePixel>());
+		chooser.setPixelQuenteCandidates(new ArrayList<ImagePixel>());
+		chooser.selectPixelsQuenteFrioCandidates(image);
+		chooser.choosePixelsQuenteFrio();
+		return chooser.getPixelFrio();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(
+				PixelQuenteFrioChooserBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,91 @@
+package org.fogbowcloud.sebal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestBandStripReader {
+
+	static final int NUMBER_OF_BANDS = 3;
+
+	Product product;
+
+	@Before
+	public void setUp() throws Exception {
+		product = mock(Product.class);
+		doReturn(NUMBER_OF_BANDS).when(product).getNumBands();
+		for (int k = 0; k < NUMBER_OF_BANDS; k++) {
+			doReturn(mockBand(k)).when(product).getBandAt(k);
+		}
+	}
+
+	// the sample of band k at (i, j) is k * 1000000 + j * 1000 + i
+	private Band mockBand(final int k) throws Exception {
+		Band band = mock(Band.class);
+		doReturn(false).when(band).hasRasterData();
+		doAnswer(new Answer<float[]>() {
+			@Override
+			public float[] answer(InvocationOnMock invocation) throws Throwable {
+				Object[] args = invocation.getArguments();
+				int x = (Integer) args[0];
+				int y = (Integer) args[1];
+				int w = (Integer) args[2];
+				int h = (Integer) args[3];
+				float[] pixels = (float[]) args[4];
+				for (int j = 0; j < h; j++) {
+					for (int i = 0; i < w; i++) {
+						pixels[i + j * w] = k * 1000000 + (y + j) * 1000 + (x + i);
+					}
+				}
+				return pixels;
+			}
+		}).when(band).readPixels(anyInt(), anyInt(), anyInt(), anyInt(), (float[]) any());
+		return band;
+	}
+
+	@Test
+	public void testReadWindowInStrips() throws Exception {
+		ImagePixelStore store = new ImagePixelStore(7, 10, NUMBER_OF_BANDS);
+		store.offset(5, 20);
+
+		// 10 rows in strips of 4 rows, so the last strip is partial
+		new BandStripReader(product, 5, 12, 4).read(store, 20, 30);
+
+		for (int index = 0; index < store.size(); index++) {
+			for (int k = 0; k < NUMBER_OF_BANDS; k++) {
+				Assert.assertEquals(k * 1000000 + store.j(index) * 1000 + store.i(index),
+						store.L(index, k), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testReadPartOfTheStore() throws Exception {
+		ImagePixelStore store = new ImagePixelStore(7, 10, NUMBER_OF_BANDS);
+		store.offset(5, 20);
+
+		new BandStripReader(product, 5, 12, 4).read(store, 23, 25);
+
+		Assert.assertEquals(0, store.L(store.index(6, 2), 1), 0);
+		Assert.assertEquals(1000000 + 23 * 1000 + 11, store.L(store.index(6, 3), 1), 0);
+		Assert.assertEquals(1000000 + 24 * 1000 + 5, store.L(store.index(0, 4), 1), 0);
+		Assert.assertEquals(0, store.L(store.index(0, 5), 1), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStoreWithDifferentWidth() throws Exception {
+		new BandStripReader(product, 5, 12).read(new ImagePixelStore(8, 10, NUMBER_OF_BANDS), 0,
+				10);
+	}
+}
@@ -0,0 +1,92 @@
+package org.fogbowcloud.sebal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.fogbowcloud.sebal.model.image.DefaultImagePixel;
+import org.fogbowcloud.sebal.model.image.GeoLoc;
+import org.fogbowcloud.sebal.model.image.ImagePixel;
+import org.fogbowcloud.sebal.model.image.ImagePixelOutput;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCandidateSummary {
+
+	private static final int NUMBER_OF_PARTITIONS = 3;
+	private static final int CANDIDATES_PER_PARTITION = 400;
+
+	@Test
+	public void testMergedSummariesChooseAsOneChooser() {
+		Random random = new Random(11);
+		List<List<ImagePixel>> partitions = new ArrayList<List<ImagePixel>>();
+		List<ImagePixel> allCandidates = new ArrayList<ImagePixel>();
+		for (int partition = 0; partition < NUMBER_OF_PARTITIONS; partition++) {
+			List<ImagePixel> candidates = new ArrayList<ImagePixel>();
+			for (int index = 0; index < CANDIDATES_PER_PARTITION; index++) {
+				// few distinct NDVI values, so there are ties across partitions
+				candidates.add(createPixel(allCandidates.size(), Math.round(random.nextDouble()
+						* 40 - 5) / 40d, 300 + random.nextDouble() * 0.3,
+						0.2 + random.nextDouble() * 0.03));
+				allCandidates.add(candidates.get(index));
+			}
+			partitions.add(candidates);
+		}
+
+		ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser();
+		chooser.setPixelFrioCandidates(new ArrayList<ImagePixel>(allCandidates));
+		chooser.setPixelQuenteCandidates(new ArrayList<ImagePixel>(allCandidates));
+		chooser.choosePixelsQuenteFrio();
+		Assert.assertNotNull(chooser.getPixelFrio());
+		Assert.assertNotNull(chooser.getPixelQuente());
+
+		// merged in any order
+		List<CandidateSummary> summaries = new ArrayList<CandidateSummary>();
+		for (int partition = NUMBER_OF_PARTITIONS - 1; partition >= 0; partition--) {
+			ClusteredPixelQuenteFrioChooser partitionChooser = new ClusteredPixelQuenteFrioChooser();
+			partitionChooser.setPixelFrioCandidates(partitions.get(partition));
+			partitionChooser.setPixelQuenteCandidates(partitions.get(partition));
+			summaries.add(CandidateSummary.summarize(partitionChooser, partition, 150));
+		}
+		CandidateSummary summary = CandidateSummary.merge(summaries);
+		Assert.assertEquals(allCandidates.size(), summary.numberOfFrioCandidates());
+		Assert.assertEquals(allCandidates.size(), summary.frioTs().count());
+
+		ClusteredPixelQuenteFrioChooser summaryChooser = new ClusteredPixelQuenteFrioChooser();
+		summaryChooser.choosePixelsQuenteFrio(summary);
+		Assert.assertEquals(chooser.getPixelFrio().geoLoc().getI(), summaryChooser.getPixelFrio()
+				.geoLoc().getI());
+		Assert.assertEquals(chooser.getPixelQuente().geoLoc().getI(), summaryChooser
+				.getPixelQuente().geoLoc().getI());
+		Assert.assertEquals(chooser.getPixelQuente().output().getTs(), summaryChooser
+				.getPixelQuente().output().getTs(), 0);
+	}
+
+	@Test
+	public void testMomentsMerge() {
+		double[] values = { 1, 4, 2, 8, 5, 7 };
+		CandidateSummary.Moments all = new CandidateSummary.Moments();
+		CandidateSummary.Moments first = new CandidateSummary.Moments();
+		CandidateSummary.Moments second = new CandidateSummary.Moments();
+		for (int index = 0; index < values.length; index++) {
+			all.add(values[index]);
+			(index < 2 ? first : second).add(values[index]);
+		}
+		first.merge(second);
+		Assert.assertEquals(values.length, first.count());
+		Assert.assertEquals(all.mean(), first.mean(), 1e-12);
+		Assert.assertEquals(all.variance(), first.variance(), 1e-12);
+		Assert.assertEquals(7.5, first.variance(), 1e-12);
+	}
+
+	private ImagePixel createPixel(int i, double ndvi, double ts, double alpha) {
+		DefaultImagePixel pixel = new DefaultImagePixel();
+		pixel.geoLoc(new GeoLoc(i, 0, 0, 0));
+		ImagePixelOutput output = new ImagePixelOutput();
+		output.setNDVI(ndvi);
+		output.setTs(ts);
+		output.setAlpha(alpha);
+		pixel.setOutput(output);
+		return pixel;
+	}
+}
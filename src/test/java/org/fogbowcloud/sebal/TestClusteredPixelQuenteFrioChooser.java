@@ -3,11 +3,23 @@ package org.fogbowcloud.sebal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
 
+import org.apache.commons.math3.stat.descriptive.moment.Variance;
+import org.fogbowcloud.sebal.model.image.ColumnarImage;
 import org.fogbowcloud.sebal.model.image.DefaultImage;
 import org.fogbowcloud.sebal.model.image.DefaultImagePixel;
+import org.fogbowcloud.sebal.model.image.GeoLoc;
 import org.fogbowcloud.sebal.model.image.ImagePixelOutput;
 import org.fogbowcloud.sebal.model.image.ImagePixel;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore.OutputField;
+import org.fogbowcloud.sebal.model.image.ImagePyramid;
+import org.fogbowcloud.sebal.model.image.ImageTile;
+import org.fogbowcloud.sebal.model.image.ImageTiles;
+import org.fogbowcloud.sebal.model.image.InvalidPixelBitmap;
+import org.fogbowcloud.sebal.model.image.TileVisitor;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -416,6 +428,511 @@ public class TestClusteredPixelQuenteFrioChooser {
 		}
 	}
 
+	@Test
+	public void testCandidatesDoNotDependOnTileSize() {
+		int width = 23;
+		int height = 17;
+
+		DefaultImage image = createImageWithNoWaterPixels(width, height);
+		for (int index = 0; index < width * height; index++) {
+			ImagePixelOutput output = image.pixels().get(index).output();
+			if (index % 4 == 0) {
+				output.setNDVI(-0.05);
+			} else if (index / width > 10) {
+				// clusters whose NDVI varies too much are left out
+				output.setNDVI(0.05 + (index % 5) * 0.2);
+			} else {
+				output.setNDVI(0.1 + (index % 7) * 0.01);
+			}
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty("cluster_tile_size", "1");
+		ClusteredPixelQuenteFrioChooser tiledChooser = new ClusteredPixelQuenteFrioChooser(
+				properties);
+		tiledChooser.selectPixelsQuenteFrioCandidates(image);
+
+		ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser();
+		chooser.selectPixelsQuenteFrioCandidates(image);
+
+		List<ImagePixel> expected = chooser.getPixelFrioCandidates();
+		List<ImagePixel> obtained = tiledChooser.getPixelFrioCandidates();
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected.size(), obtained.size());
+		for (int index = 0; index < expected.size(); index++) {
+			Assert.assertSame(expected.get(index), obtained.get(index));
+		}
+	}
+
+	@Test
+	public void testCandidatesDoNotDependOnParallelism() {
+		int width = 61;
+		int height = 47;
+
+		DefaultImage image = createImageWithNoWaterPixels(width, height);
+		for (int index = 0; index < width * height; index++) {
+			ImagePixelOutput output = image.pixels().get(index).output();
+			if (index % 9 == 0) {
+				output.setIsCloud(true);
+			}
+			if (index % 13 == 0) {
+				output.setNDVI(-0.05);
+			} else if (index / width < height / 2) {
+				output.setNDVI(0.2 + (index % 3) * 0.01);
+			} else {
+				// clusters whose NDVI varies too much are left out
+				output.setNDVI(0.05 + (index % 5) * 0.2);
+			}
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty("cluster_parallelism", "1");
+		ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser(properties);
+		chooser.selectPixelsQuenteFrioCandidates(image);
+
+		properties.setProperty("cluster_parallelism", "4");
+		ClusteredPixelQuenteFrioChooser parallelChooser = new ClusteredPixelQuenteFrioChooser(
+				properties);
+		parallelChooser.selectPixelsQuenteFrioCandidates(image);
+
+		List<ImagePixel> expected = chooser.getPixelQuenteCandidates();
+		List<ImagePixel> obtained = parallelChooser.getPixelQuenteCandidates();
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertTrue(expected.size() < width * height / 2);
+		Assert.assertEquals(expected.size(), obtained.size());
+		for (int index = 0; index < expected.size(); index++) {
+			Assert.assertSame(expected.get(index), obtained.get(index));
+		}
+	}
+
+	@Test
+	public void testSlidingClusters() {
+		int width = 23;
+		int height = 17;
+		int stride = 2;
+
+		DefaultImage image = createImageWithNoWaterPixels(width, height);
+		for (int index = 0; index < width * height; index++) {
+			ImagePixelOutput output = image.pixels().get(index).output();
+			if (index % 7 == 0) {
+				output.setIsCloud(true);
+			}
+			if (index % 4 == 0) {
+				output.setNDVI(-0.05);
+			} else if (index % width > 12) {
+				// clusters whose NDVI varies too much are left out
+				output.setNDVI(0.05 + (index % 5) * 0.2);
+			} else {
+				output.setNDVI(0.1 + (index % 7) * 0.01);
+			}
+		}
+
+		// brute force: valid pixels covered by a cluster that passes
+		boolean[] covered = new boolean[width * height];
+		for (int x0 = 0; x0 < width; x0 += stride) {
+			for (int y0 = 0; y0 < height; y0 += stride) {
+				List<Double> ndviValues = new ArrayList<Double>();
+				int invalid = 0;
+				for (int x = x0; x < Math.min(x0 + 5, width); x++) {
+					for (int y = y0; y < Math.min(y0 + 5, height); y++) {
+						ImagePixelOutput output = image.pixels().get(linear(x, y, width)).output();
+						if (output.isCloud() || output.getNDVI() <= 0) {
+							invalid++;
+						} else {
+							ndviValues.add(output.getNDVI());
+						}
+					}
+				}
+				double[] values = new double[ndviValues.size()];
+				double mean = 0;
+				for (int i = 0; i < values.length; i++) {
+					values[i] = ndviValues.get(i);
+					mean += values[i] / values.length;
+				}
+				double cv = Math.sqrt(new Variance().evaluate(values)) / mean;
+				if (invalid < 10 && cv < 0.2) {
+					for (int x = x0; x < Math.min(x0 + 5, width); x++) {
+						for (int y = y0; y < Math.min(y0 + 5, height); y++) {
+							covered[linear(x, y, width)] = true;
+						}
+					}
+				}
+			}
+		}
+		List<ImagePixel> expected = new ArrayList<ImagePixel>();
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				ImagePixel pixel = image.pixels().get(linear(x, y, width));
+				if (covered[linear(x, y, width)] && !pixel.output().isCloud()
+						&& pixel.output().getNDVI() > 0) {
+					expected.add(pixel);
+				}
+			}
+		}
+		Assert.assertFalse(expected.isEmpty());
+
+		for (String tileSize : new String[] { "4", "512" }) {
+			Properties properties = new Properties();
+			properties.setProperty("cluster_stride", String.valueOf(stride));
+			properties.setProperty("cluster_tile_size", tileSize);
+			ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser(
+					properties);
+			chooser.selectPixelsQuenteFrioCandidates(image);
+
+			List<ImagePixel> obtained = chooser.getPixelQuenteCandidates();
+			Assert.assertEquals(expected.size(), obtained.size());
+			for (int index = 0; index < expected.size(); index++) {
+				Assert.assertSame(expected.get(index), obtained.get(index));
+			}
+		}
+	}
+
+	@Test
+	public void testSketchSelectionKeepsTheExactPixels() {
+		Random random = new Random(17);
+		List<ImagePixel> candidates = new ArrayList<ImagePixel>();
+		for (int index = 0; index < 20000; index++) {
+			DefaultImagePixel pixel = new DefaultImagePixel();
+			ImagePixelOutput output = new ImagePixelOutput();
+			output.setNDVI(Math.round(random.nextGaussian() * 1000) / 4000d);
+			pixel.setOutput(output);
+			candidates.add(pixel);
+		}
+
+		ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser();
+		assertSamePixels(chooser.filterBiggestNDVI(candidates, 5),
+				chooser.sketchBiggestNDVI(candidates, 5));
+		assertSamePixels(chooser.filterSmallestNDVI(candidates, 10),
+				chooser.sketchSmallestNDVI(candidates, 10));
+	}
+
+	@Test
+	public void testSketchSelectionFallsBackWhenTheBandIsShort() {
+		List<ImagePixel> candidates = new ArrayList<ImagePixel>();
+		for (int index = 0; index < 200; index++) {
+			DefaultImagePixel pixel = new DefaultImagePixel();
+			ImagePixelOutput output = new ImagePixelOutput();
+			// the sketch does not count NaN values, so its band misses them
+			output.setNDVI(index % 4 == 0 ? 0.1 + index / 1000d : Double.NaN);
+			pixel.setOutput(output);
+			candidates.add(pixel);
+		}
+
+		ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser();
+		List<ImagePixel> biggestNDVI = chooser.filterBiggestNDVI(candidates, 50);
+		Assert.assertEquals(100, biggestNDVI.size());
+		assertSamePixels(biggestNDVI, chooser.sketchBiggestNDVI(candidates, 50));
+	}
+
+	@Test
+	public void testPyramidKeepsTheCandidates() {
+		int width = 83;
+		int height = 71;
+		DefaultImage image = createCloudyImage(width, height);
+
+		Properties properties = new Properties();
+		properties.setProperty("cluster_max_invalid_ndvi", "5");
+		properties.setProperty("cluster_tile_size", "40");
+		ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser(properties);
+		chooser.selectPixelsQuenteFrioCandidates(image);
+
+		properties.setProperty("cluster_pyramid_levels", "2, 4");
+		ClusteredPixelQuenteFrioChooser pyramidChooser = new ClusteredPixelQuenteFrioChooser(
+				properties);
+		pyramidChooser.selectPixelsQuenteFrioCandidates(image);
+
+		assertSamePixels(chooser.getPixelQuenteCandidates(),
+				pyramidChooser.getPixelQuenteCandidates());
+		assertSamePixels(chooser.getPixelFrioCandidates(),
+				pyramidChooser.getPixelFrioCandidates());
+
+		ImagePyramid pyramid = new ImagePyramid(wholeImageTile(image), 5, 5, 2, 4);
+		Assert.assertEquals(9, pyramid.blockColumns(0));
+		Assert.assertEquals(4, pyramid.blockRows(1));
+		Assert.assertEquals(3 * 11, pyramid.pixels(1, 4, 3));
+		Assert.assertTrue(pyramid.cloudFraction(1, 0, 0) > 0.9);
+		Assert.assertEquals(0, pyramid.cloudFraction(1, 3, 3), 0);
+		// the cloud leaves every cluster of the first blocks with too many invalid values
+		Assert.assertTrue(pyramid.validPixels(0, 0, 0) <= 5 * 5 - 5);
+		Assert.assertEquals(pyramid.pixels(0, 7, 1), pyramid.validPixels(0, 7, 1)
+				+ pyramid.invalidPixels(0, 7, 1));
+		Assert.assertTrue(pyramid.validPixels(0, 7, 1) > 5 * 5 - 5);
+	}
+
+	@Test
+	public void testTransientTilesKeepCopiesOfTheCandidates() throws Exception {
+		int width = 83;
+		int height = 71;
+		DefaultImage image = createCloudyImage(width, height);
+		// a lake across tiles
+		for (int x = 5; x < 70; x++) {
+			for (int y = 60; y < 64; y++) {
+				ImagePixelOutput output = image.pixels().get(x + y * width).output();
+				output.setIsCloud(false);
+				output.setNDVI(-0.1);
+				output.setWaterTest(x == 30);
+			}
+		}
+		ImagePixelStore store = new ImagePixelStore(width, height, 0);
+		ColumnarImage inMemoryImage = new ColumnarImage(null, store);
+		inMemoryImage.pixels(image.pixels());
+		ColumnarImage transientImage = new TransientTilesImage(inMemoryImage.store());
+
+		Properties properties = new Properties();
+		properties.setProperty("cluster_tile_size", "20");
+		properties.setProperty("cluster_max_invalid_ndvi", "5");
+		properties.setProperty("cluster_pyramid_levels", "2");
+		properties.setProperty("cluster_invalid_bitmap", "true");
+		ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser(properties);
+		chooser.selectPixelsQuenteFrioCandidates(inMemoryImage);
+		ClusteredPixelQuenteFrioChooser transientChooser = new ClusteredPixelQuenteFrioChooser(
+				properties);
+		transientChooser.selectPixelsQuenteFrioCandidates(transientImage);
+
+		// the lake and the negative NDVI pixels next to it
+		Assert.assertTrue(chooser.getWaterSample().size() >= 65 * 4);
+		Assert.assertEquals(chooser.getWaterSample().size(), transientChooser.getWaterSample()
+				.size());
+		Assert.assertEquals(-0.1, chooser.getPixelFrioCandidates().get(0).output().getNDVI(), 0);
+		assertEqualPixels(chooser.getPixelFrioCandidates(),
+				transientChooser.getPixelFrioCandidates());
+		assertEqualPixels(chooser.getPixelQuenteCandidates(),
+				transientChooser.getPixelQuenteCandidates());
+	}
+
+	@Test
+	public void testSummaryLeavesThePixelFrioInTheWaterToTheWaterSample() {
+		int width = 83;
+		int height = 71;
+		DefaultImage image = createCloudyImage(width, height);
+		for (int index = 0; index < width * height; index++) {
+			((DefaultImagePixel) image.pixels().get(index)).geoLoc(new GeoLoc(index % width,
+					index / width, 0, 0));
+			// close enough to the TS mean for the pixels to be chosen
+			image.pixels().get(index).output().setTs(300 + index % 7 * 0.01);
+		}
+		for (int x = 5; x < 70; x++) {
+			for (int y = 60; y < 64; y++) {
+				ImagePixelOutput output = image.pixels().get(x + y * width).output();
+				output.setIsCloud(false);
+				output.setNDVI(-0.1);
+				output.setWaterTest(x == 30);
+			}
+		}
+		Properties properties = new Properties();
+		properties.setProperty("cluster_max_invalid_ndvi", "5");
+		ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser(properties);
+		chooser.selectPixelsQuenteFrioCandidates(image);
+		Assert.assertNotNull(chooser.getWaterSample());
+		Assert.assertEquals(0, chooser.pixelFrioInTheWaterPosition());
+
+		CandidateSummary summary = CandidateSummary.summarize(chooser, 0, 1000);
+		Assert.assertEquals(chooser.getPixelFrioCandidates().size() - 1,
+				summary.numberOfFrioCandidates());
+		Assert.assertEquals(chooser.getWaterSample().size(), summary.waterSample().size());
+
+		chooser.choosePixelsQuenteFrio();
+		ClusteredPixelQuenteFrioChooser summaryChooser = new ClusteredPixelQuenteFrioChooser();
+		summaryChooser.choosePixelsQuenteFrio(summary);
+		Assert.assertEquals(chooser.getPixelFrio().geoLoc().getI(), summaryChooser.getPixelFrio()
+				.geoLoc().getI());
+		Assert.assertEquals(chooser.getPixelFrio().geoLoc().getJ(), summaryChooser.getPixelFrio()
+				.geoLoc().getJ());
+		Assert.assertEquals(chooser.getPixelQuente().geoLoc().getI(), summaryChooser
+				.getPixelQuente().geoLoc().getI());
+	}
+
+	/*
+	 * Reads each tile into a store of its own, which is overwritten once the
+	 * tile is visited, as a released store would be.
+	 */
+	private static class TransientTilesImage extends ColumnarImage {
+
+		TransientTilesImage(ImagePixelStore store) {
+			super(null, store);
+		}
+
+		@Override
+		public void forEachTile(int tileWidth, int tileHeight, int halo,
+				final TileVisitor visitor) throws Exception {
+			final List<ImagePixel> pixels = pixels();
+			ImageTiles.forEachTile(width(), height(), tileWidth, tileHeight, halo,
+					new ImageTiles.TileReader() {
+						@Override
+						public ImageTile read(int x, int y, int width, int height, int haloX,
+								int haloY, int haloWidth, int haloHeight) {
+							ImagePixelStore tileStore = new ImagePixelStore(haloWidth,
+									haloHeight, 0);
+							tileStore.offset(haloX, haloY);
+							for (int index = 0; index < tileStore.size(); index++) {
+								tileStore.setPixel(index, pixels.get(haloX + index % haloWidth
+										+ (haloY + index / haloWidth) * width()));
+							}
+							return new ImageTile(x, y, width, height, haloX, haloY, haloWidth,
+									haloHeight, new ColumnarImage(null, tileStore).pixels(),
+									tileStore, 0, 0, true);
+						}
+					}, new TileVisitor() {
+						@Override
+						public void visit(ImageTile tile) throws Exception {
+							visitor.visit(tile);
+							for (int index = 0; index < tile.store().size(); index++) {
+								tile.store().output(index, OutputField.NDVI, Double.NaN);
+								tile.store().output(index, OutputField.TS, Double.NaN);
+							}
+						}
+					});
+		}
+	}
+
+	private void assertEqualPixels(List<ImagePixel> expected, List<ImagePixel> obtained) {
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected.size(), obtained.size());
+		for (int index = 0; index < expected.size(); index++) {
+			Assert.assertEquals(expected.get(index).geoLoc().getI(), obtained.get(index)
+					.geoLoc().getI());
+			Assert.assertEquals(expected.get(index).geoLoc().getJ(), obtained.get(index)
+					.geoLoc().getJ());
+			Assert.assertEquals(expected.get(index).output().getNDVI(), obtained.get(index)
+					.output().getNDVI(), 0);
+			Assert.assertEquals(expected.get(index).output().getTs(), obtained.get(index)
+					.output().getTs(), 0);
+		}
+	}
+
+	private ImageTile wholeImageTile(DefaultImage image) {
+		return new ImageTile(0, 0, image.width(), image.height(), 0, 0, image.width(),
+				image.height(), image.pixels());
+	}
+
+	/*
+	 * A cloud over the top left, with some holes, and a heterogeneous band on
+	 * the right.
+	 */
+	private DefaultImage createCloudyImage(int width, int height) {
+		DefaultImage image = createImageWithNoWaterPixels(width, height);
+		for (int index = 0; index < width * height; index++) {
+			int x = index % width;
+			int y = index / width;
+			ImagePixelOutput output = image.pixels().get(index).output();
+			if (x < 50 && y < 40 && index % 17 != 0) {
+				output.setIsCloud(true);
+			}
+			if (index % 29 == 0) {
+				output.setNDVI(-0.05);
+			} else {
+				output.setNDVI(0.2 + (index % 3) * (x < 60 ? 0.01 : 0.2));
+			}
+			output.setTs(300 + index % 7);
+		}
+		return image;
+	}
+
+	@Test
+	public void testInvalidPixelBitmapKeepsTheCandidates() {
+		int width = 83;
+		int height = 71;
+		DefaultImage image = createCloudyImage(width, height);
+		// a tile of clusters without valid pixels
+		for (int x = 0; x < 10; x++) {
+			for (int y = 0; y < 10; y++) {
+				image.pixels().get(x + y * width).output().setIsCloud(true);
+			}
+		}
+
+		for (String maxCVForNDVI : new String[] { "0.2", "1.5" }) {
+			Properties properties = new Properties();
+			properties.setProperty("cluster_max_invalid_ndvi", "5");
+			properties.setProperty("cluster_max_cv_for_ndvi", maxCVForNDVI);
+			properties.setProperty("cluster_tile_size", "10");
+			ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser(
+					properties);
+			chooser.selectPixelsQuenteFrioCandidates(image);
+
+			properties.setProperty("cluster_invalid_bitmap", "true");
+			ClusteredPixelQuenteFrioChooser bitmapChooser = new ClusteredPixelQuenteFrioChooser(
+					properties);
+			bitmapChooser.selectPixelsQuenteFrioCandidates(image);
+
+			assertSamePixels(chooser.getPixelQuenteCandidates(),
+					bitmapChooser.getPixelQuenteCandidates());
+		}
+
+		InvalidPixelBitmap bitmap = InvalidPixelBitmap.of(wholeImageTile(image));
+		Assert.assertEquals(2, bitmap.wordsPerRow());
+		Assert.assertEquals(100, bitmap.count(InvalidPixelBitmap.Plane.CLOUD, 0, 0, 10, 10));
+		int invalid = 0;
+		int cloud = 0;
+		for (int x = 60; x < 83; x++) {
+			for (int y = 30; y < 45; y++) {
+				ImagePixelOutput output = image.pixels().get(x + y * width).output();
+				invalid += output.isCloud() || output.getNDVI() <= 0 ? 1 : 0;
+				cloud += output.isCloud() ? 1 : 0;
+			}
+		}
+		Assert.assertEquals(invalid, bitmap.count(InvalidPixelBitmap.Plane.INVALID, 60, 30, 23,
+				15));
+		Assert.assertEquals(cloud, bitmap.count(InvalidPixelBitmap.Plane.CLOUD, 60, 30, 23, 15));
+		Assert.assertTrue(bitmap.get(InvalidPixelBitmap.Plane.INVALID, 29, 0));
+		Assert.assertFalse(bitmap.get(InvalidPixelBitmap.Plane.CLOUD, 70, 50));
+	}
+
+	@Test
+	public void testSweepChoosesAsIndependentChoosers() {
+		int width = 37;
+		int height = 29;
+
+		DefaultImage image = createImageWithNoWaterPixels(width, height);
+		for (int index = 0; index < width * height; index++) {
+			ImagePixelOutput output = image.pixels().get(index).output();
+			if (index % 11 == 0) {
+				output.setIsCloud(true);
+			}
+			if (index % 6 == 0) {
+				output.setNDVI(-0.05);
+			} else {
+				output.setNDVI(0.1 + (index % 7) * (index % width < 20 ? 0.01 : 0.08));
+			}
+			output.setTs(290 + index % 17);
+			output.setAlpha(0.1 + (index % 5) * 0.02);
+			((DefaultImagePixel) image.pixels().get(index)).geoLoc(new GeoLoc(index % width,
+					index / width, 0, 0));
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty("cluster_parallelism", "2");
+		properties.setProperty("sweep_cluster_width", "4,5");
+		properties.setProperty("sweep_cluster_max_cv_for_ndvi", "0.05,0.2,0.5");
+		properties.setProperty("sweep_cluster_max_invalid_ndvi", "2, 5");
+		PixelQuenteFrioSweep sweep = new PixelQuenteFrioSweep(properties);
+		List<PixelQuenteFrioSweep.Result> results = sweep.run(image);
+		Assert.assertEquals(12, results.size());
+		Assert.assertNotNull(results.get(results.size() - 1).pixelQuente());
+		Assert.assertTrue(results.get(0).numberOfPixelQuenteCandidates() < results.get(
+				results.size() - 1).numberOfPixelQuenteCandidates());
+
+		for (PixelQuenteFrioSweep.Result result : results) {
+			ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser(
+					result.configuration());
+			chooser.selectPixelsQuenteFrioCandidates(image);
+			chooser.choosePixelsQuenteFrio();
+			Assert.assertEquals(chooser.getPixelQuenteCandidates().size(),
+					result.numberOfPixelQuenteCandidates());
+			Assert.assertEquals(chooser.getPixelFrioCandidates().size(),
+					result.numberOfPixelFrioCandidates());
+			Assert.assertSame(chooser.getPixelQuente(), result.pixelQuente());
+			Assert.assertSame(chooser.getPixelFrio(), result.pixelFrio());
+		}
+	}
+
+	private void assertSamePixels(List<ImagePixel> expected, List<ImagePixel> obtained) {
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected.size(), obtained.size());
+		for (int index = 0; index < expected.size(); index++) {
+			Assert.assertSame(expected.get(index), obtained.get(index));
+		}
+	}
+
 	private DefaultImage createImageWithNoWaterPixels(int width, int height) {
 		DefaultImage image = new DefaultImage(new ClusteredPixelQuenteFrioChooser());
 		image.width(width);
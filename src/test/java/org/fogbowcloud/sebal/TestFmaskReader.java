@@ -0,0 +1,107 @@
+package org.fogbowcloud.sebal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fogbowcloud.sebal.model.image.FmaskBitmap;
+import org.fogbowcloud.sebal.model.image.FmaskBitmap.Plane;
+import org.gdal.gdal.Band;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestFmaskReader {
+
+	static final int BLOCK_HEIGHT = 3;
+
+	// the Fmask value at (i, j), 255 (no data) included
+	private static int fmask(int i, int j) {
+		int value = (i + 2 * j) % 6;
+		return value == 5 ? 255 : value;
+	}
+
+	private Band mockBand(final List<int[]> reads) {
+		Band band = mock(Band.class);
+		doReturn(BLOCK_HEIGHT).when(band).GetBlockYSize();
+		doAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				Object[] args = invocation.getArguments();
+				int x = (Integer) args[0];
+				int y = (Integer) args[1];
+				int w = (Integer) args[2];
+				int h = (Integer) args[3];
+				byte[] rows = (byte[]) args[4];
+				for (int j = 0; j < h; j++) {
+					for (int i = 0; i < w; i++) {
+						rows[i + j * w] = (byte) fmask(x + i, y + j);
+					}
+				}
+				reads.add(new int[] { y, h });
+				return 0;
+			}
+		}).when(band).ReadRaster(anyInt(), anyInt(), anyInt(), anyInt(), (byte[]) any());
+		return band;
+	}
+
+	@Test
+	public void testReadWindowInBlockRows() {
+		List<int[]> reads = new ArrayList<int[]>();
+		FmaskBitmap bitmap = FmaskReader.read(mockBand(reads), 10, 80, 4, 14);
+
+		Assert.assertEquals(70, bitmap.width());
+		Assert.assertEquals(10, bitmap.height());
+		for (int y = 0; y < bitmap.height(); y++) {
+			for (int x = 0; x < bitmap.width(); x++) {
+				int index = x + y * bitmap.width();
+				int value = fmask(x + 10, y + 4);
+				Assert.assertEquals(value <= 1, bitmap.isValid(index));
+				Assert.assertEquals(value == 1, bitmap.isWater(index));
+				Assert.assertEquals(value == 2 || value == 4, bitmap.isCloud(index));
+				Assert.assertEquals(value == 3, bitmap.isSnow(index));
+			}
+		}
+
+		// rows 4 to 14 with blocks of 3 rows: 4-5, 6-8, 9-11 and 12-13
+		Assert.assertEquals(4, reads.size());
+		Assert.assertArrayEquals(new int[] { 4, 2 }, reads.get(0));
+		Assert.assertArrayEquals(new int[] { 6, 3 }, reads.get(1));
+		Assert.assertArrayEquals(new int[] { 12, 2 }, reads.get(3));
+	}
+
+	@Test
+	public void testCountMatchesBits() {
+		FmaskBitmap bitmap = FmaskReader.read(mockBand(new ArrayList<int[]>()), 0, 131, 0, 3);
+
+		for (Plane plane : Plane.values()) {
+			int[][] ranges = { { 0, bitmap.size() }, { 5, 64 }, { 64, 128 }, { 63, 65 },
+					{ 70, 71 }, { 100, 100 }, { 1, 390 } };
+			for (int[] range : ranges) {
+				int expected = 0;
+				for (int index = range[0]; index < range[1]; index++) {
+					if (bitmap.get(plane, index)) {
+						expected++;
+					}
+				}
+				Assert.assertEquals(expected, bitmap.count(plane, range[0], range[1]));
+			}
+		}
+		Assert.assertEquals(bitmap.count(Plane.VALID), bitmap.count(Plane.VALID, 0,
+				bitmap.size()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReadErrorIsReported() {
+		Band band = mock(Band.class);
+		doReturn(BLOCK_HEIGHT).when(band).GetBlockYSize();
+		doReturn(3).when(band).ReadRaster(anyInt(), anyInt(), anyInt(), anyInt(), (byte[]) any());
+		FmaskReader.read(band, 0, 10, 0, 10);
+	}
+}
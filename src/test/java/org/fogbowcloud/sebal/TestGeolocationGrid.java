@@ -0,0 +1,156 @@
+package org.fogbowcloud.sebal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestGeolocationGrid {
+
+	static final int WIDTH = 301;
+	static final int HEIGHT = 257;
+
+	File cacheDir;
+
+	@Before
+	public void setUp() {
+		cacheDir = new File(System.getProperty("java.io.tmpdir"), "geolocation-grid-test-"
+				+ System.nanoTime());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(cacheDir);
+	}
+
+	/*
+	 * Geocoding of a scene whose first pixel is at (lat0, lon0), with a small
+	 * rotation and, when curvature is not zero, a quadratic term.
+	 */
+	private GeoCoding mockGeoCoding(final double lat0, final double lon0, final double curvature) {
+		GeoCoding geoCoding = mock(GeoCoding.class);
+		doAnswer(new Answer<GeoPos>() {
+			@Override
+			public GeoPos answer(InvocationOnMock invocation) throws Throwable {
+				PixelPos pixelPos = (PixelPos) invocation.getArguments()[0];
+				double x = pixelPos.x;
+				double y = pixelPos.y;
+				double lat = lat0 - 2.5e-4 * y + 1e-5 * x + curvature * x * x;
+				double lon = lon0 + 2.5e-4 * x + 1e-5 * y;
+				return new GeoPos((float) lat, (float) lon);
+			}
+		}).when(geoCoding).getGeoPos((PixelPos) any(), (GeoPos) any());
+		return geoCoding;
+	}
+
+	@Test
+	public void testInterpolationOfLinearGeocoding() {
+		GeoCoding geoCoding = mockGeoCoding(-7.5, -38.0, 0);
+		GeolocationGrid grid = GeolocationGrid.create(geoCoding, WIDTH, HEIGHT, 64);
+
+		for (int j = 0; j < HEIGHT; j += 7) {
+			for (int i = 0; i < WIDTH; i += 5) {
+				GeoPos geoPos = geoCoding.getGeoPos(new PixelPos(i, j), null);
+				Assert.assertEquals(geoPos.getLat(), grid.lat(i, j), 1e-5);
+				Assert.assertEquals(geoPos.getLon(), grid.lon(i, j), 1e-5);
+			}
+		}
+		Assert.assertTrue(grid.maxError(geoCoding) <= 1e-5);
+	}
+
+	@Test
+	public void testControlPointsAreExact() {
+		GeoCoding geoCoding = mockGeoCoding(-7.5, -38.0, 1e-7);
+		GeolocationGrid grid = GeolocationGrid.create(geoCoding, WIDTH, HEIGHT, 64);
+
+		GeoPos lastPixel = geoCoding.getGeoPos(new PixelPos(WIDTH - 1, HEIGHT - 1), null);
+		Assert.assertEquals(lastPixel.getLat(), grid.lat(WIDTH - 1, HEIGHT - 1), 0);
+		Assert.assertEquals(lastPixel.getLon(), grid.lon(WIDTH - 1, HEIGHT - 1), 0);
+
+		GeoPos node = geoCoding.getGeoPos(new PixelPos(128, 192), null);
+		Assert.assertEquals(node.getLat(), grid.lat(128, 192), 0);
+		Assert.assertEquals(node.getLon(), grid.lon(128, 192), 0);
+	}
+
+	@Test
+	public void testStepIsRefinedUntilMaxError() {
+		GeoCoding geoCoding = mockGeoCoding(-7.5, -38.0, 1e-8);
+		Properties properties = new Properties();
+		properties.setProperty("geolocation_grid_step", "128");
+		properties.setProperty("geolocation_grid_max_error", "1e-5");
+
+		GeolocationGrid grid = new GeolocationGridCache(properties).get(geoCoding, WIDTH,
+				HEIGHT, null);
+
+		Assert.assertTrue(grid.step() < 128);
+		Assert.assertTrue(grid.maxError(geoCoding) <= 1e-5);
+	}
+
+	@Test
+	public void testFillStoreWindow() {
+		GeoCoding geoCoding = mockGeoCoding(-7.5, -38.0, 0);
+		GeolocationGrid grid = GeolocationGrid.create(geoCoding, WIDTH, HEIGHT, 32);
+		ImagePixelStore store = new ImagePixelStore(10, 5, 0);
+		store.offset(100, 200);
+
+		grid.fill(store);
+
+		int index = store.index(3, 4);
+		Assert.assertEquals(grid.lat(103, 204), store.lat(index), 0);
+		Assert.assertEquals(grid.lon(103, 204), store.lon(index), 0);
+	}
+
+	@Test
+	public void testGridIsReusedForSameFootprint() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("geolocation_grid_cache_dir", cacheDir.getAbsolutePath());
+		String wrsPathRow = "wrs_215_065_" + System.nanoTime();
+
+		GeoCoding geoCoding = mockGeoCoding(-7.5, -38.0, 0);
+		GeolocationGrid grid = new GeolocationGridCache(properties).get(geoCoding, WIDTH,
+				HEIGHT, wrsPathRow);
+		Assert.assertTrue(new File(cacheDir, wrsPathRow + "_" + WIDTH + "x" + HEIGHT + ".grid")
+				.exists());
+		// no temporary file is left
+		Assert.assertEquals(1, cacheDir.listFiles().length);
+
+		Assert.assertSame(grid, new GeolocationGridCache(properties).get(geoCoding, WIDTH,
+				HEIGHT, wrsPathRow));
+
+		GeolocationGrid fromFile = GeolocationGrid.read(new File(cacheDir, wrsPathRow + "_"
+				+ WIDTH + "x" + HEIGHT + ".grid"));
+		Assert.assertEquals(grid.lat(150, 100), fromFile.lat(150, 100), 0);
+		Assert.assertEquals(grid.lon(150, 100), fromFile.lon(150, 100), 0);
+	}
+
+	@Test
+	public void testGridIsRebuiltWhenSceneIsShifted() {
+		String wrsPathRow = "wrs_215_065_" + System.nanoTime();
+
+		GeoCoding geoCoding = mockGeoCoding(-7.5, -38.0, 0);
+		GeolocationGrid grid = new GeolocationGridCache().get(geoCoding, WIDTH, HEIGHT,
+				wrsPathRow);
+
+		// same path/row, but the scene starts half a pixel away
+		GeoCoding shiftedGeoCoding = mockGeoCoding(-7.5 + 1.25e-4, -38.0, 0);
+		GeolocationGrid shiftedGrid = new GeolocationGridCache().get(shiftedGeoCoding, WIDTH,
+				HEIGHT, wrsPathRow);
+
+		Assert.assertNotSame(grid, shiftedGrid);
+		Assert.assertEquals(-7.5 + 1.25e-4, shiftedGrid.lat(0, 0), 1e-5);
+	}
+}
@@ -0,0 +1,127 @@
+package org.fogbowcloud.sebal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.fogbowcloud.sebal.model.image.DefaultImage;
+import org.fogbowcloud.sebal.model.image.DefaultImagePixel;
+import org.fogbowcloud.sebal.model.image.GeoLoc;
+import org.fogbowcloud.sebal.model.image.ImagePixel;
+import org.fogbowcloud.sebal.model.image.ImagePixelOutput;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestHistogramPixelQuenteFrioChooser {
+
+	@Test
+	public void testChoosesAsTheClusteredChooser() {
+		assertChoosesAsTheClusteredChooser(createScene(120, 90, new Random(5)));
+		// a scene of PixelQuenteFrioChooserBenchmark
+		assertChoosesAsTheClusteredChooser(createScene(500, 500, new Random(500)));
+	}
+
+	private void assertChoosesAsTheClusteredChooser(DefaultImage image) {
+		ClusteredPixelQuenteFrioChooser clusteredChooser = new ClusteredPixelQuenteFrioChooser();
+		clusteredChooser.selectPixelsQuenteFrioCandidates(image);
+		clusteredChooser.choosePixelsQuenteFrio();
+
+		Properties properties = new Properties();
+		properties.setProperty("pixel_quente_frio_chooser", SEBALHelper.HISTOGRAM_CHOOSER);
+		PixelQuenteFrioChooser histogramChooser = SEBALHelper
+				.createPixelQuenteFrioChooser(properties);
+		Assert.assertTrue(histogramChooser instanceof HistogramPixelQuenteFrioChooser);
+		histogramChooser.selectPixelsQuenteFrioCandidates(image);
+		histogramChooser.choosePixelsQuenteFrio();
+
+		Assert.assertNotNull(clusteredChooser.getPixelFrio());
+		Assert.assertNotNull(histogramChooser.getPixelFrio());
+		Assert.assertEquals(clusteredChooser.getPixelFrio().output().getTs(), histogramChooser
+				.getPixelFrio().output().getTs(), 0.5);
+		Assert.assertEquals(clusteredChooser.getPixelFrio().output().getNDVI(), histogramChooser
+				.getPixelFrio().output().getNDVI(), 0.05);
+		Assert.assertNotNull(clusteredChooser.getPixelQuente());
+		Assert.assertNotNull(histogramChooser.getPixelQuente());
+		Assert.assertEquals(clusteredChooser.getPixelQuente().output().getTs(), histogramChooser
+				.getPixelQuente().output().getTs(), 0.5);
+		Assert.assertEquals(clusteredChooser.getPixelQuente().output().getNDVI(),
+				histogramChooser.getPixelQuente().output().getNDVI(), 0.05);
+	}
+
+	@Test
+	public void testChoosesFromTheTails() {
+		List<ImagePixel> candidates = new ArrayList<ImagePixel>();
+		for (int index = 0; index < 100; index++) {
+			// NDVI and TS grow with the index, except for a hot pixel of high NDVI
+			candidates.add(createPixel(index, 0.005 + index * 0.009, 290 + index * 0.1, 0.2));
+		}
+		candidates.get(97).output().setTs(330);
+		candidates.get(50).output().setIsCloud(true);
+		candidates.get(51).output().setNDVI(-0.2);
+
+		Properties properties = new Properties();
+		properties.setProperty("histogram_ndvi_bins", "1000");
+		properties.setProperty("histogram_ts_bins", "4000");
+		properties.setProperty("cluster_max_difference_from_ts_mean", "100");
+		HistogramPixelQuenteFrioChooser chooser = new HistogramPixelQuenteFrioChooser(properties);
+		chooser.setPixelFrioCandidates(candidates);
+		chooser.setPixelQuenteCandidates(candidates);
+		chooser.choosePixelsQuenteFrio();
+
+		// 5 biggest NDVI, and the smallest TS of them
+		Assert.assertSame(candidates.get(95), chooser.getPixelFrio());
+		// 10 smallest positive NDVI, and the biggest TS of them
+		Assert.assertSame(candidates.get(9), chooser.getPixelQuente());
+	}
+
+	@Test
+	public void testNoCandidates() {
+		HistogramPixelQuenteFrioChooser chooser = new HistogramPixelQuenteFrioChooser();
+		chooser.selectPixelsQuenteFrioCandidates(createScene(0, 0, new Random(1)));
+		chooser.choosePixelsQuenteFrio();
+		Assert.assertNull(chooser.getPixelFrio());
+		Assert.assertNull(chooser.getPixelQuente());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidChooser() {
+		Properties properties = new Properties();
+		properties.setProperty("pixel_quente_frio_chooser", "sorted");
+		SEBALHelper.createPixelQuenteFrioChooser(properties);
+	}
+
+	/*
+	 * Vegetation grows to the east, and is cooler and darker; some pixels are
+	 * cloud and a few have no vegetation at all.
+	 */
+	static DefaultImage createScene(int width, int height, Random random) {
+		DefaultImage image = new DefaultImage(new ClusteredPixelQuenteFrioChooser());
+		image.width(width);
+		image.height(height);
+		for (int index = 0; index < width * height; index++) {
+			int x = index % width;
+			double ndvi = 0.05 + 0.8 * x / width + random.nextGaussian() * 0.005;
+			if (random.nextInt(50) == 0) {
+				ndvi = -0.1;
+			}
+			DefaultImagePixel pixel = createPixel(index, ndvi, 320 - 25 * ndvi
+					+ random.nextGaussian() * 0.3, 0.25 - 0.1 * ndvi + random.nextGaussian()
+					* 0.005);
+			pixel.output().setIsCloud(random.nextInt(20) == 0);
+			image.addPixel(pixel);
+		}
+		return image;
+	}
+
+	private static DefaultImagePixel createPixel(int i, double ndvi, double ts, double alpha) {
+		DefaultImagePixel pixel = new DefaultImagePixel();
+		pixel.geoLoc(new GeoLoc(i, 0, 0, 0));
+		ImagePixelOutput output = new ImagePixelOutput();
+		output.setNDVI(ndvi);
+		output.setTs(ts);
+		output.setAlpha(alpha);
+		pixel.setOutput(output);
+		return pixel;
+	}
+}
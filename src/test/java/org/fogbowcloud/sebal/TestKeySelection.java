@@ -0,0 +1,69 @@
+package org.fogbowcloud.sebal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestKeySelection {
+
+	@Test
+	public void testSelectionIsThePrefixOfAStableSort() {
+		Random random = new Random(3);
+		for (int n : new int[] { 0, 1, 2, 17, 100, 5000 }) {
+			final double[] keys = new double[n];
+			for (int i = 0; i < n; i++) {
+				// few distinct values, so there are many ties
+				keys[i] = random.nextInt(20) / 4d;
+			}
+			if (n > 0) {
+				keys[n / 2] = Double.NaN;
+			}
+
+			List<Integer> sorted = new ArrayList<Integer>();
+			for (int i = 0; i < n; i++) {
+				sorted.add(i);
+			}
+			Collections.sort(sorted, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer position1, Integer position2) {
+					return Double.compare(keys[position1], keys[position2]);
+				}
+			});
+			List<Integer> reversed = new ArrayList<Integer>(sorted);
+			Collections.reverse(reversed);
+
+			for (int k : new int[] { 0, 1, n / 10, n / 2, n }) {
+				assertPrefix(sorted, KeySelection.smallest(keys, k));
+				assertPrefix(reversed, KeySelection.biggest(keys, k));
+			}
+		}
+	}
+
+	private void assertPrefix(List<Integer> expected, int[] obtained) {
+		for (int i = 0; i < obtained.length; i++) {
+			Assert.assertEquals(expected.get(i).intValue(), obtained[i]);
+		}
+	}
+
+	@Test
+	public void testCount() {
+		Assert.assertEquals(1, KeySelection.count(4, 20));
+		Assert.assertEquals(2, KeySelection.count(4, 50));
+		Assert.assertEquals(3, KeySelection.count(4, 60));
+		Assert.assertEquals(4, KeySelection.count(4, 80));
+		Assert.assertEquals(4, KeySelection.count(4, 100));
+		Assert.assertEquals(0, KeySelection.count(0, 10));
+	}
+
+	@Test
+	public void testKeysAreNotChanged() {
+		double[] keys = { 3, 1, 2 };
+		Assert.assertArrayEquals(new int[] { 0, 2 }, KeySelection.biggest(keys, 2));
+		Assert.assertArrayEquals(new double[] { 3, 1, 2 }, keys, 0);
+	}
+}
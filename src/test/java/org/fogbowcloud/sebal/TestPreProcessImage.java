@@ -81,7 +81,7 @@ public class TestPreProcessImage {
         }             
                 
         Image image = SEBALHelper.readPixels(product, iBegin, iFinal, jBegin,
-                jFinal, pixelQuenteFrioChooser, boundingBox, fmaskFilePath);
+                jFinal, pixelQuenteFrioChooser, boundingBox, fmaskFilePath, properties);
         
 		Image preProcessedImageElevation = SEBALHelper
 				.invalidatePixelsOutsideBoundingBox(image, boundingBoxVertices);
@@ -0,0 +1,44 @@
+package org.fogbowcloud.sebal;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestQuantileSketch {
+
+	@Test
+	public void testQuantilesAreWithinRankError() {
+		int count = 200000;
+		Random random = new Random(5);
+		double[] values = new double[count];
+		QuantileSketch sketch = QuantileSketch.withRankError(0.01);
+		for (int index = 0; index < count; index++) {
+			values[index] = random.nextGaussian();
+			sketch.add(values[index]);
+		}
+		sketch.add(Double.NaN);
+		Assert.assertEquals(count, sketch.count());
+
+		Arrays.sort(values);
+		for (double fraction : new double[] { 0, 0.05, 0.1, 0.5, 0.9, 0.95, 1 }) {
+			double quantile = sketch.quantile(fraction);
+			int rank = Arrays.binarySearch(values, quantile);
+			Assert.assertTrue(rank >= 0);
+			Assert.assertEquals(fraction, (double) rank / count, sketch.rankError());
+		}
+	}
+
+	@Test
+	public void testSmallStreamIsExact() {
+		QuantileSketch sketch = new QuantileSketch(100);
+		for (int value = 10; value > 0; value--) {
+			sketch.add(value);
+		}
+		Assert.assertEquals(1, sketch.quantile(0), 0);
+		Assert.assertEquals(5, sketch.quantile(0.5), 0);
+		Assert.assertEquals(10, sketch.quantile(1), 0);
+		Assert.assertTrue(Double.isNaN(new QuantileSketch(100).quantile(0.5)));
+	}
+}
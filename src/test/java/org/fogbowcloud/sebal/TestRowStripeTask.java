@@ -0,0 +1,103 @@
+package org.fogbowcloud.sebal;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRowStripeTask {
+
+	private ImagePixelStore fill(int parallelism) throws Exception {
+		final ImagePixelStore store = new ImagePixelStore(37, 101, 0);
+		store.offset(10, 20);
+		RowStripeTask.run(0, store.height(), parallelism, new RowStripeTask.RowProcessor() {
+			@Override
+			public void process(int rowBegin, int rowEnd) throws Exception {
+				for (int index = store.index(0, rowBegin); index < store.index(0, rowEnd); index++) {
+					store.z(index, store.i(index) * 1000 + store.j(index));
+					store.isValid(index, index % 3 != 0);
+				}
+			}
+		});
+		return store;
+	}
+
+	@Test
+	public void testResultDoesNotDependOnParallelism() throws Exception {
+		ImagePixelStore sequential = fill(1);
+		ImagePixelStore parallel = fill(8);
+
+		for (int index = 0; index < sequential.size(); index++) {
+			Assert.assertEquals(sequential.i(index) * 1000 + sequential.j(index),
+					sequential.z(index), 0);
+			Assert.assertEquals(sequential.z(index), parallel.z(index), 0);
+			Assert.assertEquals(sequential.isValid(index), parallel.isValid(index));
+		}
+	}
+
+	@Test
+	public void testEveryRowIsProcessedOnce() throws Exception {
+		final AtomicInteger[] visits = new AtomicInteger[1000];
+		for (int row = 0; row < visits.length; row++) {
+			visits[row] = new AtomicInteger();
+		}
+
+		RowStripeTask.run(0, visits.length, 4, new RowStripeTask.RowProcessor() {
+			@Override
+			public void process(int rowBegin, int rowEnd) throws Exception {
+				for (int row = rowBegin; row < rowEnd; row++) {
+					visits[row].incrementAndGet();
+				}
+			}
+		});
+
+		for (AtomicInteger visit : visits) {
+			Assert.assertEquals(1, visit.get());
+		}
+	}
+
+	@Test
+	public void testWindowsShareThePool() throws Exception {
+		final AtomicInteger[] visits = new AtomicInteger[1000];
+		for (int row = 0; row < visits.length; row++) {
+			visits[row] = new AtomicInteger();
+		}
+		RowStripeTask.RowProcessor processor = new RowStripeTask.RowProcessor() {
+			@Override
+			public void process(int rowBegin, int rowEnd) throws Exception {
+				for (int row = rowBegin; row < rowEnd; row++) {
+					visits[row].incrementAndGet();
+				}
+			}
+		};
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int rowBegin = 0; rowBegin < visits.length; rowBegin += 100) {
+				RowStripeTask.run(pool, rowBegin, rowBegin + 100, processor);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		RowStripeTask.run(null, 0, visits.length, processor);
+
+		for (AtomicInteger visit : visits) {
+			Assert.assertEquals(2, visit.get());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testStripeExceptionIsRethrown() throws Exception {
+		RowStripeTask.run(0, 100, 4, new RowStripeTask.RowProcessor() {
+			@Override
+			public void process(int rowBegin, int rowEnd) throws Exception {
+				if (rowBegin <= 50 && 50 < rowEnd) {
+					throw new IOException("Could not read row 50.");
+				}
+			}
+		});
+	}
+}
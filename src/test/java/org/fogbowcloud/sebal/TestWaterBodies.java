@@ -0,0 +1,177 @@
+package org.fogbowcloud.sebal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.fogbowcloud.sebal.model.image.ColumnarImage;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore.OutputField;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestWaterBodies {
+
+	@Test
+	public void testSerpentineLake() {
+		int width = 1000;
+		int height = 999;
+		ImagePixelStore store = new ImagePixelStore(width, height, 0);
+		// even rows are water, joined at the right and left ends alternately
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				boolean water = y % 2 == 0 || (y % 4 == 1 ? x == width - 1 : x == 0);
+				store.output(store.index(x, y), OutputField.NDVI, water ? -0.1 : 0.1);
+			}
+		}
+		store.waterTest(store.index(0, 0), true);
+		ColumnarImage image = new ColumnarImage(null, store);
+
+		WaterBodies waterBodies = WaterBodies.label(image);
+		Assert.assertEquals(1, waterBodies.count());
+		Assert.assertTrue(waterBodies.isWaterBody(0));
+		Assert.assertEquals(0, waterBodies.seed(0));
+		int lakeSize = width * (height + 1) / 2 + height / 2;
+		Assert.assertEquals(lakeSize, waterBodies.size(0));
+		Assert.assertEquals(width, waterBodies.numberOfLonPixels(0));
+		Assert.assertEquals(height, waterBodies.numberOfLatPixels(0));
+
+		// the flood follows the lake from one end to the other
+		int[] order = waterBodies.floodOrder(0);
+		Assert.assertEquals(lakeSize, order.length);
+		Assert.assertEquals(store.index(width - 1, 0), order[width - 1]);
+		Assert.assertEquals(store.index(width - 1, 1), order[width]);
+		Assert.assertEquals(store.index(0, height - 1), order[lakeSize - 1]);
+
+		ClusteredPixelQuenteFrioChooser chooser = new ClusteredPixelQuenteFrioChooser();
+		Map<String, PixelSample> waterSamples = chooser.findWater(image);
+		Assert.assertEquals(1, waterSamples.size());
+		Assert.assertEquals(lakeSize, waterSamples.get("0_0").pixels().size());
+	}
+
+	@Test
+	public void testGroupsWithoutSeedAreNotWaterBodies() {
+		ImagePixelStore store = new ImagePixelStore(5, 3, 0);
+		for (int index = 0; index < store.size(); index++) {
+			store.output(index, OutputField.NDVI, store.x(index) == 2 ? 0.1 : -0.1);
+		}
+		// the seed is cloud, so only the right group is a water body
+		store.waterTest(store.index(0, 1), true);
+		store.isCloud(store.index(0, 1), true);
+		store.waterTest(store.index(4, 2), true);
+		store.waterTest(store.index(3, 1), true);
+
+		WaterBodies waterBodies = WaterBodies.label(new ColumnarImage(null, store));
+		Assert.assertEquals(2, waterBodies.count());
+		int left = waterBodies.label(store.index(0, 0));
+		int right = waterBodies.label(store.index(4, 0));
+		Assert.assertEquals(WaterBodies.NO_LABEL, waterBodies.label(store.index(2, 1)));
+		Assert.assertFalse(waterBodies.isWaterBody(left));
+		Assert.assertTrue(waterBodies.isWaterBody(right));
+		Assert.assertEquals(store.index(3, 1), waterBodies.seed(right));
+		Assert.assertEquals(6, waterBodies.size(right));
+		Assert.assertEquals(2, waterBodies.numberOfLonPixels(right));
+		Assert.assertEquals(3, waterBodies.numberOfLatPixels(right));
+	}
+
+	@Test
+	public void testFloodOrderIsTheRecursiveOrder() {
+		int width = 40;
+		int height = 30;
+		Random random = new Random(7);
+		ImagePixelStore store = new ImagePixelStore(width, height, 0);
+		boolean[] water = new boolean[store.size()];
+		for (int index = 0; index < store.size(); index++) {
+			water[index] = random.nextDouble() < 0.6;
+			store.output(index, OutputField.NDVI, water[index] ? -0.1 : 0.1);
+			store.waterTest(index, random.nextDouble() < 0.05);
+		}
+
+		WaterBodies waterBodies = WaterBodies.label(new ColumnarImage(null, store));
+		boolean[] visited = new boolean[store.size()];
+		int waterBodiesFound = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int index = store.index(x, y);
+				if (visited[index] || !store.waterTest(index)) {
+					continue;
+				}
+				List<Integer> expected = new ArrayList<Integer>();
+				flood(water, visited, x, y, width, height, expected);
+				if (expected.isEmpty()) {
+					continue;
+				}
+				waterBodiesFound++;
+				int label = waterBodies.label(index);
+				Assert.assertEquals(index, waterBodies.seed(label));
+				int[] order = waterBodies.floodOrder(label);
+				Assert.assertEquals(expected.size(), order.length);
+				for (int k = 0; k < order.length; k++) {
+					Assert.assertEquals(expected.get(k).intValue(), order[k]);
+				}
+			}
+		}
+		Assert.assertTrue(waterBodiesFound > 1);
+	}
+
+	@Test
+	public void testPixelsAddedTileByTileAreJoinedAcrossTiles() {
+		int width = 40;
+		int height = 30;
+		Random random = new Random(11);
+		ImagePixelStore store = new ImagePixelStore(width, height, 0);
+		for (int index = 0; index < store.size(); index++) {
+			store.output(index, OutputField.NDVI, random.nextDouble() < 0.6 ? -0.1 : 0.1);
+			store.waterTest(index, random.nextDouble() < 0.05);
+		}
+		WaterBodies expected = WaterBodies.label(new ColumnarImage(null, store));
+
+		// tiles of 7x6 pixels, column by column
+		WaterBodies.Builder builder = new WaterBodies.Builder(width, height);
+		List<Integer> added = new ArrayList<Integer>();
+		for (int tileX = 0; tileX < width; tileX += 7) {
+			for (int tileY = 0; tileY < height; tileY += 6) {
+				for (int y = tileY; y < Math.min(height, tileY + 6); y++) {
+					for (int x = tileX; x < Math.min(width, tileX + 7); x++) {
+						int index = store.index(x, y);
+						if (store.output(index, OutputField.NDVI) < 0) {
+							builder.add(index, store.waterTest(index));
+							added.add(index);
+						}
+					}
+				}
+			}
+		}
+		WaterBodies waterBodies = builder.build();
+
+		Assert.assertEquals(expected.count(), waterBodies.count());
+		for (int label = 0; label < expected.count(); label++) {
+			Assert.assertEquals(expected.size(label), waterBodies.size(label));
+			Assert.assertEquals(expected.seed(label), waterBodies.seed(label));
+			if (expected.isWaterBody(label)) {
+				Assert.assertArrayEquals(expected.floodOrder(label), waterBodies.floodOrder(label));
+			}
+		}
+		for (int index = 0; index < store.size(); index++) {
+			Assert.assertEquals(expected.label(index), waterBodies.label(index));
+			Assert.assertEquals(added.indexOf(index), waterBodies.position(index));
+		}
+	}
+
+	private void flood(boolean[] water, boolean[] visited, int x, int y, int width, int height,
+			List<Integer> pixels) {
+		if (x < 0 || x > width - 1 || y < 0 || y > height - 1 || visited[x + y * width]) {
+			return;
+		}
+		visited[x + y * width] = true;
+		if (!water[x + y * width]) {
+			return;
+		}
+		pixels.add(x + y * width);
+		flood(water, visited, x + 1, y, width, height, pixels);
+		flood(water, visited, x - 1, y, width, height, pixels);
+		flood(water, visited, x, y + 1, width, height, pixels);
+		flood(water, visited, x, y - 1, width, height, pixels);
+	}
+}
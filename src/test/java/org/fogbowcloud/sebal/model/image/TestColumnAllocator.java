@@ -0,0 +1,137 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.fogbowcloud.sebal.model.image.ImagePixelStore.OutputField;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestColumnAllocator {
+
+	private static final int WIDTH = 7;
+	private static final int HEIGHT = 5;
+
+	private File scratchDir;
+
+	@Before
+	public void setUp() {
+		scratchDir = new File(System.getProperty("java.io.tmpdir"), "pixel-columns-test-"
+				+ System.nanoTime());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(scratchDir);
+	}
+
+	private ImagePixelStore fill(ColumnAllocator allocator) {
+		ImagePixelStore store = new ImagePixelStore(WIDTH, HEIGHT, 2, allocator);
+		float[] band = new float[WIDTH * HEIGHT];
+		for (int index = 0; index < store.size(); index++) {
+			band[index] = index * 0.5f;
+		}
+		store.L(0, 1, band, 0, band.length);
+		for (int index = 0; index < store.size(); index++) {
+			store.L(index, 0, -index);
+			store.geoLoc(index, -7.5 + index, -38.5 - index);
+			store.z(index, index * 10);
+			store.Ta(index, 300 + index);
+			store.DN(index, new int[] { index, 2 * index });
+			store.isValid(index, index % 2 == 0);
+			store.isCloud(index, index % 3 == 0);
+			store.output(index, OutputField.NDVI, index / 100.0);
+			store.hasOutput(index, true);
+			store.rho(index, new double[] { index, index + 1 });
+		}
+		return store;
+	}
+
+	private void assertSameValues(ImagePixelStore expected, ImagePixelStore obtained) {
+		double[] expectedLatitudes = new double[expected.size()];
+		double[] obtainedLatitudes = new double[obtained.size()];
+		expected.lat(0, expectedLatitudes, 0, expected.size());
+		obtained.lat(0, obtainedLatitudes, 0, obtained.size());
+		Assert.assertArrayEquals(expectedLatitudes, obtainedLatitudes, 0);
+
+		for (int index = 0; index < expected.size(); index++) {
+			Assert.assertEquals(expected.L(index, 0), obtained.L(index, 0), 0);
+			Assert.assertEquals(expected.L(index, 1), obtained.L(index, 1), 0);
+			Assert.assertEquals(expected.lon(index), obtained.lon(index), 0);
+			Assert.assertEquals(expected.z(index), obtained.z(index), 0);
+			Assert.assertEquals(expected.Ta(index), obtained.Ta(index), 0);
+			Assert.assertEquals(expected.ux(index), obtained.ux(index), 0);
+			Assert.assertArrayEquals(expected.DN(index), obtained.DN(index));
+			Assert.assertEquals(expected.isValid(index), obtained.isValid(index));
+			Assert.assertEquals(expected.isCloud(index), obtained.isCloud(index));
+			Assert.assertEquals(expected.output(index, OutputField.NDVI),
+					obtained.output(index, OutputField.NDVI), 0);
+			Assert.assertArrayEquals(expected.rho(index), obtained.rho(index), 0);
+		}
+	}
+
+	@Test
+	public void testDirectColumnsHoldTheSameValuesAsHeapColumns() {
+		ImagePixelStore direct = fill(ColumnAllocator.direct());
+		assertSameValues(fill(ColumnAllocator.heap()), direct);
+		direct.release();
+	}
+
+	@Test
+	public void testMappedColumnsHoldTheSameValuesAsHeapColumns() {
+		ImagePixelStore mapped = fill(ColumnAllocator.mapped(scratchDir));
+		assertSameValues(fill(ColumnAllocator.heap()), mapped);
+		mapped.release();
+	}
+
+	@Test
+	public void testReleaseDeletesScratchFiles() {
+		ImagePixelStore store = fill(ColumnAllocator.mapped(scratchDir));
+		Assert.assertTrue(scratchDir.list().length > 0);
+
+		store.release();
+		Assert.assertEquals(0, scratchDir.list().length);
+
+		// releasing twice does nothing
+		store.release();
+	}
+
+	@Test
+	public void testNewStoreOfColumnarImageKeepsTheAllocator() {
+		ImagePixelStore store = fill(ColumnAllocator.direct());
+		ColumnarImage image = new ColumnarImage(null, store);
+		image.pixels(image.pixels());
+
+		Assert.assertSame(ColumnAllocator.direct(), image.store().allocator());
+		assertSameValues(store, image.store());
+		image.store().release();
+		store.release();
+	}
+
+	@Test
+	public void testAllocatorFromProperties() {
+		Properties properties = new Properties();
+		Assert.assertSame(ColumnAllocator.heap(), ColumnAllocator.fromProperties(properties));
+
+		properties.setProperty("pixel_store_backing", ColumnAllocator.DIRECT);
+		Assert.assertSame(ColumnAllocator.direct(), ColumnAllocator.fromProperties(properties));
+
+		properties.setProperty("pixel_store_backing", ColumnAllocator.MAPPED);
+		properties.setProperty("pixel_store_scratch_dir", scratchDir.getPath());
+		ImagePixelStore store = new ImagePixelStore(WIDTH, HEIGHT, 0,
+				ColumnAllocator.fromProperties(properties));
+		Assert.assertTrue(scratchDir.list().length > 0);
+		store.release();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBacking() {
+		Properties properties = new Properties();
+		properties.setProperty("pixel_store_backing", "disk");
+		ColumnAllocator.fromProperties(properties);
+	}
+}
@@ -0,0 +1,112 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestImagePixelStore {
+
+	static final int IMAGE_WIDTH = 4;
+	static final int IMAGE_HEIGHT = 3;
+
+	ImagePixelStore store;
+	ColumnarImage image;
+
+	@Before
+	public void setUp() {
+		store = new ImagePixelStore(IMAGE_WIDTH, IMAGE_HEIGHT, 2);
+		store.offset(10, 20);
+		image = new ColumnarImage(null, store);
+	}
+
+	@Test
+	public void testStoreIsRowMajor() {
+		Assert.assertEquals(IMAGE_WIDTH * IMAGE_HEIGHT, store.size());
+		Assert.assertEquals(IMAGE_WIDTH * IMAGE_HEIGHT, image.pixels().size());
+		Assert.assertEquals(1 + 2 * IMAGE_WIDTH, store.index(1, 2));
+		Assert.assertEquals(1, store.x(store.index(1, 2)));
+		Assert.assertEquals(2, store.y(store.index(1, 2)));
+		Assert.assertEquals(11, store.i(store.index(1, 2)));
+		Assert.assertEquals(22, store.j(store.index(1, 2)));
+	}
+
+	@Test
+	public void testWritesThroughViewAreSeenByStore() {
+		ImagePixelView pixel = (ImagePixelView) image.pixel(2, 1);
+		pixel.z(400);
+		pixel.L(new double[] { 1.5, 2.5 });
+		pixel.isValid(false);
+
+		int index = store.index(2, 1);
+		Assert.assertEquals(400, store.z(index), 0);
+		Assert.assertEquals(1.5, store.L(index, 0), 0);
+		Assert.assertEquals(2.5, store.L(index, 1), 0);
+		Assert.assertFalse(store.isValid(index));
+		Assert.assertTrue(store.isValid(store.index(1, 2)));
+
+		GeoLoc geoLoc = image.pixels().get(index).geoLoc();
+		Assert.assertEquals(12, geoLoc.getI());
+		Assert.assertEquals(21, geoLoc.getJ());
+	}
+
+	@Test
+	public void testOutputIsNullUntilSet() {
+		ImagePixel pixel = image.pixel(0, 0);
+		Assert.assertNull(pixel.output());
+
+		ImagePixelOutput output = new ImagePixelOutput();
+		output.setNDVI(-0.2);
+		output.setTs(300);
+		output.setWaterTest(true);
+		pixel.setOutput(output);
+
+		Assert.assertNotNull(pixel.output());
+		Assert.assertEquals(-0.2, pixel.output().getNDVI(), 0);
+		Assert.assertEquals(300, pixel.output().getTs(), 0);
+		Assert.assertTrue(pixel.output().getWaterTest());
+		Assert.assertFalse(pixel.output().isCloud());
+		Assert.assertNull(image.pixel(1, 0).output());
+
+		pixel.output().setTs(310);
+		Assert.assertEquals(310, store.output(0, ImagePixelStore.OutputField.TS), 0);
+
+		pixel.setOutput(null);
+		Assert.assertNull(pixel.output());
+	}
+
+	@Test
+	public void testViewsOfSamePixelAreEqual() {
+		Assert.assertEquals(image.pixel(3, 2), image.pixels().get(store.index(3, 2)));
+		Assert.assertTrue(image.pixels().contains(image.pixel(3, 2)));
+		Assert.assertFalse(image.pixel(3, 2).equals(image.pixel(2, 3)));
+	}
+
+	@Test
+	public void testSetPixelsCopiesIntoNewStore() {
+		List<ImagePixel> pixels = new ArrayList<ImagePixel>();
+		for (int index = 0; index < IMAGE_WIDTH * IMAGE_HEIGHT; index++) {
+			DefaultImagePixel pixel = new DefaultImagePixel();
+			pixel.z(index);
+			pixel.L(new double[] { index, -index });
+			pixels.add(pixel);
+		}
+
+		image.pixels(pixels);
+
+		Assert.assertNotSame(store, image.store());
+		Assert.assertEquals(IMAGE_WIDTH, image.width());
+		Assert.assertEquals(IMAGE_HEIGHT, image.height());
+		for (int index = 0; index < pixels.size(); index++) {
+			Assert.assertEquals(index, image.pixels().get(index).z(), 0);
+			Assert.assertEquals(-index, image.pixels().get(index).L()[1], 0);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWidthIsFixedByStore() {
+		image.width(IMAGE_WIDTH + 1);
+	}
+}
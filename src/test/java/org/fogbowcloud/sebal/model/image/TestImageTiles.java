@@ -0,0 +1,109 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestImageTiles {
+
+	private static final int WIDTH = 11;
+	private static final int HEIGHT = 7;
+
+	private DefaultImage createImage() {
+		DefaultImage image = new DefaultImage(null);
+		image.width(WIDTH);
+		image.height(HEIGHT);
+		for (int index = 0; index < WIDTH * HEIGHT; index++) {
+			DefaultImagePixel pixel = new DefaultImagePixel();
+			pixel.z(index);
+			image.addPixel(pixel);
+		}
+		return image;
+	}
+
+	private List<ImageTile> tiles(Image image, int tileWidth, int tileHeight, int halo)
+			throws Exception {
+		final List<ImageTile> tiles = new ArrayList<ImageTile>();
+		image.forEachTile(tileWidth, tileHeight, halo, new TileVisitor() {
+			@Override
+			public void visit(ImageTile tile) {
+				tiles.add(tile);
+			}
+		});
+		return tiles;
+	}
+
+	@Test
+	public void testTilesCoverTheImageOnce() throws Exception {
+		int[] visits = new int[WIDTH * HEIGHT];
+		for (ImageTile tile : tiles(createImage(), 4, 3, 0)) {
+			for (int x = tile.x(); x < tile.x() + tile.width(); x++) {
+				for (int y = tile.y(); y < tile.y() + tile.height(); y++) {
+					Assert.assertEquals(x + y * WIDTH, tile.pixel(x, y).z(), 0);
+					visits[x + y * WIDTH]++;
+				}
+			}
+		}
+		for (int visit : visits) {
+			Assert.assertEquals(1, visit);
+		}
+	}
+
+	@Test
+	public void testTilesAreVisitedColumnByColumn() throws Exception {
+		List<ImageTile> tiles = tiles(createImage(), 4, 3, 0);
+
+		Assert.assertEquals(9, tiles.size());
+		int[][] origins = { { 0, 0 }, { 0, 3 }, { 0, 6 }, { 4, 0 }, { 4, 3 }, { 4, 6 },
+				{ 8, 0 }, { 8, 3 }, { 8, 6 } };
+		for (int index = 0; index < origins.length; index++) {
+			Assert.assertEquals(origins[index][0], tiles.get(index).x());
+			Assert.assertEquals(origins[index][1], tiles.get(index).y());
+		}
+		// last column and row are cut by the image border
+		Assert.assertEquals(3, tiles.get(8).width());
+		Assert.assertEquals(1, tiles.get(8).height());
+	}
+
+	@Test
+	public void testHaloIsClippedToTheImage() throws Exception {
+		List<ImageTile> tiles = tiles(createImage(), 4, 3, 2);
+
+		ImageTile corner = tiles.get(0);
+		Assert.assertEquals(0, corner.haloX());
+		Assert.assertEquals(0, corner.haloY());
+		Assert.assertEquals(6, corner.haloWidth());
+		Assert.assertEquals(5, corner.haloHeight());
+
+		ImageTile middle = tiles.get(4);
+		Assert.assertEquals(2, middle.haloX());
+		Assert.assertEquals(1, middle.haloY());
+		Assert.assertEquals(8, middle.haloWidth());
+		Assert.assertEquals(6, middle.haloHeight());
+		Assert.assertEquals(middle.haloWidth() * middle.haloHeight(), middle.pixels().size());
+
+		// halo pixels are readable, but belong to the core of another tile
+		Assert.assertTrue(middle.isInside(2, 1));
+		Assert.assertFalse(middle.isCore(2, 1));
+		Assert.assertEquals(2 + 1 * WIDTH, middle.pixel(2, 1).z(), 0);
+		Assert.assertFalse(middle.isInside(1, 1));
+	}
+
+	@Test
+	public void testColumnarImageTilesAreViewsOfItsStore() throws Exception {
+		ImagePixelStore store = new ImagePixelStore(WIDTH, HEIGHT, 0);
+		for (int index = 0; index < store.size(); index++) {
+			store.z(index, index);
+		}
+		ColumnarImage image = new ColumnarImage(null, store);
+
+		for (ImageTile tile : tiles(image, 5, 5, 1)) {
+			((ImagePixelView) tile.pixel(tile.x(), tile.y())).z(-1);
+		}
+		Assert.assertEquals(-1, store.z(store.index(5, 5)), 0);
+		Assert.assertEquals(-1, store.z(store.index(10, 0)), 0);
+		Assert.assertEquals(1, store.z(1), 0);
+	}
+}
@@ -0,0 +1,114 @@
+package org.fogbowcloud.sebal.model.image;
+
+import java.awt.geom.Path2D;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPolygonMask {
+
+	private static final int X_BEGIN = 100;
+	private static final int Y_BEGIN = 200;
+	private static final int WIDTH = 60;
+	private static final int HEIGHT = 40;
+
+	private Path2D path(double[] xs, double[] ys) {
+		Path2D path = new Path2D.Double();
+		path.moveTo(xs[0], ys[0]);
+		for (int k = 1; k < xs.length; k++) {
+			path.lineTo(xs[k], ys[k]);
+		}
+		path.closePath();
+		return path;
+	}
+
+	private void assertSameAsPath(double[] xs, double[] ys) {
+		PolygonMask mask = PolygonMask.rasterize(xs, ys, X_BEGIN, Y_BEGIN, WIDTH, HEIGHT);
+		Path2D path = path(xs, ys);
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				Assert.assertEquals("pixel (" + x + ", " + y + ")",
+						path.contains(X_BEGIN + x, Y_BEGIN + y), mask.contains(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testRandomPolygonsMatchPath2D() {
+		Random random = new Random(7);
+		for (int polygon = 0; polygon < 200; polygon++) {
+			int vertices = 3 + random.nextInt(6);
+			double[] xs = new double[vertices];
+			double[] ys = new double[vertices];
+			for (int k = 0; k < vertices; k++) {
+				// some vertices fall outside the window
+				xs[k] = X_BEGIN - 10 + random.nextDouble() * (WIDTH + 20);
+				ys[k] = Y_BEGIN - 10 + random.nextDouble() * (HEIGHT + 20);
+			}
+			assertSameAsPath(xs, ys);
+		}
+	}
+
+	@Test
+	public void testSelfIntersectingPolygonUsesNonZeroWinding() {
+		// a pentagram, whose center has winding number 2
+		double[] xs = new double[5];
+		double[] ys = new double[5];
+		for (int k = 0; k < 5; k++) {
+			double angle = Math.PI / 2 + k * 4 * Math.PI / 5;
+			xs[k] = X_BEGIN + 30.3 + 18 * Math.cos(angle);
+			ys[k] = Y_BEGIN + 20.3 + 18 * Math.sin(angle);
+		}
+		assertSameAsPath(xs, ys);
+		Assert.assertTrue(PolygonMask.rasterize(xs, ys, X_BEGIN, Y_BEGIN, WIDTH, HEIGHT)
+				.contains(30, 20));
+	}
+
+	@Test
+	public void testSpansAndRowsOfTriangle() {
+		double[] xs = { X_BEGIN + 10.5, X_BEGIN + 30.5, X_BEGIN + 10.5 };
+		double[] ys = { Y_BEGIN + 5.5, Y_BEGIN + 5.5, Y_BEGIN + 25.5 };
+		PolygonMask mask = PolygonMask.rasterize(xs, ys, X_BEGIN, Y_BEGIN, WIDTH, HEIGHT);
+
+		Assert.assertEquals(6, mask.rowBegin());
+		Assert.assertEquals(25, mask.rowEnd());
+		Assert.assertTrue(mask.isRowEmpty(5));
+		Assert.assertTrue(mask.isRowEmpty(25));
+		Assert.assertArrayEquals(new int[] { 11, 30 }, mask.spans(6));
+		for (int y = 0; y < HEIGHT; y++) {
+			int[] spans = mask.spans(y);
+			int inside = 0;
+			for (int span = 0; span < spans.length; span += 2) {
+				inside += spans[span + 1] - spans[span];
+			}
+			int bits = 0;
+			for (int x = 0; x < WIDTH; x++) {
+				bits += mask.contains(x, y) ? 1 : 0;
+			}
+			Assert.assertEquals(inside, bits);
+		}
+	}
+
+	@Test
+	public void testLessThanThreeVerticesCoverTheWindow() {
+		PolygonMask mask = PolygonMask.rasterize(new double[] { 1, 2 }, new double[] { 1, 2 },
+				X_BEGIN, Y_BEGIN, WIDTH, HEIGHT);
+		Assert.assertEquals(0, mask.rowBegin());
+		Assert.assertEquals(HEIGHT, mask.rowEnd());
+		for (int index = 0; index < WIDTH * HEIGHT; index++) {
+			Assert.assertTrue(mask.contains(index));
+		}
+	}
+
+	@Test
+	public void testPolygonOutsideTheWindow() {
+		double[] xs = { 0, 10, 10, 0 };
+		double[] ys = { 0, 0, 10, 10 };
+		PolygonMask mask = PolygonMask.rasterize(xs, ys, X_BEGIN, Y_BEGIN, WIDTH, HEIGHT);
+		Assert.assertEquals(mask.rowBegin(), mask.rowEnd());
+		for (int y = 0; y < HEIGHT; y++) {
+			Assert.assertTrue(mask.isRowEmpty(y));
+		}
+	}
+}
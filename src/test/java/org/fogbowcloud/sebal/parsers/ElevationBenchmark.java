@@ -0,0 +1,118 @@
+package org.fogbowcloud.sebal.parsers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of {@link Elevation#z(Double, Double)} and of
+ * {@link Elevation#zGrid(double[], double[], int, int, float[])} (per point)
+ * over a synthetic SRTM3 tile, compared with reading the same four samples
+ * through a RandomAccessFile opened per call, which is what z() did before
+ * the tile cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElevationBenchmark {
+
+	private static final int POINTS = 4096;
+
+	private File tilesDir;
+	private Elevation elevation;
+	private double[] latitudes = new double[POINTS];
+	private double[] longitudes = new double[POINTS];
+	private double[] windowLatitudes = new double[POINTS];
+	private double[] windowLongitudes = new double[POINTS];
+	private float[] elevations = new float[POINTS];
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		tilesDir = new File(System.getProperty("java.io.tmpdir"), "srtm-tiles-benchmark-"
+				+ System.nanoTime());
+		tilesDir.mkdirs();
+		TestSRTMTileCache.writeTile(tilesDir, "S08W039");
+		elevation = new Elevation(new SRTMTileCache(tilesDir, SRTMTileCache.DEFAULT_MAX_TILES));
+
+		Random random = new Random(42);
+		for (int i = 0; i < POINTS; i++) {
+			latitudes[i] = -7.999 + random.nextDouble() * 0.998;
+			longitudes[i] = -38.999 + random.nextDouble() * 0.998;
+		}
+		// a 64x64 pixel window, 30 m (about 0.00027 degrees) apart
+		for (int i = 0; i < POINTS; i++) {
+			windowLatitudes[i] = -7.5 - (i / 64) * 0.00027;
+			windowLongitudes[i] = -38.5 + (i % 64) * 0.00027;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(tilesDir);
+	}
+
+	@Benchmark
+	public Double mappedTile() throws Exception {
+		int i = next++ & (POINTS - 1);
+		return elevation.z(latitudes[i], longitudes[i]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public float[] mappedTileGrid() throws Exception {
+		elevation.zGrid(windowLatitudes, windowLongitudes, 0, POINTS, elevations);
+		return elevations;
+	}
+
+	@Benchmark
+	public double randomAccessFilePerCall() throws Exception {
+		int i = next++ & (POINTS - 1);
+		int intervalCount = Elevation.SRTM3_INTERVALS;
+		int row = (int) ((latitudes[i] + 8) * intervalCount);
+		int column = (int) ((longitudes[i] + 39) * intervalCount);
+
+		RandomAccessFile file = new RandomAccessFile(new File(tilesDir, "S08W039.hgt"), "r");
+		double sum = 0;
+		int pos = ((intervalCount - row) - 1) * (intervalCount + 1) + column;
+		file.seek(pos * 2);
+		sum += file.readShort();
+		file.seek((pos + intervalCount + 1) * 2);
+		sum += file.readShort();
+		file.seek((pos + 1) * 2);
+		sum += file.readShort();
+		file.seek((pos + intervalCount + 2) * 2);
+		sum += file.readShort();
+		file.close();
+		return sum;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(ElevationBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,145 @@
+package org.fogbowcloud.sebal.parsers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSRTMTileCache {
+
+	File tilesDir;
+
+	@Before
+	public void setUp() throws IOException {
+		tilesDir = new File(System.getProperty("java.io.tmpdir"), "srtm-tiles-test-"
+				+ System.nanoTime());
+		tilesDir.mkdirs();
+		writeTile(tilesDir, "S08W039");
+		writeTile(tilesDir, "S08W040");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(tilesDir);
+	}
+
+	/*
+	 * Writes a SRTM3 tile where the sample of row r (from north) and column c
+	 * (from west) is 100 + c + 2 * (1200 - r), so the interpolated elevation
+	 * is a linear function of the position. An empty zip is written too, so
+	 * Elevation does not try to download the tile.
+	 */
+	static void writeTile(File dir, String name) throws IOException {
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(new File(dir, name + ".hgt"))));
+		try {
+			for (int r = 0; r <= 1200; r++) {
+				for (int c = 0; c <= 1200; c++) {
+					output.writeShort(100 + c + 2 * (1200 - r));
+				}
+			}
+		} finally {
+			output.close();
+		}
+		new File(dir, name + ".hgt.zip").createNewFile();
+	}
+
+	@Test
+	public void testElevationFromMappedTile() throws Exception {
+		Elevation elevation = new Elevation(new SRTMTileCache(tilesDir, 4));
+
+		// 0.4 degrees east and 0.75 degrees north of the tile south-west corner
+		double expected = 100 + 0.4 * 1200 + 2 * 0.75 * 1200 + 0.5;
+		Assert.assertEquals(expected, elevation.z(-7.25, -38.6), 1e-6);
+
+		Assert.assertEquals(100 + 2 * 1200 + 0.5, elevation.z(-7.0 - 1e-9, -39.0 + 1e-9), 1e-3);
+	}
+
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		SRTMTileCache tileCache = new SRTMTileCache(tilesDir, 4);
+		Elevation elevation = new Elevation(tileCache);
+
+		elevation.z(-7.25, -38.6);
+		elevation.z(-7.30, -38.5);
+		elevation.z(-7.35, -38.4);
+
+		Assert.assertEquals(1, tileCache.misses());
+		Assert.assertEquals(2, tileCache.hits());
+		Assert.assertEquals(1, tileCache.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedTileIsEvicted() throws Exception {
+		SRTMTileCache tileCache = new SRTMTileCache(tilesDir, 1);
+		Elevation elevation = new Elevation(tileCache);
+
+		elevation.z(-7.25, -38.6);
+		elevation.z(-7.25, -39.6);
+		elevation.z(-7.25, -38.6);
+
+		Assert.assertEquals(3, tileCache.misses());
+		Assert.assertEquals(0, tileCache.hits());
+		Assert.assertEquals(1, tileCache.size());
+	}
+
+	@Test
+	public void testGridMatchesPointElevations() throws Exception {
+		Elevation elevation = new Elevation(new SRTMTileCache(tilesDir, 4));
+
+		// a window crossing the border of the two tiles, in raster order
+		int length = 60 * 40;
+		double[] latitudes = new double[length];
+		double[] longitudes = new double[length];
+		Random random = new Random(7);
+		for (int k = 0; k < length; k++) {
+			latitudes[k] = -7.5 - (k / 60) * 0.00027 + random.nextDouble() * 1e-5;
+			longitudes[k] = -39.008 + (k % 60) * 0.00027 + random.nextDouble() * 1e-5;
+		}
+
+		float[] elevations = new float[length + 2];
+		elevation.zGrid(latitudes, longitudes, 0, length, elevations);
+
+		for (int k = 0; k < length; k++) {
+			Assert.assertEquals(elevation.z(latitudes[k], longitudes[k]), elevations[k], 1e-3);
+		}
+		Assert.assertEquals(0, elevations[length], 0);
+	}
+
+	@Test
+	public void testGridWithInvalidSamples() throws Exception {
+		RandomAccessFile tile = new RandomAccessFile(new File(tilesDir, "S08W039.hgt"), "rw");
+		try {
+			// the first sample of the south row of the tile
+			tile.seek(1200 * 1201 * 2);
+			tile.writeShort(-32768);
+		} finally {
+			tile.close();
+		}
+		Elevation elevation = new Elevation(new SRTMTileCache(tilesDir, 4));
+
+		float[] elevations = new float[3];
+		elevation.zGrid(new double[] { -7.9999, -7.9998, -7.5 }, new double[] { -38.9999,
+				-38.9999, -38.5 }, 0, 3, elevations);
+
+		Assert.assertNull(elevation.z(-7.9999, -38.9999));
+		Assert.assertTrue(Float.isNaN(elevations[0]));
+		Assert.assertTrue(Float.isNaN(elevations[1]));
+		Assert.assertEquals(elevation.z(-7.5, -38.5), elevations[2], 1e-3);
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidTileSize() throws Exception {
+		FileUtils.writeStringToFile(new File(tilesDir, "S09W039.hgt"), "not a tile");
+		new SRTMTileCache(tilesDir, 4).load("S09W039.hgt");
+	}
+}
@@ -0,0 +1,123 @@
+package org.fogbowcloud.sebal.parsers;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fogbowcloud.sebal.parsers.plugins.StationOperator;
+import org.fogbowcloud.sebal.parsers.plugins.StationOperatorConstants;
+import org.fogbowcloud.sebal.parsers.plugins.StationYearRecords;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestWeatherStation {
+
+	private static final String STATION_FILE_PATH = "src/test/resource/827910-99999-2002.gz";
+
+	private Map<String, Long> fetchDelays;
+	private Map<String, Thread> fetchThreads;
+	private Answer<StationYearRecords> fetch;
+	private StationOperator stationOperator;
+	private List<JSONObject> stations;
+	private Calendar date;
+
+	@Before
+	public void setUp() throws Exception {
+		fetchDelays = new HashMap<String, Long>();
+		fetchThreads = new ConcurrentHashMap<String, Thread>();
+		stationOperator = mock(StationOperator.class);
+		fetch = new Answer<StationYearRecords>() {
+			@Override
+			public StationYearRecords answer(InvocationOnMock invocation) throws Throwable {
+				String stationId = (String) invocation.getArguments()[0];
+				fetchThreads.put(stationId, Thread.currentThread());
+				Long delay = fetchDelays.get(stationId);
+				if (delay != null) {
+					Thread.sleep(delay);
+				}
+				if (stationId.startsWith("missing")) {
+					return null;
+				}
+				return StationYearRecords.of(stationId, (Integer) invocation.getArguments()[1],
+						new FileInputStream(STATION_FILE_PATH));
+			}
+		};
+
+		stations = new ArrayList<JSONObject>();
+		date = Calendar.getInstance();
+		date.clear();
+		date.set(2002, Calendar.JANUARY, 26, 11, 0);
+	}
+
+	@Test
+	public void testNearestStationWinsOverFasterOnes() throws Exception {
+		addStations("missing-1", "nearest", "farther");
+		fetchDelays.put("missing-1", 100L);
+		fetchDelays.put("nearest", 300L);
+
+		for (String parallelism : Arrays.asList("1", "3")) {
+			String stationData = weatherStation(parallelism).readFullRecord(date.getTime(),
+					stations, 0);
+			Assert.assertEquals(3, stationData.split("\n").length);
+			Assert.assertTrue(stationData.startsWith("nearest;20020126;0000;-7.01;-37.26;1.5;"));
+		}
+	}
+
+	@Test
+	public void testFartherStationsAreNotWaitedFor() throws Exception {
+		addStations("missing-1", "nearest", "farther");
+		fetchDelays.put("farther", 10000L);
+
+		long start = System.currentTimeMillis();
+		String stationData = weatherStation("3").readFullRecord(date.getTime(), stations, 0);
+		Assert.assertTrue(stationData.startsWith("nearest;"));
+		Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+		// the fetch left running does not keep the JVM alive
+		Assert.assertTrue(fetchThreads.get("farther").isDaemon());
+		Assert.assertTrue(fetchThreads.get("farther").getName().startsWith("station-fetch-"));
+	}
+
+	@Test
+	public void testNoStationWithData() throws Exception {
+		addStations("missing-1", "missing-2", "missing-3");
+		Assert.assertNull(weatherStation("2").readFullRecord(date.getTime(), stations, 0));
+		Assert.assertNull(weatherStation("2").readFullRecord(date.getTime(),
+				new ArrayList<JSONObject>(), 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidParallelism() {
+		weatherStation("0");
+	}
+
+	private WeatherStation weatherStation(String parallelism) {
+		Properties properties = new Properties();
+		properties.setProperty(StationOperatorConstants.STATION_FETCH_PARALLELISM, parallelism);
+		return new WeatherStation(properties, stationOperator);
+	}
+
+	private void addStations(String... stationIds) throws Exception {
+		for (String stationId : stationIds) {
+			JSONObject station = new JSONObject();
+			station.put("id", stationId);
+			stations.add(station);
+			// a stub per station, as Mockito runs the answers of a stub one at a time
+			doAnswer(fetch).when(stationOperator).readStationRecords(eq(stationId), anyInt());
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package org.fogbowcloud.sebal.parsers.plugins;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to read a day of records of the ISD station file
+ * 827910-99999-2002.gz with {@link ISDRecordReader} on the compressed
+ * stream, compared with the way readStation used to (uncompress to a file,
+ * read every line into a list, keep the lines that contain the date and
+ * split them with substring). The dates are early and late in the year, as
+ * the reader stops at the first record after the date.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ISDRecordReaderBenchmark {
+
+	private static final File STATION_FILE = new File("src/test/resource/827910-99999-2002.gz");
+
+	@Param({ "20020126", "20021215" })
+	public String date;
+
+	@Benchmark
+	public int recordReader() throws IOException {
+		ISDRecordReader reader = new ISDRecordReader(new GZIPInputStream(new FileInputStream(
+				STATION_FILE)), Integer.parseInt(date), Integer.parseInt(date));
+		int records = 0;
+		double sum = 0;
+		try {
+			while (reader.next()) {
+				sum += reader.latitude() + reader.longitude() + reader.windSpeed()
+						+ reader.airTemperature() + reader.dewPointTemperature();
+				records++;
+			}
+		} finally {
+			reader.close();
+		}
+		return sum == Double.NEGATIVE_INFINITY ? -1 : records;
+	}
+
+	@Benchmark
+	public int uncompressedLines() throws IOException {
+		File uncompressedFile = File.createTempFile("station", ".txt");
+		GZIPInputStream input = new GZIPInputStream(new FileInputStream(STATION_FILE));
+		FileOutputStream output = new FileOutputStream(uncompressedFile);
+		IOUtils.copy(input, output);
+		input.close();
+		output.close();
+
+		List<String> stationData = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(uncompressedFile));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			stationData.add(line);
+		}
+		reader.close();
+		uncompressedFile.delete();
+
+		int records = 0;
+		double sum = 0;
+		for (String data : stationData) {
+			if (data.contains(date)) {
+				sum += Double.valueOf(data.substring(28, 34)) + Double.valueOf(data.substring(34, 41))
+						+ Integer.parseInt(data.substring(65, 69))
+						+ Integer.parseInt(data.substring(88, 92))
+						+ Integer.parseInt(data.substring(94, 98));
+				records++;
+			}
+		}
+		return sum == Double.NEGATIVE_INFINITY ? -1 : records;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(
+				ISDRecordReaderBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,125 @@
+package org.fogbowcloud.sebal.parsers.plugins;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestISDRecordReader {
+
+	private static final String STATION_FILE_PATH = "src/test/resource/827910-99999-2002.gz";
+
+	@Test
+	public void testReadsTheRecordsOfTheDateWindow() throws IOException {
+		ISDRecordReader reader = new ISDRecordReader(new GZIPInputStream(new FileInputStream(
+				STATION_FILE_PATH)), 20020126, 20020127);
+		int records = 0;
+		int previousDate = 0;
+		while (reader.next()) {
+			Assert.assertTrue(reader.date() >= previousDate);
+			Assert.assertTrue(reader.date() == 20020126 || reader.date() == 20020127);
+			Assert.assertEquals("827910", reader.stationId());
+			previousDate = reader.date();
+			records++;
+		}
+		Assert.assertFalse(reader.next());
+		reader.close();
+		Assert.assertEquals(6, records);
+	}
+
+	@Test
+	public void testReadsTheFields() throws IOException {
+		ISDRecordReader reader = new ISDRecordReader(new GZIPInputStream(new FileInputStream(
+				STATION_FILE_PATH)), 20020126, 20020126);
+		Assert.assertTrue(reader.next());
+		Assert.assertEquals(20020126, reader.date());
+		Assert.assertEquals(0, reader.time());
+		Assert.assertEquals(-7.01, reader.latitude(), 1e-9);
+		Assert.assertEquals(-37.26, reader.longitude(), 1e-9);
+		Assert.assertEquals(1.5, reader.windSpeed(), 1e-9);
+		Assert.assertEquals(27.6, reader.airTemperature(), 1e-9);
+		Assert.assertEquals(21.4, reader.dewPointTemperature(), 1e-9);
+		reader.close();
+	}
+
+	@Test
+	public void testNegativeAndMissingValues() throws IOException {
+		StringBuilder remarks = new StringBuilder();
+		// longer than the buffer of the reader
+		while (remarks.length() < 100000) {
+			remarks.append("REMARK");
+		}
+		String records = record("20020701", "1200", "0031", "-0052", "-0107") + "\r\n"
+				+ record("20020701", "1800", "9999", "+9999", "+9999") + remarks + "\n"
+				+ "short line\n"
+				+ record("20020702", "0000", "0040", "+0012", "-0003");
+		ISDRecordReader reader = new ISDRecordReader(new ByteArrayInputStream(
+				records.getBytes("US-ASCII")), 20020701, 20020702);
+
+		Assert.assertTrue(reader.next());
+		Assert.assertEquals(1200, reader.time());
+		Assert.assertEquals(3.1, reader.windSpeed(), 1e-9);
+		Assert.assertEquals(-5.2, reader.airTemperature(), 1e-9);
+		Assert.assertEquals(-10.7, reader.dewPointTemperature(), 1e-9);
+
+		Assert.assertTrue(reader.next());
+		Assert.assertTrue(Double.isNaN(reader.windSpeed()));
+		Assert.assertTrue(Double.isNaN(reader.airTemperature()));
+		Assert.assertTrue(Double.isNaN(reader.dewPointTemperature()));
+
+		// the last line has no line break
+		Assert.assertTrue(reader.next());
+		Assert.assertEquals(20020702, reader.date());
+		Assert.assertEquals(1.2, reader.airTemperature(), 1e-9);
+		Assert.assertEquals(-0.3, reader.dewPointTemperature(), 1e-9);
+		Assert.assertFalse(reader.next());
+	}
+
+	@Test
+	public void testStopsReadingAfterTheEndDate() throws IOException {
+		final StringBuilder records = new StringBuilder();
+		for (int day = 1; day <= 28; day++) {
+			for (int hour = 0; hour < 24; hour++) {
+				records.append(record(String.format("200202%02d", day),
+						String.format("%02d00", hour), "0031", "+0252", "+0107"));
+				// long lines, so the file is many buffers long
+				for (int i = 0; i < 200; i++) {
+					records.append("REMARK");
+				}
+				records.append('\n');
+			}
+		}
+		final byte[] bytes = records.toString().getBytes("US-ASCII");
+		final int[] readBytes = new int[1];
+		InputStream input = new ByteArrayInputStream(bytes) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				int read = super.read(b, off, Math.min(len, 1000));
+				readBytes[0] += Math.max(0, read);
+				return read;
+			}
+		};
+
+		ISDRecordReader reader = new ISDRecordReader(input, 20020203, 20020203);
+		int dayRecords = 0;
+		while (reader.next()) {
+			Assert.assertEquals(20020203, reader.date());
+			dayRecords++;
+		}
+		Assert.assertEquals(24, dayRecords);
+		Assert.assertTrue(readBytes[0] < bytes.length / 4);
+	}
+
+	/*
+	 * A line of the mandatory ISD fields of station 827910.
+	 */
+	private static String record(String date, String time, String windSpeed, String airTemp,
+			String dewTemp) {
+		return "016782791099999" + date + time + "4-07010-037260FM-12+024999999V0203601N"
+				+ windSpeed + "10042019N0500001N1" + airTemp + "1" + dewTemp + "1100781ADD";
+	}
+}
@@ -0,0 +1,205 @@
+package org.fogbowcloud.sebal.parsers.plugins;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestStationCatalogue {
+
+	private File catalogueDir;
+
+	@Before
+	public void setUp() throws IOException {
+		catalogueDir = File.createTempFile("station-catalogue", "");
+		catalogueDir.delete();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(catalogueDir);
+	}
+
+	@Test
+	public void testKNearestAsTheLinearSearch() {
+		Random random = new Random(3);
+		JSONArray stations = createStations(2000, random);
+		StationList stationList = StationList.of("2002", stations);
+
+		double[] lats = new double[200];
+		double[] lons = new double[200];
+		for (int query = 0; query < lats.length; query++) {
+			lats[query] = random.nextDouble() * 180 - 90;
+			lons[query] = random.nextDouble() * 360 - 180;
+			if (query % 4 == 0) {
+				// right at a station
+				lats[query] = stationList.lat(query);
+				lons[query] = stationList.lon(query);
+			}
+		}
+		NearestStations[] batch = stationList.kNearest(lats, lons, 7, 1500);
+
+		for (int query = 0; query < lats.length; query++) {
+			final double[] distances = new double[stations.length()];
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int i = 0; i < stations.length(); i++) {
+				distances[i] = StationList.distance(lats[query], lons[query],
+						stationList.lat(i), stationList.lon(i));
+				if (distances[i] <= 1500) {
+					expected.add(i);
+				}
+			}
+			Collections.sort(expected, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Double.compare(distances[o1], distances[o2]);
+				}
+			});
+			expected = expected.subList(0, Math.min(7, expected.size()));
+
+			NearestStations nearest = stationList.kNearest(lats[query], lons[query], 7, 1500);
+			Assert.assertEquals(expected.size(), nearest.size());
+			Assert.assertEquals(expected.size(), batch[query].size());
+			for (int k = 0; k < nearest.size(); k++) {
+				Assert.assertEquals(distances[expected.get(k)], nearest.distance(k), 1e-6);
+				Assert.assertEquals(distances[nearest.station(k)], nearest.distance(k), 0);
+				Assert.assertEquals(nearest.station(k), batch[query].station(k));
+			}
+		}
+	}
+
+	@Test
+	public void testKNearestWithoutStations() {
+		StationList stationList = StationList.of("2002", createStations(5, new Random(1)));
+		Assert.assertEquals(0, stationList.kNearest(0, 0, 0, 1000).size());
+		Assert.assertEquals(5, stationList.kNearest(0, 0, 10, Double.MAX_VALUE).size());
+		Assert.assertEquals(0, stationList.kNearest(Double.NaN, 0, 10, Double.MAX_VALUE).size());
+		Assert.assertEquals(0, StationList.of("2002", new JSONArray()).kNearest(0, 0, 10, 1000)
+				.size());
+	}
+
+	@Test
+	public void testStationsAreReadFromTheCatalogueDir() throws IOException {
+		JSONArray stations = createStations(300, new Random(7));
+		StationOperator stationOperator = mock(StationOperator.class);
+		doReturn(stations).when(stationOperator).getStations("2002");
+
+		StationCatalogue catalogue = new StationCatalogue(createProperties());
+		StationList stationList = catalogue.stations("2002", stationOperator);
+		Assert.assertSame(stationList, catalogue.stations("2002", stationOperator));
+		Assert.assertTrue(new File(catalogueDir, "2002-stations.bin").exists());
+		// no temporary file is left
+		Assert.assertEquals(1, catalogueDir.listFiles().length);
+
+		// a new catalogue reads the file instead of getting the stations again
+		StationList readStationList = new StationCatalogue(createProperties()).stations("2002",
+				stationOperator);
+		verify(stationOperator, times(1)).getStations("2002");
+		Assert.assertEquals(stations.length(), readStationList.size());
+		for (int i = 0; i < stations.length(); i++) {
+			Assert.assertEquals(stationList.id(i), readStationList.id(i));
+			Assert.assertEquals(stationList.lat(i), readStationList.lat(i), 0);
+			Assert.assertEquals(stationList.lon(i), readStationList.lon(i), 0);
+			Assert.assertEquals(stationList.station(i).optString("id"), readStationList
+					.station(i).optString("id"));
+		}
+		NearestStations nearest = stationList.kNearest(-7.2, -35.9, 10, 500);
+		NearestStations readNearest = readStationList.kNearest(-7.2, -35.9, 10, 500);
+		Assert.assertEquals(nearest.size(), readNearest.size());
+		for (int k = 0; k < nearest.size(); k++) {
+			Assert.assertEquals(nearest.station(k), readNearest.station(k));
+		}
+	}
+
+	@Test
+	public void testQueriesDoNotShareTheirStations() {
+		JSONArray stations = createStations(300, new Random(5));
+		StationOperator stationOperator = mock(StationOperator.class);
+		doReturn(stations).when(stationOperator).getStations("2002");
+
+		StationCatalogue catalogue = new StationCatalogue(new Properties());
+		List<JSONObject> nearest = catalogue.nearestStations("2002", stationOperator, -7.2,
+				-35.9);
+		double distance = nearest.get(0).getDouble("d");
+		// the same stations from far away
+		List<JSONObject> fartherNearest = catalogue.nearestStations("2002", stationOperator,
+				-7.2, -35.0);
+		Assert.assertNotSame(nearest.get(0), fartherNearest.get(0));
+		Assert.assertEquals(distance, nearest.get(0).getDouble("d"), 0);
+		for (JSONObject station : nearest) {
+			Assert.assertTrue(station.has("id") && station.has("lat") && station.has("lon"));
+		}
+	}
+
+	@Test
+	public void testFileOfAnotherVersionIsRebuilt() throws IOException {
+		catalogueDir.mkdirs();
+		DataOutputStream output = new DataOutputStream(new FileOutputStream(new File(
+				catalogueDir, "2002-stations.bin")));
+		output.writeInt(-1);
+		output.close();
+
+		JSONArray stations = createStations(10, new Random(11));
+		StationOperator stationOperator = mock(StationOperator.class);
+		doReturn(stations).when(stationOperator).getStations("2002");
+
+		StationList stationList = new StationCatalogue(createProperties()).stations("2002",
+				stationOperator);
+		verify(stationOperator, times(1)).getStations("2002");
+		Assert.assertEquals(10, stationList.size());
+		Assert.assertEquals(10, StationList.read(new File(catalogueDir, "2002-stations.bin"))
+				.size());
+	}
+
+	private Properties createProperties() {
+		Properties properties = new Properties();
+		properties.setProperty(StationOperatorConstants.STATION_CATALOGUE_DIR_PATH,
+				catalogueDir.getAbsolutePath());
+		return properties;
+	}
+
+	/*
+	 * Stations as read from the stations CSV file, with coordinates as strings;
+	 * most of them are in a few clusters, as real stations are.
+	 */
+	private static JSONArray createStations(int size, Random random) {
+		JSONArray stations = new JSONArray();
+		for (int i = 0; i < size; i++) {
+			double lat;
+			double lon;
+			if (i % 3 == 0) {
+				lat = random.nextDouble() * 180 - 90;
+				lon = random.nextDouble() * 360 - 180;
+			} else {
+				lat = -8 + random.nextGaussian() * 2 + (i % 2) * 50;
+				lon = -36 + random.nextGaussian() * 3;
+			}
+			JSONObject station = new JSONObject();
+			station.put("id", String.format("%06d-99999", i));
+			station.put("lat", String.format(Locale.ROOT, "%.3f", lat));
+			station.put("lon", String.format(Locale.ROOT, "%.3f", lon));
+			stations.put(station);
+		}
+		return stations;
+	}
+}
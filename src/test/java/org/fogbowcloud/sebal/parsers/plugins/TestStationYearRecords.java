@@ -0,0 +1,184 @@
+package org.fogbowcloud.sebal.parsers.plugins;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Calendar;
+import java.util.Properties;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestStationYearRecords {
+
+	private static final String STATION_FILE_PATH = "src/test/resource/827910-99999-2002.gz";
+
+	private File storeDir;
+
+	@Before
+	public void setUp() throws IOException {
+		storeDir = File.createTempFile("weather-store", "");
+		storeDir.delete();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(storeDir);
+	}
+
+	@Test
+	public void testRecordsOfTheStationFile() throws IOException {
+		StationYearRecords records = StationYearRecords.of("827910", 2002, new FileInputStream(
+				STATION_FILE_PATH));
+		Assert.assertEquals(1019, records.size());
+
+		int from = records.firstRecord(20020126);
+		int to = records.firstRecord(20020127);
+		Assert.assertEquals(3, to - from);
+		Assert.assertEquals(20020126, records.date(from));
+		Assert.assertEquals(0, records.time(from));
+		Assert.assertEquals(-7.01, records.latitude(from), 1e-9);
+		Assert.assertEquals(-37.26, records.longitude(from), 1e-9);
+		Assert.assertEquals(1.5, records.windSpeed(from), 1e-9);
+		Assert.assertEquals(27.6, records.airTemperature(from), 1e-9);
+		Assert.assertEquals(21.4, records.dewPointTemperature(from), 1e-9);
+		Assert.assertEquals(1200, records.time(from + 1));
+		Assert.assertEquals(1800, records.time(from + 2));
+	}
+
+	@Test
+	public void testClosestRecordAsTheLinearSearch() throws IOException {
+		StationYearRecords records = StationYearRecords.of("827910", 2002, new FileInputStream(
+				STATION_FILE_PATH));
+		Random random = new Random(5);
+		Calendar calendar = Calendar.getInstance();
+		for (int query = 0; query < 500; query++) {
+			calendar.clear();
+			calendar.set(2002, random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24),
+					random.nextInt(60));
+			int date = calendar.get(Calendar.YEAR) * 10000
+					+ (calendar.get(Calendar.MONTH) + 1) * 100
+					+ calendar.get(Calendar.DAY_OF_MONTH);
+			int days = random.nextInt(3);
+			int from = records.firstRecord(date - days);
+			int to = records.firstRecord(date + days + 1);
+
+			int expected = -1;
+			long smallestDiff = Long.MAX_VALUE;
+			for (int record = from; record < to; record++) {
+				Calendar recordCalendar = Calendar.getInstance();
+				recordCalendar.clear();
+				recordCalendar.set(records.date(record) / 10000,
+						records.date(record) / 100 % 100 - 1, records.date(record) % 100,
+						records.time(record) / 100, records.time(record) % 100);
+				long diff = Math.abs(recordCalendar.getTimeInMillis()
+						- calendar.getTimeInMillis());
+				if (diff < smallestDiff) {
+					smallestDiff = diff;
+					expected = record;
+				}
+			}
+			Assert.assertEquals(expected, records.closestRecord(calendar.getTimeInMillis(), from,
+					to));
+		}
+	}
+
+	@Test
+	public void testRecordsAreReadFromTheStoreDir() throws Exception {
+		StationYearRecords records = StationYearRecords.of("827910", 2002, new FileInputStream(
+				STATION_FILE_PATH));
+		StationOperator stationOperator = mock(StationOperator.class);
+		doReturn(records).when(stationOperator).readStationRecords("827910", 2002);
+
+		Properties properties = new Properties();
+		properties.setProperty(StationOperatorConstants.WEATHER_STORE_DIR_PATH,
+				storeDir.getAbsolutePath());
+		WeatherStore weatherStore = new WeatherStore(properties);
+		Assert.assertSame(records, weatherStore.records("827910", 2002, 20020127,
+				stationOperator));
+		Assert.assertSame(records, weatherStore.records("827910", 2002, 20021231,
+				stationOperator));
+		Assert.assertNull(weatherStore.records("827910", 2003, 20030127, stationOperator));
+
+		// another process reads the file instead of fetching the records again
+		StationYearRecords readRecords = new WeatherStore(properties).records("827910", 2002,
+				20020127, stationOperator);
+		verify(stationOperator, times(1)).readStationRecords("827910", 2002);
+		Assert.assertEquals("827910", readRecords.stationId());
+		Assert.assertEquals(2002, readRecords.year());
+		Assert.assertEquals(records.size(), readRecords.size());
+		for (int record = 0; record < records.size(); record++) {
+			Assert.assertEquals(records.date(record), readRecords.date(record));
+			Assert.assertEquals(records.time(record), readRecords.time(record));
+			Assert.assertEquals(records.windSpeed(record), readRecords.windSpeed(record), 0);
+			Assert.assertEquals(records.airTemperature(record),
+					readRecords.airTemperature(record), 0);
+			Assert.assertEquals(records.dewPointTemperature(record),
+					readRecords.dewPointTemperature(record), 0);
+		}
+		Assert.assertEquals(1, storeDir.listFiles().length);
+	}
+
+	@Test
+	public void testReadingStopsWhenInterrupted() throws Exception {
+		FileInputStream input = new FileInputStream(STATION_FILE_PATH);
+		Thread.currentThread().interrupt();
+		try {
+			StationYearRecords.of("827910", 2002, input);
+			Assert.fail();
+		} catch (InterruptedIOException e) {
+			// the stream was closed
+			Assert.assertFalse(input.getChannel().isOpen());
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
+	@Test
+	public void testRecordsOfAYearNotCompleteAreFetchedAgain() throws Exception {
+		// fetched in the middle of the year, and then at its end
+		StationYearRecords firstRecords = StationYearRecords.of("827910", 2002,
+				new ISDRecordReader(new GZIPInputStream(new FileInputStream(STATION_FILE_PATH)),
+						20020101, 20020630));
+		StationYearRecords records = StationYearRecords.of("827910", 2002, new FileInputStream(
+				STATION_FILE_PATH));
+		StationOperator stationOperator = mock(StationOperator.class);
+		doReturn(firstRecords).doReturn(records).when(stationOperator).readStationRecords(
+				"827910", 2002);
+
+		Properties properties = new Properties();
+		properties.setProperty(StationOperatorConstants.WEATHER_STORE_DIR_PATH,
+				storeDir.getAbsolutePath());
+		WeatherStore weatherStore = new WeatherStore(properties) {
+			@Override
+			int lastCompleteYear() {
+				return 2001;
+			}
+		};
+		Assert.assertSame(firstRecords, weatherStore.records("827910", 2002, 20020127,
+				stationOperator));
+		Assert.assertSame(firstRecords, weatherStore.records("827910", 2002, 20020630,
+				stationOperator));
+		verify(stationOperator, times(1)).readStationRecords("827910", 2002);
+		Assert.assertFalse(storeDir.exists());
+
+		// a later scene of the year
+		Assert.assertSame(records, weatherStore.records("827910", 2002, 20021215,
+				stationOperator));
+		verify(stationOperator, times(2)).readStationRecords("827910", 2002);
+		Assert.assertSame(records, weatherStore.records("827910", 2002, 20021215,
+				stationOperator));
+		verify(stationOperator, times(2)).readStationRecords("827910", 2002);
+	}
+}
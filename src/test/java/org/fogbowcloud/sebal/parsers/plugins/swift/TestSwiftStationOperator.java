@@ -5,6 +5,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.URISyntaxException;
@@ -18,6 +19,7 @@ import java.util.Properties;
 import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpException;
 import org.fogbowcloud.sebal.parsers.plugins.StationOperatorConstants;
+import org.fogbowcloud.sebal.util.SEBALAppConstants;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Assert;
@@ -61,6 +63,7 @@ public class TestSwiftStationOperator {
 		
 		List<JSONObject> expectedStation = new ArrayList<JSONObject>();
 		expectedStation.add(stationOne);
+		expectedStation.add(stationTwo);
 		
 		SwiftStationOperator stationOperator = spy(new SwiftStationOperator(properties));
 		doReturn(stations).when(stationOperator).getStations(year);
@@ -69,7 +72,13 @@ public class TestSwiftStationOperator {
 		List<JSONObject> chosenStation = stationOperator.findNearestStation(date, lat, lon, numberOfDays);
 		
 		// expect
-		Assert.assertEquals(expectedStation, chosenStation);
+		Assert.assertEquals(expectedStation.size(), chosenStation.size());
+		for (int i = 0; i < expectedStation.size(); i++) {
+			for (String name : JSONObject.getNames(expectedStation.get(i))) {
+				Assert.assertEquals(expectedStation.get(i).get(name), chosenStation.get(i).get(name));
+			}
+			Assert.assertTrue(chosenStation.get(i).has("d"));
+		}
 	}
 	
 	@Test
@@ -81,28 +90,15 @@ public class TestSwiftStationOperator {
 		long milliseconds = d.getTime();
 		Date date = new Date(milliseconds);		
 		
-		// Establishing local fixed attributes
 		String year = "2002";
-		String compressedUnformattedStationFilePath = "/tmp/2002/827910-99999-2002.gz";
-		String stationFileUrl = "fake-station-file-url";
-		File compressedUnformattedStationFile = new File(compressedUnformattedStationFilePath);
 		Properties properties = mock(Properties.class);
 
-		// Creating temporary year directory
-		String baseUnformattedLocalStationFilePath = "/tmp/2002";
-		File baseUnformattedLocalStationDir = new File(baseUnformattedLocalStationFilePath);
-		baseUnformattedLocalStationDir.mkdirs();
-		
-		// Copying station file to be used from resource to /tmp
+		// The station file is read from the resource instead of the server
 		String originalCompressedFilePath = "src/test/resource/827910-99999-2002.gz";
-		File originalCompressedFile = new File(originalCompressedFilePath);
-		FileUtils.copyFile(originalCompressedFile, compressedUnformattedStationFile);
 		
 		SwiftStationOperator stationOperator = spy(new SwiftStationOperator(properties));
-		doReturn(baseUnformattedLocalStationFilePath).when(stationOperator).getBaseUnformattedLocalStationFilePath(year);
-		doReturn(compressedUnformattedStationFile).when(stationOperator).getUnformattedStationFile("82791", year);
-		doReturn(stationFileUrl).when(stationOperator).getStationFileUrl("82791", year);
-		doReturn(true).when(stationOperator).downloadUnformattedStationFile(compressedUnformattedStationFile, stationFileUrl);
+		doReturn(new FileInputStream(originalCompressedFilePath)).when(stationOperator)
+				.openStationDataStream("82791", year);
 		
 		// exercise
 		JSONArray stationData = stationOperator.readStation("82791",
@@ -111,6 +107,16 @@ public class TestSwiftStationOperator {
 		
 		// expect
 		Assert.assertNotNull(stationData);
+		Assert.assertEquals(3, stationData.length());
+		JSONObject firstRecord = stationData.optJSONObject(0);
+		Assert.assertEquals("827910", firstRecord.optString(SEBALAppConstants.JSON_STATION_ID));
+		Assert.assertEquals("20020126", firstRecord.optString(SEBALAppConstants.JSON_STATION_DATE));
+		Assert.assertEquals("0000", firstRecord.optString(SEBALAppConstants.JSON_STATION_TIME));
+		Assert.assertEquals("-7.01", firstRecord.optString(SEBALAppConstants.JSON_STATION_LATITUDE));
+		Assert.assertEquals("-37.26", firstRecord.optString(SEBALAppConstants.JSON_STATION_LONGITUDE));
+		Assert.assertEquals("1.5", firstRecord.optString(SEBALAppConstants.JSON_STATION_WIND_SPEED));
+		Assert.assertEquals("27.6", firstRecord.optString(SEBALAppConstants.JSON_AIR_TEMPERATURE));
+		Assert.assertEquals("21.4", firstRecord.optString(SEBALAppConstants.JSON_DEWPOINT_TEMPERATURE));
 	}
 	
 	@Test